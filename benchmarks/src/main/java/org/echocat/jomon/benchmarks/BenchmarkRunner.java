@@ -0,0 +1,91 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import static org.openjdk.jmh.results.format.ResultFormatType.JSON;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Runs the benchmarks of this module with the same command line options as the plain JMH runner - but by default
+ * once with 1, 8 and 32 threads and with the results written as JSON to
+ * <code>target/benchmark-results/&lt;timestamp&gt;-t&lt;threads&gt;.json</code>. So the results of different runs
+ * could easily be compared.</p>
+ * <p>If the number of threads (<code>-t</code>), the format (<code>-rf</code>) or the file of the results
+ * (<code>-rff</code>) is given this is respected.</p>
+ */
+public class BenchmarkRunner {
+
+    private static final int[] DEFAULT_THREADS = {1, 8, 32};
+
+    public static void main(String[] args) throws Exception {
+        final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        if (commandLineOptions.shouldHelp() || commandLineOptions.shouldList() || commandLineOptions.shouldListWithParams() || commandLineOptions.shouldListProfilers() || commandLineOptions.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+        } else {
+            final int[] allThreads = commandLineOptions.getThreads().hasValue() ? new int[]{commandLineOptions.getThreads().get()} : DEFAULT_THREADS;
+            final String prefix = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+            for (final int threads : allThreads) {
+                new Runner(optionsFor(commandLineOptions, threads, prefix, allThreads.length > 1)).run();
+            }
+        }
+    }
+
+    @Nonnull
+    protected static Options optionsFor(@Nonnull CommandLineOptions commandLineOptions, @Nonnegative int threads, @Nonnull String prefix, boolean oneOfSeveral) {
+        final ResultFormatType format = commandLineOptions.getResultFormat().orElse(JSON);
+        return new OptionsBuilder()
+            .parent(commandLineOptions)
+            .threads(threads)
+            .resultFormat(format)
+            .result(resultFileFor(commandLineOptions, threads, prefix, oneOfSeveral, format))
+            .build();
+    }
+
+    @Nonnull
+    protected static String resultFileFor(@Nonnull CommandLineOptions commandLineOptions, @Nonnegative int threads, @Nonnull String prefix, boolean oneOfSeveral, @Nonnull ResultFormatType format) {
+        final String result;
+        if (commandLineOptions.getResult().hasValue()) {
+            final String plain = commandLineOptions.getResult().get();
+            final int dot = plain.lastIndexOf('.');
+            if (!oneOfSeveral) {
+                result = plain;
+            } else if (dot > plain.lastIndexOf(File.separatorChar)) {
+                result = plain.substring(0, dot) + "-t" + threads + plain.substring(dot);
+            } else {
+                result = plain + "-t" + threads;
+            }
+        } else {
+            final File directory = new File("target", "benchmark-results");
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IllegalStateException("Could not create " + directory + ".");
+            }
+            result = new File(directory, prefix + "-t" + threads + "." + format.toString().toLowerCase()).getPath();
+        }
+        return result;
+    }
+
+}
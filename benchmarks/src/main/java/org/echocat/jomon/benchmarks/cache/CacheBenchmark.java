@@ -0,0 +1,114 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.benchmarks.cache;
+
+import org.echocat.jomon.cache.Cache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Measures the throughput of reads, writes and a mix of both (90% reads and 10% writes) for every
+ * {@link CacheType} with different capacities and {@link KeyDistribution key distributions}.</p>
+ * <p>The key space is twice as large as the capacity of the cache and the cache is completely filled before the
+ * measurement. So reads hit and miss and writes replace and evict entries.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@Fork(1)
+public class CacheBenchmark {
+
+    protected static final int NUMBER_OF_INDEXES = 1 << 16;
+
+    @Param
+    public CacheType type;
+    @Param({"1000", "100000"})
+    public int capacity;
+    @Param
+    public KeyDistribution distribution;
+
+    private Cache<Integer, Integer> _cache;
+    private Integer[] _keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        _cache = type.create(capacity);
+        _keys = new Integer[capacity * 2];
+        for (int i = 0; i < _keys.length; i++) {
+            _keys[i] = i;
+        }
+        for (int i = 0; i < capacity; i++) {
+            _cache.put(_keys[i], _keys[i]);
+        }
+    }
+
+    @Benchmark
+    public Integer get(Cursor cursor) {
+        return _cache.get(_keys[cursor.next()]);
+    }
+
+    @Benchmark
+    public void put(Cursor cursor) {
+        final Integer key = _keys[cursor.next()];
+        _cache.put(key, key);
+    }
+
+    @Benchmark
+    public Integer mixed(Cursor cursor) {
+        final Integer key = _keys[cursor.next()];
+        final Integer result;
+        if (cursor.isWrite()) {
+            _cache.put(key, key);
+            result = key;
+        } else {
+            result = _cache.get(key);
+        }
+        return result;
+    }
+
+    /**
+     * Every thread walks through its own precomputed sequence of key indexes - so the creation of random numbers is
+     * not part of the measurement.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int[] _indexes;
+        private int _position;
+
+        @Setup(Level.Trial)
+        public void setUp(CacheBenchmark benchmark) {
+            _indexes = benchmark.distribution.createIndexes(NUMBER_OF_INDEXES, benchmark.capacity * 2, new Random());
+        }
+
+        public int next() {
+            _position = (_position + 1) & (NUMBER_OF_INDEXES - 1);
+            return _indexes[_position];
+        }
+
+        public boolean isWrite() {
+            return _position % 10 == 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,105 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.benchmarks.cache;
+
+import org.echocat.jomon.cache.*;
+import org.echocat.jomon.cache.ServletRequestBasedCache.Resolver;
+import org.echocat.jomon.cache.management.LruCacheCreator;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.servlet.ServletRequest;
+
+import static org.echocat.jomon.cache.management.DefaultCacheDefinition.lruCache;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>All caches which could be benchmarked - each of them limited to a given capacity.</p>
+ */
+public enum CacheType {
+
+    lru {
+        @Nonnull
+        @Override
+        public Cache<Integer, Integer> create(@Nonnegative long capacity) {
+            return limited(new LruCache<>(Integer.class, Integer.class), capacity);
+        }
+    },
+    lfu {
+        @Nonnull
+        @Override
+        public Cache<Integer, Integer> create(@Nonnegative long capacity) {
+            return limited(new LfuCache<>(Integer.class, Integer.class), capacity);
+        }
+    },
+    fifo {
+        @Nonnull
+        @Override
+        public Cache<Integer, Integer> create(@Nonnegative long capacity) {
+            return limited(new FifoCache<>(Integer.class, Integer.class), capacity);
+        }
+    },
+    concurrentLru {
+        @Nonnull
+        @Override
+        public Cache<Integer, Integer> create(@Nonnegative long capacity) {
+            return limited(new ConcurrentLruCache<>(Integer.class, Integer.class), capacity);
+        }
+    },
+    concurrentLfu {
+        @Nonnull
+        @Override
+        public Cache<Integer, Integer> create(@Nonnegative long capacity) {
+            return limited(new ConcurrentLfuCache<>(Integer.class, Integer.class), capacity);
+        }
+    },
+    /**
+     * A small {@link LruCache} with a tenth of the capacity in front of a {@link LruCache} with the full capacity.
+     */
+    combined {
+        @Nonnull
+        @Override
+        @SuppressWarnings("unchecked")
+        public Cache<Integer, Integer> create(@Nonnegative long capacity) {
+            final LimitedCache<Integer, Integer> firstLevel = limited(new LruCache<>(Integer.class, Integer.class), Math.max(capacity / 10, 1));
+            final LimitedCache<Integer, Integer> secondLevel = limited(new LruCache<>(Integer.class, Integer.class), capacity);
+            return new CombinedCache<>(Integer.class, Integer.class, firstLevel, secondLevel);
+        }
+    },
+    /**
+     * A {@link ServletRequestBasedCache} which uses always the same request - so the overhead of resolving the cache
+     * of the request is measured and not the creation of a new cache for each request.
+     */
+    servletRequestBased {
+        @Nonnull
+        @Override
+        public Cache<Integer, Integer> create(@Nonnegative long capacity) {
+            final ServletRequest request = ServletRequestUtils.newServletRequest();
+            return new ServletRequestBasedCache<>(Integer.class, Integer.class, new LruCacheCreator(), new Resolver() { @Override public ServletRequest resolve(@Nonnull ServletRequestBasedCache<?, ?> forCache) {
+                return request;
+            }}, lruCache(Integer.class, Integer.class).withCapacity(capacity));
+        }
+    };
+
+    @Nonnull
+    public abstract Cache<Integer, Integer> create(@Nonnegative long capacity);
+
+    @Nonnull
+    protected static <T extends LimitedCache<Integer, Integer>> T limited(@Nonnull T cache, @Nonnegative long capacity) {
+        cache.setCapacity(capacity);
+        return cache;
+    }
+
+}
@@ -0,0 +1,98 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.benchmarks.cache;
+
+import org.echocat.jomon.cache.Cache;
+import org.echocat.jomon.runtime.util.Duration;
+import org.echocat.jomon.runtime.util.ValueProducer;
+import org.openjdk.jmh.annotations.*;
+
+import javax.annotation.Nullable;
+import java.util.Random;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Measures caches whose entries expire all the time (TTL churn): Every access reads an entry and produces it
+ * again if it is missing or expired, with the given lifetime.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@Fork(1)
+public class ExpirationBenchmark {
+
+    protected static final int NUMBER_OF_INDEXES = 1 << 16;
+    protected static final ValueProducer<Integer, Integer> PRODUCER = new ValueProducer<Integer, Integer>() { @Override public Integer produce(@Nullable Integer key) throws Exception {
+        return key;
+    }};
+
+    @Param({"lru", "lfu", "fifo", "concurrentLru", "concurrentLfu", "combined"})
+    public CacheType type;
+    @Param({"10000"})
+    public int capacity;
+    @Param({"1ms", "10ms", "100ms"})
+    public String expireAfter;
+    @Param
+    public KeyDistribution distribution;
+
+    private Cache<Integer, Integer> _cache;
+    private Duration _expireAfter;
+    private Integer[] _keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        _cache = type.create(capacity);
+        _expireAfter = new Duration(expireAfter);
+        _keys = new Integer[capacity];
+        for (int i = 0; i < _keys.length; i++) {
+            _keys[i] = i;
+        }
+    }
+
+    @Benchmark
+    public Integer getOrProduce(Cursor cursor) {
+        return _cache.get(_keys[cursor.next()], PRODUCER, _expireAfter);
+    }
+
+    @Benchmark
+    public void put(Cursor cursor) {
+        final Integer key = _keys[cursor.next()];
+        _cache.put(key, key, _expireAfter);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int[] _indexes;
+        private int _position;
+
+        @Setup(Level.Trial)
+        public void setUp(ExpirationBenchmark benchmark) {
+            _indexes = benchmark.distribution.createIndexes(NUMBER_OF_INDEXES, benchmark.capacity, new Random());
+        }
+
+        public int next() {
+            _position = (_position + 1) & (NUMBER_OF_INDEXES - 1);
+            return _indexes[_position];
+        }
+
+    }
+
+}
@@ -0,0 +1,95 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.benchmarks.cache;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.Random;
+
+import static java.lang.Math.pow;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Distributions of the keys which are accessed by the benchmarks.</p>
+ */
+public enum KeyDistribution {
+
+    /**
+     * Every key is accessed with the same probability.
+     */
+    uniform {
+        @Nonnull
+        @Override
+        public int[] createIndexes(@Nonnegative int numberOfIndexes, @Nonnegative int numberOfKeys, @Nonnull Random random) {
+            final int[] result = new int[numberOfIndexes];
+            for (int i = 0; i < numberOfIndexes; i++) {
+                result[i] = random.nextInt(numberOfKeys);
+            }
+            return result;
+        }
+    },
+    /**
+     * Few keys are accessed very often and most keys are accessed rarely - like it is typical for real caches. The
+     * probability of the key with rank <i>n</i> is proportional to <i>1/n<sup>0.99</sup></i>.
+     */
+    zipfian {
+        @Nonnull
+        @Override
+        public int[] createIndexes(@Nonnegative int numberOfIndexes, @Nonnegative int numberOfKeys, @Nonnull Random random) {
+            final double theta = 0.99;
+            final double zetaOfN = zeta(numberOfKeys, theta);
+            final double zetaOf2 = zeta(2, theta);
+            final double alpha = 1d / (1d - theta);
+            final double eta = (1d - pow(2d / numberOfKeys, 1d - theta)) / (1d - zetaOf2 / zetaOfN);
+            final int[] result = new int[numberOfIndexes];
+            for (int i = 0; i < numberOfIndexes; i++) {
+                final double u = random.nextDouble();
+                final double uz = u * zetaOfN;
+                final int rank;
+                if (uz < 1d) {
+                    rank = 0;
+                } else if (uz < 1d + pow(0.5d, theta)) {
+                    rank = 1;
+                } else {
+                    rank = Math.min((int) (numberOfKeys * pow(eta * u - eta + 1d, alpha)), numberOfKeys - 1);
+                }
+                // Spread the popular keys over the whole key space - so they are not neighbours.
+                result[i] = (int) (((long) rank * SPREAD) % numberOfKeys);
+            }
+            return result;
+        }
+    };
+
+    /**
+     * A prime which is larger than every possible number of keys - so multiplying by it maps each rank to another key.
+     */
+    private static final long SPREAD = 2147483647L;
+
+    /**
+     * @return <code>numberOfIndexes</code> indexes of keys between <code>0</code> (inclusive) and
+     *         <code>numberOfKeys</code> (exclusive).
+     */
+    @Nonnull
+    public abstract int[] createIndexes(@Nonnegative int numberOfIndexes, @Nonnegative int numberOfKeys, @Nonnull Random random);
+
+    protected static double zeta(@Nonnegative long n, double theta) {
+        double result = 0;
+        for (long i = 1; i <= n; i++) {
+            result += 1d / pow(i, theta);
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,145 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.benchmarks.cache;
+
+import org.echocat.jomon.cache.*;
+import org.echocat.jomon.runtime.util.Duration;
+import org.echocat.jomon.runtime.util.Value;
+import org.openjdk.jmh.annotations.*;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.echocat.jomon.runtime.util.Value.Values.valueOf;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Measures the costs of notifying several listeners via {@link CacheListenerInvoker} - directly and as part of
+ * reads and writes of a {@link LruCache}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = SECONDS)
+@Fork(1)
+public class ListenerBenchmark {
+
+    protected static final int NUMBER_OF_KEYS = 1 << 12;
+
+    @Param({"0", "1", "4", "16"})
+    public int listeners;
+
+    private final CacheListenerInvoker _invoker = new CacheListenerInvoker();
+    private LruCache<Integer, Integer> _cache;
+    private Integer[] _keys;
+    private Value<Integer> _value;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final List<CacheListener> all = new ArrayList<>();
+        for (int i = 0; i < listeners; i++) {
+            all.add(new CountingListener());
+        }
+        _invoker.setListeners(all);
+        _cache = new LruCache<>(Integer.class, Integer.class);
+        _cache.setCapacity((long) NUMBER_OF_KEYS);
+        _cache.setListeners(all);
+        _keys = new Integer[NUMBER_OF_KEYS];
+        for (int i = 0; i < _keys.length; i++) {
+            _keys[i] = i;
+            _cache.put(_keys[i], _keys[i]);
+        }
+        _value = valueOf(0);
+    }
+
+    @Benchmark
+    public boolean invokeGet(Cursor cursor) {
+        final Integer key = _keys[cursor.next()];
+        final boolean result = _invoker.beforeGet(_cache, key);
+        _invoker.afterGet(_cache, key, _value);
+        return result;
+    }
+
+    @Benchmark
+    public boolean invokePut(Cursor cursor) {
+        final Integer key = _keys[cursor.next()];
+        final boolean result = _invoker.beforePut(_cache, key, _value, null);
+        _invoker.afterPut(_cache, key, _value, null);
+        return result;
+    }
+
+    @Benchmark
+    public Integer get(Cursor cursor) {
+        return _cache.get(_keys[cursor.next()]);
+    }
+
+    @Benchmark
+    public void put(Cursor cursor) {
+        final Integer key = _keys[cursor.next()];
+        _cache.put(key, key);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int[] _indexes;
+        private int _position;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            _indexes = KeyDistribution.uniform.createIndexes(NUMBER_OF_KEYS, NUMBER_OF_KEYS, new Random());
+        }
+
+        public int next() {
+            _position = (_position + 1) & (NUMBER_OF_KEYS - 1);
+            return _indexes[_position];
+        }
+
+    }
+
+    protected static class CountingListener implements PutCacheListener, GetCacheListener {
+
+        private long _puts;
+        private long _gets;
+
+        @Override
+        public boolean beforePut(@Nonnull Cache<?, ?> cache, @Nullable Object key, @Nullable Value<?> value, @Nullable Duration expireAfter) {
+            return true;
+        }
+
+        @Override
+        public void afterPut(@Nonnull Cache<?, ?> cache, @Nullable Object key, @Nullable Value<?> value, @Nullable Duration expireAfter) {
+            _puts++;
+        }
+
+        @Override
+        public boolean beforeGet(@Nonnull Cache<?, ?> cache, @Nullable Object key) {
+            return true;
+        }
+
+        @Override
+        public void afterGet(@Nonnull Cache<?, ?> cache, @Nullable Object key, @Nullable Value<?> value) {
+            _gets++;
+        }
+
+    }
+
+}
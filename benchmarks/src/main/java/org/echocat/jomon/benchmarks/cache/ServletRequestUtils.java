@@ -0,0 +1,62 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.benchmarks.cache;
+
+import javax.annotation.Nonnull;
+import javax.servlet.ServletRequest;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.reflect.Proxy.newProxyInstance;
+import static java.util.Collections.enumeration;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Creates minimal {@link ServletRequest}s without a servlet container which only support attributes.</p>
+ */
+public final class ServletRequestUtils {
+
+    @Nonnull
+    public static ServletRequest newServletRequest() {
+        final Map<String, Object> attributes = new ConcurrentHashMap<>();
+        return (ServletRequest) newProxyInstance(ServletRequestUtils.class.getClassLoader(), new Class<?>[]{ServletRequest.class}, new InvocationHandler() { @Override public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            final String name = method.getName();
+            final Object result;
+            if ("getAttribute".equals(name)) {
+                result = attributes.get((String) args[0]);
+            } else if ("setAttribute".equals(name)) {
+                if (args[1] != null) {
+                    attributes.put((String) args[0], args[1]);
+                } else {
+                    attributes.remove((String) args[0]);
+                }
+                result = null;
+            } else if ("removeAttribute".equals(name)) {
+                attributes.remove((String) args[0]);
+                result = null;
+            } else if ("getAttributeNames".equals(name)) {
+                result = enumeration(attributes.keySet());
+            } else {
+                throw new UnsupportedOperationException(method.toString());
+            }
+            return result;
+        }});
+    }
+
+    private ServletRequestUtils() {}
+
+}
@@ -0,0 +1,50 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.echocat.jomon.runtime.util.Duration;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>A cache that could handle several keys with one operation. Implementations should acquire their locks only once per batch instead of
+ * once per key. Use the methods of {@link CacheUtils} to use these operations on any {@link Cache}.</p>
+ */
+public interface BulkEnabledCache<K, V> extends Cache<K, V> {
+
+    /**
+     * Returns the cached values for the given keys. Keys without a cached value or a cached value of <code>null</code> are not contained in
+     * the result.
+     */
+    @Nonnull
+    public Map<K, V> getAll(@Nonnull Iterable<? extends K> keys);
+
+    /**
+     * Returns the cached values for the given keys. All keys without a cached value are produced with <b>one</b> call of the given
+     * producer, inserted into the cache and also returned. Keys the producer does not provide a value for are not contained in the result.
+     */
+    @Nonnull
+    public Map<K, V> getAll(@Nonnull Iterable<? extends K> keys, @Nullable BulkValueProducer<K, V> producer, @Nullable Duration expireAfter);
+
+    public void putAll(@Nonnull Map<? extends K, ? extends V> values);
+
+    public void putAll(@Nonnull Map<? extends K, ? extends V> values, @Nullable Duration expireAfter);
+
+    public void removeAll(@Nonnull Iterable<? extends K> keys);
+
+}
@@ -0,0 +1,34 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Produces the values of several keys with one call. This is used by {@link BulkEnabledCache#getAll(Iterable, BulkValueProducer, org.echocat.jomon.runtime.util.Duration)}
+ * to load all keys that are missing in the cache at once - for example with one query instead of one query per key.</p>
+ */
+public interface BulkValueProducer<K, V> {
+
+    /**
+     * @return the produced values. Keys that are not contained in the result or mapped to <code>null</code> will not be cached.
+     */
+    @Nonnull
+    public Map<K, V> produce(@Nonnull Collection<K> keys) throws Exception;
+
+}
@@ -14,6 +14,7 @@
 
 package org.echocat.jomon.cache;
 
+import org.echocat.jomon.runtime.util.LazyEntry.ValueState;
 import org.echocat.jomon.runtime.util.ProducingType;
 import org.echocat.jomon.runtime.util.Value;
 import org.echocat.jomon.runtime.util.Value.Fixed;
@@ -24,20 +25,23 @@ import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import static java.lang.System.currentTimeMillis;
 
 @NotThreadSafe
 public class CacheEntry<K, V> {
 
+    private static final AtomicIntegerFieldUpdater<CacheEntry> REFRESHING = AtomicIntegerFieldUpdater.newUpdater(CacheEntry.class, "_refreshing");
+
     @Nonnull
     private final K _key;
     @Nullable
-    private Value<V> _value;
+    private volatile Value<V> _value;
     @Nonnegative
-    private long _created;
+    private volatile long _created;
     @Nullable
-    private Long _expireAt;
+    private volatile Long _expireAt;
     @Nonnegative
     private long _lastAccessed;
     @Nonnegative
@@ -46,6 +50,14 @@ public class CacheEntry<K, V> {
     private CacheEntry<K, V> _next;
     @Nullable
     private CacheEntry<K, V> _previous;
+    @Nullable
+    private CacheEntry<K, V> _expirationNext;
+    @Nullable
+    private CacheEntry<K, V> _expirationPrevious;
+    private int _expirationBucket = -1;
+    private volatile int _refreshing;
+    @Nonnegative
+    private long _weight;
 
     public CacheEntry(@Nullable K key, @Nullable Long expireAfter, @Nullable Value<V> value) {
         _key = key;
@@ -87,6 +99,18 @@ public class CacheEntry<K, V> {
         return _value;
     }
 
+    /**
+     * @return the weight of this entry as calculated by the {@link Weigher} of the cache this entry belongs to.
+     */
+    @Nonnegative
+    public long getWeight() {
+        return _weight;
+    }
+
+    public void setWeight(@Nonnegative long weight) {
+        _weight = weight;
+    }
+
     public void setPrevious(@Nullable CacheEntry<K, V> previous) {
         _previous = previous;
     }
@@ -105,6 +129,53 @@ public class CacheEntry<K, V> {
         return _next;
     }
 
+    @Nullable
+    CacheEntry<K, V> getExpirationNext() {
+        return _expirationNext;
+    }
+
+    void setExpirationNext(@Nullable CacheEntry<K, V> expirationNext) {
+        _expirationNext = expirationNext;
+    }
+
+    @Nullable
+    CacheEntry<K, V> getExpirationPrevious() {
+        return _expirationPrevious;
+    }
+
+    void setExpirationPrevious(@Nullable CacheEntry<K, V> expirationPrevious) {
+        _expirationPrevious = expirationPrevious;
+    }
+
+    /**
+     * @return the index of the bucket of the {@link ExpirationWheel} this entry is linked into or <code>-1</code> if it is not linked.
+     */
+    int getExpirationBucket() {
+        return _expirationBucket;
+    }
+
+    void setExpirationBucket(int expirationBucket) {
+        _expirationBucket = expirationBucket;
+    }
+
+    /**
+     * Could be called without any synchronization.
+     *
+     * @return <code>true</code> if the calling thread is now responsible to refresh this entry, <code>false</code> if there is already a
+     * refresh in progress.
+     */
+    public boolean startRefresh() {
+        return REFRESHING.compareAndSet(this, 0, 1);
+    }
+
+    public void finishRefresh() {
+        _refreshing = 0;
+    }
+
+    public boolean isRefreshing() {
+        return _refreshing != 0;
+    }
+
     @Nonnegative
     public long getCreated() {
         return _created;
@@ -130,6 +201,29 @@ public class CacheEntry<K, V> {
         _hits++;
     }
 
+    /**
+     * @return the current state of this entry or <code>null</code> if it is expired at the given time or its value is not produced yet.
+     */
+    @Nullable
+    public SnapshotEntry<K, V> toSnapshotEntry(long now) {
+        final Value<V> value = _value;
+        final Long expireAt = _expireAt;
+        final SnapshotEntry<K, V> result;
+        if ((expireAt != null && expireAt <= now) || value == null || (value instanceof Lazy && ((Lazy<?, V>) value).getValueState() != ValueState.produced)) {
+            result = null;
+        } else {
+            result = new SnapshotEntry<>(_key, value.getValue(), expireAt != null ? expireAt - now : null, _hits);
+        }
+        return result;
+    }
+
+    /**
+     * Is only used to restore entries of a {@link SnapshotEntry snapshot} before they are added to the list of the cache.
+     */
+    public void setHits(@Nonnegative int hits) {
+        _hits = hits;
+    }
+
     @Override
     public boolean equals(Object o) {
         final boolean result;
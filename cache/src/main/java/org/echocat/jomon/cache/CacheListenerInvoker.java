@@ -25,7 +25,7 @@ import java.util.List;
 
 import static java.lang.reflect.Array.newInstance;
 
-public class CacheListenerInvoker implements PutCacheListener, GetCacheListener, RemoveCacheListener, ClearableCacheListener, StatisticsEnabledCacheListener, LimitedCacheListener {
+public class CacheListenerInvoker implements PutCacheListener, GetCacheListener, RemoveCacheListener, ClearableCacheListener, StatisticsEnabledCacheListener, LimitedCacheListener, RefreshCacheListener {
 
     public static final PutCacheListener[] EMPTY_PUT = new PutCacheListener[0];
     public static final GetCacheListener[] EMPTY_GET = new GetCacheListener[0];
@@ -33,6 +33,7 @@ public class CacheListenerInvoker implements PutCacheListener, GetCacheListener,
     public static final ClearableCacheListener[] EMPTY_CLEARABLE = new ClearableCacheListener[0];
     public static final StatisticsEnabledCacheListener[] EMPTY_STATISTICS = new StatisticsEnabledCacheListener[0];
     public static final LimitedCacheListener[] EMPTY_LIMITED = new LimitedCacheListener[0];
+    public static final RefreshCacheListener[] EMPTY_REFRESH = new RefreshCacheListener[0];
 
     private Collection<CacheListener> _all;
 
@@ -42,6 +43,7 @@ public class CacheListenerInvoker implements PutCacheListener, GetCacheListener,
     private ClearableCacheListener[] _clearable = EMPTY_CLEARABLE;
     private StatisticsEnabledCacheListener[] _statistics = EMPTY_STATISTICS;
     private LimitedCacheListener[] _limited = EMPTY_LIMITED;
+    private RefreshCacheListener[] _refresh = EMPTY_REFRESH;
 
     public void setListeners(@Nullable Collection<CacheListener> listeners) {
         _all = listeners;
@@ -51,6 +53,7 @@ public class CacheListenerInvoker implements PutCacheListener, GetCacheListener,
         _clearable = filter(ClearableCacheListener.class, listeners);
         _statistics = filter(StatisticsEnabledCacheListener.class, listeners);
         _limited = filter(LimitedCacheListener.class, listeners);
+        _refresh = filter(RefreshCacheListener.class, listeners);
     }
 
     public Collection<CacheListener> getListeners() {
@@ -165,6 +168,22 @@ public class CacheListenerInvoker implements PutCacheListener, GetCacheListener,
         }
     }
 
+    @Override
+    public void afterRefresh(@Nonnull Cache<?, ?> cache, @Nullable Object key, @Nullable Value<?> value) {
+        final RefreshCacheListener[] listeners = _refresh;
+        for (final RefreshCacheListener listener : listeners) {
+            listener.afterRefresh(cache, key, value);
+        }
+    }
+
+    @Override
+    public void afterRefreshFailed(@Nonnull Cache<?, ?> cache, @Nullable Object key, @Nonnull Throwable cause) {
+        final RefreshCacheListener[] listeners = _refresh;
+        for (final RefreshCacheListener listener : listeners) {
+            listener.afterRefreshFailed(cache, key, cause);
+        }
+    }
+
     @Nonnull
     protected <T extends CacheListener> T[] filter(@Nonnull Class<T> requiredType, @Nullable Collection<CacheListener> all) {
         final List<T> result = new ArrayList<>();
@@ -0,0 +1,190 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.echocat.jomon.runtime.math.OverPeriodCounter;
+import org.echocat.jomon.runtime.math.StripedCounter;
+import org.echocat.jomon.runtime.util.Duration;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Statistics of a cache which could be recorded by many threads at the same time without contention and outside of the locks of the
+ * cache. Beside the total counts the hits and misses of the last {@link #getMeasurePeriod() measure period} and the evictions by their
+ * {@link EvictionCause cause} are recorded.</p>
+ */
+@ThreadSafe
+public class CacheStatistics {
+
+    public static final Duration DEFAULT_MEASURE_PERIOD = new Duration("1m");
+    public static final Duration DEFAULT_RESOLUTION = new Duration("1s");
+
+    private final ProducingStatistics _producingStatistics;
+    private final StripedCounter _numberOfRequests = new StripedCounter();
+    private final StripedCounter _numberOfHits = new StripedCounter();
+    private final StripedCounter[] _numberOfEvictions = new StripedCounter[EvictionCause.values().length];
+    private final OverPeriodCounter _requestsOverPeriod;
+    private final OverPeriodCounter _hitsOverPeriod;
+
+    public CacheStatistics(@Nonnull ProducingStatistics producingStatistics) {
+        this(producingStatistics, DEFAULT_MEASURE_PERIOD, DEFAULT_RESOLUTION);
+    }
+
+    public CacheStatistics(@Nonnull ProducingStatistics producingStatistics, @Nonnull Duration measurePeriod, @Nonnull Duration resolution) {
+        _producingStatistics = producingStatistics;
+        _requestsOverPeriod = new OverPeriodCounter(measurePeriod, resolution);
+        _hitsOverPeriod = new OverPeriodCounter(measurePeriod, resolution);
+        for (int i = 0; i < _numberOfEvictions.length; i++) {
+            _numberOfEvictions[i] = new StripedCounter();
+        }
+    }
+
+    public void recordHit() {
+        recordRequests(1, 1);
+    }
+
+    public void recordMiss() {
+        recordRequests(1, 0);
+    }
+
+    public void recordRequests(@Nonnegative long numberOfRequests, @Nonnegative long numberOfHits) {
+        if (numberOfRequests > 0) {
+            _numberOfRequests.add(numberOfRequests);
+            _requestsOverPeriod.record(numberOfRequests);
+        }
+        if (numberOfHits > 0) {
+            _numberOfHits.add(numberOfHits);
+            _hitsOverPeriod.record(numberOfHits);
+        }
+    }
+
+    public void recordEviction(@Nonnull EvictionCause cause) {
+        _numberOfEvictions[cause.ordinal()].increment();
+    }
+
+    @Nonnull
+    public ProducingStatistics getProducingStatistics() {
+        return _producingStatistics;
+    }
+
+    @Nonnegative
+    public long getNumberOfRequests() {
+        return _numberOfRequests.get();
+    }
+
+    /**
+     * @return the number of requests which found a value. A put which replaces an existing entry is no request and so no hit - it is only
+     * recorded as {@link EvictionCause#replaced replaced} eviction. Before these statistics were introduced such a put was counted as hit
+     * by the in-memory caches, so hit ratios are lower now for applications which overwrite entries often.
+     */
+    @Nonnegative
+    public long getNumberOfHits() {
+        return _numberOfHits.get();
+    }
+
+    @Nonnegative
+    public long getNumberOfMisses() {
+        return Math.max(0, getNumberOfRequests() - getNumberOfHits());
+    }
+
+    /**
+     * @return the number of hits divided by the number of requests or <code>null</code> if there was no request yet.
+     */
+    @Nullable
+    public Double getHitRatio() {
+        return ratioOf(getNumberOfHits(), getNumberOfRequests());
+    }
+
+    @Nonnull
+    public Duration getMeasurePeriod() {
+        return _requestsOverPeriod.getMeasurePeriod();
+    }
+
+    @Nonnegative
+    public long getNumberOfRequestsOverPeriod() {
+        return _requestsOverPeriod.getAllOfMeasurePeriod();
+    }
+
+    @Nonnegative
+    public long getNumberOfHitsOverPeriod() {
+        return _hitsOverPeriod.getAllOfMeasurePeriod();
+    }
+
+    @Nonnegative
+    public long getNumberOfMissesOverPeriod() {
+        return Math.max(0, getNumberOfRequestsOverPeriod() - getNumberOfHitsOverPeriod());
+    }
+
+    /**
+     * @return the hit ratio of the last {@link #getMeasurePeriod() measure period} or <code>null</code> if there was no request in it.
+     */
+    @Nullable
+    public Double getHitRatioOverPeriod() {
+        return ratioOf(getNumberOfHitsOverPeriod(), getNumberOfRequestsOverPeriod());
+    }
+
+    /**
+     * @return the miss ratio of the last {@link #getMeasurePeriod() measure period} or <code>null</code> if there was no request in it.
+     */
+    @Nullable
+    public Double getMissRatioOverPeriod() {
+        return ratioOf(getNumberOfMissesOverPeriod(), getNumberOfRequestsOverPeriod());
+    }
+
+    @Nonnegative
+    public long getNumberOfEvictions(@Nonnull EvictionCause cause) {
+        return _numberOfEvictions[cause.ordinal()].get();
+    }
+
+    /**
+     * @return the number of all evictions regardless of their cause.
+     */
+    @Nonnegative
+    public long getNumberOfEvictions() {
+        long result = 0;
+        for (final StripedCounter numberOfEvictions : _numberOfEvictions) {
+            result += numberOfEvictions.get();
+        }
+        return result;
+    }
+
+    /**
+     * Resets all counters including the {@link #getProducingStatistics() producing statistics}.
+     */
+    public void reset() {
+        _numberOfRequests.reset();
+        _numberOfHits.reset();
+        for (final StripedCounter numberOfEvictions : _numberOfEvictions) {
+            numberOfEvictions.reset();
+        }
+        _requestsOverPeriod.reset();
+        _hitsOverPeriod.reset();
+        _producingStatistics.reset();
+    }
+
+    @Nullable
+    protected static Double ratioOf(@Nonnegative long part, @Nonnegative long total) {
+        return total > 0 ? (double) part / (double) total : null;
+    }
+
+    @Override
+    public String toString() {
+        return "requests=" + getNumberOfRequests() + ", hits=" + getNumberOfHits() + ", evictions=" + getNumberOfEvictions();
+    }
+}
@@ -14,7 +14,13 @@
 
 package org.echocat.jomon.cache;
 
+import org.echocat.jomon.runtime.util.Duration;
+import org.echocat.jomon.runtime.util.ValueProducingFailedException;
+
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.*;
+import java.util.Map.Entry;
 
 import static java.lang.Character.isLetterOrDigit;
 
@@ -42,5 +48,96 @@ public class CacheUtils {
         }
     }
 
+    /**
+     * @see BulkEnabledCache#getAll(Iterable)
+     */
+    @Nonnull
+    public static <K, V> Map<K, V> getAll(@Nonnull Cache<K, V> cache, @Nonnull Iterable<? extends K> keys) {
+        return getAll(cache, keys, null, null);
+    }
+
+    /**
+     * @see BulkEnabledCache#getAll(Iterable, BulkValueProducer, Duration)
+     */
+    @Nonnull
+    public static <K, V> Map<K, V> getAll(@Nonnull Cache<K, V> cache, @Nonnull Iterable<? extends K> keys, @Nullable BulkValueProducer<K, V> producer, @Nullable Duration expireAfter) {
+        final Map<K, V> result;
+        if (cache instanceof BulkEnabledCache) {
+            result = ((BulkEnabledCache<K, V>) cache).getAll(keys, producer, expireAfter);
+        } else {
+            result = new LinkedHashMap<>();
+            final List<K> missing = new ArrayList<>();
+            for (final K key : keys) {
+                final V value = cache.get(key);
+                if (value != null) {
+                    result.put(key, value);
+                } else {
+                    missing.add(key);
+                }
+            }
+            if (producer != null && !missing.isEmpty()) {
+                final Map<K, V> produced = produceAll(missing, producer);
+                for (final K key : missing) {
+                    final V value = produced.get(key);
+                    if (value != null) {
+                        cache.put(key, value, expireAfter);
+                        result.put(key, value);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @see BulkEnabledCache#putAll(Map)
+     */
+    public static <K, V> void putAll(@Nonnull Cache<K, V> cache, @Nonnull Map<? extends K, ? extends V> values) {
+        putAll(cache, values, null);
+    }
+
+    /**
+     * @see BulkEnabledCache#putAll(Map, Duration)
+     */
+    public static <K, V> void putAll(@Nonnull Cache<K, V> cache, @Nonnull Map<? extends K, ? extends V> values, @Nullable Duration expireAfter) {
+        if (cache instanceof BulkEnabledCache) {
+            ((BulkEnabledCache<K, V>) cache).putAll(values, expireAfter);
+        } else {
+            for (final Entry<? extends K, ? extends V> keyAndValue : values.entrySet()) {
+                cache.put(keyAndValue.getKey(), keyAndValue.getValue(), expireAfter);
+            }
+        }
+    }
+
+    /**
+     * @see BulkEnabledCache#removeAll(Iterable)
+     */
+    public static <K, V> void removeAll(@Nonnull Cache<K, V> cache, @Nonnull Iterable<? extends K> keys) {
+        if (cache instanceof BulkEnabledCache) {
+            ((BulkEnabledCache<K, V>) cache).removeAll(keys);
+        } else {
+            for (final K key : keys) {
+                cache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Calls the given producer for the given keys and wraps every failure into a {@link ValueProducingFailedException}.
+     */
+    @Nonnull
+    public static <K, V> Map<K, V> produceAll(@Nonnull Collection<K> keys, @Nonnull BulkValueProducer<K, V> producer) {
+        final Map<K, V> result;
+        try {
+            result = producer.produce(keys);
+        } catch (final Exception e) {
+            throw new ValueProducingFailedException(keys, e);
+        }
+        if (result == null) {
+            throw new IllegalStateException(producer + " returned null for " + keys + ".");
+        }
+        return result;
+    }
+
     private CacheUtils() {}
 }
@@ -14,21 +14,71 @@
 
 package org.echocat.jomon.cache;
 
+import org.echocat.jomon.cache.EntryRefresher.DaemonThreadFactory;
 import org.echocat.jomon.runtime.util.Value;
 import org.echocat.jomon.runtime.util.Value.Lazy;
 import org.echocat.jomon.runtime.util.Duration;
 import org.echocat.jomon.runtime.util.ValueProducer;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.HashSet;
-import java.util.Set;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static java.lang.Math.max;
+import static java.lang.Runtime.getRuntime;
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.echocat.jomon.cache.CacheUtils.produceAll;
 import static org.echocat.jomon.runtime.util.ProducingType.nonBlocking;
 
-public class CombinedCache<K, V> extends CacheSupport<K, V> {
+/**
+ * <h1>Synopsis</h1>
+ * <p>Combines several caches to levels of one cache. A value is looked up level by level, the first hit wins and is restored on every
+ * upper level that has missed it.</p>
+ *
+ * <p>By default everything runs on the thread of the caller. For slow lower levels (remote or disk based caches) the population of the
+ * upper levels could be done {@link #setAsynchronousWriteBack(boolean) asynchronously} and the lookup on the lower levels could be
+ * {@link #setLowerLevelTimeout(Duration) limited} - a lower level which does not answer in time counts as a miss.</p>
+ */
+@ThreadSafe
+public class CombinedCache<K, V> extends CacheSupport<K, V> implements BulkEnabledCache<K, V> {
+
+    private static volatile Executor c_defaultExecutor;
+
+    /**
+     * @return the executor which is used by all combined caches without an {@link #setExecutor(Executor) own executor}. It is separated
+     *         from the {@link EntryRefresher#getDefaultExecutor() executor of the refreshes}, so a slow lower level could not starve them.
+     */
+    @Nonnull
+    public static Executor getDefaultExecutor() {
+        Executor result = c_defaultExecutor;
+        if (result == null) {
+            synchronized (CombinedCache.class) {
+                result = c_defaultExecutor;
+                if (result == null) {
+                    final int numberOfThreads = max(2, getRuntime().availableProcessors());
+                    final ThreadPoolExecutor executor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 60, SECONDS, new LinkedBlockingQueue<Runnable>(1000), new DaemonThreadFactory("Caches.CombinedCache-"));
+                    executor.allowCoreThreadTimeOut(true);
+                    result = executor;
+                    c_defaultExecutor = result;
+                }
+            }
+        }
+        return result;
+    }
 
     private final Cache<? extends K, ? extends V>[] _delegates;
+    private final AtomicLong _numberOfTimedOutLookups = new AtomicLong();
+
+    private volatile boolean _asynchronousWriteBack;
+    private volatile Duration _lowerLevelTimeout;
+    private volatile Executor _executor;
 
     public CombinedCache(@Nonnull Class<? extends K> keyType, @Nonnull Class<? extends V> valueType, @Nullable Cache<? extends K, ? extends V>... delegates) {
         super(keyType, valueType);
@@ -54,31 +104,146 @@ public class CombinedCache<K, V> extends CacheSupport<K, V> {
         }
     }
 
+    public boolean isAsynchronousWriteBack() {
+        return _asynchronousWriteBack;
+    }
+
+    /**
+     * If enabled the upper levels which have missed a value are populated by the {@link #getExecutor() executor} and not on the thread
+     * of the caller. Note that in this case a concurrent remove could be overwritten by a write-back that is still pending.
+     */
+    public void setAsynchronousWriteBack(boolean asynchronousWriteBack) {
+        _asynchronousWriteBack = asynchronousWriteBack;
+    }
+
+    @Nullable
+    public Duration getLowerLevelTimeout() {
+        return _lowerLevelTimeout;
+    }
+
+    /**
+     * Limits how long a single {@link #get(Object, ValueProducer, Duration) get} waits for every level below the first one. The lookup
+     * is done by the {@link #getExecutor() executor} and if it does not answer in time the level counts as missed, so the next level or the
+     * producer is asked. <code>null</code> (the default) waits on the thread of the caller as long as the level needs.
+     */
+    public void setLowerLevelTimeout(@Nullable Duration lowerLevelTimeout) {
+        _lowerLevelTimeout = lowerLevelTimeout;
+    }
+
+    @Nullable
+    public Executor getExecutor() {
+        return _executor;
+    }
+
+    /**
+     * @param executor for asynchronous write-backs and lower level lookups. <code>null</code> uses
+     *                 {@link #getDefaultExecutor() the shared default executor}.
+     */
+    public void setExecutor(@Nullable Executor executor) {
+        _executor = executor;
+    }
+
+    /**
+     * @return how often a lower level did not answer within the {@link #getLowerLevelTimeout() lower level timeout} or could not be asked
+     *         at all because the {@link #getExecutor() executor} rejected the lookup.
+     */
+    @Nonnegative
+    public long getNumberOfTimedOutLookups() {
+        return _numberOfTimedOutLookups.get();
+    }
+
     @Override
     public V get(@Nullable K key, @Nullable ValueProducer<K, V> cacheValueProducer, @Nullable Duration expireAfter) {
         checkKey(key);
         V result = null;
-        final Set<Cache<K, V>> missedOn = new HashSet<>(_delegates.length);
-        for (final Cache<? extends K, ? extends V> delegate : _delegates) {
-            final Cache<K, V> cache = cast(delegate);
-            result = cache.get(key);
+        // The levels above the hit are always the ones that missed, so we only have to remember the level of the hit. This also keeps
+        // the common case of a hit on the first level free of any allocation ...
+        int level = 0;
+        while (level < _delegates.length) {
+            result = level == 0 ? cast(_delegates[0]).get(key) : lookupOnLowerLevel(cast(_delegates[level]), key);
             if (result != null) {
                 break;
-            } else {
-                missedOn.add(cache);
             }
+            level++;
         }
         if (result == null && cacheValueProducer != null) {
             result = new Lazy<>(key, cacheValueProducer, nonBlocking).getValue();
         }
-        if (result != null) {
-            for (final Cache<K, V> cache : missedOn) {
-                cache.put(key, result, expireAfter);
+        if (result != null && level > 0) {
+            writeBack(key, result, expireAfter, level);
+        }
+        return result;
+    }
+
+    @Nullable
+    protected V lookupOnLowerLevel(@Nonnull final Cache<K, V> cache, @Nullable final K key) {
+        final Duration timeout = _lowerLevelTimeout;
+        V result;
+        if (timeout == null) {
+            result = cache.get(key);
+        } else {
+            final FutureTask<V> lookup = new FutureTask<>(new Callable<V>() { @Override public V call() throws Exception {
+                return cache.get(key);
+            }});
+            try {
+                executor().execute(lookup);
+                result = lookup.get(timeout.in(MILLISECONDS), MILLISECONDS);
+            } catch (final RejectedExecutionException ignored) {
+                // No capacity left - asking the level on the thread of the caller could block it longer than the timeout, so it is a miss ...
+                _numberOfTimedOutLookups.incrementAndGet();
+                result = null;
+            } catch (final TimeoutException ignored) {
+                // Nobody is waiting for the lookup any longer, so it should not occupy the executor ...
+                lookup.cancel(true);
+                _numberOfTimedOutLookups.incrementAndGet();
+                result = null;
+            } catch (final InterruptedException ignored) {
+                currentThread().interrupt();
+                result = null;
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                } else {
+                    throw new RuntimeException("Could not lookup " + key + " on " + cache + ".", cause);
+                }
             }
         }
         return result;
     }
 
+    /**
+     * Puts the given value in every level above <code>numberOfMissedLevels</code>.
+     */
+    protected void writeBack(@Nullable final K key, @Nonnull final V value, @Nullable final Duration expireAfter, @Nonnegative final int numberOfMissedLevels) {
+        final Runnable writeBack = new Runnable() { @Override public void run() {
+            for (int i = 0; i < numberOfMissedLevels && i < _delegates.length; i++) {
+                cast(_delegates[i]).put(key, value, expireAfter);
+            }
+        }};
+        runWriteBack(writeBack);
+    }
+
+    protected void runWriteBack(@Nonnull Runnable writeBack) {
+        if (_asynchronousWriteBack) {
+            try {
+                executor().execute(writeBack);
+            } catch (final RejectedExecutionException ignored) {
+                writeBack.run();
+            }
+        } else {
+            writeBack.run();
+        }
+    }
+
+    @Nonnull
+    protected Executor executor() {
+        final Executor executor = _executor;
+        return executor != null ? executor : getDefaultExecutor();
+    }
+
     @Override
     public V get(@Nullable K key, @Nullable ValueProducer<K, V> cacheValueProducer) {
         return get(key, cacheValueProducer, null);
@@ -89,6 +254,105 @@ public class CombinedCache<K, V> extends CacheSupport<K, V> {
         return get(key, null);
     }
 
+    /**
+     * Requests only the keys which are still missing from every delegate - one batch per delegate. All keys that are still missing after
+     * the last delegate are produced with one call of the given producer. Finally every delegate receives one batch with the values it has
+     * missed - {@link #setAsynchronousWriteBack(boolean) asynchronously} if enabled. The {@link #setLowerLevelTimeout(Duration) lower level
+     * timeout} is not applied to bulk requests.
+     */
+    @Override
+    @Nonnull
+    public Map<K, V> getAll(@Nonnull Iterable<? extends K> keys, @Nullable BulkValueProducer<K, V> producer, @Nullable final Duration expireAfter) {
+        final Set<K> requestedKeys = new LinkedHashSet<>();
+        for (final K key : keys) {
+            checkKey(key);
+            requestedKeys.add(key);
+        }
+        final Map<K, V> found = new HashMap<>();
+        final Map<Cache<K, V>, List<K>> missedOn = new LinkedHashMap<>(_delegates.length);
+        List<K> missingKeys = new ArrayList<>(requestedKeys);
+        for (final Cache<? extends K, ? extends V> delegate : _delegates) {
+            if (missingKeys.isEmpty()) {
+                break;
+            }
+            final Cache<K, V> cache = cast(delegate);
+            final Map<K, V> foundInCache = CacheUtils.getAll(cache, missingKeys);
+            found.putAll(foundInCache);
+            final List<K> stillMissingKeys = new ArrayList<>();
+            for (final K key : missingKeys) {
+                if (!foundInCache.containsKey(key)) {
+                    stillMissingKeys.add(key);
+                }
+            }
+            // Only the keys this level really missed have to be written back to it ...
+            missedOn.put(cache, stillMissingKeys);
+            missingKeys = stillMissingKeys;
+        }
+        if (producer != null && !missingKeys.isEmpty()) {
+            for (final Entry<K, V> keyAndValue : produceAll(missingKeys, producer).entrySet()) {
+                if (keyAndValue.getValue() != null) {
+                    checkValueAfterProducing(keyAndValue.getValue());
+                    found.put(keyAndValue.getKey(), keyAndValue.getValue());
+                }
+            }
+        }
+        for (final Entry<Cache<K, V>, List<K>> cacheAndMissedKeys : missedOn.entrySet()) {
+            final Map<K, V> toPut = new LinkedHashMap<>();
+            for (final K key : cacheAndMissedKeys.getValue()) {
+                final V value = found.get(key);
+                if (value != null) {
+                    toPut.put(key, value);
+                }
+            }
+            if (!toPut.isEmpty()) {
+                final Cache<K, V> cache = cacheAndMissedKeys.getKey();
+                runWriteBack(new Runnable() { @Override public void run() {
+                    CacheUtils.putAll(cache, toPut, expireAfter);
+                }});
+            }
+        }
+        final Map<K, V> result = new LinkedHashMap<>();
+        for (final K key : requestedKeys) {
+            final V value = found.get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    @Nonnull
+    public Map<K, V> getAll(@Nonnull Iterable<? extends K> keys) {
+        return getAll(keys, null, null);
+    }
+
+    @Override
+    public void putAll(@Nonnull Map<? extends K, ? extends V> values) {
+        putAll(values, null);
+    }
+
+    @Override
+    public void putAll(@Nonnull Map<? extends K, ? extends V> values, @Nullable Duration expireAfter) {
+        for (final Entry<? extends K, ? extends V> keyAndValue : values.entrySet()) {
+            checkKey(keyAndValue.getKey());
+            checkValue(keyAndValue.getValue());
+        }
+        for (final Cache<? extends K, ? extends V> delegate : _delegates) {
+            CacheUtils.putAll(cast(delegate), values, expireAfter);
+        }
+    }
+
+    @Override
+    public void removeAll(@Nonnull Iterable<? extends K> keys) {
+        for (final K key : keys) {
+            checkKey(key);
+        }
+        for (final Cache<? extends K, ? extends V> delegate : _delegates) {
+            CacheUtils.removeAll(cast(delegate), keys);
+        }
+    }
+
     @Override
     public Value<V> remove(@Nullable K key) {
         checkKey(key);
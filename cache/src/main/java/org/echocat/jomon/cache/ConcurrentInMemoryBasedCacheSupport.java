@@ -0,0 +1,1358 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.echocat.jomon.runtime.iterators.CloseableIterator;
+import org.echocat.jomon.runtime.util.*;
+import org.echocat.jomon.runtime.util.Value.Fixed;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.echocat.jomon.cache.CacheUtils.produceAll;
+import static org.echocat.jomon.runtime.CollectionUtils.asCloseableIterator;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Base implementation of an in memory cache that does not serialize all operations on one lock like {@link InMemoryBasedCacheSupport} does.
+ * The entries are held in a {@link ConcurrentHashMap} so looking up a key that is not cached does not require any lock at all. The order of the
+ * elements is maintained by linked lists ({@link CacheEntry}) which are striped over several {@link Segment segments}. Every key belongs to
+ * exactly one segment (selected by its hash), so only operations on keys of the same segment will contend for the same lock.</p>
+ *
+ * <p>Because of the striping the eviction order is maintained per segment. If the {@link #getCapacity() capacity} is reached the last element
+ * of the segment the new element was put into will be removed. The evicted element is therefore only an approximation of the globally least
+ * valuable element. Use a {@link #ConcurrentInMemoryBasedCacheSupport(Class, Class, int) concurrencyLevel} of <code>1</code> to get an exact
+ * order.</p>
+ *
+ * <p>If {@link #isHitBuffering() hit buffering} is enabled (default) a hit on an existing entry does not take any lock. It is recorded in a
+ * ring buffer of the segment and replayed against the order of the segment in batches - either if the buffer is half full or as soon as the
+ * segment is locked by any other operation. If the buffer is full further hits will not be recorded until it was drained. The order of the
+ * elements could therefore lag behind the real access pattern by at most {@link #READ_BUFFER_SIZE} hits per segment.</p>
+ *
+ * <p>The expiration of the entries is tracked by an {@link ExpirationWheel} per segment. Expired entries are reclaimed in background by the
+ * {@link #setExpirationSweeper(ExpirationSweeper) expiration sweeper}.</p>
+ */
+@ThreadSafe
+public abstract class ConcurrentInMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V> implements DetailedStatisticsEnabledCache<K, V>, ProducingStatisticsEnabledCache<K, V>, WeightLimitedCache<K, V>, ClearableCache<K, V>, ListenerEnabledCache<K, V>, IdentifiedCache<K, V>, ProducingTypeEnabledCache<K, V>, KeysEnabledCache<K, V>, ExpirationSweeperEnabledCache<K, V>, RefreshEnabledCache<K, V>, BulkEnabledCache<K, V>, SnapshotEnabledCache<K, V>, AutoCloseable {
+
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    public static final int READ_BUFFER_SIZE = 64;
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = READ_BUFFER_SIZE / 2;
+
+    private static final Object NULL_KEY = new Object();
+
+    protected final CacheListenerInvoker _listenerInvoker = new CacheListenerInvoker();
+    protected final ProducingStatistics _producingStatistics = new ProducingStatistics();
+    protected final CacheStatistics _statistics = new CacheStatistics(_producingStatistics);
+    protected final EntryRefresher<K, V> _refresher = new EntryRefresher<K, V>(this, _listenerInvoker, _producingStatistics) {
+        @Override
+        protected boolean replaceValueOf(@Nonnull CacheEntry<K, V> entry, @Nonnull Value<V> value, @Nullable Long expireAfter) {
+            return replaceIfPresent(entry, value, expireAfter);
+        }
+    };
+    protected final long _createdTimestamp;
+    protected final ConcurrentMap<Object, CacheEntry<K, V>> _entries;
+    protected final Segment<K, V>[] _segments;
+
+    private final int _segmentMask;
+    private final AtomicInteger _size = new AtomicInteger();
+    private final AtomicLong _weight = new AtomicLong();
+
+    private volatile String _id;
+    private volatile Integer _capacity;
+    private volatile Long _maximumWeight;
+    private volatile Weigher<? super K, ? super V> _weigher;
+    private volatile Duration _defaultExpireAfter;
+    private volatile ProducingType _producingType = ProducingType.DEFAULT;
+    private volatile boolean _hitBuffering = true;
+    private volatile ExpirationSweeper _expirationSweeper = ExpirationSweeper.getDefaultInstance();
+    private volatile boolean _registeredAtExpirationSweeper;
+
+    protected ConcurrentInMemoryBasedCacheSupport(@Nonnull Class<? extends K> keyType, @Nonnull Class<? extends V> valueType) {
+        this(keyType, valueType, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    protected ConcurrentInMemoryBasedCacheSupport(@Nonnull Class<? extends K> keyType, @Nonnull Class<? extends V> valueType, @Nonnegative int concurrencyLevel) {
+        super(keyType, valueType);
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("The concurrencyLevel have to be greater than 0.");
+        }
+        int numberOfSegments = 1;
+        while (numberOfSegments < concurrencyLevel) {
+            numberOfSegments <<= 1;
+        }
+        // noinspection unchecked
+        _segments = new Segment[numberOfSegments];
+        for (int i = 0; i < numberOfSegments; i++) {
+            _segments[i] = newSegment();
+        }
+        _segmentMask = numberOfSegments - 1;
+        _entries = new ConcurrentHashMap<>(16, 0.75f, numberOfSegments);
+        _createdTimestamp = currentTimeMillis();
+    }
+
+    @Nonnegative
+    public int getConcurrencyLevel() {
+        return _segments.length;
+    }
+
+    public boolean isHitBuffering() {
+        return _hitBuffering;
+    }
+
+    public void setHitBuffering(boolean hitBuffering) {
+        _hitBuffering = hitBuffering;
+    }
+
+    @Override
+    @Nullable
+    public ExpirationSweeper getExpirationSweeper() {
+        return _expirationSweeper;
+    }
+
+    @Override
+    public void setExpirationSweeper(@Nullable ExpirationSweeper expirationSweeper) {
+        final ExpirationSweeper oldExpirationSweeper = _expirationSweeper;
+        // noinspection ObjectEquality
+        if (oldExpirationSweeper != expirationSweeper) {
+            if (oldExpirationSweeper != null) {
+                oldExpirationSweeper.unregister(this);
+            }
+            _expirationSweeper = expirationSweeper;
+            _registeredAtExpirationSweeper = false;
+        }
+    }
+
+    @Override
+    @Nullable
+    public Duration getRefreshAfter() {
+        return _refresher.getRefreshAfter();
+    }
+
+    @Override
+    public void setRefreshAfter(@Nullable Duration refreshAfter) {
+        _refresher.setRefreshAfter(refreshAfter);
+    }
+
+    @Override
+    @Nullable
+    public Executor getRefreshExecutor() {
+        return _refresher.getExecutor();
+    }
+
+    @Override
+    public void setRefreshExecutor(@Nullable Executor executor) {
+        _refresher.setExecutor(executor);
+    }
+
+    @Override
+    @Nullable
+    public Weigher<? super K, ? super V> getWeigher() {
+        return _weigher;
+    }
+
+    /**
+     * Only entries which are written after this call are weighed by the given weigher.
+     */
+    @Override
+    public void setWeigher(@Nullable Weigher<? super K, ? super V> weigher) {
+        _weigher = weigher;
+    }
+
+    @Override
+    @Nullable
+    public ByteCount getMaximumWeight() {
+        final Long maximumWeight = _maximumWeight;
+        return maximumWeight != null ? new ByteCount(maximumWeight) : null;
+    }
+
+    @Override
+    public void setMaximumWeight(@Nullable ByteCount maximumWeight) {
+        _maximumWeight = maximumWeight != null ? maximumWeight.toByteCount() : null;
+        evictIfNecessary(_segments[0], null);
+    }
+
+    @Override
+    @Nullable
+    public ByteCount getWeight() {
+        final long weight = _weight.get();
+        return _weigher != null || weight > 0 ? new ByteCount(weight) : null;
+    }
+
+    @Override
+    public String getId() {
+        return _id;
+    }
+
+    @Override
+    public void setId(String id) {
+        _id = id;
+    }
+
+    @Override
+    public Duration getMaximumLifetime() {
+        return _defaultExpireAfter;
+    }
+
+    @Override
+    public Long getCapacity() {
+        final Integer capacity = _capacity;
+        return capacity != null ? capacity.longValue() : null;
+    }
+
+    @Override
+    public void setListeners(@Nullable Collection<CacheListener> listeners) {
+        _listenerInvoker.setListeners(listeners);
+    }
+
+    @Override
+    public Collection<CacheListener> getListeners() {
+        return _listenerInvoker.getListeners();
+    }
+
+    @Override
+    @Nonnull
+    public ProducingType getProducingType() {
+        return _producingType;
+    }
+
+    @Override
+    public void setProducingType(@Nonnull ProducingType producingType) {
+        if (producingType == null) {
+            throw new NullPointerException();
+        }
+        _producingType = producingType;
+    }
+
+    /**
+     * Is called while holding the lock of the given segment if an existing entry was requested, must be implemented according to caching strategy.
+     */
+    @GuardedBy("segment")
+    protected abstract void updateListAfterHit(@Nonnull Segment<K, V> segment, @Nonnull CacheEntry<K, V> entry);
+
+    /**
+     * Is called while holding the lock of the given segment if a new entry was added, must be implemented according to caching strategy.
+     */
+    @GuardedBy("segment")
+    protected abstract void updateListAfterPut(@Nonnull Segment<K, V> segment, @Nonnull CacheEntry<K, V> newEntry);
+
+    /**
+     * Is called while holding the lock of the given segment for every entry added by {@link #restore(Iterable)}, the hottest one first. The
+     * default implementation adds the entry after the rest which keeps the order of the snapshot for every strategy which orders its whole
+     * list by hotness.
+     */
+    @GuardedBy("segment")
+    protected void updateListAfterRestore(@Nonnull Segment<K, V> segment, @Nonnull CacheEntry<K, V> restoredEntry) {
+        segment.addLast(restoredEntry);
+    }
+
+    /**
+     * Is called while holding the lock of the given segment directly before the entry is unlinked from the segment. Implementations which hold
+     * additional structures per segment should update them here.
+     */
+    @GuardedBy("segment")
+    protected void updateListBeforeRemove(@Nonnull Segment<K, V> segment, @Nonnull CacheEntry<K, V> entry) {}
+
+    /**
+     * Is called while constructing this cache, so implementations must not depend on any state of this instance.
+     */
+    @Nonnull
+    protected Segment<K, V> newSegment() {
+        return new Segment<>();
+    }
+
+    @Override
+    public V get(@Nullable K key) {
+        return get(key, null, null);
+    }
+
+    @Override
+    public V get(@Nullable K key, @Nullable ValueProducer<K, V> cacheValueProducer) {
+        return get(key, cacheValueProducer, null);
+    }
+
+    @Override
+    public V get(@Nullable K key, @Nullable ValueProducer<K, V> cacheValueProducer, @Nullable Duration expireAfter) {
+        checkKey(key);
+        final V value;
+        if (_listenerInvoker.beforeGet(this, key)) {
+            final Value<V> valueHolder = getInternal(key, cacheValueProducer, expireAfter);
+            value = valueHolder != null ? valueHolder.getValue() : null;
+            checkValueAfterProducing(value);
+            _listenerInvoker.afterGet(this, key, valueHolder);
+        } else {
+            value = null;
+        }
+        return value;
+    }
+
+    /**
+     * @return the value holder of the hit or produced entry or <code>null</code> if there is no entry for the given key.
+     */
+    @Nullable
+    protected Value<V> getInternal(@Nullable K key, @Nullable ValueProducer<K, V> cacheValueProducer, @Nullable Duration expireAfter) {
+        final Object maskedKey = maskNull(key);
+        final CacheEntry<K, V> existing = _entries.get(maskedKey);
+        final Value<V> result;
+        if (existing == null && cacheValueProducer == null) {
+            // Fast path: Nothing to hit and nothing to produce, so there is no need to lock anything.
+            _statistics.recordMiss();
+            result = null;
+        } else if (existing != null && _hitBuffering && !isOutDated(existing)) {
+            // Fast path: Only record the hit, the order will be updated later while holding the lock of the segment.
+            _statistics.recordHit();
+            final Segment<K, V> segment = segmentFor(maskedKey);
+            if (segment.recordHit(existing) && segment.tryLock()) {
+                try {
+                    drainHits(segment);
+                } finally {
+                    segment.unlock();
+                }
+            }
+            result = existing.getValue();
+            _producingStatistics.recordRequestOf(result);
+            if (cacheValueProducer != null) {
+                _refresher.refreshIfRequired(existing, cacheValueProducer, getTargetExpireAfterBasedOn(expireAfter));
+            }
+        } else {
+            final Segment<K, V> segment = segmentFor(maskedKey);
+            CacheEntry<K, V> outdatedCacheEntry = null;
+            CacheEntry<K, V> newEntry = null;
+            CacheEntry<K, V> hitEntry = null;
+            Value<V> valueHolder = null;
+            lock(segment);
+            try {
+                final CacheEntry<K, V> cacheEntry = _entries.get(maskedKey);
+                if (cacheEntry != null) {
+                    if (isOutDated(cacheEntry)) {
+                        // An outdated entry, remove it ...
+                        outdatedCacheEntry = removeFrom(segment, maskedKey, cacheEntry);
+                    } else {
+                        cacheEntry.hit();
+                        updateListAfterHit(segment, cacheEntry);
+                        valueHolder = cacheEntry.getValue();
+                        hitEntry = cacheEntry;
+                        _producingStatistics.recordRequestOf(valueHolder);
+                    }
+                }
+                if (valueHolder == null && cacheValueProducer != null) {
+                    newEntry = new CacheEntry<>(key, getTargetExpireAfterBasedOn(expireAfter), _producingStatistics.lazyValueFor(key, cacheValueProducer, _producingType));
+                    addTo(segment, maskedKey, newEntry);
+                    valueHolder = newEntry.getValue();
+                }
+            } finally {
+                segment.unlock();
+            }
+            recordRequest(hitEntry != null);
+            if (outdatedCacheEntry != null) {
+                handleRemove(outdatedCacheEntry, EvictionCause.expiry);
+            }
+            if (newEntry != null) {
+                evictIfNecessary(segment, newEntry);
+                if (_weigher != null) {
+                    // The weight of a produced value is only known after it was produced ...
+                    weigh(segment, newEntry, weightOf(key, newEntry.getValue().getValue()));
+                }
+            }
+            if (hitEntry != null && cacheValueProducer != null) {
+                _refresher.refreshIfRequired(hitEntry, cacheValueProducer, getTargetExpireAfterBasedOn(expireAfter));
+            }
+            result = valueHolder;
+        }
+        return result;
+    }
+
+    @Override
+    @Nonnull
+    public Map<K, V> getAll(@Nonnull Iterable<? extends K> keys) {
+        return getAll(keys, null, null);
+    }
+
+    @Override
+    @Nonnull
+    public Map<K, V> getAll(@Nonnull Iterable<? extends K> keys, @Nullable BulkValueProducer<K, V> producer, @Nullable Duration expireAfter) {
+        final Set<K> requestedKeys = new LinkedHashSet<>();
+        for (final K key : keys) {
+            checkKey(key);
+            if (!requestedKeys.contains(key) && _listenerInvoker.beforeGet(this, key)) {
+                requestedKeys.add(key);
+            }
+        }
+        final Map<K, Value<V>> valueHolders = new HashMap<>();
+        final List<K> missingKeys = new ArrayList<>();
+        final List<K> keysToLock = new ArrayList<>();
+        for (final K key : requestedKeys) {
+            final CacheEntry<K, V> existing = _entries.get(maskNull(key));
+            if (existing == null) {
+                // Nothing to hit, so there is no need to lock anything.
+                _statistics.recordMiss();
+                missingKeys.add(key);
+            } else if (_hitBuffering && !isOutDated(existing)) {
+                valueHolders.put(key, getInternal(key, null, null));
+            } else {
+                keysToLock.add(key);
+            }
+        }
+        final List<CacheEntry<K, V>> outdatedCacheEntries = new ArrayList<>();
+        for (final Entry<Segment<K, V>, List<K>> segmentAndKeys : groupBySegment(keysToLock).entrySet()) {
+            final Segment<K, V> segment = segmentAndKeys.getKey();
+            int numberOfHits = 0;
+            lock(segment);
+            try {
+                for (final K key : segmentAndKeys.getValue()) {
+                    final Object maskedKey = maskNull(key);
+                    final CacheEntry<K, V> cacheEntry = _entries.get(maskedKey);
+                    if (cacheEntry == null) {
+                        missingKeys.add(key);
+                    } else if (isOutDated(cacheEntry)) {
+                        // An outdated entry, remove it ...
+                        outdatedCacheEntries.add(removeFrom(segment, maskedKey, cacheEntry));
+                        missingKeys.add(key);
+                    } else {
+                        numberOfHits++;
+                        cacheEntry.hit();
+                        updateListAfterHit(segment, cacheEntry);
+                        _producingStatistics.recordRequestOf(cacheEntry.getValue());
+                        valueHolders.put(key, cacheEntry.getValue());
+                    }
+                }
+            } finally {
+                segment.unlock();
+            }
+            _statistics.recordRequests(segmentAndKeys.getValue().size(), numberOfHits);
+        }
+        for (final CacheEntry<K, V> outdatedCacheEntry : outdatedCacheEntries) {
+            handleRemove(outdatedCacheEntry, EvictionCause.expiry);
+        }
+        if (producer != null && !missingKeys.isEmpty()) {
+            final Map<K, V> produced = produceAll(missingKeys, producer);
+            final Map<K, Value<V>> toPut = new LinkedHashMap<>();
+            for (final K key : missingKeys) {
+                final V value = produced.get(key);
+                if (value != null) {
+                    checkValueAfterProducing(value);
+                    toPut.put(key, new Fixed<>(value));
+                }
+            }
+            putAllInternal(toPut, getTargetExpireAfterBasedOn(expireAfter));
+            valueHolders.putAll(toPut);
+        }
+        final Map<K, V> result = new LinkedHashMap<>();
+        for (final K key : requestedKeys) {
+            final Value<V> valueHolder = valueHolders.get(key);
+            final V value = valueHolder != null ? valueHolder.getValue() : null;
+            checkValueAfterProducing(value);
+            if (value != null) {
+                result.put(key, value);
+            }
+            _listenerInvoker.afterGet(this, key, valueHolder);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean contains(@Nullable K key) {
+        checkKey(key);
+        get(key);
+        return _entries.containsKey(maskNull(key));
+    }
+
+    @Override
+    public void put(@Nullable K key, @Nullable V value) {
+        put(key, value, null);
+    }
+
+    @Override
+    public void put(@Nullable K key, @Nullable V value, @Nullable Duration expireAfter) {
+        checkKey(key);
+        checkValue(value);
+        final Fixed<V> fixed = new Fixed<>(value);
+        if (_listenerInvoker.beforePut(this, key, fixed, expireAfter)) {
+            putInternal(key, fixed, getTargetExpireAfterBasedOn(expireAfter));
+            _listenerInvoker.afterPut(this, key, fixed, expireAfter);
+        }
+    }
+
+    protected void putInternal(@Nullable K key, @Nonnull Value<V> value, @Nullable Long expireAfter) {
+        final Object maskedKey = maskNull(key);
+        final Segment<K, V> segment = segmentFor(maskedKey);
+        final long weight = weightOf(key, value.getValue());
+        final CacheEntry<K, V> writtenEntry;
+        lock(segment);
+        try {
+            writtenEntry = write(segment, maskedKey, key, value, expireAfter, weight);
+        } finally {
+            segment.unlock();
+        }
+        evictIfNecessary(segment, writtenEntry);
+    }
+
+    /**
+     * @return the entry which holds the given value now.
+     */
+    @GuardedBy("segment")
+    @Nonnull
+    protected CacheEntry<K, V> write(@Nonnull Segment<K, V> segment, @Nonnull Object maskedKey, @Nullable K key, @Nonnull Value<V> value, @Nullable Long expireAfter, @Nonnegative long weight) {
+        final CacheEntry<K, V> result;
+        final CacheEntry<K, V> oldEntry = _entries.get(maskedKey);
+        if (oldEntry != null) {
+            // We keep the old entry in the list and only replace its value ...
+            handleRemove(oldEntry, EvictionCause.replaced);
+            oldEntry.setValue(expireAfter, value);
+            segment.addToExpiration(oldEntry);
+            _weight.addAndGet(weight - oldEntry.getWeight());
+            oldEntry.setWeight(weight);
+            // ... and simulate a hit to move it in the list (a replacement is no request, so it is not recorded as hit) ...
+            oldEntry.hit();
+            updateListAfterHit(segment, oldEntry);
+            result = oldEntry;
+        } else {
+            result = new CacheEntry<>(key, expireAfter, value);
+            result.setWeight(weight);
+            addTo(segment, maskedKey, result);
+        }
+        return result;
+    }
+
+    @Override
+    public void putAll(@Nonnull Map<? extends K, ? extends V> values) {
+        putAll(values, null);
+    }
+
+    @Override
+    public void putAll(@Nonnull Map<? extends K, ? extends V> values, @Nullable Duration expireAfter) {
+        final Map<K, Value<V>> approved = new LinkedHashMap<>();
+        for (final Entry<? extends K, ? extends V> keyAndValue : values.entrySet()) {
+            final K key = keyAndValue.getKey();
+            final V value = keyAndValue.getValue();
+            checkKey(key);
+            checkValue(value);
+            final Fixed<V> fixed = new Fixed<>(value);
+            if (_listenerInvoker.beforePut(this, key, fixed, expireAfter)) {
+                approved.put(key, fixed);
+            }
+        }
+        putAllInternal(approved, getTargetExpireAfterBasedOn(expireAfter));
+        for (final Entry<K, Value<V>> keyAndValue : approved.entrySet()) {
+            _listenerInvoker.afterPut(this, keyAndValue.getKey(), keyAndValue.getValue(), expireAfter);
+        }
+    }
+
+    /**
+     * Does the same as {@link #putInternal(Object, Value, Long)} for all given values but locks every affected segment only once.
+     */
+    protected void putAllInternal(@Nonnull Map<K, Value<V>> values, @Nullable Long expireAfter) {
+        final Map<K, Long> weights = new HashMap<>();
+        for (final Entry<K, Value<V>> keyAndValue : values.entrySet()) {
+            weights.put(keyAndValue.getKey(), weightOf(keyAndValue.getKey(), keyAndValue.getValue().getValue()));
+        }
+        for (final Entry<Segment<K, V>, List<K>> segmentAndKeys : groupBySegment(values.keySet()).entrySet()) {
+            final Segment<K, V> segment = segmentAndKeys.getKey();
+            CacheEntry<K, V> lastWrittenEntry = null;
+            lock(segment);
+            try {
+                for (final K key : segmentAndKeys.getValue()) {
+                    lastWrittenEntry = write(segment, maskNull(key), key, values.get(key), expireAfter, weights.get(key));
+                }
+            } finally {
+                segment.unlock();
+            }
+            evictIfNecessary(segment, lastWrittenEntry);
+        }
+    }
+
+    /**
+     * Takes the hottest entries from the beginning of every segment and merges them alternately, so the result is only an approximation of
+     * the order over the whole cache.
+     */
+    @Override
+    @Nonnull
+    public List<SnapshotEntry<K, V>> snapshot(@Nonnegative int maximumNumberOfEntries) {
+        final List<List<SnapshotEntry<K, V>>> bySegment = new ArrayList<>(_segments.length);
+        final long now = currentTimeMillis();
+        for (final Segment<K, V> segment : _segments) {
+            final List<SnapshotEntry<K, V>> entries = new ArrayList<>();
+            lock(segment);
+            try {
+                CacheEntry<K, V> current = segment.getFirst();
+                while (current != null && entries.size() < maximumNumberOfEntries) {
+                    final SnapshotEntry<K, V> snapshotEntry = current.toSnapshotEntry(now);
+                    if (snapshotEntry != null) {
+                        entries.add(snapshotEntry);
+                    }
+                    current = current.getNext();
+                }
+            } finally {
+                segment.unlock();
+            }
+            bySegment.add(entries);
+        }
+        final List<SnapshotEntry<K, V>> result = new ArrayList<>();
+        int position = 0;
+        boolean found = true;
+        while (found && result.size() < maximumNumberOfEntries) {
+            found = false;
+            for (final List<SnapshotEntry<K, V>> entries : bySegment) {
+                if (position < entries.size() && result.size() < maximumNumberOfEntries) {
+                    result.add(entries.get(position));
+                    found = true;
+                }
+            }
+            position++;
+        }
+        return result;
+    }
+
+    @Override
+    @Nonnegative
+    public int restore(@Nonnull Iterable<SnapshotEntry<K, V>> entries) {
+        final Integer capacity = _capacity;
+        final int maximumNumberOfEntries = capacity != null ? Math.max(capacity - _size.get(), 0) : Integer.MAX_VALUE;
+        final Map<K, SnapshotEntry<K, V>> candidates = new LinkedHashMap<>();
+        final Iterator<SnapshotEntry<K, V>> i = entries.iterator();
+        while (i.hasNext() && candidates.size() < maximumNumberOfEntries) {
+            final SnapshotEntry<K, V> entry = i.next();
+            final K key = entry.getKey();
+            final V value = entry.getValue();
+            checkKey(key);
+            checkValue(value);
+            // Only the first (hottest) entry of every key counts and the listeners are only asked for entries which could be restored ...
+            if (!entry.isExpired() && !candidates.containsKey(key) && !_entries.containsKey(maskNull(key)) && _listenerInvoker.beforePut(this, key, new Fixed<>(value), expireAfterOf(entry))) {
+                candidates.put(key, entry);
+            }
+        }
+        final List<CacheEntry<K, V>> restored = new ArrayList<>();
+        for (final Entry<Segment<K, V>, List<K>> segmentAndKeys : groupBySegment(candidates.keySet()).entrySet()) {
+            final Segment<K, V> segment = segmentAndKeys.getKey();
+            lock(segment);
+            try {
+                for (final K key : segmentAndKeys.getValue()) {
+                    final Object maskedKey = maskNull(key);
+                    if (!_entries.containsKey(maskedKey)) {
+                        final SnapshotEntry<K, V> entry = candidates.get(key);
+                        final CacheEntry<K, V> newEntry = new CacheEntry<>(key, entry.getRemainingLifetime(), entry.getValue());
+                        newEntry.setHits(entry.getHits());
+                        newEntry.setWeight(weightOf(key, entry.getValue()));
+                        addTo(segment, maskedKey, newEntry, true);
+                        restored.add(newEntry);
+                    }
+                }
+            } finally {
+                segment.unlock();
+            }
+            evictIfNecessary(segment, null);
+        }
+        for (final CacheEntry<K, V> newEntry : restored) {
+            _listenerInvoker.afterPut(this, newEntry.getKey(), newEntry.getValue(), expireAfterOf(candidates.get(newEntry.getKey())));
+        }
+        return restored.size();
+    }
+
+    @Nullable
+    protected Duration expireAfterOf(@Nonnull SnapshotEntry<K, V> entry) {
+        final Long remainingLifetime = entry.getRemainingLifetime();
+        return remainingLifetime != null ? new Duration(remainingLifetime) : null;
+    }
+
+    /**
+     * Replaces the value of the given entry if it is still part of this cache.
+     *
+     * @return <code>true</code> if the value was replaced.
+     */
+    protected boolean replaceIfPresent(@Nonnull CacheEntry<K, V> entry, @Nonnull Value<V> value, @Nullable Long expireAfter) {
+        final Object maskedKey = maskNull(entry.getKey());
+        final Segment<K, V> segment = segmentFor(maskedKey);
+        final long weight = _weigher != null ? weightOf(entry.getKey(), value.getValue()) : 0;
+        final boolean result;
+        lock(segment);
+        try {
+            // noinspection ObjectEquality
+            result = _entries.get(maskedKey) == entry;
+            if (result) {
+                entry.setValue(expireAfter, value);
+                segment.addToExpiration(entry);
+                _weight.addAndGet(weight - entry.getWeight());
+                entry.setWeight(weight);
+            }
+        } finally {
+            segment.unlock();
+        }
+        if (result) {
+            evictIfNecessary(segment, entry);
+        }
+        return result;
+    }
+
+    /**
+     * Sets the weight of the given entry if it is still part of this cache and evicts other entries if the {@link #getMaximumWeight() maximum
+     * weight} is exceeded afterwards.
+     */
+    protected void weigh(@Nonnull Segment<K, V> segment, @Nonnull CacheEntry<K, V> entry, @Nonnegative long weight) {
+        final boolean present;
+        lock(segment);
+        try {
+            // noinspection ObjectEquality
+            present = _entries.get(maskNull(entry.getKey())) == entry;
+            if (present) {
+                _weight.addAndGet(weight - entry.getWeight());
+                entry.setWeight(weight);
+            }
+        } finally {
+            segment.unlock();
+        }
+        if (present) {
+            evictIfNecessary(segment, entry);
+        }
+    }
+
+    @Nonnegative
+    protected long weightOf(@Nullable K key, @Nullable V value) {
+        final Weigher<? super K, ? super V> weigher = _weigher;
+        final long result = weigher != null ? weigher.weightOf(key, value) : 0;
+        if (result < 0) {
+            throw new IllegalStateException(weigher + " returned a negative weight for " + key + ": " + result);
+        }
+        return result;
+    }
+
+    @Nullable
+    protected Long getTargetExpireAfterBasedOn(@Nullable Duration expireAfter) {
+        final Long targetExpireAfter;
+        if (expireAfter != null) {
+            targetExpireAfter = expireAfter.in(MILLISECONDS);
+        } else {
+            final Duration defaultExpireAfter = _defaultExpireAfter;
+            targetExpireAfter = defaultExpireAfter != null ? defaultExpireAfter.in(MILLISECONDS) : null;
+        }
+        return targetExpireAfter;
+    }
+
+    @Override
+    @Nullable
+    public Value<V> remove(@Nullable K key) {
+        checkKey(key);
+        final Value<V> result;
+        if (_listenerInvoker.beforeRemove(this, key)) {
+            result = removeInternal(key);
+            _listenerInvoker.afterRemove(this, key, result);
+        } else {
+            result = null;
+        }
+        return result;
+    }
+
+    @Override
+    public void removeAll(@Nonnull Iterable<? extends K> keys) {
+        final List<K> approvedKeys = new ArrayList<>();
+        for (final K key : keys) {
+            checkKey(key);
+            if (_listenerInvoker.beforeRemove(this, key)) {
+                approvedKeys.add(key);
+            }
+        }
+        final Map<K, CacheEntry<K, V>> removedCacheEntries = new HashMap<>();
+        for (final Entry<Segment<K, V>, List<K>> segmentAndKeys : groupBySegment(approvedKeys).entrySet()) {
+            final Segment<K, V> segment = segmentAndKeys.getKey();
+            lock(segment);
+            try {
+                for (final K key : segmentAndKeys.getValue()) {
+                    final Object maskedKey = maskNull(key);
+                    final CacheEntry<K, V> cacheEntry = _entries.get(maskedKey);
+                    if (cacheEntry != null) {
+                        removedCacheEntries.put(key, removeFrom(segment, maskedKey, cacheEntry));
+                    }
+                }
+            } finally {
+                segment.unlock();
+            }
+        }
+        for (final CacheEntry<K, V> removedCacheEntry : removedCacheEntries.values()) {
+            handleRemove(removedCacheEntry, EvictionCause.explicit);
+        }
+        for (final K key : approvedKeys) {
+            final CacheEntry<K, V> removedCacheEntry = removedCacheEntries.get(key);
+            _listenerInvoker.afterRemove(this, key, removedCacheEntry != null ? removedCacheEntry.getValue() : null);
+        }
+    }
+
+    @Nullable
+    protected Value<V> removeInternal(@Nullable K key) {
+        final Object maskedKey = maskNull(key);
+        final Segment<K, V> segment = segmentFor(maskedKey);
+        final CacheEntry<K, V> removedCacheEntry;
+        lock(segment);
+        try {
+            final CacheEntry<K, V> cacheEntry = _entries.get(maskedKey);
+            removedCacheEntry = cacheEntry != null ? removeFrom(segment, maskedKey, cacheEntry) : null;
+        } finally {
+            segment.unlock();
+        }
+        final Value<V> result;
+        if (removedCacheEntry == null) {
+            result = null;
+        } else {
+            result = removedCacheEntry.getValue();
+            handleRemove(removedCacheEntry, EvictionCause.explicit);
+        }
+        return result;
+    }
+
+    protected void recordRequest(boolean hit) {
+        if (hit) {
+            _statistics.recordHit();
+        } else {
+            _statistics.recordMiss();
+        }
+    }
+
+    protected void handleRemove(@Nullable CacheEntry<K, V> cacheEntry, @Nonnull EvictionCause cause) {
+        _statistics.recordEviction(cause);
+        handleRemove(cacheEntry);
+    }
+
+    /**
+     * Is called for every entry which left this cache, after it was recorded in the {@link #getStatistics() statistics}.
+     */
+    protected void handleRemove(@Nullable CacheEntry<K, V> cacheEntry) {}
+
+    @Override
+    public void cleanUpLifetimeExpired() {
+        for (final Segment<K, V> segment : _segments) {
+            cleanUpLifetimeExpired(segment);
+        }
+    }
+
+    protected void cleanUpLifetimeExpired(@Nonnull Segment<K, V> segment) {
+        // Test whether there could be an element that has to be removed
+        if (segment.hasExpiringEntries()) {
+            final List<CacheEntry<K, V>> removed = new ArrayList<>();
+            lock(segment);
+            try {
+                segment.expire(currentTimeMillis(), removed);
+                for (final CacheEntry<K, V> entry : removed) {
+                    removeFrom(segment, maskNull(entry.getKey()), entry);
+                }
+            } finally {
+                segment.unlock();
+            }
+            for (final CacheEntry<K, V> entry : removed) {
+                handleRemove(entry, EvictionCause.expiry);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        if (_listenerInvoker.beforeClear(this)) {
+            final List<CacheEntry<K, V>> oldEntries = new ArrayList<>();
+            for (final Segment<K, V> segment : _segments) {
+                lock(segment);
+                try {
+                    CacheEntry<K, V> current = segment.getFirst();
+                    while (current != null) {
+                        final CacheEntry<K, V> next = current.getNext();
+                        oldEntries.add(removeFrom(segment, maskNull(current.getKey()), current));
+                        current = next;
+                    }
+                } finally {
+                    segment.unlock();
+                }
+            }
+            resetStatistics();
+            for (final CacheEntry<K, V> entry : oldEntries) {
+                try {
+                    handleRemove(entry, EvictionCause.explicit);
+                } catch (final ValueProducingFailedException ignored) {}
+            }
+            _listenerInvoker.afterClear(this);
+        }
+    }
+
+    @Override
+    public void setMaximumLifetime(@Nullable Duration maxLifetime) {
+        if (_listenerInvoker.beforeSetMaximumLifetime(this, maxLifetime)) {
+            _defaultExpireAfter = maxLifetime;
+            _listenerInvoker.afterSetMaximumLifetime(this, maxLifetime);
+        }
+    }
+
+    @Override
+    public void setCapacity(@Nullable Long capacity) {
+        if (capacity != null && capacity > Integer.valueOf(Integer.MAX_VALUE).longValue()) {
+            throw new IllegalArgumentException("The capacity does not reach " + Integer.MAX_VALUE + ".");
+        }
+        _capacity = capacity != null ? capacity.intValue() : null;
+        evictIfNecessary(_segments[0], null);
+    }
+
+    /**
+     * Removes entries as long as there are more entries than the capacity allows or their weight exceeds the maximum weight. The removal starts
+     * with the given segment and continues with the following segments if this one could not provide enough entries. The given
+     * <code>justAdded</code> entry is spared unless it exceeds the maximum weight on its own, in this case only this entry is removed.
+     */
+    protected void evictIfNecessary(@Nonnull Segment<K, V> preferred, @Nullable CacheEntry<K, V> justAdded) {
+        final Integer capacity = _capacity;
+        final Long maximumWeight = _maximumWeight;
+        final CacheEntry<K, V> spare;
+        if (justAdded != null && maximumWeight != null && justAdded.getWeight() > maximumWeight) {
+            // the entry could never fit into this cache, so do not evict all others for it ...
+            evictIfPresent(justAdded);
+            spare = null;
+        } else {
+            spare = justAdded;
+        }
+        if (isLimitExceeded(capacity, maximumWeight)) {
+            // max size reached, remove outdated cache entries ...
+            cleanUpLifetimeExpired(preferred);
+            final int offset = indexOf(preferred);
+            int i = 0;
+            while (isLimitExceeded(capacity, maximumWeight) && i < _segments.length) {
+                // still to many cache entries, remove last entry (depends on the implementation) ...
+                if (!removeLast(_segments[(offset + i) & _segmentMask], spare)) {
+                    i++;
+                }
+            }
+        }
+    }
+
+    protected void evictIfPresent(@Nonnull CacheEntry<K, V> entry) {
+        final Object maskedKey = maskNull(entry.getKey());
+        final Segment<K, V> segment = segmentFor(maskedKey);
+        final boolean present;
+        lock(segment);
+        try {
+            // noinspection ObjectEquality
+            present = _entries.get(maskedKey) == entry;
+            if (present) {
+                removeFrom(segment, maskedKey, entry);
+            }
+        } finally {
+            segment.unlock();
+        }
+        if (present) {
+            handleRemove(entry, EvictionCause.capacity);
+        }
+    }
+
+    protected boolean isLimitExceeded(@Nullable Integer capacity, @Nullable Long maximumWeight) {
+        return (capacity != null && _size.get() > capacity) || (maximumWeight != null && _weight.get() > maximumWeight);
+    }
+
+    /**
+     * Remove the last element from the given segment.
+     *
+     * @param spare entry that should not be removed even if it is the last one.
+     * @return <code>true</code> if an entry was removed.
+     */
+    protected boolean removeLast(@Nonnull Segment<K, V> segment, @Nullable CacheEntry<K, V> spare) {
+        final CacheEntry<K, V> entry;
+        lock(segment);
+        try {
+            CacheEntry<K, V> candidate = segment.getLast();
+            // noinspection ObjectEquality
+            if (candidate != null && candidate == spare) {
+                candidate = candidate.getPrevious();
+            }
+            entry = candidate != null ? removeFrom(segment, maskNull(candidate.getKey()), candidate) : null;
+        } finally {
+            segment.unlock();
+        }
+        if (entry != null) {
+            handleRemove(entry, EvictionCause.capacity);
+        }
+        return entry != null;
+    }
+
+    @GuardedBy("segment")
+    protected void addTo(@Nonnull Segment<K, V> segment, @Nonnull Object maskedKey, @Nonnull CacheEntry<K, V> newEntry) {
+        addTo(segment, maskedKey, newEntry, false);
+    }
+
+    @GuardedBy("segment")
+    protected void addTo(@Nonnull Segment<K, V> segment, @Nonnull Object maskedKey, @Nonnull CacheEntry<K, V> newEntry, boolean restored) {
+        _entries.put(maskedKey, newEntry);
+        _size.incrementAndGet();
+        _weight.addAndGet(newEntry.getWeight());
+        segment.addToExpiration(newEntry);
+        if (restored) {
+            updateListAfterRestore(segment, newEntry);
+        } else {
+            updateListAfterPut(segment, newEntry);
+        }
+        if (newEntry.getExpire() != null && !_registeredAtExpirationSweeper) {
+            final ExpirationSweeper expirationSweeper = _expirationSweeper;
+            if (expirationSweeper != null) {
+                expirationSweeper.register(this);
+                _registeredAtExpirationSweeper = true;
+            }
+        }
+    }
+
+    @GuardedBy("segment")
+    @Nonnull
+    protected CacheEntry<K, V> removeFrom(@Nonnull Segment<K, V> segment, @Nonnull Object maskedKey, @Nonnull CacheEntry<K, V> entry) {
+        if (_entries.remove(maskedKey, entry)) {
+            _size.decrementAndGet();
+            _weight.addAndGet(-entry.getWeight());
+        }
+        updateListBeforeRemove(segment, entry);
+        segment.unlink(entry);
+        segment.removeFromExpiration(entry);
+        return entry;
+    }
+
+    @Override
+    public Long size() {
+        return (long) _size.get();
+    }
+
+    @Override
+    public Long getNumberOfHits() {
+        return _statistics.getNumberOfHits();
+    }
+
+    @Override
+    public Long getNumberOfRequests() {
+        return _statistics.getNumberOfRequests();
+    }
+
+    @Override
+    public Long getNumberOfDrops() {
+        return _statistics.getNumberOfEvictions();
+    }
+
+    @Override
+    @Nonnull
+    public CacheStatistics getStatistics() {
+        return _statistics;
+    }
+
+    @Override
+    @Nullable
+    public ByteCount getEstimatedSize() {
+        final ByteCount result;
+        if (_weigher != null) {
+            result = getWeight();
+        } else {
+            result = EntrySizeEstimator.getInstance().estimate(_entries.values().iterator(), _size.get());
+        }
+        return result;
+    }
+
+    @Override
+    public Long getNumberOfProductions() {
+        return _producingStatistics.getNumberOfProductions();
+    }
+
+    @Override
+    public Duration getAverageProducingDuration() {
+        return _producingStatistics.getAverageProducingDuration();
+    }
+
+    @Override
+    public Duration getMaximumProducingDuration() {
+        return _producingStatistics.getMaximumProducingDuration();
+    }
+
+    @Override
+    public Long getNumberOfCoalescedRequests() {
+        return _producingStatistics.getNumberOfCoalescedRequests();
+    }
+
+    @Override
+    public Date getCreated() {
+        return new Date(_createdTimestamp);
+    }
+
+    @Override
+    public void resetStatistics() {
+        if (_listenerInvoker.beforeResetStatistics(this)) {
+            _statistics.reset();
+            _listenerInvoker.afterResetStatistics(this);
+        }
+    }
+
+    @Override
+    public CloseableIterator<K> iterator() {
+        final Set<K> keys = new HashSet<>();
+        for (final CacheEntry<K, V> entry : _entries.values()) {
+            keys.add(entry.getKey());
+        }
+        return asCloseableIterator(keys.iterator());
+    }
+
+    @Override
+    public void close() throws Exception {
+        final ExpirationSweeper expirationSweeper = _expirationSweeper;
+        if (expirationSweeper != null) {
+            expirationSweeper.unregister(this);
+            _registeredAtExpirationSweeper = false;
+        }
+        clear();
+    }
+
+    /**
+     * Locks the given segment and replays all hits which were recorded for it since it was locked the last time.
+     */
+    protected void lock(@Nonnull Segment<K, V> segment) {
+        segment.lock();
+        drainHits(segment);
+    }
+
+    @GuardedBy("segment")
+    protected void drainHits(@Nonnull Segment<K, V> segment) {
+        CacheEntry<K, V> entry = segment.pollHit();
+        while (entry != null) {
+            // noinspection ObjectEquality
+            if (_entries.get(maskNull(entry.getKey())) == entry) {
+                entry.hit();
+                updateListAfterHit(segment, entry);
+            }
+            entry = segment.pollHit();
+        }
+    }
+
+    @Nonnull
+    protected Segment<K, V> segmentFor(@Nonnull Object maskedKey) {
+        int hash = maskedKey.hashCode();
+        // Spread the bits of the hash so also keys that only differ in the higher bits are distributed over all segments.
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        hash ^= (hash >>> 7) ^ (hash >>> 4);
+        return _segments[hash & _segmentMask];
+    }
+
+    /**
+     * @return the given keys grouped by the segment they belong to. The order of the keys is kept inside of every group.
+     */
+    @Nonnull
+    protected Map<Segment<K, V>, List<K>> groupBySegment(@Nonnull Iterable<K> keys) {
+        final Map<Segment<K, V>, List<K>> result = new IdentityHashMap<>();
+        for (final K key : keys) {
+            final Segment<K, V> segment = segmentFor(maskNull(key));
+            List<K> keysOfSegment = result.get(segment);
+            if (keysOfSegment == null) {
+                keysOfSegment = new ArrayList<>();
+                result.put(segment, keysOfSegment);
+            }
+            keysOfSegment.add(key);
+        }
+        return result;
+    }
+
+    @Nonnegative
+    protected int indexOf(@Nonnull Segment<K, V> segment) {
+        int result = 0;
+        // noinspection ObjectEquality
+        while (result < _segments.length && _segments[result] != segment) {
+            result++;
+        }
+        return result;
+    }
+
+    @Nonnull
+    protected static Object maskNull(@Nullable Object key) {
+        return key != null ? key : NULL_KEY;
+    }
+
+    private boolean isOutDated(@Nonnull CacheEntry<K, V> cacheEntry) {
+        final Long expire = cacheEntry.getExpire();
+        return expire != null && expire <= currentTimeMillis();
+    }
+
+    /**
+     * Holds the order of all entries of one stripe of the cache and also acts as the lock which guards this order and the modification of
+     * all the entries of the stripe. The first and the last element are stored in the members {@link #_first} and {@link #_last}.
+     */
+    @ThreadSafe
+    protected static class Segment<K, V> extends ReentrantLock {
+
+        @GuardedBy("this")
+        private CacheEntry<K, V> _first;
+        @GuardedBy("this")
+        private CacheEntry<K, V> _last;
+        @GuardedBy("this")
+        private final ExpirationWheel<K, V> _expirationWheel = new ExpirationWheel<>();
+        private volatile int _numberOfExpiringEntries;
+
+        private final AtomicReferenceArray<CacheEntry<K, V>> _readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        private final AtomicLong _readBufferWriteCount = new AtomicLong();
+        private volatile long _readBufferReadCount;
+
+        @Nullable
+        public CacheEntry<K, V> getFirst() {
+            return _first;
+        }
+
+        @Nullable
+        public CacheEntry<K, V> getLast() {
+            return _last;
+        }
+
+        /**
+         * Add the entry <b>before</b> the rest.
+         */
+        public void addFirst(@Nonnull CacheEntry<K, V> entry) {
+            entry.setPrevious(null);
+            entry.setNext(_first);
+            if (_first != null) {
+                _first.setPrevious(entry);
+            } else {
+                _last = entry;
+            }
+            _first = entry;
+        }
+
+        /**
+         * Add the entry <b>after</b> the rest.
+         */
+        public void addLast(@Nonnull CacheEntry<K, V> entry) {
+            entry.setNext(null);
+            entry.setPrevious(_last);
+            if (_last != null) {
+                _last.setNext(entry);
+            } else {
+                _first = entry;
+            }
+            _last = entry;
+        }
+
+        /**
+         * Add the entry directly before the given existing entry of this segment.
+         */
+        public void addBefore(@Nonnull CacheEntry<K, V> existing, @Nonnull CacheEntry<K, V> entry) {
+            final CacheEntry<K, V> previous = existing.getPrevious();
+            entry.setPrevious(previous);
+            entry.setNext(existing);
+            existing.setPrevious(entry);
+            if (previous != null) {
+                previous.setNext(entry);
+            } else {
+                _first = entry;
+            }
+        }
+
+        public void moveToFirst(@Nonnull CacheEntry<K, V> entry) {
+            // noinspection ObjectEquality
+            if (entry != _first) {
+                unlink(entry);
+                addFirst(entry);
+            }
+        }
+
+        public void unlink(@Nonnull CacheEntry<K, V> entry) {
+            final CacheEntry<K, V> previous = entry.getPrevious();
+            final CacheEntry<K, V> next = entry.getNext();
+            if (previous != null) {
+                previous.setNext(next);
+            } else {
+                // noinspection ObjectEquality
+                if (_first == entry) {
+                    _first = next;
+                }
+            }
+            if (next != null) {
+                next.setPrevious(previous);
+            } else {
+                // noinspection ObjectEquality
+                if (_last == entry) {
+                    _last = previous;
+                }
+            }
+            entry.setPrevious(null);
+            entry.setNext(null);
+        }
+
+        /**
+         * Records a hit of the given entry without any locking.
+         *
+         * @return <code>true</code> if the buffer should be drained.
+         */
+        protected boolean recordHit(@Nonnull CacheEntry<K, V> entry) {
+            final long head = _readBufferReadCount;
+            final long tail = _readBufferWriteCount.get();
+            final long size = tail - head;
+            // If the buffer is full or another thread records a hit at the same moment this hit is not recorded.
+            if (size < READ_BUFFER_SIZE && _readBufferWriteCount.compareAndSet(tail, tail + 1)) {
+                _readBuffer.lazySet((int) (tail & READ_BUFFER_MASK), entry);
+            }
+            return size >= READ_BUFFER_DRAIN_THRESHOLD;
+        }
+
+        /**
+         * @return the next recorded hit or <code>null</code> if there is no more recorded hit.
+         */
+        @GuardedBy("this")
+        @Nullable
+        protected CacheEntry<K, V> pollHit() {
+            final long head = _readBufferReadCount;
+            final CacheEntry<K, V> result;
+            if (head < _readBufferWriteCount.get()) {
+                final int index = (int) (head & READ_BUFFER_MASK);
+                result = _readBuffer.get(index);
+                if (result != null) {
+                    _readBuffer.lazySet(index, null);
+                    _readBufferReadCount = head + 1;
+                }
+            } else {
+                result = null;
+            }
+            return result;
+        }
+
+        @GuardedBy("this")
+        protected void addToExpiration(@Nonnull CacheEntry<K, V> entry) {
+            _expirationWheel.add(entry);
+            _numberOfExpiringEntries = _expirationWheel.size();
+        }
+
+        @GuardedBy("this")
+        protected void removeFromExpiration(@Nonnull CacheEntry<K, V> entry) {
+            _expirationWheel.remove(entry);
+            _numberOfExpiringEntries = _expirationWheel.size();
+        }
+
+        /**
+         * Removes all entries from the expiration tracking which are expired at the given time and adds them to the given collection. The
+         * entries are still part of the list of this segment.
+         */
+        @GuardedBy("this")
+        protected void expire(long now, @Nonnull Collection<CacheEntry<K, V>> expired) {
+            _expirationWheel.expire(now, expired);
+            _numberOfExpiringEntries = _expirationWheel.size();
+        }
+
+        /**
+         * Could be called without holding the lock.
+         */
+        protected boolean hasExpiringEntries() {
+            return _numberOfExpiringEntries > 0;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * <p>A Cache based on the Least Frequently Used algorithm like {@link LfuCache} but with a striped locking (see
+ * {@link ConcurrentInMemoryBasedCacheSupport}). If the cache is full then the element of the affected segment that has been accessed the fewest
+ * times will be removed.</p>
+ */
+@ThreadSafe
+public class ConcurrentLfuCache<K, V> extends ConcurrentInMemoryBasedCacheSupport<K, V> {
+
+    public ConcurrentLfuCache(@Nonnull Class<? extends K> keyType, @Nonnull Class<? extends V> valueType) {
+        super(keyType, valueType);
+    }
+
+    public ConcurrentLfuCache(@Nonnull Class<? extends K> keyType, @Nonnull Class<? extends V> valueType, @Nonnegative int concurrencyLevel) {
+        super(keyType, valueType, concurrencyLevel);
+    }
+
+    /**
+     * Adds the new cache entry after the last entry of the segment.
+     */
+    @Override
+    protected void updateListAfterPut(@Nonnull Segment<K, V> segment, @Nonnull CacheEntry<K, V> newEntry) {
+        segment.addLast(newEntry);
+    }
+
+    /**
+     * Resort the linked list. If this CacheEntry has more hits than the previous one move it up.
+     */
+    @Override
+    protected void updateListAfterHit(@Nonnull Segment<K, V> segment, @Nonnull CacheEntry<K, V> entry) {
+        final CacheEntry<K, V> previous = entry.getPrevious();
+        if (previous != null && entry.getHits() > previous.getHits()) {
+            segment.unlink(entry);
+            segment.addBefore(previous, entry);
+        }
+    }
+}
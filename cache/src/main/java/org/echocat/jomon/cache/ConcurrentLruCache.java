@@ -0,0 +1,52 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * <p>A Cache based on the Least Recently Used algorithm like {@link LruCache} but with a striped locking (see
+ * {@link ConcurrentInMemoryBasedCacheSupport}). If the cache is full then the element of the affected segment that hasn't been access for the
+ * biggest period of time will be removed.</p>
+ */
+@ThreadSafe
+public class ConcurrentLruCache<K, V> extends ConcurrentInMemoryBasedCacheSupport<K, V> {
+
+    public ConcurrentLruCache(@Nonnull Class<? extends K> keyType, @Nonnull Class<? extends V> valueType) {
+        super(keyType, valueType);
+    }
+
+    public ConcurrentLruCache(@Nonnull Class<? extends K> keyType, @Nonnull Class<? extends V> valueType, @Nonnegative int concurrencyLevel) {
+        super(keyType, valueType, concurrencyLevel);
+    }
+
+    /**
+     * Add the new CacheEntry <b>before</b> the rest.
+     */
+    @Override
+    protected void updateListAfterPut(@Nonnull Segment<K, V> segment, @Nonnull CacheEntry<K, V> newEntry) {
+        segment.addFirst(newEntry);
+    }
+
+    /**
+     * Move the entry to the beginning of the LinkedList.
+     */
+    @Override
+    protected void updateListAfterHit(@Nonnull Segment<K, V> segment, @Nonnull CacheEntry<K, V> entry) {
+        segment.moveToFirst(entry);
+    }
+}
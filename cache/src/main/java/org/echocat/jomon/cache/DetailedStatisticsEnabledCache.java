@@ -0,0 +1,34 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.echocat.jomon.runtime.util.ByteCount;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+public interface DetailedStatisticsEnabledCache<K, V> extends StatisticsEnabledCache<K, V> {
+
+    @Nonnull
+    public CacheStatistics getStatistics();
+
+    /**
+     * @return the {@link WeightLimitedCache#getWeight() weight} if this cache weighs its entries, otherwise an estimation based on some sampled entries or
+     * <code>null</code> if this cache could not estimate its size.
+     * @see EntrySizeEstimator
+     */
+    @Nullable
+    public ByteCount getEstimatedSize();
+}
@@ -0,0 +1,227 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.echocat.jomon.runtime.util.Duration;
+import org.echocat.jomon.runtime.util.LazyEntry.ValueState;
+import org.echocat.jomon.runtime.util.PostProducing;
+import org.echocat.jomon.runtime.util.Value;
+import org.echocat.jomon.runtime.util.Value.Fixed;
+import org.echocat.jomon.runtime.util.Value.Lazy;
+import org.echocat.jomon.runtime.util.ValueProducer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.Math.max;
+import static java.lang.Runtime.getRuntime;
+import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Reloads entries of a {@link RefreshEnabledCache} in background if they are older than {@link #getRefreshAfter() refreshAfter}. Until
+ * the new value is produced the requests get the old value. At most one refresh per entry is running at the same time. The result of
+ * every refresh is reported to the {@link RefreshCacheListener}s of the cache.</p>
+ */
+@ThreadSafe
+public abstract class EntryRefresher<K, V> {
+
+    private static volatile Executor c_defaultExecutor;
+    private static Thread c_shutdownHook;
+
+    /**
+     * @return a shared executor with daemon threads which is used by all refreshers that have no explicit executor. It is shut down with
+     * the JVM or by {@link #shutdownDefaultExecutor()}.
+     */
+    @Nonnull
+    public static Executor getDefaultExecutor() {
+        Executor result = c_defaultExecutor;
+        if (result == null) {
+            synchronized (EntryRefresher.class) {
+                result = c_defaultExecutor;
+                if (result == null) {
+                    final int numberOfThreads = max(2, getRuntime().availableProcessors());
+                    final ThreadPoolExecutor executor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 60, SECONDS, new LinkedBlockingQueue<Runnable>(10000), new DaemonThreadFactory());
+                    executor.allowCoreThreadTimeOut(true);
+                    if (c_shutdownHook == null) {
+                        c_shutdownHook = new Thread("Caches.Refresher.ShutdownHook") { @Override public void run() {
+                            shutdownDefaultExecutor();
+                        }};
+                        getRuntime().addShutdownHook(c_shutdownHook);
+                    }
+                    result = executor;
+                    c_defaultExecutor = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stops the {@link #getDefaultExecutor() shared executor} without waiting for the running refreshes. Refreshes that are still queued
+     * are dropped. A later refresh creates a new one.
+     */
+    public static void shutdownDefaultExecutor() {
+        final ExecutorService executor;
+        synchronized (EntryRefresher.class) {
+            executor = (ExecutorService) c_defaultExecutor;
+            c_defaultExecutor = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private final Cache<K, V> _cache;
+    private final CacheListenerInvoker _listenerInvoker;
+    private final ProducingStatistics _producingStatistics;
+
+    private volatile Duration _refreshAfter;
+    private volatile Executor _executor;
+
+    protected EntryRefresher(@Nonnull Cache<K, V> cache, @Nonnull CacheListenerInvoker listenerInvoker) {
+        this(cache, listenerInvoker, null);
+    }
+
+    /**
+     * @param producingStatistics if set every refresh is recorded as production in it.
+     */
+    protected EntryRefresher(@Nonnull Cache<K, V> cache, @Nonnull CacheListenerInvoker listenerInvoker, @Nullable ProducingStatistics producingStatistics) {
+        _cache = cache;
+        _listenerInvoker = listenerInvoker;
+        _producingStatistics = producingStatistics;
+    }
+
+    @Nullable
+    public Duration getRefreshAfter() {
+        return _refreshAfter;
+    }
+
+    public void setRefreshAfter(@Nullable Duration refreshAfter) {
+        _refreshAfter = refreshAfter;
+    }
+
+    @Nullable
+    public Executor getExecutor() {
+        return _executor;
+    }
+
+    public void setExecutor(@Nullable Executor executor) {
+        _executor = executor;
+    }
+
+    /**
+     * Has to be called after every hit of the given entry that was requested with the given producer.
+     */
+    public void refreshIfRequired(@Nonnull CacheEntry<K, V> entry, @Nonnull ValueProducer<K, V> producer, @Nullable Long expireAfter) {
+        final Duration refreshAfter = _refreshAfter;
+        if (refreshAfter != null && isProduced(entry.getValue()) && entry.getCreated() + refreshAfter.in(MILLISECONDS) <= currentTimeMillis() && entry.startRefresh()) {
+            final Executor executor = _executor;
+            try {
+                (executor != null ? executor : getDefaultExecutor()).execute(new Refresh(entry, producer, expireAfter));
+            } catch (final RejectedExecutionException e) {
+                entry.finishRefresh();
+                _listenerInvoker.afterRefreshFailed(_cache, entry.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * Has to replace the value of the given entry if it is still part of the cache.
+     *
+     * @return <code>true</code> if the value was replaced.
+     */
+    protected abstract boolean replaceValueOf(@Nonnull CacheEntry<K, V> entry, @Nonnull Value<V> value, @Nullable Long expireAfter);
+
+    protected boolean isProduced(@Nullable Value<V> value) {
+        return !(value instanceof Lazy) || ((Lazy<?, V>) value).getValueState() == ValueState.produced;
+    }
+
+    protected class Refresh implements Runnable {
+
+        private final CacheEntry<K, V> _entry;
+        private final ValueProducer<K, V> _producer;
+        private final Long _expireAfter;
+
+        public Refresh(@Nonnull CacheEntry<K, V> entry, @Nonnull ValueProducer<K, V> producer, @Nullable Long expireAfter) {
+            _entry = entry;
+            _producer = producer;
+            _expireAfter = expireAfter;
+        }
+
+        @Override
+        public void run() {
+            final K key = _entry.getKey();
+            try {
+                final V value = produce(key);
+                if (_producer instanceof PostProducing) {
+                    // noinspection unchecked
+                    ((PostProducing<K, V>) _producer).postProducing(key, value);
+                }
+                final Value<V> fixed = new Fixed<>(value);
+                if (replaceValueOf(_entry, fixed, _expireAfter)) {
+                    _listenerInvoker.afterRefresh(_cache, key, fixed);
+                }
+            } catch (final Exception e) {
+                _listenerInvoker.afterRefreshFailed(_cache, key, e);
+            } finally {
+                _entry.finishRefresh();
+            }
+        }
+
+        protected V produce(@Nullable K key) throws Exception {
+            final long start = nanoTime();
+            try {
+                return _producer.produce(key);
+            } finally {
+                if (_producingStatistics != null) {
+                    _producingStatistics.recordProduction(nanoTime() - start);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Refresh of " + _entry.getKey() + " in " + _cache;
+        }
+    }
+
+    protected static class DaemonThreadFactory implements ThreadFactory {
+
+        private final String _namePrefix;
+        private final AtomicInteger _numberOfThreads = new AtomicInteger();
+
+        public DaemonThreadFactory() {
+            this("Caches.Refresher-");
+        }
+
+        public DaemonThreadFactory(@Nonnull String namePrefix) {
+            _namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(@Nonnull Runnable runnable) {
+            final Thread thread = new Thread(runnable, _namePrefix + _numberOfThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
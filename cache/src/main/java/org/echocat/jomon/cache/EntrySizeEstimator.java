@@ -0,0 +1,142 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.echocat.jomon.runtime.util.ByteCount;
+import org.echocat.jomon.runtime.util.LazyEntry.ValueState;
+import org.echocat.jomon.runtime.util.Value;
+import org.echocat.jomon.runtime.util.Value.Lazy;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Estimates the memory used by the entries of a cache. Only some entries are sampled and only well known types (strings, arrays,
+ * boxed primitives, collections, ...) are measured, all other objects are counted with {@link #DEFAULT_OBJECT_SIZE}. So the results
+ * are only a rough indication and no replacement for a {@link Weigher}.</p>
+ *
+ * <p>Values which are not produced yet are skipped to never trigger a production while estimating.</p>
+ */
+@ThreadSafe
+public class EntrySizeEstimator {
+
+    public static final int DEFAULT_SAMPLE_SIZE = 32;
+    public static final long ENTRY_OVERHEAD = 96;
+    public static final long DEFAULT_OBJECT_SIZE = 64;
+
+    protected static final int MAXIMUM_SAMPLED_ELEMENTS = 8;
+
+    private static final EntrySizeEstimator INSTANCE = new EntrySizeEstimator();
+
+    @Nonnull
+    public static EntrySizeEstimator getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param entries the entries to sample from, only the first {@link #DEFAULT_SAMPLE_SIZE} are visited.
+     * @param numberOfEntries the number of all entries of the cache.
+     * @return the estimated size or <code>null</code> if no entry could be sampled.
+     */
+    @Nullable
+    public ByteCount estimate(@Nonnull Iterator<? extends CacheEntry<?, ?>> entries, @Nonnegative long numberOfEntries) {
+        long sampledBytes = 0;
+        int sampled = 0;
+        while (sampled < DEFAULT_SAMPLE_SIZE && entries.hasNext()) {
+            final CacheEntry<?, ?> entry = entries.next();
+            final Value<?> value = entry.getValue();
+            if (isProduced(value)) {
+                sampledBytes += ENTRY_OVERHEAD + estimateSizeOf(entry.getKey()) + estimateSizeOf(value.getValue());
+                sampled++;
+            }
+        }
+        final ByteCount result;
+        if (numberOfEntries == 0) {
+            result = new ByteCount(0);
+        } else if (sampled > 0) {
+            result = new ByteCount((sampledBytes / sampled) * numberOfEntries);
+        } else {
+            result = null;
+        }
+        return result;
+    }
+
+    @Nonnegative
+    public long estimateSizeOf(@Nullable Object object) {
+        final long result;
+        if (object == null || object instanceof Enum || object instanceof Boolean) {
+            result = 0;
+        } else if (object instanceof String) {
+            result = 40 + 2L * ((String) object).length();
+        } else if (object instanceof Number || object instanceof Character) {
+            result = 24;
+        } else if (object instanceof Date) {
+            result = 24;
+        } else if (object instanceof byte[]) {
+            result = 16 + ((byte[]) object).length;
+        } else if (object instanceof char[]) {
+            result = 16 + 2L * ((char[]) object).length;
+        } else if (object instanceof int[]) {
+            result = 16 + 4L * ((int[]) object).length;
+        } else if (object instanceof long[]) {
+            result = 16 + 8L * ((long[]) object).length;
+        } else if (object instanceof Object[]) {
+            result = 16 + estimateSizeOfElements(asList((Object[]) object).iterator(), ((Object[]) object).length);
+        } else if (object instanceof Collection) {
+            result = 48 + estimateSizeOfElements(((Collection<?>) object).iterator(), ((Collection<?>) object).size());
+        } else if (object instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) object;
+            result = 48 + estimateSizeOfElements(map.keySet().iterator(), map.size()) + estimateSizeOfElements(map.values().iterator(), map.size());
+        } else {
+            result = DEFAULT_OBJECT_SIZE;
+        }
+        return result;
+    }
+
+    @Nonnegative
+    protected long estimateSizeOfElements(@Nonnull Iterator<?> elements, @Nonnegative int numberOfElements) {
+        long sampledBytes = 0;
+        int sampled = 0;
+        while (sampled < MAXIMUM_SAMPLED_ELEMENTS && elements.hasNext()) {
+            // Nested collections are not visited to keep the estimation cheap ...
+            final Object element = elements.next();
+            sampledBytes += element instanceof Collection || element instanceof Map ? DEFAULT_OBJECT_SIZE : estimateSizeOf(element);
+            sampled++;
+        }
+        final long perElement = sampled > 0 ? sampledBytes / sampled : 0;
+        return numberOfElements * (perElement + 8);
+    }
+
+    protected boolean isProduced(@Nullable Value<?> value) {
+        final boolean result;
+        if (value == null) {
+            result = false;
+        } else if (value instanceof Lazy) {
+            result = ((Lazy<?, ?>) value).getValueState() == ValueState.produced;
+        } else {
+            result = true;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,38 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Why an entry left a cache, see {@link CacheStatistics#getNumberOfEvictions(EvictionCause)}.</p>
+ */
+public enum EvictionCause {
+    /**
+     * The capacity or the maximum weight of the cache was reached.
+     */
+    capacity,
+    /**
+     * The lifetime of the entry was exceeded.
+     */
+    expiry,
+    /**
+     * The entry was removed or the cache was cleared.
+     */
+    explicit,
+    /**
+     * The value of the entry was replaced by a new one.
+     */
+    replaced
+}
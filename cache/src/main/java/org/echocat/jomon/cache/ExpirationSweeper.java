@@ -0,0 +1,165 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.echocat.jomon.runtime.util.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.PreDestroy;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import static java.lang.Thread.currentThread;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Calls {@link CleanUpEnabledCache#cleanUpLifetimeExpired()} of all registered caches periodically in a background thread. So expired
+ * entries are reclaimed even if nobody accesses the cache and the threads which access the cache do not have to do this work.</p>
+ *
+ * <p>The caches are only weakly referenced, so a cache that is no longer used could be garbage collected also if it was not unregistered.
+ * The thread is a daemon thread and is started on the first registration.</p>
+ */
+@ThreadSafe
+public class ExpirationSweeper implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExpirationSweeper.class);
+    private static final ExpirationSweeper DEFAULT_INSTANCE = new ExpirationSweeper();
+
+    @Nonnull
+    public static ExpirationSweeper getDefaultInstance() {
+        return DEFAULT_INSTANCE;
+    }
+
+    @GuardedBy("_caches")
+    private final Map<CleanUpEnabledCache<?, ?>, Boolean> _caches = new WeakHashMap<>();
+
+    private volatile Duration _interval = new Duration("1s");
+    private volatile String _name = "Caches.ExpirationSweeper";
+
+    @GuardedBy("this")
+    private Thread _sweeperThread;
+
+    @Nonnull
+    public Duration getInterval() {
+        return _interval;
+    }
+
+    public void setInterval(@Nonnull Duration interval) {
+        _interval = interval;
+    }
+
+    @Nonnull
+    public String getName() {
+        return _name;
+    }
+
+    public void setName(@Nonnull String name) {
+        _name = name;
+        synchronized (this) {
+            if (_sweeperThread != null) {
+                _sweeperThread.setName(name);
+            }
+        }
+    }
+
+    public void register(@Nonnull CleanUpEnabledCache<?, ?> cache) {
+        synchronized (_caches) {
+            _caches.put(cache, Boolean.TRUE);
+        }
+        synchronized (this) {
+            if (_sweeperThread == null) {
+                _sweeperThread = new Thread(new Sweeper(), _name);
+                _sweeperThread.setDaemon(true);
+                _sweeperThread.start();
+            }
+        }
+    }
+
+    public void unregister(@Nonnull CleanUpEnabledCache<?, ?> cache) {
+        synchronized (_caches) {
+            _caches.remove(cache);
+        }
+    }
+
+    public boolean isRegistered(@Nonnull CleanUpEnabledCache<?, ?> cache) {
+        synchronized (_caches) {
+            return _caches.containsKey(cache);
+        }
+    }
+
+    /**
+     * Calls {@link CleanUpEnabledCache#cleanUpLifetimeExpired()} of all registered caches in the current thread.
+     */
+    public void sweep() {
+        final List<CleanUpEnabledCache<?, ?>> caches;
+        synchronized (_caches) {
+            caches = new ArrayList<>(_caches.keySet());
+        }
+        for (final CleanUpEnabledCache<?, ?> cache : caches) {
+            try {
+                cache.cleanUpLifetimeExpired();
+            } catch (final RuntimeException e) {
+                LOG.warn("Could not clean up expired entries of " + cache + ".", e);
+            }
+        }
+    }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        synchronized (this) {
+            try {
+                if (_sweeperThread != null) {
+                    try {
+                        _sweeperThread.interrupt();
+                        while (!currentThread().isInterrupted() && _sweeperThread.isAlive()) {
+                            _sweeperThread.join(10);
+                            if (_sweeperThread.isAlive()) {
+                                LOG.info("Still wait for termination of " + _sweeperThread + "...");
+                                _sweeperThread.interrupt();
+                            }
+                        }
+                    } catch (final InterruptedException ignored) {
+                        currentThread().interrupt();
+                        LOG.debug("Could not wait for termination of " + _sweeperThread + ". This thread was interrupted.");
+                    }
+                }
+            } finally {
+                _sweeperThread = null;
+            }
+        }
+    }
+
+    protected class Sweeper implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                while (!currentThread().isInterrupted()) {
+                    _interval.sleep();
+                    sweep();
+                }
+            } catch (final InterruptedException ignored) {
+                currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import javax.annotation.Nullable;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>A cache whose expired entries could be reclaimed in background by an {@link ExpirationSweeper}.</p>
+ */
+public interface ExpirationSweeperEnabledCache<K, V> extends CleanUpEnabledCache<K, V> {
+
+    @Nullable
+    public ExpirationSweeper getExpirationSweeper();
+
+    /**
+     * The given sweeper will reclaim the expired entries of this cache in background. <code>null</code> disables this and expired entries are
+     * only reclaimed if they are requested or the capacity of this cache is reached.
+     */
+    public void setExpirationSweeper(@Nullable ExpirationSweeper expirationSweeper);
+
+}
@@ -0,0 +1,174 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Collection;
+
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Hashed timing wheel which tracks the {@link CacheEntry#getExpire() expire} of {@link CacheEntry cache entries}. Every entry is linked into
+ * the bucket of the tick it expires in, so adding and removing an entry costs constant time. {@link #expire(long, Collection)} only visits
+ * the buckets of the ticks which passed since the last call instead of all entries.</p>
+ *
+ * <p>Entries which expire more than one rotation of the wheel in the future share their bucket with nearer entries and are only skipped
+ * when the bucket is visited. The effort for an entry is therefore limited by its lifetime divided by the duration of one rotation.</p>
+ *
+ * <p>The buckets are created with the first entry which expires, so caches whose entries never expire do not pay for them.</p>
+ */
+@NotThreadSafe
+public class ExpirationWheel<K, V> {
+
+    public static final long DEFAULT_TICK_IN_MILLIS = 100;
+    public static final int DEFAULT_NUMBER_OF_BUCKETS = 1024;
+
+    private CacheEntry<K, V>[] _buckets;
+    private final int _mask;
+    private final long _tickInMillis;
+
+    private long _currentTick;
+    private int _size;
+
+    public ExpirationWheel() {
+        this(DEFAULT_TICK_IN_MILLIS, DEFAULT_NUMBER_OF_BUCKETS);
+    }
+
+    public ExpirationWheel(@Nonnegative long tickInMillis, @Nonnegative int numberOfBuckets) {
+        if (tickInMillis <= 0) {
+            throw new IllegalArgumentException("The tickInMillis have to be greater than 0.");
+        }
+        if (numberOfBuckets <= 0 || Integer.bitCount(numberOfBuckets) != 1) {
+            throw new IllegalArgumentException("The numberOfBuckets have to be a power of two.");
+        }
+        _mask = numberOfBuckets - 1;
+        _tickInMillis = tickInMillis;
+        _currentTick = currentTimeMillis() / tickInMillis;
+    }
+
+    /**
+     * Adds the given entry if it has an {@link CacheEntry#getExpire() expire}. An entry which is already part of this wheel is moved to the
+     * bucket of its current expire.
+     */
+    public void add(@Nonnull CacheEntry<K, V> entry) {
+        remove(entry);
+        final Long expire = entry.getExpire();
+        if (expire != null) {
+            if (_buckets == null) {
+                // noinspection unchecked
+                _buckets = new CacheEntry[_mask + 1];
+            }
+            final int bucket = (int) (Math.max(expire / _tickInMillis, _currentTick) & _mask);
+            final CacheEntry<K, V> head = _buckets[bucket];
+            entry.setExpirationPrevious(null);
+            entry.setExpirationNext(head);
+            if (head != null) {
+                head.setExpirationPrevious(entry);
+            }
+            _buckets[bucket] = entry;
+            entry.setExpirationBucket(bucket);
+            _size++;
+        }
+    }
+
+    /**
+     * Removes the given entry. Nothing happens if the entry is not part of this wheel.
+     */
+    public void remove(@Nonnull CacheEntry<K, V> entry) {
+        final int bucket = entry.getExpirationBucket();
+        if (bucket >= 0) {
+            final CacheEntry<K, V> previous = entry.getExpirationPrevious();
+            final CacheEntry<K, V> next = entry.getExpirationNext();
+            if (previous != null) {
+                previous.setExpirationNext(next);
+            } else {
+                _buckets[bucket] = next;
+            }
+            if (next != null) {
+                next.setExpirationPrevious(previous);
+            }
+            entry.setExpirationPrevious(null);
+            entry.setExpirationNext(null);
+            entry.setExpirationBucket(-1);
+            _size--;
+        }
+    }
+
+    /**
+     * Removes all entries which are expired at the given time from this wheel and adds them to the given collection.
+     */
+    public void expire(long now, @Nonnull Collection<CacheEntry<K, V>> expired) {
+        final long nowTick = now / _tickInMillis;
+        if (_size > 0) {
+            final long ticks = Math.max(Math.min(nowTick - _currentTick + 1, _mask + 1), 1);
+            for (long tick = _currentTick; tick < _currentTick + ticks; tick++) {
+                CacheEntry<K, V> current = _buckets[(int) (tick & _mask)];
+                while (current != null) {
+                    final CacheEntry<K, V> next = current.getExpirationNext();
+                    final Long expire = current.getExpire();
+                    if (expire == null) {
+                        remove(current);
+                    } else if (expire <= now) {
+                        remove(current);
+                        expired.add(current);
+                    }
+                    current = next;
+                }
+            }
+        }
+        if (nowTick > _currentTick) {
+            _currentTick = nowTick;
+        }
+    }
+
+    /**
+     * Removes all entries from this wheel.
+     */
+    public void clear() {
+        if (_buckets != null) {
+            for (int i = 0; i < _buckets.length; i++) {
+                CacheEntry<K, V> current = _buckets[i];
+                while (current != null) {
+                    final CacheEntry<K, V> next = current.getExpirationNext();
+                    current.setExpirationPrevious(null);
+                    current.setExpirationNext(null);
+                    current.setExpirationBucket(-1);
+                    current = next;
+                }
+                _buckets[i] = null;
+            }
+        }
+        _size = 0;
+    }
+
+    @Nonnegative
+    public int size() {
+        return _size;
+    }
+
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /**
+     * @return <code>true</code> if an entry which expires was added once and the buckets of this wheel were created.
+     */
+    public boolean isAllocated() {
+        return _buckets != null;
+    }
+}
@@ -0,0 +1,150 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>A Cache based on the Least Frequently Used algorithm. In contrast to {@link LfuCache} the order of the entries is always exact and every
+ * hit and every eviction costs constant time.</p>
+ *
+ * <p>The linked list of every segment is grouped by the number of hits of the entries. The groups are sorted descending, so the group of
+ * the least frequently used entries is always at the end of the list. Inside of a group the entries are sorted by their last access, so
+ * if the cache is full the least recently used entry of the least frequently used ones will be removed. For every group the first entry
+ * is remembered which makes it possible to move an entry into the next group without walking through the list.</p>
+ */
+@ThreadSafe
+public class FrequencyBucketLfuCache<K, V> extends ConcurrentInMemoryBasedCacheSupport<K, V> {
+
+    public FrequencyBucketLfuCache(@Nonnull Class<? extends K> keyType, @Nonnull Class<? extends V> valueType) {
+        super(keyType, valueType);
+    }
+
+    public FrequencyBucketLfuCache(@Nonnull Class<? extends K> keyType, @Nonnull Class<? extends V> valueType, @Nonnegative int concurrencyLevel) {
+        super(keyType, valueType, concurrencyLevel);
+    }
+
+    @Nonnull
+    @Override
+    protected Segment<K, V> newSegment() {
+        return new FrequencySegment<>();
+    }
+
+    /**
+     * Adds the new cache entry in front of all other entries that were never hit.
+     */
+    @Override
+    protected void updateListAfterPut(@Nonnull Segment<K, V> segment, @Nonnull CacheEntry<K, V> newEntry) {
+        final FrequencySegment<K, V> frequencySegment = (FrequencySegment<K, V>) segment;
+        final int hits = newEntry.getHits();
+        final CacheEntry<K, V> head = frequencySegment.getHeadOf(hits);
+        if (head != null) {
+            segment.addBefore(head, newEntry);
+        } else {
+            segment.addLast(newEntry);
+        }
+        frequencySegment.setHeadOf(hits, newEntry);
+    }
+
+    /**
+     * Move the entry to the beginning of the group of its new number of hits.
+     */
+    @Override
+    protected void updateListAfterHit(@Nonnull Segment<K, V> segment, @Nonnull CacheEntry<K, V> entry) {
+        final FrequencySegment<K, V> frequencySegment = (FrequencySegment<K, V>) segment;
+        final int hits = entry.getHits();
+        final int oldHits = hits - 1;
+        final CacheEntry<K, V> oldHead = frequencySegment.getHeadOf(oldHits);
+        final CacheEntry<K, V> newHead = frequencySegment.getHeadOf(hits);
+        // noinspection ObjectEquality
+        if (oldHead == entry) {
+            final CacheEntry<K, V> next = entry.getNext();
+            frequencySegment.setHeadOf(oldHits, next != null && next.getHits() == oldHits ? next : null);
+        }
+        if (newHead != null) {
+            segment.unlink(entry);
+            segment.addBefore(newHead, entry);
+        } else {
+            // noinspection ObjectEquality
+            if (oldHead != null && oldHead != entry) {
+                // There is no group for the new number of hits yet, so it starts directly in front of the old group ...
+                segment.unlink(entry);
+                segment.addBefore(oldHead, entry);
+            }
+            // ... otherwise the entry was the first one of the old group and is already at the right position.
+        }
+        frequencySegment.setHeadOf(hits, entry);
+    }
+
+    /**
+     * Adds the restored entry behind the last entry with at least the same number of hits. Because the entries are restored the hottest one
+     * first this is normally the end of the list.
+     */
+    @Override
+    protected void updateListAfterRestore(@Nonnull Segment<K, V> segment, @Nonnull CacheEntry<K, V> restoredEntry) {
+        final FrequencySegment<K, V> frequencySegment = (FrequencySegment<K, V>) segment;
+        final int hits = restoredEntry.getHits();
+        CacheEntry<K, V> previous = segment.getLast();
+        while (previous != null && previous.getHits() < hits) {
+            previous = previous.getPrevious();
+        }
+        if (previous == null) {
+            segment.addFirst(restoredEntry);
+        } else if (previous.getNext() == null) {
+            segment.addLast(restoredEntry);
+        } else {
+            segment.addBefore(previous.getNext(), restoredEntry);
+        }
+        if (frequencySegment.getHeadOf(hits) == null) {
+            frequencySegment.setHeadOf(hits, restoredEntry);
+        }
+    }
+
+    @Override
+    protected void updateListBeforeRemove(@Nonnull Segment<K, V> segment, @Nonnull CacheEntry<K, V> entry) {
+        final FrequencySegment<K, V> frequencySegment = (FrequencySegment<K, V>) segment;
+        final int hits = entry.getHits();
+        // noinspection ObjectEquality
+        if (frequencySegment.getHeadOf(hits) == entry) {
+            final CacheEntry<K, V> next = entry.getNext();
+            frequencySegment.setHeadOf(hits, next != null && next.getHits() == hits ? next : null);
+        }
+    }
+
+    protected static class FrequencySegment<K, V> extends Segment<K, V> {
+
+        @GuardedBy("this")
+        private final Map<Integer, CacheEntry<K, V>> _hitsToHead = new HashMap<>();
+
+        @Nullable
+        protected CacheEntry<K, V> getHeadOf(@Nonnegative int hits) {
+            return _hitsToHead.get(hits);
+        }
+
+        protected void setHeadOf(@Nonnegative int hits, @Nullable CacheEntry<K, V> head) {
+            if (head != null) {
+                _hitsToHead.put(hits, head);
+            } else {
+                _hitsToHead.remove(hits);
+            }
+        }
+    }
+}
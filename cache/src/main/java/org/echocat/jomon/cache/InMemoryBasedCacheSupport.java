@@ -18,14 +18,17 @@ import org.echocat.jomon.runtime.iterators.CloseableIterator;
 import org.echocat.jomon.runtime.util.*;
 import org.echocat.jomon.runtime.util.Value.Fixed;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.Executor;
 
 import static java.lang.System.currentTimeMillis;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.echocat.jomon.cache.CacheUtils.produceAll;
 import static org.echocat.jomon.runtime.CollectionUtils.asCloseableIterator;
 
 /**
@@ -37,24 +40,35 @@ import static org.echocat.jomon.runtime.CollectionUtils.asCloseableIterator;
  */
 @SuppressWarnings("ProtectedField")
 @ThreadSafe
-public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V> implements StatisticsEnabledCache<K, V>, LimitedCache<K, V>, ClearableCache<K, V>, ListenerEnabledCache<K, V>, IdentifiedCache<K, V>, ProducingTypeEnabledCache<K, V>, KeysEnabledCache<K, V>, AutoCloseable {
+public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V> implements DetailedStatisticsEnabledCache<K, V>, ProducingStatisticsEnabledCache<K, V>, WeightLimitedCache<K, V>, ClearableCache<K, V>, ListenerEnabledCache<K, V>, IdentifiedCache<K, V>, ProducingTypeEnabledCache<K, V>, KeysEnabledCache<K, V>, ExpirationSweeperEnabledCache<K, V>, RefreshEnabledCache<K, V>, BulkEnabledCache<K, V>, SnapshotEnabledCache<K, V>, AutoCloseable {
 
     protected final Object _lock = new Object();
     protected final CacheListenerInvoker _listenerInvoker = new CacheListenerInvoker();
+    protected final ProducingStatistics _producingStatistics = new ProducingStatistics();
+    protected final CacheStatistics _statistics = new CacheStatistics(_producingStatistics);
+    protected final EntryRefresher<K, V> _refresher = new EntryRefresher<K, V>(this, _listenerInvoker, _producingStatistics) {
+        @Override
+        protected boolean replaceValueOf(@Nonnull CacheEntry<K, V> entry, @Nonnull Value<V> value, @Nullable Long expireAfter) {
+            return replaceIfPresent(entry, value, expireAfter);
+        }
+    };
     protected final long _createdTimestamp;
 
     protected String _id;
     protected Map<K, CacheEntry<K, V>> _entries;
     protected Integer _capacity;
     protected Duration _defaultExpireAfter;
+    protected Weigher<? super K, ? super V> _weigher;
+    protected Long _maximumWeight;
+    protected long _weight;
     private ProducingType _producingType = ProducingType.DEFAULT;
 
-    protected long _numberOfRequests;
-    protected long _numberOfHits;
-    protected long _numberOfDrops;
     protected CacheEntry<K, V> _first;
     protected CacheEntry<K, V> _last;
-    protected long _nearstExpiringTime;
+    protected final ExpirationWheel<K, V> _expirationWheel = new ExpirationWheel<>();
+
+    private volatile ExpirationSweeper _expirationSweeper;
+    private boolean _registeredAtExpirationSweeper;
 
     protected InMemoryBasedCacheSupport(@Nonnull Class<? extends K> keyType, @Nonnull Class<? extends V> valueType) {
         super(keyType, valueType);
@@ -62,9 +76,89 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
         _entries = new HashMap<>();
         _first = null;
         _last = null;
-        _numberOfHits = 0;
-        _numberOfRequests = 0;
-        _nearstExpiringTime = currentTimeMillis();
+    }
+
+    @Override
+    @Nullable
+    public ExpirationSweeper getExpirationSweeper() {
+        return _expirationSweeper;
+    }
+
+    /**
+     * There is no sweeper by default to keep the {@link #size()} of existing caches unchanged. Caches created by the
+     * {@link org.echocat.jomon.cache.management.LimitedCacheCreatorSupport creators} use {@link ExpirationSweeper#getDefaultInstance()}.
+     */
+    @Override
+    public void setExpirationSweeper(@Nullable ExpirationSweeper expirationSweeper) {
+        synchronized (_lock) {
+            // noinspection ObjectEquality
+            if (_expirationSweeper != expirationSweeper) {
+                if (_expirationSweeper != null) {
+                    _expirationSweeper.unregister(this);
+                }
+                _expirationSweeper = expirationSweeper;
+                _registeredAtExpirationSweeper = false;
+            }
+        }
+    }
+
+    @Override
+    @Nullable
+    public Duration getRefreshAfter() {
+        return _refresher.getRefreshAfter();
+    }
+
+    @Override
+    public void setRefreshAfter(@Nullable Duration refreshAfter) {
+        _refresher.setRefreshAfter(refreshAfter);
+    }
+
+    @Override
+    @Nullable
+    public Executor getRefreshExecutor() {
+        return _refresher.getExecutor();
+    }
+
+    @Override
+    public void setRefreshExecutor(@Nullable Executor executor) {
+        _refresher.setExecutor(executor);
+    }
+
+    @Override
+    @Nullable
+    public Weigher<? super K, ? super V> getWeigher() {
+        return _weigher;
+    }
+
+    /**
+     * Only entries which are written after this call are weighed by the given weigher.
+     */
+    @Override
+    public void setWeigher(@Nullable Weigher<? super K, ? super V> weigher) {
+        _weigher = weigher;
+    }
+
+    @Override
+    @Nullable
+    public ByteCount getMaximumWeight() {
+        final Long maximumWeight = _maximumWeight;
+        return maximumWeight != null ? new ByteCount(maximumWeight) : null;
+    }
+
+    @Override
+    public void setMaximumWeight(@Nullable ByteCount maximumWeight) {
+        synchronized (_lock) {
+            _maximumWeight = maximumWeight != null ? maximumWeight.toByteCount() : null;
+            evictIfOverweight(null);
+        }
+    }
+
+    @Override
+    @Nullable
+    public ByteCount getWeight() {
+        synchronized (_lock) {
+            return _weigher != null || _weight > 0 ? new ByteCount(_weight) : null;
+        }
     }
 
     @Override
@@ -119,6 +213,8 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
         synchronized (_lock) {
             if (_last != null) {
                 entry = _entries.remove(_last.getKey());
+                _weight -= _last.getWeight();
+                _expirationWheel.remove(_last);
                 setLast(_last.getPrevious());
             } else {
                 entry = null;
@@ -129,38 +225,26 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
             }
         }
         if (entry != null) {
-            handleRemove(entry);
+            handleRemove(entry, EvictionCause.capacity);
         }
     }
 
     /**
-     * Remove entries that are out of their maxLifetime.
+     * Remove entries that are out of their maxLifetime. Only the entries which expired since the last call are visited, see
+     * {@link ExpirationWheel}.
      */
-    @SuppressWarnings("UnnecessaryUnboxing")
+    @Override
     public void cleanUpLifetimeExpired() {
-        final long currentTime = currentTimeMillis();
-        // Test whether there could be an element that has to be removed
-        if (_nearstExpiringTime > 0 && _nearstExpiringTime <= currentTime) {
-            // Go through all elements and remove elements that are outdated
-            final List<K> keysToRemove = new ArrayList<>();
-            synchronized (_lock) {
-                _nearstExpiringTime = 0;
-                for (final CacheEntry<K, V> cacheEntry : _entries.values()) {
-                    final Long expire = cacheEntry.getExpire();
-                    if (expire != null) {
-                        final long unboxedExpire = expire.longValue();
-                        if (unboxedExpire <= currentTime) {
-                            keysToRemove.add(cacheEntry.getKey());
-                        } else if (_nearstExpiringTime == 0 || unboxedExpire < _nearstExpiringTime) {
-                            _nearstExpiringTime = unboxedExpire;
-                        }
-                    }
-                }
-                for (final K key : keysToRemove) {
-                    removeInternal(key);
-                }
+        final List<CacheEntry<K, V>> expired = new ArrayList<>();
+        synchronized (_lock) {
+            _expirationWheel.expire(currentTimeMillis(), expired);
+            for (final CacheEntry<K, V> cacheEntry : expired) {
+                internalRemove(cacheEntry.getKey());
             }
         }
+        for (final CacheEntry<K, V> cacheEntry : expired) {
+            handleRemove(cacheEntry, EvictionCause.expiry);
+        }
     }
 
     @Override
@@ -170,13 +254,15 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
             synchronized (_lock) {
                 oldEntries = _entries;
                 _entries = new HashMap<>();
+                _expirationWheel.clear();
                 _first = null;
                 _last = null;
+                _weight = 0;
                 resetStatistics();
             }
             for (final CacheEntry<K, V> entry : oldEntries.values()) {
                 try {
-                    handleRemove(entry);
+                    handleRemove(entry, EvictionCause.explicit);
                 } catch (final ValueProducingFailedException ignored) {}
             }
             _listenerInvoker.afterClear(this);
@@ -196,7 +282,6 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
             CacheEntry<K, V> cacheEntry;
             CacheEntry<K, V> outdatedCacheEntry = null;
             synchronized (_lock) {
-                _numberOfRequests++;
                 cacheEntry = _entries.get(key);
                 if (cacheEntry != null) {
                     if (isOutDated(cacheEntry)) {
@@ -204,14 +289,15 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
                         outdatedCacheEntry = internalRemove(key);
                         cacheEntry = null;
                     } else {
-                        _numberOfHits++;
                         cacheEntry.hit();
                         updateListAfterHit(cacheEntry);
+                        _producingStatistics.recordRequestOf(cacheEntry.getValue());
                     }
                 }
             }
+            recordRequest(cacheEntry != null);
             if (outdatedCacheEntry != null) {
-                handleRemove(outdatedCacheEntry);
+                handleRemove(outdatedCacheEntry, EvictionCause.expiry);
             }
             final Value<V> valueHolder = cacheEntry == null ? null : cacheEntry.getValue();
             value = valueHolder != null ? valueHolder.getValue() : null;
@@ -234,8 +320,9 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
         if (_listenerInvoker.beforeGet(this, key)) {
             CacheEntry<K, V> cacheEntry;
             CacheEntry<K, V> outdatedCacheEntry = null;
+            CacheEntry<K, V> hitCacheEntry = null;
+            CacheEntry<K, V> newCacheEntry = null;
             synchronized (_lock) {
-                _numberOfRequests++;
                 cacheEntry = _entries.get(key);
                 if (cacheEntry != null) {
                     if (isOutDated(cacheEntry)) {
@@ -243,18 +330,28 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
                         outdatedCacheEntry = internalRemove(key);
                         cacheEntry = null;
                     } else {
-                        _numberOfHits++;
                         cacheEntry.hit();
                         updateListAfterHit(cacheEntry);
+                        _producingStatistics.recordRequestOf(cacheEntry.getValue());
+                        hitCacheEntry = cacheEntry;
                     }
                 }
                 if (cacheEntry == null && cacheValueProducer != null) {
-                    cacheEntry = new CacheEntry<>(key, getTargetExpireAfterBasedOn(expireAfter), cacheValueProducer, _producingType);
+                    cacheEntry = new CacheEntry<>(key, getTargetExpireAfterBasedOn(expireAfter), _producingStatistics.lazyValueFor(key, cacheValueProducer, _producingType));
                     internalPut(cacheEntry);
+                    newCacheEntry = cacheEntry;
                 }
             }
+            recordRequest(hitCacheEntry != null);
             if (outdatedCacheEntry != null) {
-                handleRemove(outdatedCacheEntry);
+                handleRemove(outdatedCacheEntry, EvictionCause.expiry);
+            }
+            if (newCacheEntry != null && _weigher != null) {
+                // The weight of a produced value is only known after it was produced ...
+                weigh(newCacheEntry, weightOf(key, newCacheEntry.getValue().getValue()));
+            }
+            if (hitCacheEntry != null && cacheValueProducer != null) {
+                _refresher.refreshIfRequired(hitCacheEntry, cacheValueProducer, getTargetExpireAfterBasedOn(expireAfter));
             }
             final Value<V> valueHolder = cacheEntry != null ? cacheEntry.getValue() : null;
             value = valueHolder != null ? valueHolder.getValue() : null;
@@ -266,6 +363,80 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
         return value;
     }
 
+    @Override
+    @Nonnull
+    public Map<K, V> getAll(@Nonnull Iterable<? extends K> keys) {
+        return getAll(keys, null, null);
+    }
+
+    @Override
+    @Nonnull
+    public Map<K, V> getAll(@Nonnull Iterable<? extends K> keys, @Nullable BulkValueProducer<K, V> producer, @Nullable Duration expireAfter) {
+        final Set<K> requestedKeys = new LinkedHashSet<>();
+        for (final K key : keys) {
+            checkKey(key);
+            if (!requestedKeys.contains(key) && _listenerInvoker.beforeGet(this, key)) {
+                requestedKeys.add(key);
+            }
+        }
+        final Map<K, Value<V>> valueHolders = new HashMap<>();
+        final List<K> missingKeys = new ArrayList<>();
+        final List<CacheEntry<K, V>> outdatedCacheEntries = new ArrayList<>();
+        int numberOfHits = 0;
+        synchronized (_lock) {
+            for (final K key : requestedKeys) {
+                final CacheEntry<K, V> cacheEntry = _entries.get(key);
+                if (cacheEntry == null) {
+                    missingKeys.add(key);
+                } else if (isOutDated(cacheEntry)) {
+                    // An outdated entry, remove it ...
+                    outdatedCacheEntries.add(internalRemove(key));
+                    missingKeys.add(key);
+                } else {
+                    numberOfHits++;
+                    cacheEntry.hit();
+                    updateListAfterHit(cacheEntry);
+                    _producingStatistics.recordRequestOf(cacheEntry.getValue());
+                    valueHolders.put(key, cacheEntry.getValue());
+                }
+            }
+        }
+        _statistics.recordRequests(requestedKeys.size(), numberOfHits);
+        for (final CacheEntry<K, V> outdatedCacheEntry : outdatedCacheEntries) {
+            handleRemove(outdatedCacheEntry, EvictionCause.expiry);
+        }
+        if (producer != null && !missingKeys.isEmpty()) {
+            final Map<K, V> produced = produceAll(missingKeys, producer);
+            final Long targetExpireAfter = getTargetExpireAfterBasedOn(expireAfter);
+            final List<CacheEntry<K, V>> newEntries = new ArrayList<>();
+            for (final K key : missingKeys) {
+                final V value = produced.get(key);
+                if (value != null) {
+                    checkValueAfterProducing(value);
+                    final CacheEntry<K, V> newEntry = new CacheEntry<>(key, targetExpireAfter, value);
+                    newEntry.setWeight(weightOf(key, value));
+                    newEntries.add(newEntry);
+                    valueHolders.put(key, newEntry.getValue());
+                }
+            }
+            synchronized (_lock) {
+                for (final CacheEntry<K, V> newEntry : newEntries) {
+                    internalPut(newEntry);
+                }
+            }
+        }
+        final Map<K, V> result = new LinkedHashMap<>();
+        for (final K key : requestedKeys) {
+            final Value<V> valueHolder = valueHolders.get(key);
+            final V value = valueHolder != null ? valueHolder.getValue() : null;
+            if (value != null) {
+                result.put(key, value);
+            }
+            _listenerInvoker.afterGet(this, key, valueHolder);
+        }
+        return result;
+    }
+
     @Override
     public boolean contains(K key) {
         checkKey(key);
@@ -293,11 +464,213 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
         if (_listenerInvoker.beforePut(this, key, fixed, expireAfter)) {
             final Long targetExpireAfter = getTargetExpireAfterBasedOn(expireAfter);
             final CacheEntry<K, V> newEntry = new CacheEntry<>(key, targetExpireAfter, value);
+            newEntry.setWeight(weightOf(key, value));
             internalPut(newEntry);
             _listenerInvoker.afterPut(this, key, fixed, expireAfter);
         }
     }
 
+    @Override
+    public void putAll(@Nonnull Map<? extends K, ? extends V> values) {
+        putAll(values, null);
+    }
+
+    @Override
+    public void putAll(@Nonnull Map<? extends K, ? extends V> values, @Nullable Duration expireAfter) {
+        final Map<K, Fixed<V>> approved = new LinkedHashMap<>();
+        final List<CacheEntry<K, V>> newEntries = new ArrayList<>();
+        final Long targetExpireAfter = getTargetExpireAfterBasedOn(expireAfter);
+        for (final Entry<? extends K, ? extends V> keyAndValue : values.entrySet()) {
+            final K key = keyAndValue.getKey();
+            final V value = keyAndValue.getValue();
+            checkKey(key);
+            checkValue(value);
+            final Fixed<V> fixed = new Fixed<>(value);
+            if (_listenerInvoker.beforePut(this, key, fixed, expireAfter)) {
+                approved.put(key, fixed);
+                final CacheEntry<K, V> newEntry = new CacheEntry<>(key, targetExpireAfter, fixed);
+                newEntry.setWeight(weightOf(key, value));
+                newEntries.add(newEntry);
+            }
+        }
+        synchronized (_lock) {
+            for (final CacheEntry<K, V> newEntry : newEntries) {
+                internalPut(newEntry);
+            }
+        }
+        for (final Entry<K, Fixed<V>> keyAndValue : approved.entrySet()) {
+            _listenerInvoker.afterPut(this, keyAndValue.getKey(), keyAndValue.getValue(), expireAfter);
+        }
+    }
+
+    @Override
+    @Nonnull
+    public List<SnapshotEntry<K, V>> snapshot(@Nonnegative int maximumNumberOfEntries) {
+        final List<SnapshotEntry<K, V>> result = new ArrayList<>();
+        final long now = currentTimeMillis();
+        synchronized (_lock) {
+            CacheEntry<K, V> current = _first;
+            while (current != null && result.size() < maximumNumberOfEntries) {
+                final SnapshotEntry<K, V> snapshotEntry = current.toSnapshotEntry(now);
+                if (snapshotEntry != null) {
+                    result.add(snapshotEntry);
+                }
+                current = current.getNext();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    @Nonnegative
+    public int restore(@Nonnull Iterable<SnapshotEntry<K, V>> entries) {
+        final int maximumNumberOfEntries;
+        synchronized (_lock) {
+            final Integer capacity = _capacity;
+            maximumNumberOfEntries = capacity != null ? Math.max(capacity - _entries.size(), 0) : Integer.MAX_VALUE;
+        }
+        final Map<K, SnapshotEntry<K, V>> candidates = new LinkedHashMap<>();
+        final Iterator<SnapshotEntry<K, V>> i = entries.iterator();
+        while (i.hasNext() && candidates.size() < maximumNumberOfEntries) {
+            final SnapshotEntry<K, V> entry = i.next();
+            final K key = entry.getKey();
+            final V value = entry.getValue();
+            checkKey(key);
+            checkValue(value);
+            // Only the first (hottest) entry of every key counts and the listeners are only asked for entries which could be restored ...
+            if (!entry.isExpired() && !candidates.containsKey(key) && !containsEntryFor(key) && _listenerInvoker.beforePut(this, key, new Fixed<>(value), expireAfterOf(entry))) {
+                candidates.put(key, entry);
+            }
+        }
+        final List<CacheEntry<K, V>> restored = new ArrayList<>();
+        synchronized (_lock) {
+            final Integer capacity = _capacity;
+            for (final SnapshotEntry<K, V> entry : candidates.values()) {
+                if (capacity != null && _entries.size() >= capacity) {
+                    break;
+                }
+                final K key = entry.getKey();
+                if (!_entries.containsKey(key)) {
+                    final CacheEntry<K, V> newEntry = new CacheEntry<>(key, entry.getRemainingLifetime(), entry.getValue());
+                    newEntry.setHits(entry.getHits());
+                    newEntry.setWeight(weightOf(key, entry.getValue()));
+                    _entries.put(key, newEntry);
+                    _expirationWheel.add(newEntry);
+                    _weight += newEntry.getWeight();
+                    updateListAfterRestore(newEntry);
+                    restored.add(newEntry);
+                }
+            }
+            evictIfOverweight(null);
+            registerAtExpirationSweeperIfNeeded();
+        }
+        for (final CacheEntry<K, V> newEntry : restored) {
+            _listenerInvoker.afterPut(this, newEntry.getKey(), newEntry.getValue(), expireAfterOf(candidates.get(newEntry.getKey())));
+        }
+        return restored.size();
+    }
+
+    protected boolean containsEntryFor(@Nullable K key) {
+        synchronized (_lock) {
+            return _entries.containsKey(key);
+        }
+    }
+
+    @Nullable
+    protected Duration expireAfterOf(@Nonnull SnapshotEntry<K, V> entry) {
+        final Long remainingLifetime = entry.getRemainingLifetime();
+        return remainingLifetime != null ? new Duration(remainingLifetime) : null;
+    }
+
+    /**
+     * Is called by {@link #restore(Iterable)} for every restored entry, the hottest one first. The default implementation adds the entry after
+     * <code>this&#46;_last</code> which keeps the order of the snapshot for every strategy which orders its whole list by hotness.
+     */
+    protected void updateListAfterRestore(@Nonnull CacheEntry<K, V> restoredEntry) {
+        restoredEntry.setPrevious(_last);
+        if (_last != null) {
+            _last.setNext(restoredEntry);
+        }
+        setLast(restoredEntry);
+    }
+
+    /**
+     * Replaces the value of the given entry if it is still part of this cache.
+     *
+     * @return <code>true</code> if the value was replaced.
+     */
+    protected boolean replaceIfPresent(@Nonnull CacheEntry<K, V> entry, @Nonnull Value<V> value, @Nullable Long expireAfter) {
+        final long weight = _weigher != null ? weightOf(entry.getKey(), value.getValue()) : 0;
+        final boolean result;
+        synchronized (_lock) {
+            // noinspection ObjectEquality
+            result = _entries.get(entry.getKey()) == entry;
+            if (result) {
+                entry.setValue(expireAfter, value);
+                _expirationWheel.add(entry);
+                _weight += weight - entry.getWeight();
+                entry.setWeight(weight);
+                evictIfOverweight(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sets the weight of the given entry if it is still part of this cache and evicts other entries if the {@link #getMaximumWeight() maximum
+     * weight} is exceeded afterwards.
+     */
+    protected void weigh(@Nonnull CacheEntry<K, V> entry, @Nonnegative long weight) {
+        synchronized (_lock) {
+            // noinspection ObjectEquality
+            if (_entries.get(entry.getKey()) == entry) {
+                _weight += weight - entry.getWeight();
+                entry.setWeight(weight);
+                evictIfOverweight(entry);
+            }
+        }
+    }
+
+    @Nonnegative
+    protected long weightOf(@Nullable K key, @Nullable V value) {
+        final Weigher<? super K, ? super V> weigher = _weigher;
+        final long result = weigher != null ? weigher.weightOf(key, value) : 0;
+        if (result < 0) {
+            throw new IllegalStateException(weigher + " returned a negative weight for " + key + ": " + result);
+        }
+        return result;
+    }
+
+    /**
+     * Removes the last elements (depends on the implementation) as long as the {@link #getMaximumWeight() maximum weight} is exceeded.
+     *
+     * @param spare entry that should not be removed even if it is the last one. If it exceeds the maximum weight on its own it is removed
+     *              instead of all other entries.
+     */
+    protected void evictIfOverweight(@Nullable CacheEntry<K, V> spare) {
+        synchronized (_lock) {
+            final Long maximumWeight = _maximumWeight;
+            // noinspection ObjectEquality
+            if (maximumWeight != null && spare != null && spare.getWeight() > maximumWeight && _entries.get(spare.getKey()) == spare) {
+                // the entry could never fit into this cache, so do not evict all others for it ...
+                handleRemove(internalRemove(spare.getKey()), EvictionCause.capacity);
+            }
+            if (maximumWeight != null && _weight > maximumWeight) {
+                // max weight reached, remove outdated cache entries ...
+                cleanUpLifetimeExpired();
+                CacheEntry<K, V> candidate = _last;
+                while (_weight > maximumWeight && candidate != null) {
+                    final CacheEntry<K, V> previous = candidate.getPrevious();
+                    // noinspection ObjectEquality
+                    if (candidate != spare) {
+                        handleRemove(internalRemove(candidate.getKey()), EvictionCause.capacity);
+                    }
+                    candidate = previous;
+                }
+            }
+        }
+    }
+
     @Nullable
     protected Long getTargetExpireAfterBasedOn(@Nullable Duration expireAfter) {
         final Long targetExpireAfter;
@@ -324,6 +697,33 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
         return result;
     }
 
+    @Override
+    public void removeAll(@Nonnull Iterable<? extends K> keys) {
+        final List<K> approvedKeys = new ArrayList<>();
+        for (final K key : keys) {
+            checkKey(key);
+            if (_listenerInvoker.beforeRemove(this, key)) {
+                approvedKeys.add(key);
+            }
+        }
+        final Map<K, CacheEntry<K, V>> removedCacheEntries = new HashMap<>();
+        synchronized (_lock) {
+            for (final K key : approvedKeys) {
+                final CacheEntry<K, V> removedCacheEntry = internalRemove(key);
+                if (removedCacheEntry != null) {
+                    removedCacheEntries.put(key, removedCacheEntry);
+                }
+            }
+        }
+        for (final CacheEntry<K, V> removedCacheEntry : removedCacheEntries.values()) {
+            handleRemove(removedCacheEntry, EvictionCause.explicit);
+        }
+        for (final K key : approvedKeys) {
+            final CacheEntry<K, V> removedCacheEntry = removedCacheEntries.get(key);
+            _listenerInvoker.afterRemove(this, key, removedCacheEntry != null ? removedCacheEntry.getValue() : null);
+        }
+    }
+
     @Nullable
     protected Value<V> removeInternal(@Nullable K key) {
         final Value<V> result;
@@ -332,15 +732,29 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
             result = null;
         } else {
             result = removedCacheEntry.getValue();
-            handleRemove(removedCacheEntry);
+            handleRemove(removedCacheEntry, EvictionCause.explicit);
         }
         return result;
     }
 
-    protected void handleRemove(@Nullable CacheEntry<K, V> cacheEntry) {
-        _numberOfDrops++;
+    protected void recordRequest(boolean hit) {
+        if (hit) {
+            _statistics.recordHit();
+        } else {
+            _statistics.recordMiss();
+        }
+    }
+
+    protected void handleRemove(@Nullable CacheEntry<K, V> cacheEntry, @Nonnull EvictionCause cause) {
+        _statistics.recordEviction(cause);
+        handleRemove(cacheEntry);
     }
 
+    /**
+     * Is called for every entry which left this cache, after it was recorded in the {@link #getStatistics() statistics}.
+     */
+    protected void handleRemove(@Nullable CacheEntry<K, V> cacheEntry) {}
+
     protected void setFirst(@Nullable CacheEntry<K, V> cacheEntry) {
         synchronized (_lock) {
             if (cacheEntry == null) {
@@ -396,6 +810,8 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
                 if (i < capacity) {
                     _entries.put(entry.getKey(), entry.getValue());
                 } else {
+                    _expirationWheel.remove(entry.getValue());
+                    _weight -= entry.getValue().getWeight();
                     toCleanUp.add(entry.getValue());
                 }
                 i++;
@@ -403,7 +819,7 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
         }
         for (final CacheEntry<K, V> entry : toCleanUp) {
             try {
-                handleRemove(entry);
+                handleRemove(entry, EvictionCause.capacity);
             } catch (final ValueProducingFailedException ignored) {
             }
         }
@@ -418,17 +834,57 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
 
     @Override
     public Long getNumberOfHits() {
-        return _numberOfHits;
+        return _statistics.getNumberOfHits();
     }
 
     @Override
     public Long getNumberOfRequests() {
-        return _numberOfRequests;
+        return _statistics.getNumberOfRequests();
     }
 
     @Override
     public Long getNumberOfDrops() {
-        return _numberOfDrops;
+        return _statistics.getNumberOfEvictions();
+    }
+
+    @Override
+    @Nonnull
+    public CacheStatistics getStatistics() {
+        return _statistics;
+    }
+
+    @Override
+    @Nullable
+    public ByteCount getEstimatedSize() {
+        final ByteCount result;
+        if (_weigher != null) {
+            result = getWeight();
+        } else {
+            synchronized (_lock) {
+                result = EntrySizeEstimator.getInstance().estimate(_entries.values().iterator(), _entries.size());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Long getNumberOfProductions() {
+        return _producingStatistics.getNumberOfProductions();
+    }
+
+    @Override
+    public Duration getAverageProducingDuration() {
+        return _producingStatistics.getAverageProducingDuration();
+    }
+
+    @Override
+    public Duration getMaximumProducingDuration() {
+        return _producingStatistics.getMaximumProducingDuration();
+    }
+
+    @Override
+    public Long getNumberOfCoalescedRequests() {
+        return _producingStatistics.getNumberOfCoalescedRequests();
     }
 
     @Override
@@ -478,6 +934,8 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
             } else {
                 entry = _entries.remove(key);
                 if (entry != null) {
+                    _weight -= entry.getWeight();
+                    _expirationWheel.remove(entry);
                     // Remove the entry from the LinkedList
                     // noinspection ObjectEquality
                     if (entry == _first) {
@@ -511,10 +969,6 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
                 }
             }
             final K key = newEntry.getKey();
-            final Long expire = newEntry.getExpire();
-            if (_nearstExpiringTime > 0 && expire != null && expire <= _nearstExpiringTime) {
-                _nearstExpiringTime = expire;
-            }
             final CacheEntry<K, V> oldEntry = _entries.put(key, newEntry);
             if (oldEntry != null) {
                 // This should not happen very often, but we need to ensure,
@@ -522,14 +976,31 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
                 // so we put oldEntry back into the map ...
                 _entries.put(key, oldEntry);
                 // ... replace its value ...
-                handleRemove(oldEntry);
-                oldEntry.setValue(newEntry.getExpire(), newEntry.getValue());
-                // ... and simulate a hit ...
-                _numberOfHits++;
+                handleRemove(oldEntry, EvictionCause.replaced);
+                final Long expire = newEntry.getExpire();
+                oldEntry.setValue(expire != null ? expire - newEntry.getCreated() : null, newEntry.getValue());
+                _expirationWheel.add(oldEntry);
+                _weight += newEntry.getWeight() - oldEntry.getWeight();
+                oldEntry.setWeight(newEntry.getWeight());
+                // ... and simulate a hit to move it in the list (a replacement is no request, so it is not recorded as hit) ...
                 oldEntry.hit();
                 updateListAfterHit(oldEntry);
+                evictIfOverweight(oldEntry);
             } else {
+                _expirationWheel.add(newEntry);
+                _weight += newEntry.getWeight();
                 updateListAfterPut(newEntry);
+                evictIfOverweight(newEntry);
+            }
+            registerAtExpirationSweeperIfNeeded();
+        }
+    }
+
+    private void registerAtExpirationSweeperIfNeeded() {
+        synchronized (_lock) {
+            if (!_expirationWheel.isEmpty() && !_registeredAtExpirationSweeper && _expirationSweeper != null) {
+                _expirationSweeper.register(this);
+                _registeredAtExpirationSweeper = true;
             }
         }
     }
@@ -537,9 +1008,7 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
     @Override
     public void resetStatistics() {
         if (_listenerInvoker.beforeResetStatistics(this)) {
-            _numberOfDrops = 0;
-            _numberOfHits = 0;
-            _numberOfRequests = 0;
+            _statistics.reset();
             _listenerInvoker.afterResetStatistics(this);
         }
     }
@@ -555,6 +1024,12 @@ public abstract class InMemoryBasedCacheSupport<K, V> extends CacheSupport<K, V>
 
     @Override
     public void close() throws Exception {
+        synchronized (_lock) {
+            if (_expirationSweeper != null) {
+                _expirationSweeper.unregister(this);
+            }
+            _registeredAtExpirationSweeper = false;
+        }
         clear();
     }
 }
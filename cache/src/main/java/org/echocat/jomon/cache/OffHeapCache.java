@@ -0,0 +1,757 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.echocat.jomon.cache.OffHeapStorage.DirectSlabFactory;
+import org.echocat.jomon.cache.OffHeapStorage.SlabFactory;
+import org.echocat.jomon.runtime.io.Serializer;
+import org.echocat.jomon.runtime.iterators.CloseableIterator;
+import org.echocat.jomon.runtime.util.ByteCount;
+import org.echocat.jomon.runtime.util.Duration;
+import org.echocat.jomon.runtime.util.Value;
+import org.echocat.jomon.runtime.util.Value.Fixed;
+import org.echocat.jomon.runtime.util.ValueProducer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.*;
+import java.util.Map.Entry;
+
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.echocat.jomon.cache.CacheUtils.produceAll;
+import static org.echocat.jomon.cache.OffHeapStorage.DEFAULT_BLOCK_SIZE;
+import static org.echocat.jomon.cache.OffHeapStorage.DEFAULT_SLAB_SIZE;
+import static org.echocat.jomon.runtime.CollectionUtils.asCloseableIterator;
+import static org.echocat.jomon.runtime.util.ByteCount.byteCountOf;
+import static org.echocat.jomon.runtime.util.ProducingType.nonBlocking;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Cache which stores its keys and values serialized and its values outside of the java heap in an {@link OffHeapStorage}. Only a small index
+ * entry with the serialized key remains on the heap per cached value. So very large value sets could be cached without increasing the work of
+ * the garbage collector.</p>
+ *
+ * <p>The size of this cache is limited by {@link #setMaximumSize(ByteCount) bytes} and optionally by {@link #setCapacity(Long) entries}. If
+ * one of the limits is reached the least recently used entries are evicted.</p>
+ *
+ * <p>Every read has to deserialize the value, so every request returns a new instance of the value. Values requested with a
+ * {@link ValueProducer} are produced by the calling thread, concurrent requests of the same missing key could produce it more than once.</p>
+ */
+@ThreadSafe
+public class OffHeapCache<K, V> extends SerializingCacheSupport<K, V> implements ProducingStatisticsEnabledCache<K, V>, LimitedCache<K, V>, ClearableCache<K, V>, ListenerEnabledCache<K, V>, IdentifiedCache<K, V>, KeysEnabledCache<K, V>, ExpirationSweeperEnabledCache<K, V>, BulkEnabledCache<K, V>, AutoCloseable {
+
+    public static final ByteCount DEFAULT_MAXIMUM_SIZE = byteCountOf("64M");
+
+    private static final int[] NO_BLOCKS = new int[0];
+    private static final long NO_EXPIRE = Long.MAX_VALUE;
+
+    private final Object _lock = new Object();
+    private final CacheListenerInvoker _listenerInvoker = new CacheListenerInvoker();
+    private final ProducingStatistics _producingStatistics = new ProducingStatistics();
+    private final Map<BinaryKey, Slot> _slots = new HashMap<>();
+    /**
+     * Every slot which expires ordered by its expiration. Slots which were already released remain here until they are polled or the queue is
+     * rebuilt.
+     */
+    private final PriorityQueue<Slot> _expirations = new PriorityQueue<>();
+    private final long _createdTimestamp = currentTimeMillis();
+    private final OffHeapStorage _storage;
+
+    private String _id;
+    private Long _capacity;
+    private volatile Duration _defaultExpireAfter;
+    private Slot _first;
+    private Slot _last;
+
+    private volatile long _numberOfRequests;
+    private volatile long _numberOfHits;
+    private volatile long _numberOfDrops;
+
+    private volatile ExpirationSweeper _expirationSweeper = ExpirationSweeper.getDefaultInstance();
+    private boolean _registeredAtExpirationSweeper;
+
+    public OffHeapCache(@Nonnull Class<? extends K> keyType, @Nonnull Class<? extends V> valueType, @Nonnull Serializer<K> keySerializer, @Nonnull Serializer<V> valueSerializer, @Nonnull SlabFactory slabFactory, @Nonnull ByteCount blockSize, @Nonnull ByteCount slabSize) {
+        super(keyType, valueType, keySerializer, valueSerializer);
+        _storage = new OffHeapStorage(slabFactory, blockSize, slabSize, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public OffHeapCache(@Nonnull Class<? extends K> keyType, @Nonnull Class<? extends V> valueType, @Nonnull Serializer<K> keySerializer, @Nonnull Serializer<V> valueSerializer) {
+        this(keyType, valueType, keySerializer, valueSerializer, new DirectSlabFactory(), DEFAULT_BLOCK_SIZE, DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no {@link Serializer} available for the given types.
+     */
+    public OffHeapCache(@Nonnull Class<? extends K> keyType, @Nonnull Class<? extends V> valueType) throws IllegalArgumentException {
+        this(keyType, valueType, OffHeapCache.<K>serializerOf(keyType), OffHeapCache.<V>serializerOf(valueType));
+    }
+
+    @Nonnull
+    public ByteCount getMaximumSize() {
+        synchronized (_lock) {
+            return _storage.getMaximumSize();
+        }
+    }
+
+    /**
+     * Sets the maximum number of bytes all values of this cache could occupy outside of the heap. The least recently used entries are evicted
+     * if the new maximum size is smaller than the currently used size.
+     */
+    public void setMaximumSize(@Nonnull ByteCount maximumSize) {
+        synchronized (_lock) {
+            _storage.setMaximumSize(maximumSize);
+            while (_last != null && _storage.getUsedSize().compareTo(_storage.getMaximumSize()) > 0) {
+                evict(_last);
+            }
+        }
+    }
+
+    /**
+     * @return number of bytes which are currently occupied by the values of this cache outside of the heap.
+     */
+    @Nonnull
+    public ByteCount getUsedSize() {
+        synchronized (_lock) {
+            return _storage.getUsedSize();
+        }
+    }
+
+    @Override
+    @Nullable
+    public ExpirationSweeper getExpirationSweeper() {
+        return _expirationSweeper;
+    }
+
+    @Override
+    public void setExpirationSweeper(@Nullable ExpirationSweeper expirationSweeper) {
+        synchronized (_lock) {
+            // noinspection ObjectEquality
+            if (_expirationSweeper != expirationSweeper) {
+                if (_expirationSweeper != null) {
+                    _expirationSweeper.unregister(this);
+                }
+                _expirationSweeper = expirationSweeper;
+                _registeredAtExpirationSweeper = false;
+            }
+        }
+    }
+
+    @Override
+    public String getId() {
+        return _id;
+    }
+
+    @Override
+    public void setId(String id) {
+        _id = id;
+    }
+
+    @Override
+    public Duration getMaximumLifetime() {
+        return _defaultExpireAfter;
+    }
+
+    @Override
+    public void setMaximumLifetime(@Nullable Duration maxLifetime) {
+        if (_listenerInvoker.beforeSetMaximumLifetime(this, maxLifetime)) {
+            _defaultExpireAfter = maxLifetime;
+            _listenerInvoker.afterSetMaximumLifetime(this, maxLifetime);
+        }
+    }
+
+    @Override
+    public Long getCapacity() {
+        return _capacity;
+    }
+
+    @Override
+    public void setCapacity(@Nullable Long capacity) {
+        synchronized (_lock) {
+            _capacity = capacity;
+            while (_last != null && capacity != null && _slots.size() > capacity) {
+                evict(_last);
+            }
+        }
+    }
+
+    @Override
+    public void setListeners(@Nullable Collection<CacheListener> listeners) {
+        _listenerInvoker.setListeners(listeners);
+    }
+
+    @Override
+    public Collection<CacheListener> getListeners() {
+        return _listenerInvoker.getListeners();
+    }
+
+    @Override
+    public void put(@Nullable K key, @Nullable V value) {
+        put(key, value, null);
+    }
+
+    @Override
+    public void put(@Nullable K key, @Nullable V value, @Nullable Duration expireAfter) {
+        checkKey(key);
+        checkValue(value);
+        final Fixed<V> fixed = new Fixed<>(value);
+        if (_listenerInvoker.beforePut(this, key, fixed, expireAfter)) {
+            putInternal(toBinaryKey(key), value, getTargetExpireAfterBasedOn(expireAfter));
+            _listenerInvoker.afterPut(this, key, fixed, expireAfter);
+        }
+    }
+
+    @Override
+    public V get(@Nullable K key) {
+        return get(key, null);
+    }
+
+    @Override
+    public V get(@Nullable K key, @Nullable ValueProducer<K, V> cacheValueProducer) {
+        return get(key, cacheValueProducer, null);
+    }
+
+    @Override
+    public V get(@Nullable K key, @Nullable ValueProducer<K, V> cacheValueProducer, @Nullable Duration expireAfter) {
+        checkKey(key);
+        final V result;
+        if (_listenerInvoker.beforeGet(this, key)) {
+            final BinaryKey binaryKey = toBinaryKey(key);
+            Value<V> value = getInternal(binaryKey);
+            if (value == null && cacheValueProducer != null) {
+                value = _producingStatistics.lazyValueFor(key, cacheValueProducer, nonBlocking);
+                final V producedValue = value.getValue();
+                checkValueAfterProducing(producedValue);
+                putInternal(binaryKey, producedValue, getTargetExpireAfterBasedOn(expireAfter));
+            }
+            result = value != null ? value.getValue() : null;
+            _listenerInvoker.afterGet(this, key, value);
+        } else {
+            result = null;
+        }
+        return result;
+    }
+
+    @Override
+    public Value<V> remove(@Nullable K key) {
+        checkKey(key);
+        final Value<V> result;
+        if (_listenerInvoker.beforeRemove(this, key)) {
+            final BinaryKey binaryKey = toBinaryKey(key);
+            final byte[] bytes;
+            final boolean removed;
+            synchronized (_lock) {
+                final Slot slot = _slots.get(binaryKey);
+                removed = slot != null;
+                if (removed) {
+                    bytes = read(slot);
+                    release(slot);
+                    _numberOfDrops++;
+                } else {
+                    bytes = null;
+                }
+            }
+            result = removed ? new Fixed<>(toValue(bytes)) : null;
+            _listenerInvoker.afterRemove(this, key, result);
+        } else {
+            result = null;
+        }
+        return result;
+    }
+
+    @Override
+    @Nonnull
+    public Map<K, V> getAll(@Nonnull Iterable<? extends K> keys) {
+        return getAll(keys, null, null);
+    }
+
+    @Override
+    @Nonnull
+    public Map<K, V> getAll(@Nonnull Iterable<? extends K> keys, @Nullable BulkValueProducer<K, V> producer, @Nullable Duration expireAfter) {
+        final Map<K, BinaryKey> requestedKeys = new LinkedHashMap<>();
+        for (final K key : keys) {
+            checkKey(key);
+            if (!requestedKeys.containsKey(key) && _listenerInvoker.beforeGet(this, key)) {
+                requestedKeys.put(key, toBinaryKey(key));
+            }
+        }
+        final Map<K, byte[]> hits = new HashMap<>();
+        synchronized (_lock) {
+            for (final Entry<K, BinaryKey> keyAndBinaryKey : requestedKeys.entrySet()) {
+                final Slot slot = hit(keyAndBinaryKey.getValue());
+                if (slot != null) {
+                    hits.put(keyAndBinaryKey.getKey(), read(slot));
+                }
+            }
+        }
+        final Map<K, Value<V>> values = new HashMap<>();
+        final List<K> missingKeys = new ArrayList<>();
+        for (final K key : requestedKeys.keySet()) {
+            if (hits.containsKey(key)) {
+                values.put(key, new Fixed<>(toValue(hits.get(key))));
+            } else {
+                missingKeys.add(key);
+            }
+        }
+        if (producer != null && !missingKeys.isEmpty()) {
+            final Map<K, V> produced = produceAll(missingKeys, producer);
+            final Map<BinaryKey, SerializationBuffer> toStore = new LinkedHashMap<>();
+            for (final K key : missingKeys) {
+                final V value = produced.get(key);
+                if (value != null) {
+                    checkValueAfterProducing(value);
+                    values.put(key, new Fixed<>(value));
+                    toStore.put(requestedKeys.get(key), toBytes(value));
+                }
+            }
+            storeAll(toStore, getTargetExpireAfterBasedOn(expireAfter));
+        }
+        final Map<K, V> result = new LinkedHashMap<>();
+        for (final K key : requestedKeys.keySet()) {
+            final Value<V> value = values.get(key);
+            if (value != null && value.getValue() != null) {
+                result.put(key, value.getValue());
+            }
+            _listenerInvoker.afterGet(this, key, value);
+        }
+        return result;
+    }
+
+    @Override
+    public void putAll(@Nonnull Map<? extends K, ? extends V> values) {
+        putAll(values, null);
+    }
+
+    @Override
+    public void putAll(@Nonnull Map<? extends K, ? extends V> values, @Nullable Duration expireAfter) {
+        final Map<K, Fixed<V>> approved = new LinkedHashMap<>();
+        final Map<BinaryKey, SerializationBuffer> toStore = new LinkedHashMap<>();
+        for (final Entry<? extends K, ? extends V> keyAndValue : values.entrySet()) {
+            final K key = keyAndValue.getKey();
+            final V value = keyAndValue.getValue();
+            checkKey(key);
+            checkValue(value);
+            final Fixed<V> fixed = new Fixed<>(value);
+            if (_listenerInvoker.beforePut(this, key, fixed, expireAfter)) {
+                approved.put(key, fixed);
+                toStore.put(toBinaryKey(key), toBytes(value));
+            }
+        }
+        storeAll(toStore, getTargetExpireAfterBasedOn(expireAfter));
+        for (final Entry<K, Fixed<V>> keyAndValue : approved.entrySet()) {
+            _listenerInvoker.afterPut(this, keyAndValue.getKey(), keyAndValue.getValue(), expireAfter);
+        }
+    }
+
+    protected void storeAll(@Nonnull Map<BinaryKey, SerializationBuffer> keysAndBuffers, @Nullable Long expireAfter) {
+        if (!keysAndBuffers.isEmpty()) {
+            synchronized (_lock) {
+                for (final Entry<BinaryKey, SerializationBuffer> keyAndBuffer : keysAndBuffers.entrySet()) {
+                    store(keyAndBuffer.getKey(), keyAndBuffer.getValue(), expireAfter);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void removeAll(@Nonnull Iterable<? extends K> keys) {
+        final Map<K, BinaryKey> approvedKeys = new LinkedHashMap<>();
+        for (final K key : keys) {
+            checkKey(key);
+            if (_listenerInvoker.beforeRemove(this, key)) {
+                approvedKeys.put(key, toBinaryKey(key));
+            }
+        }
+        final Map<K, byte[]> removed = new HashMap<>();
+        synchronized (_lock) {
+            for (final Entry<K, BinaryKey> keyAndBinaryKey : approvedKeys.entrySet()) {
+                final Slot slot = _slots.get(keyAndBinaryKey.getValue());
+                if (slot != null) {
+                    removed.put(keyAndBinaryKey.getKey(), read(slot));
+                    release(slot);
+                    _numberOfDrops++;
+                }
+            }
+        }
+        for (final K key : approvedKeys.keySet()) {
+            _listenerInvoker.afterRemove(this, key, removed.containsKey(key) ? new Fixed<>(toValue(removed.get(key))) : null);
+        }
+    }
+
+    @Override
+    public boolean contains(@Nullable K key) {
+        checkKey(key);
+        final BinaryKey binaryKey = toBinaryKey(key);
+        synchronized (_lock) {
+            final Slot slot = _slots.get(binaryKey);
+            return slot != null && !isOutDated(slot);
+        }
+    }
+
+    @Override
+    public void clear() {
+        if (_listenerInvoker.beforeClear(this)) {
+            synchronized (_lock) {
+                _slots.clear();
+                _expirations.clear();
+                _storage.clear();
+                _first = null;
+                _last = null;
+                resetStatistics();
+            }
+            _listenerInvoker.afterClear(this);
+        }
+    }
+
+    @Override
+    public void cleanUpLifetimeExpired() {
+        synchronized (_lock) {
+            final long now = currentTimeMillis();
+            Slot slot = _expirations.peek();
+            while (slot != null && slot.getExpireAt() <= now) {
+                _expirations.poll();
+                // noinspection ObjectEquality
+                if (_slots.get(slot.getKey()) == slot) {
+                    release(slot);
+                    _numberOfDrops++;
+                }
+                slot = _expirations.peek();
+            }
+        }
+    }
+
+    @Nullable
+    protected Value<V> getInternal(@Nonnull BinaryKey key) {
+        final byte[] bytes;
+        final boolean hit;
+        synchronized (_lock) {
+            final Slot slot = hit(key);
+            hit = slot != null;
+            bytes = hit ? read(slot) : null;
+        }
+        return hit ? new Fixed<>(toValue(bytes)) : null;
+    }
+
+    /**
+     * @return the slot of the given key after the hit was recorded or <code>null</code> if there is no slot or it is outdated.
+     */
+    @GuardedBy("_lock")
+    @Nullable
+    protected Slot hit(@Nonnull BinaryKey key) {
+        _numberOfRequests++;
+        Slot result = _slots.get(key);
+        if (result != null && isOutDated(result)) {
+            release(result);
+            _numberOfDrops++;
+            result = null;
+        }
+        if (result != null) {
+            _numberOfHits++;
+            moveToFirst(result);
+        }
+        return result;
+    }
+
+    protected void putInternal(@Nonnull BinaryKey key, @Nullable V value, @Nullable Long expireAfter) {
+        final SerializationBuffer buffer = toBytes(value);
+        synchronized (_lock) {
+            store(key, buffer, expireAfter);
+        }
+    }
+
+    @GuardedBy("_lock")
+    protected void store(@Nonnull BinaryKey key, @Nullable SerializationBuffer buffer, @Nullable Long expireAfter) {
+        final int length = buffer != null ? buffer.size() : NULL_VALUE_LENGTH;
+        final Slot oldSlot = _slots.get(key);
+        if (oldSlot != null) {
+            release(oldSlot);
+        }
+        if (buffer == null || _storage.couldEverHold(length)) {
+            makeSpaceFor(length);
+            final int[] blocks = buffer != null ? _storage.write(buffer.getBuffer(), length) : NO_BLOCKS;
+            final Slot slot = new Slot(key, expireAfter != null ? currentTimeMillis() + expireAfter : NO_EXPIRE, blocks, length);
+            _slots.put(key, slot);
+            addFirst(slot);
+            if (slot.getExpireAt() != NO_EXPIRE) {
+                trackExpirationOf(slot);
+            }
+        } else {
+            // The value is larger than the whole cache. We could not cache it ...
+            _numberOfDrops++;
+        }
+    }
+
+    @GuardedBy("_lock")
+    protected void trackExpirationOf(@Nonnull Slot slot) {
+        _expirations.add(slot);
+        if (_expirations.size() > 2 * _slots.size() + 64) {
+            // Too many released slots of overwritten or removed keys, rebuild the queue ...
+            _expirations.clear();
+            for (final Slot candidate : _slots.values()) {
+                if (candidate.getExpireAt() != NO_EXPIRE) {
+                    _expirations.add(candidate);
+                }
+            }
+        }
+        if (!_registeredAtExpirationSweeper && _expirationSweeper != null) {
+            _expirationSweeper.register(this);
+            _registeredAtExpirationSweeper = true;
+        }
+    }
+
+    protected void makeSpaceFor(int length) {
+        if (isSpaceRequiredFor(length)) {
+            cleanUpLifetimeExpired();
+            while (_last != null && isSpaceRequiredFor(length)) {
+                evict(_last);
+            }
+        }
+    }
+
+    protected boolean isSpaceRequiredFor(int length) {
+        final Long capacity = _capacity;
+        return (capacity != null && _slots.size() >= capacity) || (length > 0 && !_storage.hasSpaceFor(length));
+    }
+
+    protected void evict(@Nonnull Slot slot) {
+        release(slot);
+        _numberOfDrops++;
+    }
+
+    @Nullable
+    protected byte[] read(@Nonnull Slot slot) {
+        final int length = slot.getLength();
+        return length != NULL_VALUE_LENGTH ? _storage.read(slot.getBlocks(), length) : null;
+    }
+
+    protected void release(@Nonnull Slot slot) {
+        _slots.remove(slot.getKey());
+        unlink(slot);
+        _storage.free(slot.getBlocks());
+    }
+
+    protected void addFirst(@Nonnull Slot slot) {
+        slot.setPrevious(null);
+        slot.setNext(_first);
+        if (_first != null) {
+            _first.setPrevious(slot);
+        }
+        _first = slot;
+        if (_last == null) {
+            _last = slot;
+        }
+    }
+
+    protected void moveToFirst(@Nonnull Slot slot) {
+        // noinspection ObjectEquality
+        if (_first != slot) {
+            unlink(slot);
+            addFirst(slot);
+        }
+    }
+
+    protected void unlink(@Nonnull Slot slot) {
+        final Slot previous = slot.getPrevious();
+        final Slot next = slot.getNext();
+        if (previous != null) {
+            previous.setNext(next);
+        } else {
+            _first = next;
+        }
+        if (next != null) {
+            next.setPrevious(previous);
+        } else {
+            _last = previous;
+        }
+        slot.setPrevious(null);
+        slot.setNext(null);
+    }
+
+    protected boolean isOutDated(@Nonnull Slot slot) {
+        return slot.getExpireAt() <= currentTimeMillis();
+    }
+
+    @Nullable
+    protected Long getTargetExpireAfterBasedOn(@Nullable Duration expireAfter) {
+        final Long targetExpireAfter;
+        if (expireAfter != null) {
+            targetExpireAfter = expireAfter.in(MILLISECONDS);
+        } else {
+            final Duration defaultExpireAfter = _defaultExpireAfter;
+            targetExpireAfter = defaultExpireAfter != null ? defaultExpireAfter.in(MILLISECONDS) : null;
+        }
+        return targetExpireAfter;
+    }
+
+    @Override
+    public Long size() {
+        synchronized (_lock) {
+            return (long) _slots.size();
+        }
+    }
+
+    @Override
+    public Long getNumberOfRequests() {
+        return _numberOfRequests;
+    }
+
+    @Override
+    public Long getNumberOfHits() {
+        return _numberOfHits;
+    }
+
+    @Override
+    public Long getNumberOfDrops() {
+        return _numberOfDrops;
+    }
+
+    @Override
+    public Long getNumberOfProductions() {
+        return _producingStatistics.getNumberOfProductions();
+    }
+
+    @Override
+    public Duration getAverageProducingDuration() {
+        return _producingStatistics.getAverageProducingDuration();
+    }
+
+    @Override
+    public Duration getMaximumProducingDuration() {
+        return _producingStatistics.getMaximumProducingDuration();
+    }
+
+    @Override
+    public Long getNumberOfCoalescedRequests() {
+        return _producingStatistics.getNumberOfCoalescedRequests();
+    }
+
+    @Override
+    public Date getCreated() {
+        return new Date(_createdTimestamp);
+    }
+
+    @Override
+    public void resetStatistics() {
+        if (_listenerInvoker.beforeResetStatistics(this)) {
+            synchronized (_lock) {
+                _numberOfDrops = 0;
+                _numberOfHits = 0;
+                _numberOfRequests = 0;
+            }
+            _producingStatistics.reset();
+            _listenerInvoker.afterResetStatistics(this);
+        }
+    }
+
+    @Override
+    public CloseableIterator<K> iterator() {
+        final List<BinaryKey> binaryKeys;
+        synchronized (_lock) {
+            binaryKeys = new ArrayList<>(_slots.keySet());
+        }
+        final List<K> keys = new ArrayList<>(binaryKeys.size());
+        for (final BinaryKey binaryKey : binaryKeys) {
+            keys.add(toKey(binaryKey));
+        }
+        return asCloseableIterator(keys.iterator());
+    }
+
+    @Override
+    public void close() throws Exception {
+        synchronized (_lock) {
+            if (_expirationSweeper != null) {
+                _expirationSweeper.unregister(this);
+            }
+            _registeredAtExpirationSweeper = false;
+        }
+        clear();
+    }
+
+    /**
+     * The index entry of a value which remains on the heap. It only holds what is required to find, expire and evict the value.
+     */
+    protected static class Slot implements Comparable<Slot> {
+
+        private final BinaryKey _key;
+        private final long _expireAt;
+        private final int[] _blocks;
+        private final int _length;
+
+        private Slot _previous;
+        private Slot _next;
+
+        public Slot(@Nonnull BinaryKey key, long expireAt, @Nonnull int[] blocks, int length) {
+            _key = key;
+            _expireAt = expireAt;
+            _blocks = blocks;
+            _length = length;
+        }
+
+        @Nonnull
+        public BinaryKey getKey() {
+            return _key;
+        }
+
+        /**
+         * @return the time this slot expires at or {@link Long#MAX_VALUE} if it never expires.
+         */
+        public long getExpireAt() {
+            return _expireAt;
+        }
+
+        @Nonnull
+        public int[] getBlocks() {
+            return _blocks;
+        }
+
+        /**
+         * @return the number of bytes of the serialized value or <code>-1</code> if the value is <code>null</code>.
+         */
+        public int getLength() {
+            return _length;
+        }
+
+        @Nullable
+        public Slot getPrevious() {
+            return _previous;
+        }
+
+        public void setPrevious(@Nullable Slot previous) {
+            _previous = previous;
+        }
+
+        @Nullable
+        public Slot getNext() {
+            return _next;
+        }
+
+        public void setNext(@Nullable Slot next) {
+            _next = next;
+        }
+
+        @Override
+        public int compareTo(@Nonnull Slot other) {
+            return _expireAt < other._expireAt ? -1 : (_expireAt == other._expireAt ? 0 : 1);
+        }
+
+        @Override
+        public String toString() {
+            return _key + "=>" + (_length != NULL_VALUE_LENGTH ? _length + " bytes" : "null");
+        }
+    }
+
+}
@@ -0,0 +1,305 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.echocat.jomon.runtime.util.ByteCount;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static org.echocat.jomon.runtime.util.ByteCount.byteCountOf;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Stores byte sequences outside of the java heap. The memory is requested in slabs from a {@link SlabFactory} and split into blocks of
+ * the same size. A stored byte sequence occupies the blocks referenced by the returned block numbers, so there is no fragmentation and a
+ * freed block could be reused by every other byte sequence.</p>
+ *
+ * <p>Slabs are only requested if all already existing blocks are in use and are only released by {@link #clear()}.</p>
+ */
+@NotThreadSafe
+public class OffHeapStorage {
+
+    public static final ByteCount DEFAULT_BLOCK_SIZE = byteCountOf("256B");
+    public static final ByteCount DEFAULT_SLAB_SIZE = byteCountOf("1M");
+
+    private static final int[] NO_BLOCKS = new int[0];
+
+    private final SlabFactory _slabFactory;
+    private final int _blockSize;
+    private final int _blocksPerSlab;
+    private final List<ByteBuffer> _slabs = new ArrayList<>();
+
+    private int[] _freeBlocks = new int[64];
+    private int _numberOfFreeBlocks;
+    private int _numberOfCreatedBlocks;
+    private int _numberOfUsedBlocks;
+    private int _maximumNumberOfBlocks;
+
+    public OffHeapStorage(@Nonnull SlabFactory slabFactory, @Nonnull ByteCount blockSize, @Nonnull ByteCount slabSize, @Nonnull ByteCount maximumSize) {
+        final long blockSizeInBytes = blockSize.toByteCount();
+        final long slabSizeInBytes = slabSize.toByteCount();
+        if (blockSizeInBytes <= 0 || slabSizeInBytes < blockSizeInBytes || slabSizeInBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Illegal combination of blockSize " + blockSize + " and slabSize " + slabSize + ".");
+        }
+        _slabFactory = slabFactory;
+        _blockSize = (int) blockSizeInBytes;
+        _blocksPerSlab = (int) (slabSizeInBytes / blockSizeInBytes);
+        setMaximumSize(maximumSize);
+    }
+
+    public OffHeapStorage(@Nonnull ByteCount maximumSize) {
+        this(new DirectSlabFactory(), DEFAULT_BLOCK_SIZE, DEFAULT_SLAB_SIZE, maximumSize);
+    }
+
+    /**
+     * Decreasing the maximum size will not release already used blocks. Until they are {@link #free(int[]) freed} {@link #getUsedSize()} could
+     * be larger than the maximum size.
+     */
+    public void setMaximumSize(@Nonnull ByteCount maximumSize) {
+        _maximumNumberOfBlocks = (int) Math.min(maximumSize.toByteCount() / _blockSize, Integer.MAX_VALUE);
+    }
+
+    @Nonnull
+    public ByteCount getMaximumSize() {
+        return byteCountOf((long) _maximumNumberOfBlocks * _blockSize);
+    }
+
+    @Nonnull
+    public ByteCount getUsedSize() {
+        return byteCountOf((long) _numberOfUsedBlocks * _blockSize);
+    }
+
+    @Nonnull
+    public ByteCount getAllocatedSize() {
+        return byteCountOf((long) _slabs.size() * _blocksPerSlab * _blockSize);
+    }
+
+    @Nonnegative
+    public int getBlockSize() {
+        return _blockSize;
+    }
+
+    /**
+     * @return how many blocks are required to store the given number of bytes.
+     */
+    @Nonnegative
+    public int getNumberOfBlocksFor(@Nonnegative int numberOfBytes) {
+        return (numberOfBytes + _blockSize - 1) / _blockSize;
+    }
+
+    /**
+     * @return <code>true</code> if the given number of bytes could be stored without freeing any other blocks.
+     */
+    public boolean hasSpaceFor(@Nonnegative int numberOfBytes) {
+        return _numberOfUsedBlocks + getNumberOfBlocksFor(numberOfBytes) <= _maximumNumberOfBlocks;
+    }
+
+    /**
+     * @return <code>true</code> if the given number of bytes could ever be stored in this storage.
+     */
+    public boolean couldEverHold(@Nonnegative int numberOfBytes) {
+        return getNumberOfBlocksFor(numberOfBytes) <= _maximumNumberOfBlocks;
+    }
+
+    /**
+     * @return the blocks which holds now the given bytes or <code>null</code> if there is not enough space left.
+     */
+    @Nullable
+    public int[] write(@Nonnull byte[] bytes, @Nonnegative int length) {
+        final int[] result;
+        if (length == 0) {
+            result = NO_BLOCKS;
+        } else if (hasSpaceFor(length)) {
+            result = new int[getNumberOfBlocksFor(length)];
+            int numberOfAllocatedBlocks = 0;
+            try {
+                int offset = 0;
+                for (int i = 0; i < result.length; i++) {
+                    final int block = allocateBlock();
+                    result[i] = block;
+                    numberOfAllocatedBlocks++;
+                    final int bytesOfBlock = Math.min(_blockSize, length - offset);
+                    final ByteBuffer slab = slabOf(block);
+                    slab.position(positionOf(block));
+                    slab.put(bytes, offset, bytesOfBlock);
+                    offset += bytesOfBlock;
+                }
+            } finally {
+                if (numberOfAllocatedBlocks < result.length) {
+                    // Creating a slab failed - give back everything that was already allocated for this write ...
+                    free(Arrays.copyOf(result, numberOfAllocatedBlocks));
+                }
+            }
+        } else {
+            result = null;
+        }
+        return result;
+    }
+
+    @Nonnull
+    public byte[] read(@Nonnull int[] blocks, @Nonnegative int length) {
+        final byte[] result = new byte[length];
+        int offset = 0;
+        for (final int block : blocks) {
+            final int bytesOfBlock = Math.min(_blockSize, length - offset);
+            final ByteBuffer slab = slabOf(block);
+            slab.position(positionOf(block));
+            slab.get(result, offset, bytesOfBlock);
+            offset += bytesOfBlock;
+        }
+        return result;
+    }
+
+    public void free(@Nonnull int[] blocks) {
+        for (final int block : blocks) {
+            if (_numberOfFreeBlocks == _freeBlocks.length) {
+                final int[] freeBlocks = new int[_freeBlocks.length * 2];
+                System.arraycopy(_freeBlocks, 0, freeBlocks, 0, _numberOfFreeBlocks);
+                _freeBlocks = freeBlocks;
+            }
+            _freeBlocks[_numberOfFreeBlocks++] = block;
+        }
+        _numberOfUsedBlocks -= blocks.length;
+    }
+
+    /**
+     * Frees all blocks and releases all slabs.
+     */
+    public void clear() {
+        for (final ByteBuffer slab : _slabs) {
+            _slabFactory.release(slab);
+        }
+        _slabs.clear();
+        _freeBlocks = new int[64];
+        _numberOfFreeBlocks = 0;
+        _numberOfCreatedBlocks = 0;
+        _numberOfUsedBlocks = 0;
+    }
+
+    protected int allocateBlock() {
+        final int result;
+        if (_numberOfFreeBlocks > 0) {
+            result = _freeBlocks[--_numberOfFreeBlocks];
+        } else {
+            if (_numberOfCreatedBlocks == _slabs.size() * _blocksPerSlab) {
+                try {
+                    _slabs.add(_slabFactory.create(_blocksPerSlab * _blockSize));
+                } catch (final IOException e) {
+                    throw new IllegalStateException("Could not create a new slab.", e);
+                }
+            }
+            result = _numberOfCreatedBlocks++;
+        }
+        _numberOfUsedBlocks++;
+        return result;
+    }
+
+    @Nonnull
+    protected ByteBuffer slabOf(@Nonnegative int block) {
+        return _slabs.get(block / _blocksPerSlab);
+    }
+
+    @Nonnegative
+    protected int positionOf(@Nonnegative int block) {
+        return (block % _blocksPerSlab) * _blockSize;
+    }
+
+    public interface SlabFactory {
+
+        @Nonnull
+        public ByteBuffer create(@Nonnegative int size) throws IOException;
+
+        public void release(@Nonnull ByteBuffer slab);
+
+    }
+
+    /**
+     * Creates slabs using {@link ByteBuffer#allocateDirect(int)}. The memory is released by the garbage collector if a slab is no longer referenced.
+     */
+    @ThreadSafe
+    public static class DirectSlabFactory implements SlabFactory {
+
+        @Nonnull
+        @Override
+        public ByteBuffer create(@Nonnegative int size) {
+            return ByteBuffer.allocateDirect(size);
+        }
+
+        @Override
+        public void release(@Nonnull ByteBuffer slab) {}
+
+    }
+
+    /**
+     * Creates slabs as memory mapped temporary files inside of the given directory. This is useful if the slabs should not count against the
+     * limit of direct memory (<code>-XX:MaxDirectMemorySize</code>) and could be paged out by the operating system.
+     */
+    @ThreadSafe
+    public static class MemoryMappedSlabFactory implements SlabFactory {
+
+        private final File _directory;
+
+        public MemoryMappedSlabFactory(@Nullable File directory) {
+            _directory = directory;
+        }
+
+        public MemoryMappedSlabFactory() {
+            this(null);
+        }
+
+        @Nullable
+        public File getDirectory() {
+            return _directory;
+        }
+
+        @Nonnull
+        @Override
+        public ByteBuffer create(@Nonnegative int size) throws IOException {
+            final File file = File.createTempFile("slab", ".tmp", _directory);
+            final MappedByteBuffer result;
+            try (final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.setLength(size);
+                try (final FileChannel channel = randomAccessFile.getChannel()) {
+                    result = channel.map(READ_WRITE, 0, size);
+                }
+            } finally {
+                // The mapping stays valid after the file was deleted, on systems which does not support this it will be deleted on exit.
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void release(@Nonnull ByteBuffer slab) {}
+
+    }
+
+}
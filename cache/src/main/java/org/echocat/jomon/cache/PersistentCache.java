@@ -0,0 +1,1307 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.echocat.jomon.runtime.io.Serializer;
+import org.echocat.jomon.runtime.io.UncheckedIOException;
+import org.echocat.jomon.runtime.iterators.CloseableIterator;
+import org.echocat.jomon.runtime.util.ByteCount;
+import org.echocat.jomon.runtime.util.Duration;
+import org.echocat.jomon.runtime.util.Value;
+import org.echocat.jomon.runtime.util.Value.Fixed;
+import org.echocat.jomon.runtime.util.ValueProducer;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+
+import static java.lang.System.currentTimeMillis;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.echocat.jomon.cache.CacheUtils.produceAll;
+import static org.echocat.jomon.runtime.CollectionUtils.asCloseableIterator;
+import static org.echocat.jomon.runtime.util.ByteCount.byteCountOf;
+import static org.echocat.jomon.runtime.util.ProducingType.nonBlocking;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Cache which stores its entries serialized in memory mapped files of a directory, so the entries survive a restart of the JVM. Use it as
+ * the last delegate of a {@link CombinedCache} to reload warm data lazily after a restart.</p>
+ *
+ * <h1>Storage</h1>
+ * <p>Every modification is appended as a record to the current segment file. A segment file that is full is never modified again. Every record
+ * carries a checksum, so a record which was only partially written while the process or the system crashed is detected and ignored while the
+ * directory is opened again.</p>
+ *
+ * <p>The on heap index only holds the serialized keys and the location of their records, values are read from the segment files if they are
+ * requested. If the ratio of outdated records of a segment reaches the {@link #setCompactionThreshold(double) compaction threshold} its still
+ * valid records are copied to the current segment and the segment file is deleted.</p>
+ *
+ * <p>Only one instance could use a directory at the same time. Unlike other caches {@link #close()} keeps all entries, use {@link #clear()}
+ * to remove them.</p>
+ */
+@ThreadSafe
+public class PersistentCache<K, V> extends SerializingCacheSupport<K, V> implements ProducingStatisticsEnabledCache<K, V>, LimitedCache<K, V>, ClearableCache<K, V>, ListenerEnabledCache<K, V>, IdentifiedCache<K, V>, KeysEnabledCache<K, V>, ExpirationSweeperEnabledCache<K, V>, BulkEnabledCache<K, V>, AutoCloseable {
+
+    public static final ByteCount DEFAULT_SEGMENT_SIZE = byteCountOf("16M");
+    public static final double DEFAULT_COMPACTION_THRESHOLD = 0.5d;
+
+    protected static final String SEGMENT_SUFFIX = ".segment";
+    protected static final String LOCK_FILE_NAME = ".lock";
+
+    protected static final byte PUT = 1;
+    protected static final byte REMOVE = 2;
+    protected static final long NO_EXPIRE = 0;
+    /**
+     * <code>recordLength</code> (int), <code>checksum</code> (int), <code>type</code> (byte), <code>expireAt</code> (long),
+     * <code>keyLength</code> (int) and <code>valueLength</code> (int) followed by the bytes of the key and the value.
+     */
+    protected static final int HEADER_SIZE = 4 + 4 + 1 + 8 + 4 + 4;
+    protected static final int CHECKSUM_OFFSET = 4;
+
+    private final Object _lock = new Object();
+    private final CacheListenerInvoker _listenerInvoker = new CacheListenerInvoker();
+    private final ProducingStatistics _producingStatistics = new ProducingStatistics();
+    private final long _createdTimestamp = currentTimeMillis();
+    private final File _directory;
+    private final int _segmentSize;
+    @GuardedBy("_lock")
+    private final NavigableMap<Long, Segment> _segments = new TreeMap<>();
+    /**
+     * In access order, the first entry is the least recently used one.
+     */
+    @GuardedBy("_lock")
+    private final LinkedHashMap<BinaryKey, Location> _index = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * The expiration of every key which expires, the {@link #_expirations queue} could contain outdated elements which are skipped.
+     */
+    @GuardedBy("_lock")
+    private final Map<BinaryKey, Long> _keyToExpireAt = new HashMap<>();
+    @GuardedBy("_lock")
+    private final PriorityQueue<Expiration> _expirations = new PriorityQueue<>();
+    private final RandomAccessFile _lockFile;
+    private final FileLock _fileLock;
+
+    private String _id;
+    private volatile Long _capacity;
+    private volatile Duration _defaultExpireAfter;
+    private volatile double _compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    private volatile boolean _synchronousWrites;
+    private volatile ExpirationSweeper _expirationSweeper;
+    @GuardedBy("_lock")
+    private Segment _activeSegment;
+    @GuardedBy("_lock")
+    private byte[] _recordBuffer = new byte[1024];
+    @GuardedBy("_lock")
+    private boolean _closed;
+    @GuardedBy("_lock")
+    private boolean _batching;
+
+    private volatile long _numberOfRequests;
+    private volatile long _numberOfHits;
+    private volatile long _numberOfDrops;
+
+    /**
+     * @throws IOException if the given directory could not be opened or is already used by another instance.
+     */
+    public PersistentCache(@Nonnull Class<? extends K> keyType, @Nonnull Class<? extends V> valueType, @Nonnull Serializer<K> keySerializer, @Nonnull Serializer<V> valueSerializer, @Nonnull File directory, @Nonnull ByteCount segmentSize) throws IOException {
+        super(keyType, valueType, keySerializer, valueSerializer);
+        final long segmentSizeInBytes = segmentSize.toByteCount();
+        if (segmentSizeInBytes <= HEADER_SIZE || segmentSizeInBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Illegal segmentSize: " + segmentSize);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory " + directory + ".");
+        }
+        _directory = directory;
+        _segmentSize = (int) segmentSizeInBytes;
+        _lockFile = new RandomAccessFile(new File(directory, LOCK_FILE_NAME), "rw");
+        boolean success = false;
+        try {
+            _fileLock = tryLock(_lockFile);
+            if (_fileLock == null) {
+                throw new IOException("The directory " + directory + " is already used by another cache.");
+            }
+            synchronized (_lock) {
+                load();
+            }
+            success = true;
+        } finally {
+            if (!success) {
+                _lockFile.close();
+            }
+        }
+    }
+
+    /**
+     * @throws IOException if the given directory could not be opened or is already used by another instance.
+     * @throws IllegalArgumentException if there is no {@link Serializer} available for the given types.
+     */
+    public PersistentCache(@Nonnull Class<? extends K> keyType, @Nonnull Class<? extends V> valueType, @Nonnull File directory) throws IOException, IllegalArgumentException {
+        this(keyType, valueType, PersistentCache.<K>serializerOf(keyType), PersistentCache.<V>serializerOf(valueType), directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    @Nonnull
+    public File getDirectory() {
+        return _directory;
+    }
+
+    public double getCompactionThreshold() {
+        return _compactionThreshold;
+    }
+
+    /**
+     * @param compactionThreshold ratio of outdated bytes of a segment which will cause a compaction of this segment.
+     */
+    public void setCompactionThreshold(double compactionThreshold) {
+        if (compactionThreshold <= 0 || compactionThreshold > 1) {
+            throw new IllegalArgumentException("The compactionThreshold has to be greater than 0 and not greater than 1 but was: " + compactionThreshold);
+        }
+        _compactionThreshold = compactionThreshold;
+    }
+
+    public boolean isSynchronousWrites() {
+        return _synchronousWrites;
+    }
+
+    /**
+     * If enabled every modification is forced to the storage device before the call returns. Otherwise the operating system decides when the
+     * modifications are written. In this case modifications could get lost if the system (not only the process) crashes.
+     */
+    public void setSynchronousWrites(boolean synchronousWrites) {
+        _synchronousWrites = synchronousWrites;
+    }
+
+    @Override
+    @Nullable
+    public ExpirationSweeper getExpirationSweeper() {
+        return _expirationSweeper;
+    }
+
+    @Override
+    public void setExpirationSweeper(@Nullable ExpirationSweeper expirationSweeper) {
+        synchronized (_lock) {
+            final ExpirationSweeper oldExpirationSweeper = _expirationSweeper;
+            // noinspection ObjectEquality
+            if (oldExpirationSweeper != expirationSweeper) {
+                if (oldExpirationSweeper != null) {
+                    oldExpirationSweeper.unregister(this);
+                }
+                _expirationSweeper = expirationSweeper;
+                if (expirationSweeper != null && !_closed) {
+                    expirationSweeper.register(this);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String getId() {
+        return _id;
+    }
+
+    @Override
+    public void setId(String id) {
+        _id = id;
+    }
+
+    @Override
+    public Duration getMaximumLifetime() {
+        return _defaultExpireAfter;
+    }
+
+    @Override
+    public void setMaximumLifetime(@Nullable Duration maxLifetime) {
+        if (_listenerInvoker.beforeSetMaximumLifetime(this, maxLifetime)) {
+            _defaultExpireAfter = maxLifetime;
+            _listenerInvoker.afterSetMaximumLifetime(this, maxLifetime);
+        }
+    }
+
+    @Override
+    public Long getCapacity() {
+        return _capacity;
+    }
+
+    @Override
+    public void setCapacity(@Nullable Long capacity) {
+        synchronized (_lock) {
+            _capacity = capacity;
+            evictIfRequired();
+        }
+    }
+
+    @Override
+    public void setListeners(@Nullable Collection<CacheListener> listeners) {
+        _listenerInvoker.setListeners(listeners);
+    }
+
+    @Override
+    public Collection<CacheListener> getListeners() {
+        return _listenerInvoker.getListeners();
+    }
+
+    @Override
+    public void put(@Nullable K key, @Nullable V value) {
+        put(key, value, null);
+    }
+
+    @Override
+    public void put(@Nullable K key, @Nullable V value, @Nullable Duration expireAfter) {
+        checkKey(key);
+        checkValue(value);
+        final Fixed<V> fixed = new Fixed<>(value);
+        if (_listenerInvoker.beforePut(this, key, fixed, expireAfter)) {
+            putInternal(toBinaryKey(key), value, getTargetExpireAfterBasedOn(expireAfter));
+            _listenerInvoker.afterPut(this, key, fixed, expireAfter);
+        }
+    }
+
+    @Override
+    public V get(@Nullable K key) {
+        return get(key, null);
+    }
+
+    @Override
+    public V get(@Nullable K key, @Nullable ValueProducer<K, V> cacheValueProducer) {
+        return get(key, cacheValueProducer, null);
+    }
+
+    @Override
+    public V get(@Nullable K key, @Nullable ValueProducer<K, V> cacheValueProducer, @Nullable Duration expireAfter) {
+        checkKey(key);
+        final V result;
+        if (_listenerInvoker.beforeGet(this, key)) {
+            final BinaryKey binaryKey = toBinaryKey(key);
+            Value<V> value = getInternal(binaryKey);
+            if (value == null && cacheValueProducer != null) {
+                value = _producingStatistics.lazyValueFor(key, cacheValueProducer, nonBlocking);
+                final V producedValue = value.getValue();
+                checkValueAfterProducing(producedValue);
+                putInternal(binaryKey, producedValue, getTargetExpireAfterBasedOn(expireAfter));
+            }
+            result = value != null ? value.getValue() : null;
+            _listenerInvoker.afterGet(this, key, value);
+        } else {
+            result = null;
+        }
+        return result;
+    }
+
+    @Override
+    public Value<V> remove(@Nullable K key) {
+        checkKey(key);
+        final Value<V> result;
+        if (_listenerInvoker.beforeRemove(this, key)) {
+            final BinaryKey binaryKey = toBinaryKey(key);
+            final byte[] bytes;
+            final boolean removed;
+            synchronized (_lock) {
+                final Location location = _index.get(binaryKey);
+                removed = location != null;
+                if (removed) {
+                    bytes = readValueOf(location);
+                    removeInternal(binaryKey);
+                    _numberOfDrops++;
+                    compactIfRequired();
+                } else {
+                    bytes = null;
+                }
+            }
+            result = removed ? new Fixed<>(toValue(bytes)) : null;
+            _listenerInvoker.afterRemove(this, key, result);
+        } else {
+            result = null;
+        }
+        return result;
+    }
+
+    @Override
+    @Nonnull
+    public Map<K, V> getAll(@Nonnull Iterable<? extends K> keys) {
+        return getAll(keys, null, null);
+    }
+
+    @Override
+    @Nonnull
+    public Map<K, V> getAll(@Nonnull Iterable<? extends K> keys, @Nullable BulkValueProducer<K, V> producer, @Nullable Duration expireAfter) {
+        final Map<K, BinaryKey> requestedKeys = new LinkedHashMap<>();
+        for (final K key : keys) {
+            checkKey(key);
+            if (!requestedKeys.containsKey(key) && _listenerInvoker.beforeGet(this, key)) {
+                requestedKeys.put(key, toBinaryKey(key));
+            }
+        }
+        final Map<K, byte[]> hits = new HashMap<>();
+        synchronized (_lock) {
+            assertNotClosed();
+            beginBatch();
+            try {
+                for (final Entry<K, BinaryKey> keyAndBinaryKey : requestedKeys.entrySet()) {
+                    final Location location = hit(keyAndBinaryKey.getValue());
+                    if (location != null) {
+                        hits.put(keyAndBinaryKey.getKey(), readValueOf(location));
+                    }
+                }
+            } finally {
+                endBatch();
+            }
+        }
+        final Map<K, Value<V>> values = new HashMap<>();
+        final List<K> missingKeys = new ArrayList<>();
+        for (final K key : requestedKeys.keySet()) {
+            if (hits.containsKey(key)) {
+                values.put(key, new Fixed<>(toValue(hits.get(key))));
+            } else {
+                missingKeys.add(key);
+            }
+        }
+        if (producer != null && !missingKeys.isEmpty()) {
+            final Map<K, V> produced = produceAll(missingKeys, producer);
+            final Map<BinaryKey, SerializationBuffer> toStore = new LinkedHashMap<>();
+            for (final K key : missingKeys) {
+                final V value = produced.get(key);
+                if (value != null) {
+                    checkValueAfterProducing(value);
+                    values.put(key, new Fixed<>(value));
+                    toStore.put(requestedKeys.get(key), toBytes(value));
+                }
+            }
+            storeAll(toStore, getTargetExpireAfterBasedOn(expireAfter));
+        }
+        final Map<K, V> result = new LinkedHashMap<>();
+        for (final K key : requestedKeys.keySet()) {
+            final Value<V> value = values.get(key);
+            if (value != null && value.getValue() != null) {
+                result.put(key, value.getValue());
+            }
+            _listenerInvoker.afterGet(this, key, value);
+        }
+        return result;
+    }
+
+    @Override
+    public void putAll(@Nonnull Map<? extends K, ? extends V> values) {
+        putAll(values, null);
+    }
+
+    @Override
+    public void putAll(@Nonnull Map<? extends K, ? extends V> values, @Nullable Duration expireAfter) {
+        final Map<K, Fixed<V>> approved = new LinkedHashMap<>();
+        final Map<BinaryKey, SerializationBuffer> toStore = new LinkedHashMap<>();
+        for (final Entry<? extends K, ? extends V> keyAndValue : values.entrySet()) {
+            final K key = keyAndValue.getKey();
+            final V value = keyAndValue.getValue();
+            checkKey(key);
+            checkValue(value);
+            final Fixed<V> fixed = new Fixed<>(value);
+            if (_listenerInvoker.beforePut(this, key, fixed, expireAfter)) {
+                approved.put(key, fixed);
+                toStore.put(toBinaryKey(key), toBytes(value));
+            }
+        }
+        storeAll(toStore, getTargetExpireAfterBasedOn(expireAfter));
+        for (final Entry<K, Fixed<V>> keyAndValue : approved.entrySet()) {
+            _listenerInvoker.afterPut(this, keyAndValue.getKey(), keyAndValue.getValue(), expireAfter);
+        }
+    }
+
+    @Override
+    public void removeAll(@Nonnull Iterable<? extends K> keys) {
+        final Map<K, BinaryKey> approvedKeys = new LinkedHashMap<>();
+        for (final K key : keys) {
+            checkKey(key);
+            if (_listenerInvoker.beforeRemove(this, key)) {
+                approvedKeys.put(key, toBinaryKey(key));
+            }
+        }
+        final Map<K, byte[]> removed = new HashMap<>();
+        synchronized (_lock) {
+            assertNotClosed();
+            beginBatch();
+            try {
+                for (final Entry<K, BinaryKey> keyAndBinaryKey : approvedKeys.entrySet()) {
+                    final Location location = _index.get(keyAndBinaryKey.getValue());
+                    if (location != null) {
+                        removed.put(keyAndBinaryKey.getKey(), readValueOf(location));
+                        removeInternal(keyAndBinaryKey.getValue());
+                        _numberOfDrops++;
+                    }
+                }
+            } finally {
+                endBatch();
+            }
+        }
+        for (final K key : approvedKeys.keySet()) {
+            _listenerInvoker.afterRemove(this, key, removed.containsKey(key) ? new Fixed<>(toValue(removed.get(key))) : null);
+        }
+    }
+
+    @Override
+    public boolean contains(@Nullable K key) {
+        checkKey(key);
+        final BinaryKey binaryKey = toBinaryKey(key);
+        synchronized (_lock) {
+            final Location location = _index.get(binaryKey);
+            return location != null && !location.isOutDated(currentTimeMillis());
+        }
+    }
+
+    @Override
+    public void clear() {
+        if (_listenerInvoker.beforeClear(this)) {
+            synchronized (_lock) {
+                assertNotClosed();
+                final long nextNumber = _activeSegment.getNumber() + 1;
+                for (final Segment segment : _segments.values()) {
+                    segment.delete();
+                }
+                _segments.clear();
+                _index.clear();
+                _keyToExpireAt.clear();
+                _expirations.clear();
+                _activeSegment = createSegment(nextNumber);
+                resetStatistics();
+            }
+            _listenerInvoker.afterClear(this);
+        }
+    }
+
+    /**
+     * Only the keys which expired since the last call are visited.
+     */
+    @Override
+    public void cleanUpLifetimeExpired() {
+        synchronized (_lock) {
+            if (!_closed) {
+                final long now = currentTimeMillis();
+                Expiration expiration = _expirations.peek();
+                while (expiration != null && expiration.getExpireAt() <= now) {
+                    _expirations.poll();
+                    final Long expireAt = _keyToExpireAt.get(expiration.getKey());
+                    if (expireAt != null && expireAt == expiration.getExpireAt()) {
+                        removeInternal(expiration.getKey());
+                        _numberOfDrops++;
+                    }
+                    expiration = _expirations.peek();
+                }
+                compactIfRequired();
+            }
+        }
+    }
+
+    /**
+     * Compacts all segments which reached the {@link #getCompactionThreshold() compaction threshold}. This is also done automatically after
+     * every modification.
+     */
+    public void compact() {
+        synchronized (_lock) {
+            compactIfRequired();
+        }
+    }
+
+    @Nullable
+    protected Value<V> getInternal(@Nonnull BinaryKey key) {
+        final byte[] bytes;
+        final boolean hit;
+        synchronized (_lock) {
+            assertNotClosed();
+            final Location location = hit(key);
+            hit = location != null;
+            bytes = hit ? readValueOf(location) : null;
+        }
+        return hit ? new Fixed<>(toValue(bytes)) : null;
+    }
+
+    /**
+     * @return the location of the given key after the hit was recorded or <code>null</code> if there is no location or it is outdated.
+     */
+    @GuardedBy("_lock")
+    @Nullable
+    protected Location hit(@Nonnull BinaryKey key) {
+        _numberOfRequests++;
+        Location result = _index.get(key);
+        if (result != null && result.isOutDated(currentTimeMillis())) {
+            removeInternal(key);
+            _numberOfDrops++;
+            result = null;
+        }
+        if (result != null) {
+            _numberOfHits++;
+        }
+        return result;
+    }
+
+    protected void putInternal(@Nonnull BinaryKey key, @Nullable V value, @Nullable Long expireAfter) {
+        final SerializationBuffer buffer = toBytes(value);
+        synchronized (_lock) {
+            assertNotClosed();
+            store(key, buffer, expireAfter);
+            compactIfRequired();
+        }
+    }
+
+    @GuardedBy("_lock")
+    protected void store(@Nonnull BinaryKey key, @Nullable SerializationBuffer buffer, @Nullable Long expireAfter) {
+        final long expireAt = expireAfter != null ? currentTimeMillis() + expireAfter : NO_EXPIRE;
+        final Location location = append(PUT, key, expireAt, buffer != null ? buffer.getBuffer() : null, buffer != null ? buffer.size() : NULL_VALUE_LENGTH);
+        if (location != null) {
+            final Location oldLocation = _index.put(key, location);
+            if (oldLocation != null) {
+                oldLocation.getSegment().removeLiveBytes(oldLocation.getLength());
+            }
+            location.getSegment().addLiveBytes(location.getLength());
+            trackExpirationOf(key, expireAt);
+            evictIfRequired();
+        } else {
+            // The record is larger than a whole segment. We could not store it but have to ensure that an old value will not be returned ...
+            removeInternal(key);
+            _numberOfDrops++;
+        }
+    }
+
+    protected void storeAll(@Nonnull Map<BinaryKey, SerializationBuffer> keysAndBuffers, @Nullable Long expireAfter) {
+        if (!keysAndBuffers.isEmpty()) {
+            synchronized (_lock) {
+                assertNotClosed();
+                beginBatch();
+                try {
+                    for (final Entry<BinaryKey, SerializationBuffer> keyAndBuffer : keysAndBuffers.entrySet()) {
+                        store(keyAndBuffer.getKey(), keyAndBuffer.getValue(), expireAfter);
+                    }
+                } finally {
+                    endBatch();
+                }
+            }
+        }
+    }
+
+    /**
+     * While a batch is active the records are not forced to the storage device one by one even if {@link #isSynchronousWrites() synchronous
+     * writes} are enabled. This is done once by {@link #endBatch()}.
+     */
+    @GuardedBy("_lock")
+    protected void beginBatch() {
+        _batching = true;
+    }
+
+    @GuardedBy("_lock")
+    protected void endBatch() {
+        _batching = false;
+        if (_synchronousWrites) {
+            _activeSegment.force();
+        }
+        compactIfRequired();
+    }
+
+    @GuardedBy("_lock")
+    protected void removeInternal(@Nonnull BinaryKey key) {
+        final Location location = _index.remove(key);
+        if (location != null) {
+            _keyToExpireAt.remove(key);
+            location.getSegment().removeLiveBytes(location.getLength());
+            // Records of this key could still exist in older segments, so we need to record the removal ...
+            append(REMOVE, key, NO_EXPIRE, null, NULL_VALUE_LENGTH);
+        }
+    }
+
+    @GuardedBy("_lock")
+    protected void trackExpirationOf(@Nonnull BinaryKey key, long expireAt) {
+        if (expireAt != NO_EXPIRE) {
+            _keyToExpireAt.put(key, expireAt);
+            _expirations.add(new Expiration(key, expireAt));
+            if (_expirations.size() > 2 * _keyToExpireAt.size() + 64) {
+                // Too many outdated elements of overwritten or removed keys, rebuild the queue ...
+                _expirations.clear();
+                for (final Entry<BinaryKey, Long> keyAndExpireAt : _keyToExpireAt.entrySet()) {
+                    _expirations.add(new Expiration(keyAndExpireAt.getKey(), keyAndExpireAt.getValue()));
+                }
+            }
+        } else {
+            _keyToExpireAt.remove(key);
+        }
+    }
+
+    @GuardedBy("_lock")
+    protected void evictIfRequired() {
+        final Long capacity = _capacity;
+        while (capacity != null && _index.size() > capacity) {
+            removeInternal(_index.keySet().iterator().next());
+            _numberOfDrops++;
+        }
+    }
+
+    /**
+     * @return <code>null</code> if the record is larger than a whole segment.
+     */
+    @GuardedBy("_lock")
+    @Nullable
+    protected Location append(byte type, @Nonnull BinaryKey key, long expireAt, @Nullable byte[] value, int valueLength) {
+        final byte[] keyBytes = key.getBytes();
+        final int keyLength = keyBytes != null ? keyBytes.length : NULL_VALUE_LENGTH;
+        final long length = (long) HEADER_SIZE + Math.max(keyLength, 0) + Math.max(valueLength, 0);
+        final Location result;
+        if (length <= _segmentSize) {
+            final int recordLength = (int) length;
+            if (_recordBuffer.length < recordLength) {
+                _recordBuffer = new byte[Math.max(recordLength, _recordBuffer.length * 2)];
+            }
+            final ByteBuffer record = ByteBuffer.wrap(_recordBuffer);
+            record.putInt(recordLength);
+            record.putInt(0);
+            record.put(type);
+            record.putLong(expireAt);
+            record.putInt(keyLength);
+            record.putInt(valueLength);
+            if (keyBytes != null) {
+                record.put(keyBytes);
+            }
+            if (value != null) {
+                record.put(value, 0, valueLength);
+            }
+            record.putInt(CHECKSUM_OFFSET, checksumOf(_recordBuffer, recordLength));
+            final Segment segment = segmentFor(recordLength);
+            final int offset = segment.append(_recordBuffer, recordLength);
+            if (_synchronousWrites && !_batching) {
+                segment.force();
+            }
+            result = new Location(segment, offset, recordLength, keyLength, valueLength, expireAt);
+        } else {
+            result = null;
+        }
+        return result;
+    }
+
+    @GuardedBy("_lock")
+    @Nonnull
+    protected Segment segmentFor(@Nonnegative int recordLength) {
+        if (_activeSegment.getRemaining() < recordLength) {
+            _activeSegment.force();
+            _activeSegment = createSegment(_activeSegment.getNumber() + 1);
+        }
+        return _activeSegment;
+    }
+
+    @GuardedBy("_lock")
+    protected void compactIfRequired() {
+        final double threshold = _compactionThreshold;
+        final List<Segment> candidates = new ArrayList<>();
+        for (final Segment segment : _segments.values()) {
+            // noinspection ObjectEquality
+            if (segment != _activeSegment && segment.getGarbageRatio() >= threshold) {
+                candidates.add(segment);
+            }
+        }
+        for (final Segment segment : candidates) {
+            compact(segment);
+        }
+    }
+
+    @GuardedBy("_lock")
+    protected void compact(@Nonnull Segment segment) {
+        // noinspection ObjectEquality
+        final boolean oldest = _segments.firstEntry().getValue() == segment;
+        // Copy the live entries, iterating over the entries does not modify the access order ...
+        for (final Entry<BinaryKey, Location> entry : _index.entrySet()) {
+            final Location location = entry.getValue();
+            // noinspection ObjectEquality
+            if (location.getSegment() == segment) {
+                final Location copied = copy(location);
+                copied.getSegment().addLiveBytes(copied.getLength());
+                entry.setValue(copied);
+            }
+        }
+        // ... and the removals which have to hide records of older segments ...
+        if (!oldest) {
+            final Map<BinaryKey, Location> removals = new HashMap<>();
+            int offset = 0;
+            Record record;
+            while ((record = segment.readRecordAt(offset)) != null) {
+                if (record.getType() == REMOVE && !_index.containsKey(record.getKey())) {
+                    removals.put(record.getKey(), new Location(segment, offset, record.getLength(), record.getKeyLength(), record.getValueLength(), NO_EXPIRE));
+                }
+                offset += record.getLength();
+            }
+            for (final BinaryKey key : keysStillStoredBefore(segment, removals.keySet())) {
+                copy(removals.get(key));
+            }
+        }
+        _activeSegment.force();
+        _segments.remove(segment.getNumber());
+        segment.delete();
+    }
+
+    /**
+     * @return all of the given keys which still have a not outdated record in a segment which is older than the given one. Only these require
+     * the removal to be kept while compacting the given segment.
+     */
+    @GuardedBy("_lock")
+    @Nonnull
+    protected Set<BinaryKey> keysStillStoredBefore(@Nonnull Segment segment, @Nonnull Set<BinaryKey> keys) {
+        final Set<BinaryKey> result = new HashSet<>();
+        if (!keys.isEmpty()) {
+            final long now = currentTimeMillis();
+            for (final Segment olderSegment : _segments.headMap(segment.getNumber()).values()) {
+                int offset = 0;
+                Record record;
+                while ((record = olderSegment.readRecordAt(offset)) != null) {
+                    if (record.getType() == PUT && (record.getExpireAt() == NO_EXPIRE || record.getExpireAt() > now) && keys.contains(record.getKey())) {
+                        result.add(record.getKey());
+                    }
+                    offset += record.getLength();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copies the record of the given location into the active segment. The copy is not counted as live bytes because only the records of
+     * {@link #_index indexed} puts are live - removals are garbage as soon as they are written.
+     */
+    @GuardedBy("_lock")
+    @Nonnull
+    protected Location copy(@Nonnull Location location) {
+        final byte[] bytes = location.getSegment().read(location.getOffset(), location.getLength());
+        final Segment target = segmentFor(bytes.length);
+        return new Location(target, target.append(bytes, bytes.length), location.getLength(), location.getKeyLength(), location.getValueLength(), location.getExpireAt());
+    }
+
+    @GuardedBy("_lock")
+    @Nullable
+    protected byte[] readValueOf(@Nonnull Location location) {
+        final int valueLength = location.getValueLength();
+        return valueLength != NULL_VALUE_LENGTH ? location.getSegment().read(location.getOffset() + HEADER_SIZE + Math.max(location.getKeyLength(), 0), valueLength) : null;
+    }
+
+    @GuardedBy("_lock")
+    protected void load() throws IOException {
+        final File[] files = _directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                final Long number = segmentNumberOf(file);
+                if (number != null) {
+                    _segments.put(number, new Segment(number, file, (int) Math.min(Math.max(file.length(), _segmentSize), Integer.MAX_VALUE)));
+                }
+            }
+        }
+        final long now = currentTimeMillis();
+        for (final Segment segment : _segments.values()) {
+            int offset = 0;
+            Record record;
+            while ((record = segment.readRecordAt(offset)) != null) {
+                final Location oldLocation = _index.remove(record.getKey());
+                if (oldLocation != null) {
+                    oldLocation.getSegment().removeLiveBytes(oldLocation.getLength());
+                    _keyToExpireAt.remove(record.getKey());
+                }
+                if (record.getType() == PUT) {
+                    final Location location = new Location(segment, offset, record.getLength(), record.getKeyLength(), record.getValueLength(), record.getExpireAt());
+                    if (!location.isOutDated(now)) {
+                        _index.put(record.getKey(), location);
+                        segment.addLiveBytes(location.getLength());
+                        trackExpirationOf(record.getKey(), record.getExpireAt());
+                    }
+                }
+                offset += record.getLength();
+            }
+            segment.setWritePosition(offset);
+        }
+        if (_segments.isEmpty()) {
+            _activeSegment = createSegment(0);
+        } else {
+            _activeSegment = _segments.lastEntry().getValue();
+            // Everything after the last valid record was not written completely ...
+            _activeSegment.truncate();
+        }
+    }
+
+    @GuardedBy("_lock")
+    @Nonnull
+    protected Segment createSegment(@Nonnegative long number) {
+        final Segment result;
+        try {
+            result = new Segment(number, new File(_directory, String.format("%016d", number) + SEGMENT_SUFFIX), _segmentSize);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not create segment #" + number + " in " + _directory + ".", e);
+        }
+        _segments.put(number, result);
+        return result;
+    }
+
+    /**
+     * @return <code>null</code> if the given file is already locked by this or another process.
+     */
+    @Nullable
+    protected static FileLock tryLock(@Nonnull RandomAccessFile file) throws IOException {
+        FileLock result;
+        try {
+            result = file.getChannel().tryLock();
+        } catch (final OverlappingFileLockException ignored) {
+            result = null;
+        }
+        return result;
+    }
+
+    @Nullable
+    protected static Long segmentNumberOf(@Nonnull File file) {
+        final String name = file.getName();
+        Long result = null;
+        if (file.isFile() && name.endsWith(SEGMENT_SUFFIX)) {
+            try {
+                result = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            } catch (final NumberFormatException ignored) {}
+        }
+        return result;
+    }
+
+    protected static int checksumOf(@Nonnull byte[] record, @Nonnegative int length) {
+        final CRC32 crc = new CRC32();
+        crc.update(record, CHECKSUM_OFFSET + 4, length - CHECKSUM_OFFSET - 4);
+        return (int) crc.getValue();
+    }
+
+    @GuardedBy("_lock")
+    protected void assertNotClosed() {
+        if (_closed) {
+            throw new IllegalStateException("Cache is already closed.");
+        }
+    }
+
+    @Nullable
+    protected Long getTargetExpireAfterBasedOn(@Nullable Duration expireAfter) {
+        final Long targetExpireAfter;
+        if (expireAfter != null) {
+            targetExpireAfter = expireAfter.in(MILLISECONDS);
+        } else {
+            final Duration defaultExpireAfter = _defaultExpireAfter;
+            targetExpireAfter = defaultExpireAfter != null ? defaultExpireAfter.in(MILLISECONDS) : null;
+        }
+        return targetExpireAfter;
+    }
+
+    @Override
+    public Long size() {
+        synchronized (_lock) {
+            return (long) _index.size();
+        }
+    }
+
+    /**
+     * @return the size of all records which are still valid.
+     */
+    @Nonnull
+    public ByteCount getUsedSize() {
+        long result = 0;
+        synchronized (_lock) {
+            for (final Segment segment : _segments.values()) {
+                result += segment.getLiveBytes();
+            }
+        }
+        return new ByteCount(result);
+    }
+
+    @Override
+    public Long getNumberOfRequests() {
+        return _numberOfRequests;
+    }
+
+    @Override
+    public Long getNumberOfHits() {
+        return _numberOfHits;
+    }
+
+    @Override
+    public Long getNumberOfDrops() {
+        return _numberOfDrops;
+    }
+
+    @Override
+    public Long getNumberOfProductions() {
+        return _producingStatistics.getNumberOfProductions();
+    }
+
+    @Override
+    public Duration getAverageProducingDuration() {
+        return _producingStatistics.getAverageProducingDuration();
+    }
+
+    @Override
+    public Duration getMaximumProducingDuration() {
+        return _producingStatistics.getMaximumProducingDuration();
+    }
+
+    @Override
+    public Long getNumberOfCoalescedRequests() {
+        return _producingStatistics.getNumberOfCoalescedRequests();
+    }
+
+    @Override
+    public Date getCreated() {
+        return new Date(_createdTimestamp);
+    }
+
+    @Override
+    public void resetStatistics() {
+        if (_listenerInvoker.beforeResetStatistics(this)) {
+            synchronized (_lock) {
+                _numberOfDrops = 0;
+                _numberOfHits = 0;
+                _numberOfRequests = 0;
+            }
+            _producingStatistics.reset();
+            _listenerInvoker.afterResetStatistics(this);
+        }
+    }
+
+    @Override
+    public CloseableIterator<K> iterator() {
+        final List<BinaryKey> binaryKeys = new ArrayList<>();
+        synchronized (_lock) {
+            final long now = currentTimeMillis();
+            for (final Entry<BinaryKey, Location> keyAndLocation : _index.entrySet()) {
+                if (!keyAndLocation.getValue().isOutDated(now)) {
+                    binaryKeys.add(keyAndLocation.getKey());
+                }
+            }
+        }
+        final List<K> keys = new ArrayList<>(binaryKeys.size());
+        for (final BinaryKey binaryKey : binaryKeys) {
+            keys.add(toKey(binaryKey));
+        }
+        return asCloseableIterator(keys.iterator());
+    }
+
+    /**
+     * Writes all modifications to the storage device and releases the directory. All entries are kept and will be available again if a new
+     * instance is created for the same directory.
+     */
+    @Override
+    public void close() throws Exception {
+        synchronized (_lock) {
+            if (!_closed) {
+                _closed = true;
+                final ExpirationSweeper expirationSweeper = _expirationSweeper;
+                if (expirationSweeper != null) {
+                    expirationSweeper.unregister(this);
+                }
+                try {
+                    _activeSegment.force();
+                } finally {
+                    for (final Segment segment : _segments.values()) {
+                        segment.unmap();
+                    }
+                    _segments.clear();
+                    _index.clear();
+                    _keyToExpireAt.clear();
+                    _expirations.clear();
+                    try {
+                        _fileLock.release();
+                    } finally {
+                        _lockFile.close();
+                    }
+                }
+            }
+        }
+    }
+
+    protected static class Location {
+
+        private final Segment _segment;
+        private final int _offset;
+        private final int _length;
+        private final int _keyLength;
+        private final int _valueLength;
+        private final long _expireAt;
+
+        public Location(@Nonnull Segment segment, @Nonnegative int offset, @Nonnegative int length, int keyLength, int valueLength, long expireAt) {
+            _segment = segment;
+            _offset = offset;
+            _length = length;
+            _keyLength = keyLength;
+            _valueLength = valueLength;
+            _expireAt = expireAt;
+        }
+
+        @Nonnull
+        public Segment getSegment() {
+            return _segment;
+        }
+
+        @Nonnegative
+        public int getOffset() {
+            return _offset;
+        }
+
+        @Nonnegative
+        public int getLength() {
+            return _length;
+        }
+
+        public int getKeyLength() {
+            return _keyLength;
+        }
+
+        public int getValueLength() {
+            return _valueLength;
+        }
+
+        public long getExpireAt() {
+            return _expireAt;
+        }
+
+        public boolean isOutDated(long now) {
+            return _expireAt != NO_EXPIRE && _expireAt <= now;
+        }
+    }
+
+    protected static class Expiration implements Comparable<Expiration> {
+
+        private final BinaryKey _key;
+        private final long _expireAt;
+
+        public Expiration(@Nonnull BinaryKey key, long expireAt) {
+            _key = key;
+            _expireAt = expireAt;
+        }
+
+        @Nonnull
+        public BinaryKey getKey() {
+            return _key;
+        }
+
+        public long getExpireAt() {
+            return _expireAt;
+        }
+
+        @Override
+        public int compareTo(@Nonnull Expiration other) {
+            return _expireAt < other._expireAt ? -1 : (_expireAt == other._expireAt ? 0 : 1);
+        }
+    }
+
+    protected static class Record {
+
+        private final byte _type;
+        private final int _length;
+        private final int _keyLength;
+        private final int _valueLength;
+        private final long _expireAt;
+        private final BinaryKey _key;
+
+        public Record(byte type, @Nonnegative int length, int keyLength, int valueLength, long expireAt, @Nonnull BinaryKey key) {
+            _type = type;
+            _length = length;
+            _keyLength = keyLength;
+            _valueLength = valueLength;
+            _expireAt = expireAt;
+            _key = key;
+        }
+
+        public byte getType() {
+            return _type;
+        }
+
+        @Nonnegative
+        public int getLength() {
+            return _length;
+        }
+
+        public int getKeyLength() {
+            return _keyLength;
+        }
+
+        public int getValueLength() {
+            return _valueLength;
+        }
+
+        public long getExpireAt() {
+            return _expireAt;
+        }
+
+        @Nonnull
+        public BinaryKey getKey() {
+            return _key;
+        }
+    }
+
+    /**
+     * A memory mapped file records are only appended to.
+     */
+    protected static class Segment {
+
+        private final long _number;
+        private final File _file;
+        private final MappedByteBuffer _buffer;
+        private int _writePosition;
+        private long _liveBytes;
+
+        public Segment(@Nonnegative long number, @Nonnull File file, @Nonnegative int size) throws IOException {
+            _number = number;
+            _file = file;
+            try (final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                if (randomAccessFile.length() < size) {
+                    randomAccessFile.setLength(size);
+                }
+                try (final FileChannel channel = randomAccessFile.getChannel()) {
+                    _buffer = channel.map(READ_WRITE, 0, size);
+                }
+            }
+        }
+
+        @Nonnegative
+        public long getNumber() {
+            return _number;
+        }
+
+        @Nonnegative
+        public int getRemaining() {
+            return _buffer.capacity() - _writePosition;
+        }
+
+        public double getGarbageRatio() {
+            return _writePosition > 0 ? 1d - ((double) _liveBytes / _writePosition) : 0d;
+        }
+
+        @Nonnegative
+        public long getLiveBytes() {
+            return _liveBytes;
+        }
+
+        public void addLiveBytes(@Nonnegative int bytes) {
+            _liveBytes += bytes;
+        }
+
+        public void removeLiveBytes(@Nonnegative int bytes) {
+            _liveBytes -= bytes;
+        }
+
+        @Nonnegative
+        public int append(@Nonnull byte[] bytes, @Nonnegative int length) {
+            final int result = _writePosition;
+            _buffer.position(result);
+            _buffer.put(bytes, 0, length);
+            _writePosition += length;
+            return result;
+        }
+
+        @Nonnull
+        public byte[] read(@Nonnegative int offset, @Nonnegative int length) {
+            final byte[] result = new byte[length];
+            _buffer.position(offset);
+            _buffer.get(result);
+            return result;
+        }
+
+        /**
+         * @return <code>null</code> if there is no valid record at the given offset.
+         */
+        @Nullable
+        public Record readRecordAt(@Nonnegative int offset) {
+            Record result = null;
+            if (offset <= _buffer.capacity() - HEADER_SIZE) {
+                final int length = _buffer.getInt(offset);
+                if (length >= HEADER_SIZE && length <= _buffer.capacity() - offset) {
+                    final byte[] bytes = read(offset, length);
+                    final ByteBuffer record = ByteBuffer.wrap(bytes);
+                    record.position(CHECKSUM_OFFSET);
+                    final int checksum = record.getInt();
+                    final byte type = record.get();
+                    final long expireAt = record.getLong();
+                    final int keyLength = record.getInt();
+                    final int valueLength = record.getInt();
+                    if (checksum == checksumOf(bytes, length) && (type == PUT || type == REMOVE) && HEADER_SIZE + Math.max(keyLength, 0) + Math.max(valueLength, 0) == length) {
+                        final byte[] key = keyLength != NULL_VALUE_LENGTH ? Arrays.copyOfRange(bytes, HEADER_SIZE, HEADER_SIZE + keyLength) : null;
+                        result = new Record(type, length, keyLength, valueLength, expireAt, key != null ? new BinaryKey(key) : BinaryKey.NULL);
+                    }
+                }
+            }
+            return result;
+        }
+
+        public void setWritePosition(@Nonnegative int writePosition) {
+            _writePosition = writePosition;
+        }
+
+        /**
+         * Discards everything after the current write position.
+         */
+        public void truncate() {
+            final byte[] zeros = new byte[4096];
+            _buffer.position(_writePosition);
+            while (_buffer.hasRemaining()) {
+                _buffer.put(zeros, 0, Math.min(zeros.length, _buffer.remaining()));
+            }
+        }
+
+        public void force() {
+            _buffer.force();
+        }
+
+        /**
+         * Releases the mapping of this segment at once instead of waiting for the garbage collector. This segment must not be used
+         * afterwards. If the JVM does not support this the mapping is still released by the garbage collector.
+         */
+        public void unmap() {
+            try {
+                final Class<?> unsafeType = Class.forName("sun.misc.Unsafe");
+                final Field theUnsafe = unsafeType.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                unsafeType.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), _buffer);
+            } catch (final Exception | LinkageError ignored) {
+                unmapByCleaner();
+            }
+        }
+
+        /**
+         * Releases the mapping on JVMs before Java 9.
+         */
+        protected void unmapByCleaner() {
+            try {
+                final Method cleanerMethod = _buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(_buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            } catch (final Exception | LinkageError ignored) {
+                // The mapping is released by the garbage collector.
+            }
+        }
+
+        public void delete() {
+            unmap();
+            if (!_file.delete()) {
+                _file.deleteOnExit();
+            }
+        }
+    }
+
+}
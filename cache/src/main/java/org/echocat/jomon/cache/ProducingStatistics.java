@@ -0,0 +1,158 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.echocat.jomon.runtime.math.LatencyHistogram;
+import org.echocat.jomon.runtime.util.Duration;
+import org.echocat.jomon.runtime.util.LazyEntry.ValueState;
+import org.echocat.jomon.runtime.util.ProducingType;
+import org.echocat.jomon.runtime.util.Value;
+import org.echocat.jomon.runtime.util.Value.Lazy;
+import org.echocat.jomon.runtime.util.ValueProducer;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Records how often and how long the {@link ValueProducer producers} of a cache are running and how many requests were coalesced with
+ * a production that was already in progress.</p>
+ */
+@ThreadSafe
+public class ProducingStatistics {
+
+    private final AtomicLong _numberOfProductions = new AtomicLong();
+    private final AtomicLong _producingNanos = new AtomicLong();
+    private final AtomicLong _maximumProducingNanos = new AtomicLong();
+    private final AtomicLong _numberOfCoalescedRequests = new AtomicLong();
+    /**
+     * Is created with the first production, so caches which never produce a value do not pay for it.
+     */
+    private volatile LatencyHistogram _producingDurations;
+
+    /**
+     * @return a lazy value which records the call of the given producer in this statistics.
+     */
+    @Nonnull
+    public <K, V> Value<V> lazyValueFor(@Nullable K key, @Nonnull ValueProducer<K, V> producer, @Nonnull ProducingType producingType) {
+        return new RecordingLazy<>(key, producer, producingType);
+    }
+
+    /**
+     * Records a coalesced request if the given value is still not produced. Has to be called by each request that finds an existing entry.
+     */
+    public void recordRequestOf(@Nullable Value<?> value) {
+        if (value instanceof Lazy) {
+            final ValueState valueState = ((Lazy<?, ?>) value).getValueState();
+            if (valueState == ValueState.notProducedYet || valueState == ValueState.producing) {
+                _numberOfCoalescedRequests.incrementAndGet();
+            }
+        }
+    }
+
+    protected void recordProduction(@Nonnegative long nanos) {
+        _numberOfProductions.incrementAndGet();
+        _producingNanos.addAndGet(nanos);
+        long maximum = _maximumProducingNanos.get();
+        while (nanos > maximum && !_maximumProducingNanos.compareAndSet(maximum, nanos)) {
+            maximum = _maximumProducingNanos.get();
+        }
+        producingDurations().record(nanos);
+    }
+
+    @Nonnull
+    protected LatencyHistogram producingDurations() {
+        LatencyHistogram result = _producingDurations;
+        if (result == null) {
+            synchronized (this) {
+                result = _producingDurations;
+                if (result == null) {
+                    result = new LatencyHistogram();
+                    _producingDurations = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Nonnegative
+    public long getNumberOfProductions() {
+        return _numberOfProductions.get();
+    }
+
+    @Nonnegative
+    public long getNumberOfCoalescedRequests() {
+        return _numberOfCoalescedRequests.get();
+    }
+
+    @Nonnull
+    public Duration getAverageProducingDuration() {
+        final long numberOfProductions = _numberOfProductions.get();
+        return toDuration(numberOfProductions > 0 ? _producingNanos.get() / numberOfProductions : 0);
+    }
+
+    @Nonnull
+    public Duration getMaximumProducingDuration() {
+        return toDuration(_maximumProducingNanos.get());
+    }
+
+    /**
+     * @param percentile between <code>0</code> and <code>100</code>.
+     * @return the duration which the given percentage of all productions did not exceed.
+     */
+    @Nonnull
+    public Duration getProducingDurationAt(double percentile) {
+        final LatencyHistogram producingDurations = _producingDurations;
+        return toDuration(producingDurations != null ? producingDurations.getValueAt(percentile) : 0);
+    }
+
+    public void reset() {
+        _numberOfProductions.set(0);
+        _producingNanos.set(0);
+        _maximumProducingNanos.set(0);
+        _numberOfCoalescedRequests.set(0);
+        final LatencyHistogram producingDurations = _producingDurations;
+        if (producingDurations != null) {
+            producingDurations.reset();
+        }
+    }
+
+    @Nonnull
+    protected static Duration toDuration(@Nonnegative long nanos) {
+        return new Duration(nanos / 1000000, (int) (nanos % 1000000));
+    }
+
+    protected class RecordingLazy<K, V> extends Lazy<K, V> {
+
+        public RecordingLazy(@Nullable K key, @Nonnull ValueProducer<K, V> producer, @Nonnull ProducingType producingType) {
+            super(key, producer, producingType);
+        }
+
+        @Override
+        protected V produce() throws Exception {
+            final long start = nanoTime();
+            try {
+                return super.produce();
+            } finally {
+                recordProduction(nanoTime() - start);
+            }
+        }
+    }
+}
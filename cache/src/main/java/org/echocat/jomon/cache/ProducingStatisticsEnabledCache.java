@@ -0,0 +1,41 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.echocat.jomon.runtime.util.Duration;
+
+import javax.annotation.Nullable;
+
+public interface ProducingStatisticsEnabledCache<K, V> extends StatisticsEnabledCache<K, V> {
+
+    /**
+     * @return how often a {@link org.echocat.jomon.runtime.util.ValueProducer} was called to produce a value of this cache.
+     */
+    @Nullable
+    public Long getNumberOfProductions();
+
+    @Nullable
+    public Duration getAverageProducingDuration();
+
+    @Nullable
+    public Duration getMaximumProducingDuration();
+
+    /**
+     * @return how many requests found a value which was still in production and therefore did not trigger their own production.
+     */
+    @Nullable
+    public Long getNumberOfCoalescedRequests();
+
+}
@@ -0,0 +1,42 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.echocat.jomon.runtime.util.Duration;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.Executor;
+
+public interface RefreshEnabledCache<K, V> extends Cache<K, V> {
+
+    /**
+     * If an entry is requested with a {@link org.echocat.jomon.runtime.util.ValueProducer} and it was written longer than the given duration
+     * ago, the current value is returned and the entry is reloaded in background using the {@link #getRefreshExecutor() refresh executor}.
+     * <code>null</code> disables refreshing.
+     */
+    public void setRefreshAfter(@Nullable Duration refreshAfter);
+
+    @Nullable
+    public Duration getRefreshAfter();
+
+    /**
+     * @param executor <code>null</code> will use a shared default executor.
+     */
+    public void setRefreshExecutor(@Nullable Executor executor);
+
+    @Nullable
+    public Executor getRefreshExecutor();
+
+}
@@ -0,0 +1,159 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.echocat.jomon.runtime.io.Serializer;
+import org.echocat.jomon.runtime.io.UncheckedIOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.io.*;
+import java.util.Arrays;
+
+import static org.echocat.jomon.runtime.io.Serializers.getSerializerOf;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Base for caches which store their keys and values serialized using {@link Serializer}s. The keys are represented by {@link BinaryKey}s
+ * which could be used as keys of maps.</p>
+ */
+public abstract class SerializingCacheSupport<K, V> extends CacheSupport<K, V> {
+
+    protected static final int NULL_VALUE_LENGTH = -1;
+
+    private final Serializer<K> _keySerializer;
+    private final Serializer<V> _valueSerializer;
+
+    protected SerializingCacheSupport(@Nonnull Class<? extends K> keyType, @Nonnull Class<? extends V> valueType, @Nonnull Serializer<K> keySerializer, @Nonnull Serializer<V> valueSerializer) {
+        super(keyType, valueType);
+        _keySerializer = keySerializer;
+        _valueSerializer = valueSerializer;
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no {@link Serializer} available for the given type.
+     */
+    @Nonnull
+    protected static <T> Serializer<T> serializerOf(@Nonnull Class<? extends T> type) throws IllegalArgumentException {
+        // noinspection unchecked
+        return (Serializer<T>) getSerializerOf(type);
+    }
+
+    @Nonnull
+    public Serializer<K> getKeySerializer() {
+        return _keySerializer;
+    }
+
+    @Nonnull
+    public Serializer<V> getValueSerializer() {
+        return _valueSerializer;
+    }
+
+    @Nonnull
+    protected BinaryKey toBinaryKey(@Nullable K key) {
+        return key != null ? new BinaryKey(serialize(_keySerializer, key).toByteArray()) : BinaryKey.NULL;
+    }
+
+    @Nullable
+    protected K toKey(@Nonnull BinaryKey key) {
+        final byte[] bytes = key.getBytes();
+        return bytes != null ? deserialize(_keySerializer, bytes, 0, bytes.length) : null;
+    }
+
+    /**
+     * @return <code>null</code> if the given value is <code>null</code>.
+     */
+    @Nullable
+    protected SerializationBuffer toBytes(@Nullable V value) {
+        return value != null ? serialize(_valueSerializer, value) : null;
+    }
+
+    @Nullable
+    protected V toValue(@Nullable byte[] bytes) {
+        return bytes != null ? toValue(bytes, 0, bytes.length) : null;
+    }
+
+    @Nullable
+    protected V toValue(@Nonnull byte[] bytes, int offset, int length) {
+        return deserialize(_valueSerializer, bytes, offset, length);
+    }
+
+    @Nonnull
+    protected static <T> SerializationBuffer serialize(@Nonnull Serializer<T> serializer, @Nonnull T value) {
+        final SerializationBuffer result = new SerializationBuffer();
+        try (final DataOutputStream os = new DataOutputStream(result)) {
+            serializer.write(value, os);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not serialize " + value + ".", e);
+        }
+        return result;
+    }
+
+    @Nullable
+    protected static <T> T deserialize(@Nonnull Serializer<T> serializer, @Nonnull byte[] bytes, int offset, int length) {
+        try (final DataInputStream is = new DataInputStream(new ByteArrayInputStream(bytes, offset, length))) {
+            return serializer.read(is);
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Could not deserialize " + length + " bytes.", e);
+        }
+    }
+
+    @Immutable
+    protected static class BinaryKey {
+
+        protected static final BinaryKey NULL = new BinaryKey(null);
+
+        private final byte[] _bytes;
+        private final int _hashCode;
+
+        public BinaryKey(@Nullable byte[] bytes) {
+            _bytes = bytes;
+            _hashCode = Arrays.hashCode(bytes);
+        }
+
+        @Nullable
+        public byte[] getBytes() {
+            return _bytes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof BinaryKey && _hashCode == ((BinaryKey) o)._hashCode && Arrays.equals(_bytes, ((BinaryKey) o)._bytes));
+        }
+
+        @Override
+        public int hashCode() {
+            return _hashCode;
+        }
+
+        @Override
+        public String toString() {
+            return _bytes != null ? _bytes.length + " bytes" : "null";
+        }
+    }
+
+    protected static class SerializationBuffer extends ByteArrayOutputStream {
+
+        /**
+         * @return the internal buffer of this stream. Only the first {@link #size()} bytes are valid.
+         */
+        @Nonnull
+        public byte[] getBuffer() {
+            return buf;
+        }
+    }
+
+}
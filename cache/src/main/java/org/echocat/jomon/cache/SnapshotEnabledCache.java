@@ -0,0 +1,44 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.List;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>A cache which could hand out its hottest entries and take them back later, for example to warm it up after a restart. See
+ * {@link org.echocat.jomon.cache.management.CacheSnapshotter}.</p>
+ */
+public interface SnapshotEnabledCache<K, V> extends Cache<K, V> {
+
+    /**
+     * @return the hottest entries of this cache in the order of the caching strategy, the hottest first. Entries which are expired or whose
+     * values are not produced yet are not part of the result.
+     */
+    @Nonnull
+    public List<SnapshotEntry<K, V>> snapshot(@Nonnegative int maximumNumberOfEntries);
+
+    /**
+     * Adds the given entries, which are expected in the order of {@link #snapshot(int)}, with their remaining lifetime and number of hits.
+     * Expired entries and entries whose key is already present are skipped. If the capacity of this cache is reached the remaining (and
+     * colder) entries are skipped, too. The entries are added behind all present entries, so this is mainly useful for an empty cache.
+     *
+     * @return the number of restored entries.
+     */
+    @Nonnegative
+    public int restore(@Nonnull Iterable<SnapshotEntry<K, V>> entries);
+}
@@ -0,0 +1,76 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>One entry of a {@link SnapshotEnabledCache#snapshot(int) snapshot} of a cache. Instead of an absolute point in time it holds the
+ * remaining lifetime of the entry, so it could be restored after a restart without extending or shortening its life.</p>
+ */
+@Immutable
+public class SnapshotEntry<K, V> {
+
+    @Nullable
+    private final K _key;
+    @Nullable
+    private final V _value;
+    @Nullable
+    private final Long _remainingLifetime;
+    @Nonnegative
+    private final int _hits;
+
+    public SnapshotEntry(@Nullable K key, @Nullable V value, @Nullable Long remainingLifetime, @Nonnegative int hits) {
+        _key = key;
+        _value = value;
+        _remainingLifetime = remainingLifetime;
+        _hits = hits;
+    }
+
+    @Nullable
+    public K getKey() {
+        return _key;
+    }
+
+    @Nullable
+    public V getValue() {
+        return _value;
+    }
+
+    /**
+     * @return the remaining lifetime in milliseconds or <code>null</code> if the entry never expires.
+     */
+    @Nullable
+    public Long getRemainingLifetime() {
+        return _remainingLifetime;
+    }
+
+    @Nonnegative
+    public int getHits() {
+        return _hits;
+    }
+
+    public boolean isExpired() {
+        return _remainingLifetime != null && _remainingLifetime <= 0;
+    }
+
+    @Override
+    public String toString() {
+        return _key + "=>" + _value;
+    }
+}
@@ -0,0 +1,33 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nullable;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Calculates the weight of a cache entry. It is used by {@link WeightLimitedCache}s to limit the cache by the sum of the weights of all
+ * its entries instead of their number. The weight should approximate the number of bytes the entry occupies.</p>
+ *
+ * <p>The weight of an entry is calculated once when it is put into the cache, so it has to be cheap and the weighted value should not change
+ * its weight afterwards.</p>
+ */
+public interface Weigher<K, V> {
+
+    @Nonnegative
+    public long weightOf(@Nullable K key, @Nullable V value);
+
+}
@@ -0,0 +1,46 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.echocat.jomon.runtime.util.ByteCount;
+
+import javax.annotation.Nullable;
+
+public interface WeightLimitedCache<K, V> extends LimitedCache<K, V> {
+
+    /**
+     * If the sum of the weights of all entries - as calculated by the {@link #setWeigher(Weigher) weigher} - exceeds the given maximum the
+     * entries are evicted in the same order as if the {@link #setCapacity(Long) capacity} was reached. <code>null</code> disables this limit.
+     */
+    public void setMaximumWeight(@Nullable ByteCount maximumWeight);
+
+    @Nullable
+    public ByteCount getMaximumWeight();
+
+    /**
+     * @param weigher <code>null</code> will weigh every entry with <code>0</code>.
+     */
+    public void setWeigher(@Nullable Weigher<? super K, ? super V> weigher);
+
+    @Nullable
+    public Weigher<? super K, ? super V> getWeigher();
+
+    /**
+     * @return the sum of the weights of all entries or <code>null</code> if this cache does not weigh its entries.
+     */
+    @Nullable
+    public ByteCount getWeight();
+
+}
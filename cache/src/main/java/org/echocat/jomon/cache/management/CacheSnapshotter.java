@@ -0,0 +1,485 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache.management;
+
+import org.echocat.jomon.cache.Cache;
+import org.echocat.jomon.cache.SnapshotEnabledCache;
+import org.echocat.jomon.cache.SnapshotEntry;
+import org.echocat.jomon.runtime.io.Serializer;
+import org.echocat.jomon.runtime.util.ByteCount;
+import org.echocat.jomon.runtime.util.Duration;
+import org.echocat.jomon.runtime.util.Entry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.*;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.Math.max;
+import static java.lang.Runtime.getRuntime;
+import static java.lang.System.currentTimeMillis;
+import static java.nio.file.Files.move;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.echocat.jomon.runtime.io.Serializers.findSerializerOf;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Writes the hottest entries of every {@link SnapshotEnabledCache} into a snapshot file when the {@link DefaultCacheRepository} is
+ * closed (for example while the application shuts down) and restores them in the background as soon as the cache is created again. So the
+ * caches are warm directly after a restart. Add it to the {@link DefaultCacheRepository#setListeners(java.util.Collection) listeners} of
+ * the repository. Removing a single cache from the repository does not write a snapshot.</p>
+ *
+ * <p>Every cache is stored in its own file inside of the {@link #getDirectory() directory}. The file starts with a header which contains
+ * the id and the key and value types of the cache, followed by the entries in the order of {@link SnapshotEnabledCache#snapshot(int)}.
+ * Every entry consists of its key and value written by their {@link Serializer}s, the point in time it expires and the number of hits.
+ * Caches whose key or value type has no {@link Serializer} are skipped. Entries which have expired while the application was not running
+ * are not restored. A snapshot is consumed by its restore, so it could not be restored twice.</p>
+ *
+ * <p>Every cache is restored by its own task of the {@link #getExecutor() executor}, so caches are loaded in parallel. If no executor is set
+ * the restores run on daemon threads of this snapshotter which are shut down as soon as no restore is pending any longer. Because the hottest
+ * entries are stored first, restoring could stop at any point if the {@link #getMaximumWarmUpDuration() maximum duration} or the
+ * {@link #getMaximumWarmUpSize() maximum size} of the current warm up is exceeded - only the coldest entries are lost in this case. A warm
+ * up starts with the first restore and ends as soon as no restore is running any longer, so caches which are created later get a budget
+ * of their own.</p>
+ */
+@ThreadSafe
+public class CacheSnapshotter implements CreationCacheListener, ShutdownCacheListener {
+
+    public static final int DEFAULT_MAXIMUM_ENTRIES_PER_CACHE = 10000;
+    public static final String SUFFIX = ".snapshot";
+
+    protected static final int MAGIC = 0x4a4f4d53;
+    protected static final int VERSION = 2;
+    protected static final int BATCH_SIZE = 256;
+    protected static final int MAXIMUM_PENDING_RESTORES = 1000;
+
+    private static final Logger LOG = LoggerFactory.getLogger(CacheSnapshotter.class);
+
+    private final File _directory;
+    private final Object _warmUpLock = new Object();
+    private final AtomicLong _warmUpBytes = new AtomicLong();
+    private final Object _restoreExecutorLock = new Object();
+
+    @GuardedBy("_warmUpLock")
+    private int _numberOfRunningRestores;
+    @GuardedBy("_restoreExecutorLock")
+    private ThreadPoolExecutor _restoreExecutor;
+    @GuardedBy("_restoreExecutorLock")
+    private int _numberOfPendingRestores;
+    private volatile long _warmUpStarted;
+
+    @Nonnegative
+    private volatile int _maximumEntriesPerCache = DEFAULT_MAXIMUM_ENTRIES_PER_CACHE;
+    private volatile Duration _maximumWarmUpDuration;
+    private volatile ByteCount _maximumWarmUpSize;
+    private volatile Executor _executor;
+
+    public CacheSnapshotter(@Nonnull File directory) {
+        _directory = directory;
+    }
+
+    @Nonnull
+    public File getDirectory() {
+        return _directory;
+    }
+
+    @Nonnegative
+    public int getMaximumEntriesPerCache() {
+        return _maximumEntriesPerCache;
+    }
+
+    public void setMaximumEntriesPerCache(@Nonnegative int maximumEntriesPerCache) {
+        _maximumEntriesPerCache = maximumEntriesPerCache;
+    }
+
+    /**
+     * @return the maximum duration of a warm up, measured from the start of its first restore, or <code>null</code> if unlimited.
+     */
+    @Nullable
+    public Duration getMaximumWarmUpDuration() {
+        return _maximumWarmUpDuration;
+    }
+
+    public void setMaximumWarmUpDuration(@Nullable Duration maximumWarmUpDuration) {
+        _maximumWarmUpDuration = maximumWarmUpDuration;
+    }
+
+    /**
+     * @return the maximum number of bytes read by all restores of a warm up or <code>null</code> if unlimited.
+     */
+    @Nullable
+    public ByteCount getMaximumWarmUpSize() {
+        return _maximumWarmUpSize;
+    }
+
+    public void setMaximumWarmUpSize(@Nullable ByteCount maximumWarmUpSize) {
+        _maximumWarmUpSize = maximumWarmUpSize;
+    }
+
+    /**
+     * @return the executor used to restore the caches or <code>null</code> to use daemon threads of this snapshotter which only exist
+     *         while restores are pending.
+     */
+    @Nullable
+    public Executor getExecutor() {
+        return _executor;
+    }
+
+    public void setExecutor(@Nullable Executor executor) {
+        _executor = executor;
+    }
+
+    @Override
+    public boolean beforeCreate(@Nonnull String id, @Nonnull CacheDefinition<?, ?, ?> definition) {
+        return true;
+    }
+
+    @Override
+    public void afterCreate(@Nonnull String id, @Nonnull CacheDefinition<?, ?, ?> definition, @Nonnull Cache<?, ?> cache) {
+        if (cache instanceof SnapshotEnabledCache && fileFor(id).isFile()) {
+            final Executor executor = _executor;
+            try {
+                if (executor != null) {
+                    executor.execute(new Restore(id, (SnapshotEnabledCache<?, ?>) cache));
+                } else {
+                    scheduleOnRestoreExecutor(new Restore(id, (SnapshotEnabledCache<?, ?>) cache));
+                }
+            } catch (final RejectedExecutionException e) {
+                LOG.warn("Could not schedule the restore of cache '" + id + "'. This cache will start empty.", e);
+            }
+        }
+    }
+
+    @Override
+    public void beforeShutdown(@Nonnull CacheRepository repository) {
+        for (final Entry<String, Cache<?, ?>> idAndCache : repository) {
+            final String id = idAndCache.getKey();
+            final Cache<?, ?> cache = idAndCache.getValue();
+            if (cache instanceof SnapshotEnabledCache) {
+                try {
+                    export(id, (SnapshotEnabledCache<?, ?>) cache);
+                } catch (final Exception e) {
+                    LOG.warn("Could not write a snapshot of cache '" + id + "'. This cache will start empty next time.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot of every {@link SnapshotEnabledCache} of the given repository, for example to take snapshots periodically.
+     */
+    public void export(@Nonnull CacheRepository repository) throws IOException {
+        for (final Entry<String, Cache<?, ?>> idAndCache : repository) {
+            final Cache<?, ?> cache = idAndCache.getValue();
+            if (cache instanceof SnapshotEnabledCache) {
+                export(idAndCache.getKey(), (SnapshotEnabledCache<?, ?>) cache);
+            }
+        }
+    }
+
+    /**
+     * @return the number of written entries or <code>-1</code> if the key or value type of the given cache could not be serialized.
+     */
+    public <K, V> int export(@Nonnull String id, @Nonnull SnapshotEnabledCache<K, V> cache) throws IOException {
+        final Serializer<K> keySerializer = serializerOf(cache.getKeyType());
+        final Serializer<V> valueSerializer = serializerOf(cache.getValueType());
+        final int result;
+        if (keySerializer != null && valueSerializer != null) {
+            final List<SnapshotEntry<K, V>> entries = cache.snapshot(_maximumEntriesPerCache);
+            final long now = currentTimeMillis();
+            final File file = fileFor(id);
+            final File temporaryFile = new File(file.getPath() + ".tmp");
+            if (!_directory.isDirectory() && !_directory.mkdirs()) {
+                throw new IOException("Could not create directory " + _directory + ".");
+            }
+            try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+                writeHeader(id, cache, out);
+                for (final SnapshotEntry<K, V> entry : entries) {
+                    out.writeBoolean(true);
+                    writeNullable(entry.getKey(), keySerializer, out);
+                    writeNullable(entry.getValue(), valueSerializer, out);
+                    final Long remainingLifetime = entry.getRemainingLifetime();
+                    out.writeLong(remainingLifetime != null ? now + remainingLifetime : -1);
+                    out.writeInt(entry.getHits());
+                }
+                out.writeBoolean(false);
+            }
+            move(temporaryFile.toPath(), file.toPath(), REPLACE_EXISTING);
+            result = entries.size();
+        } else {
+            result = -1;
+        }
+        return result;
+    }
+
+    /**
+     * Restores the snapshot of the given cache synchronously. The snapshot file is deleted afterwards if it belongs to the given cache.
+     *
+     * @return the number of restored entries.
+     */
+    @Nonnegative
+    public <K, V> int restore(@Nonnull String id, @Nonnull SnapshotEnabledCache<K, V> cache) throws IOException {
+        final File file = fileFor(id);
+        final Serializer<K> keySerializer = serializerOf(cache.getKeyType());
+        final Serializer<V> valueSerializer = serializerOf(cache.getValueType());
+        int result = 0;
+        if (keySerializer != null && valueSerializer != null && file.isFile()) {
+            startWarmUp();
+            try {
+                boolean consumed = false;
+                final CountingInputStream counting = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+                try (final DataInputStream in = new DataInputStream(counting)) {
+                    if (readHeader(id, cache, in)) {
+                        final List<SnapshotEntry<K, V>> batch = new ArrayList<>(BATCH_SIZE);
+                        final long now = currentTimeMillis();
+                        boolean exhausted = isWarmUpBudgetExhausted();
+                        while (!exhausted && in.readBoolean()) {
+                            final K key = readNullable(keySerializer, in);
+                            final V value = readNullable(valueSerializer, in);
+                            final long expireAt = in.readLong();
+                            final int hits = in.readInt();
+                            if (expireAt < 0 || expireAt > now) {
+                                batch.add(new SnapshotEntry<>(key, value, expireAt >= 0 ? expireAt - now : null, hits));
+                            }
+                            if (batch.size() >= BATCH_SIZE) {
+                                result += cache.restore(batch);
+                                batch.clear();
+                                _warmUpBytes.addAndGet(counting.pollCount());
+                                exhausted = isWarmUpBudgetExhausted();
+                            }
+                        }
+                        result += cache.restore(batch);
+                        _warmUpBytes.addAndGet(counting.pollCount());
+                        consumed = true;
+                        if (exhausted) {
+                            LOG.info("The warm up budget is exhausted. Cache '" + id + "' was restored only partially with " + result + " entries.");
+                        }
+                    }
+                }
+                // A snapshot is only valid once - otherwise it could overwrite newer values if the cache is created again ...
+                if (consumed && !file.delete()) {
+                    LOG.warn("Could not delete the restored snapshot " + file + ". It could be restored again.");
+                }
+            } finally {
+                finishWarmUp();
+            }
+        }
+        return result;
+    }
+
+    protected void scheduleOnRestoreExecutor(@Nonnull final Restore restore) {
+        synchronized (_restoreExecutorLock) {
+            if (_restoreExecutor == null) {
+                _restoreExecutor = createRestoreExecutor();
+            }
+            _restoreExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        restore.run();
+                    } finally {
+                        onRestoreOfExecutorFinished();
+                    }
+                }
+            });
+            _numberOfPendingRestores++;
+        }
+    }
+
+    protected void onRestoreOfExecutorFinished() {
+        synchronized (_restoreExecutorLock) {
+            if (--_numberOfPendingRestores == 0 && _restoreExecutor != null) {
+                _restoreExecutor.shutdown();
+                _restoreExecutor = null;
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if restores are pending on the daemon threads of this snapshotter.
+     */
+    protected boolean hasPendingRestores() {
+        synchronized (_restoreExecutorLock) {
+            return _restoreExecutor != null;
+        }
+    }
+
+    @Nonnull
+    protected ThreadPoolExecutor createRestoreExecutor() {
+        final int numberOfThreads = max(2, getRuntime().availableProcessors());
+        final AtomicInteger numberOfCreatedThreads = new AtomicInteger();
+        return new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 0, MILLISECONDS, new LinkedBlockingQueue<Runnable>(MAXIMUM_PENDING_RESTORES), new ThreadFactory() {
+            @Override
+            public Thread newThread(@Nonnull Runnable runnable) {
+                final Thread thread = new Thread(runnable, "Caches.Snapshotter-" + numberOfCreatedThreads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Nonnull
+    protected File fileFor(@Nonnull String id) {
+        try {
+            return new File(_directory, URLEncoder.encode(id, "UTF-8") + SUFFIX);
+        } catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is not supported?", e);
+        }
+    }
+
+    protected void writeHeader(@Nonnull String id, @Nonnull Cache<?, ?> cache, @Nonnull DataOutput to) throws IOException {
+        to.writeInt(MAGIC);
+        to.writeInt(VERSION);
+        to.writeUTF(id);
+        to.writeUTF(cache.getKeyType().getName());
+        to.writeUTF(cache.getValueType().getName());
+    }
+
+    /**
+     * @return <code>true</code> if the snapshot belongs to the given cache and could be read.
+     */
+    protected boolean readHeader(@Nonnull String id, @Nonnull Cache<?, ?> cache, @Nonnull DataInput from) throws IOException {
+        final boolean result;
+        if (from.readInt() != MAGIC || from.readInt() != VERSION) {
+            LOG.warn("The snapshot of cache '" + id + "' has an unknown format and is ignored.");
+            result = false;
+        } else if (!id.equals(from.readUTF()) || !cache.getKeyType().getName().equals(from.readUTF()) || !cache.getValueType().getName().equals(from.readUTF())) {
+            LOG.info("The snapshot of cache '" + id + "' was written for another cache definition and is ignored.");
+            result = false;
+        } else {
+            result = true;
+        }
+        return result;
+    }
+
+    /**
+     * Starts a new warm up with a fresh budget if no other restore is running.
+     */
+    protected void startWarmUp() {
+        synchronized (_warmUpLock) {
+            if (_numberOfRunningRestores++ == 0) {
+                _warmUpStarted = currentTimeMillis();
+                _warmUpBytes.set(0);
+            }
+        }
+    }
+
+    protected void finishWarmUp() {
+        synchronized (_warmUpLock) {
+            _numberOfRunningRestores--;
+        }
+    }
+
+    protected boolean isWarmUpBudgetExhausted() {
+        final Duration maximumWarmUpDuration = _maximumWarmUpDuration;
+        final ByteCount maximumWarmUpSize = _maximumWarmUpSize;
+        return (maximumWarmUpDuration != null && currentTimeMillis() - _warmUpStarted >= maximumWarmUpDuration.in(MILLISECONDS))
+            || (maximumWarmUpSize != null && _warmUpBytes.get() >= maximumWarmUpSize.toByteCount());
+    }
+
+    @Nullable
+    protected static <T> Serializer<T> serializerOf(@Nonnull Class<? extends T> type) {
+        // noinspection unchecked
+        return (Serializer<T>) findSerializerOf(type);
+    }
+
+    protected static <T> void writeNullable(@Nullable T value, @Nonnull Serializer<T> serializer, @Nonnull DataOutput to) throws IOException {
+        to.writeBoolean(value != null);
+        if (value != null) {
+            serializer.write(value, to);
+        }
+    }
+
+    @Nullable
+    protected static <T> T readNullable(@Nonnull Serializer<T> serializer, @Nonnull DataInput from) throws IOException {
+        return from.readBoolean() ? serializer.read(from) : null;
+    }
+
+    protected class Restore implements Runnable {
+
+        private final String _id;
+        private final SnapshotEnabledCache<?, ?> _cache;
+
+        public Restore(@Nonnull String id, @Nonnull SnapshotEnabledCache<?, ?> cache) {
+            _id = id;
+            _cache = cache;
+        }
+
+        @Override
+        public void run() {
+            try {
+                final int restored = restore(_id, _cache);
+                LOG.debug("Restored " + restored + " entries of cache '" + _id + "'.");
+            } catch (final Exception e) {
+                LOG.warn("Could not restore the snapshot of cache '" + _id + "'. This cache will start empty.", e);
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes read since the last {@link #pollCount() poll}.
+     */
+    protected static class CountingInputStream extends FilterInputStream {
+
+        private long _count;
+
+        public CountingInputStream(@Nonnull InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int result = super.read();
+            if (result >= 0) {
+                _count++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+            final int result = super.read(b, off, len);
+            if (result > 0) {
+                _count += result;
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            final long result = super.skip(n);
+            _count += result;
+            return result;
+        }
+
+        @Nonnegative
+        public long pollCount() {
+            final long result = _count;
+            _count = 0;
+            return result;
+        }
+    }
+}
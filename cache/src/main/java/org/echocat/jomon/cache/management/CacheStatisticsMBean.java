@@ -0,0 +1,83 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache.management;
+
+import javax.annotation.Nullable;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>The view of a {@link org.echocat.jomon.cache.DetailedStatisticsEnabledCache} which is exported over JMX by the
+ * {@link JmxCacheStatisticsExporter}.</p>
+ */
+public interface CacheStatisticsMBean {
+
+    public long getNumberOfRequests();
+
+    public long getNumberOfHits();
+
+    public long getNumberOfMisses();
+
+    @Nullable
+    public Double getHitRatio();
+
+    public String getMeasurePeriod();
+
+    public long getNumberOfRequestsOverPeriod();
+
+    public long getNumberOfHitsOverPeriod();
+
+    public long getNumberOfMissesOverPeriod();
+
+    @Nullable
+    public Double getHitRatioOverPeriod();
+
+    @Nullable
+    public Double getMissRatioOverPeriod();
+
+    public long getNumberOfEvictions();
+
+    public long getNumberOfCapacityEvictions();
+
+    public long getNumberOfExpiryEvictions();
+
+    public long getNumberOfExplicitRemovals();
+
+    public long getNumberOfReplacements();
+
+    public long getNumberOfProductions();
+
+    public long getNumberOfCoalescedRequests();
+
+    public double getAverageProducingMillis();
+
+    public double getMedianProducingMillis();
+
+    public double getProducing95thPercentileMillis();
+
+    public double getProducing99thPercentileMillis();
+
+    public double getMaximumProducingMillis();
+
+    @Nullable
+    public Long getSize();
+
+    @Nullable
+    public Long getWeightInBytes();
+
+    @Nullable
+    public Long getEstimatedSizeInBytes();
+
+    public void resetStatistics();
+}
@@ -32,6 +32,8 @@ public class CombinedCacheCreator implements CacheCreator {
         new LruCacheCreator(),
         new LfuCacheCreator(),
         new FifoCacheCreator(),
+        new OffHeapCacheCreator(),
+        new PersistentCacheCreator(),
         new ServletRequestBasedCacheCreator()
     );
 
@@ -89,7 +91,10 @@ public class CombinedCacheCreator implements CacheCreator {
                 }
             }
         }
-        return new CombinedCache<>(by.getKeyType(), by.getValueType(), delegates);
+        final CombinedCache<K, V> result = new CombinedCache<>(by.getKeyType(), by.getValueType(), delegates);
+        result.setAsynchronousWriteBack(by.isAsynchronousWriteBack());
+        result.setLowerLevelTimeout(by.getLowerLevelTimeout());
+        return result;
     }
 
     @Nullable
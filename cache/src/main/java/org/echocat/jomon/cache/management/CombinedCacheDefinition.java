@@ -16,6 +16,7 @@ package org.echocat.jomon.cache.management;
 
 import org.echocat.jomon.cache.Cache;
 import org.echocat.jomon.cache.CombinedCache;
+import org.echocat.jomon.runtime.util.Duration;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -54,6 +55,8 @@ public class CombinedCacheDefinition<K, V> extends CacheDefinition<K, V, Combine
     }
 
     private List<IdentifiersToDefinition<? extends K, ? extends V>> _delegates;
+    private boolean _asynchronousWriteBack;
+    private Duration _lowerLevelTimeout;
 
     public CombinedCacheDefinition(@Nonnull Class<K> keyType, @Nonnull Class<V> valueType) {
         // noinspection unchecked
@@ -82,6 +85,46 @@ public class CombinedCacheDefinition<K, V> extends CacheDefinition<K, V, Combine
         return thisInstance();
     }
 
+    /**
+     * @see CombinedCache#setAsynchronousWriteBack(boolean)
+     */
+    @Nonnull
+    public CombinedCacheDefinition<K, V> withAsynchronousWriteBack() {
+        setAsynchronousWriteBack(true);
+        return thisInstance();
+    }
+
+    /**
+     * @see CombinedCache#setLowerLevelTimeout(Duration)
+     */
+    @Nonnull
+    public CombinedCacheDefinition<K, V> withLowerLevelTimeout(@Nonnull Duration lowerLevelTimeout) {
+        setLowerLevelTimeout(lowerLevelTimeout);
+        return thisInstance();
+    }
+
+    @Nonnull
+    public CombinedCacheDefinition<K, V> withLowerLevelTimeout(@Nonnull String lowerLevelTimeout) {
+        return withLowerLevelTimeout(new Duration(lowerLevelTimeout));
+    }
+
+    public boolean isAsynchronousWriteBack() {
+        return _asynchronousWriteBack;
+    }
+
+    public void setAsynchronousWriteBack(boolean asynchronousWriteBack) {
+        _asynchronousWriteBack = asynchronousWriteBack;
+    }
+
+    @Nullable
+    public Duration getLowerLevelTimeout() {
+        return _lowerLevelTimeout;
+    }
+
+    public void setLowerLevelTimeout(@Nullable Duration lowerLevelTimeout) {
+        _lowerLevelTimeout = lowerLevelTimeout;
+    }
+
     public abstract static class IdentifiersToDefinition<K, V> {
 
         private final CacheDefinition<K, V, ?> _definition;
@@ -15,15 +15,19 @@
 package org.echocat.jomon.cache.management;
 
 import org.echocat.jomon.cache.Cache;
+import org.echocat.jomon.cache.ConcurrentInMemoryBasedCacheSupport;
 import org.echocat.jomon.cache.ProducingTypeEnabledCache;
+import org.echocat.jomon.cache.RefreshEnabledCache;
 import org.echocat.jomon.runtime.util.ProducingType;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.concurrent.Executor;
 
 public abstract class DefaultCacheCreatorSupport extends LimitedCacheCreatorSupport {
 
     private ProducingType _defaultProducingType;
+    private Executor _refreshExecutor;
 
     @Nullable
     public ProducingType getDefaultProducingType() {
@@ -34,6 +38,18 @@ public abstract class DefaultCacheCreatorSupport extends LimitedCacheCreatorSupp
         _defaultProducingType = defaultProducingType;
     }
 
+    @Nullable
+    public Executor getRefreshExecutor() {
+        return _refreshExecutor;
+    }
+
+    /**
+     * Executor used by all created {@link RefreshEnabledCache}s to refresh their entries. <code>null</code> selects a shared default executor.
+     */
+    public void setRefreshExecutor(@Nullable Executor refreshExecutor) {
+        _refreshExecutor = refreshExecutor;
+    }
+
     @Nonnull
     @Override
     public <K, V> Cache<K, V> create(@Nullable CacheProvider cacheProvider, @Nonnull CacheCreator master, @Nonnull CacheDefinition<K, V, ?> by) throws Exception {
@@ -46,6 +62,20 @@ public abstract class DefaultCacheCreatorSupport extends LimitedCacheCreatorSupp
                 ((ProducingTypeEnabledCache) result).setProducingType(_defaultProducingType);
             }
         }
+        if (result instanceof ConcurrentInMemoryBasedCacheSupport && by instanceof DefaultCacheDefinition) {
+            final Boolean hitBuffering = ((DefaultCacheDefinition) by).getHitBuffering();
+            if (hitBuffering != null) {
+                ((ConcurrentInMemoryBasedCacheSupport) result).setHitBuffering(hitBuffering);
+            }
+        }
+        if (result instanceof RefreshEnabledCache && _refreshExecutor != null) {
+            ((RefreshEnabledCache) result).setRefreshExecutor(_refreshExecutor);
+        }
         return result;
     }
+
+    protected int getConcurrencyLevelFor(@Nonnull CacheDefinition<?, ?, ?> by) {
+        final Integer concurrencyLevel = by instanceof DefaultCacheDefinition ? ((DefaultCacheDefinition<?, ?>) by).getConcurrencyLevel() : null;
+        return concurrencyLevel != null ? concurrencyLevel : ConcurrentInMemoryBasedCacheSupport.DEFAULT_CONCURRENCY_LEVEL;
+    }
 }
@@ -17,12 +17,15 @@ package org.echocat.jomon.cache.management;
 import org.echocat.jomon.cache.*;
 import org.echocat.jomon.runtime.util.ProducingType;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 public class DefaultCacheDefinition<K, V> extends LimitedCacheDefinition<K, V, DefaultCacheDefinition<K, V>> {
 
     private ProducingType _producingType;
+    private Integer _concurrencyLevel;
+    private Boolean _hitBuffering;
 
     @Nonnull
     public static <K, V> DefaultCacheDefinition<K, V> cache(@Nonnull Class<? extends LimitedCache<?, ?>> type, @Nonnull Class<K> keyType, @Nonnull Class<V> valueType) {
@@ -47,6 +50,24 @@ public class DefaultCacheDefinition<K, V> extends LimitedCacheDefinition<K, V, D
         return cache((Class<? extends LimitedCache<?, ?>>)(Object)FifoCache.class, keyType, valueType);
     }
 
+    @Nonnull
+    public static <K, V> DefaultCacheDefinition<K, V> concurrentLruCache(@Nonnull Class<K> keyType, @Nonnull Class<V> valueType) {
+        // noinspection unchecked, RedundantCast
+        return cache((Class<? extends LimitedCache<?, ?>>)(Object)ConcurrentLruCache.class, keyType, valueType);
+    }
+
+    @Nonnull
+    public static <K, V> DefaultCacheDefinition<K, V> concurrentLfuCache(@Nonnull Class<K> keyType, @Nonnull Class<V> valueType) {
+        // noinspection unchecked, RedundantCast
+        return cache((Class<? extends LimitedCache<?, ?>>)(Object)ConcurrentLfuCache.class, keyType, valueType);
+    }
+
+    @Nonnull
+    public static <K, V> DefaultCacheDefinition<K, V> frequencyBucketLfuCache(@Nonnull Class<K> keyType, @Nonnull Class<V> valueType) {
+        // noinspection unchecked, RedundantCast
+        return cache((Class<? extends LimitedCache<?, ?>>)(Object)FrequencyBucketLfuCache.class, keyType, valueType);
+    }
+
     public DefaultCacheDefinition(@Nonnull Class<? extends Cache<?, ?>> requiredType, @Nonnull Class<K> keyType, @Nonnull Class<V> valueType) {
         super(requiredType, keyType, valueType);
     }
@@ -68,4 +89,40 @@ public class DefaultCacheDefinition<K, V> extends LimitedCacheDefinition<K, V, D
         _producingType = producingType;
         return thisInstance();
     }
+
+    @Nullable
+    public Integer getConcurrencyLevel() {
+        return _concurrencyLevel;
+    }
+
+    public void setConcurrencyLevel(@Nullable Integer concurrencyLevel) {
+        _concurrencyLevel = concurrencyLevel;
+    }
+
+    @Nonnull
+    public DefaultCacheDefinition<K, V> withConcurrencyLevel(@Nonnegative int concurrencyLevel) {
+        if (_concurrencyLevel != null) {
+            throw new IllegalStateException("ConcurrencyLevel already set.");
+        }
+        _concurrencyLevel = concurrencyLevel;
+        return thisInstance();
+    }
+
+    @Nullable
+    public Boolean getHitBuffering() {
+        return _hitBuffering;
+    }
+
+    public void setHitBuffering(@Nullable Boolean hitBuffering) {
+        _hitBuffering = hitBuffering;
+    }
+
+    @Nonnull
+    public DefaultCacheDefinition<K, V> withHitBuffering(boolean hitBuffering) {
+        if (_hitBuffering != null) {
+            throw new IllegalStateException("HitBuffering already set.");
+        }
+        _hitBuffering = hitBuffering;
+        return thisInstance();
+    }
 }
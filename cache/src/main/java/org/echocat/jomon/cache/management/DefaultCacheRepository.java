@@ -22,14 +22,27 @@ import org.echocat.jomon.runtime.util.Entry.Impl;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.PreDestroy;
+import javax.annotation.concurrent.ThreadSafe;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.echocat.jomon.cache.CacheUtils.assertValidCacheId;
 import static org.echocat.jomon.runtime.util.ResourceUtils.closeQuietlyIfAutoCloseable;
 
+/**
+ * <h1>Synopsis</h1>
+ * <p>Creates every cache at most once per id and keeps it until it is {@link #remove(String) removed}. Lookups of already created caches
+ * do not lock. The caches requested by {@link #provide(Class, String, CacheDefinition) type and variant} are additionally remembered per
+ * type, so repeated requests do not have to build the id again.</p>
+ */
+@ThreadSafe
 public class DefaultCacheRepository implements CacheRepository, AutoCloseable {
 
-    private final Map<String, Cache<?, ?>> _idToCache = new HashMap<>();
+    private final ConcurrentMap<String, Cache<?, ?>> _idToCache = new ConcurrentHashMap<>();
+    private final Object _lock = new Object();
+
+    private final ConcurrentMap<Class<?>, ResolvedCaches> _typeToResolvedCaches = new ConcurrentHashMap<>();
 
     private final CacheCreator _cacheCreator;
 
@@ -77,54 +90,67 @@ public class DefaultCacheRepository implements CacheRepository, AutoCloseable {
     @Nonnull
     @Override
     public <K, V> Cache<K, V> provide(@Nonnull Class<?> forType, @Nullable String variant, @Nullable CacheDefinition<K, V, ?> defaultDefinition) throws IllegalCacheDefinitionException {
-        final String id;
-        if (variant != null) {
-            id = forType.getName() + "." + variant;
-        } else {
-            id = forType.getName();
+        final ResolvedCaches resolvedCaches = resolvedCachesOf(forType);
+        Cache<?, ?> cache = resolvedCaches.find(variant);
+        if (cache == null) {
+            final String id;
+            if (variant != null) {
+                id = forType.getName() + "." + variant;
+            } else {
+                id = forType.getName();
+            }
+            cache = provide(id, defaultDefinition);
+            synchronized (_lock) {
+                // Only remember the cache if it was not removed in the meantime ...
+                // noinspection ObjectEquality
+                if (_idToCache.get(id) == cache) {
+                    resolvedCaches.register(variant, cache);
+                }
+            }
         }
-        return provide(id, defaultDefinition);
+        // noinspection unchecked
+        return (Cache<K, V>) cache;
     }
 
     @Nonnull
     @Override
     public <K, V> Cache<K, V> provide(@Nonnull String id, @Nullable CacheDefinition<K, V, ?> defaultDefinition) {
-        assertValidCacheId(id);
-        synchronized (_idToCache) {
-            Cache<?, ?> cache = _idToCache.get(id);
-            if (cache == null) {
-                final CacheDefinition<K, V, ?> definition = selectDefinitionBy(id, defaultDefinition);
-                cache = create(id, definition);
-                _idToCache.put(id, cache);
+        Cache<?, ?> cache = _idToCache.get(id);
+        if (cache == null) {
+            assertValidCacheId(id);
+            synchronized (_lock) {
+                cache = _idToCache.get(id);
+                if (cache == null) {
+                    final CacheDefinition<K, V, ?> definition = selectDefinitionBy(id, defaultDefinition);
+                    cache = create(id, definition);
+                    _idToCache.put(id, cache);
+                }
             }
-            // noinspection unchecked
-            return (Cache<K, V>) cache;
         }
+        // noinspection unchecked
+        return (Cache<K, V>) cache;
     }
 
     @Override
     @Nullable
     public <K, V> Cache<K, V> find(@Nonnull String id) {
-        synchronized (_idToCache) {
-            // noinspection unchecked
-            return (Cache<K, V>) _idToCache.get(id);
-        }
+        // noinspection unchecked
+        return (Cache<K, V>) _idToCache.get(id);
     }
 
     @Override
     public void clear() {
-        synchronized (_idToCache) {
-            for (final Cache<?, ?> cache : _idToCache.values()) {
-                if (cache instanceof ClearableCache) {
-                    ((ClearableCache) cache).clear();
-                }
+        for (final Cache<?, ?> cache : _idToCache.values()) {
+            if (cache instanceof ClearableCache) {
+                ((ClearableCache) cache).clear();
             }
         }
     }
 
     @Override
     public void remove(@Nonnull String id) {
-        synchronized (_idToCache) {
+        synchronized (_lock) {
+            _typeToResolvedCaches.clear();
             try {
                 final Cache<?, ?> cache = _idToCache.get(id);
                 if (cache != null) {
@@ -147,10 +173,7 @@ public class DefaultCacheRepository implements CacheRepository, AutoCloseable {
     @Override
     @Nonnull
     public Iterator<Entry<String, Cache<?, ?>>> iterator() {
-        final Set<Map.Entry<String, Cache<?, ?>>> idToCache;
-        synchronized (_idToCache) {
-            idToCache = new HashSet<>(_idToCache.entrySet());
-        }
+        final Set<Map.Entry<String, Cache<?, ?>>> idToCache = new HashSet<>(_idToCache.entrySet());
         return new ConvertingIterator<Map.Entry<String, Cache<?, ?>>, Entry<String, Cache<?,?>>>(idToCache.iterator()) { @Override protected Entry<String, Cache<?, ?>> convert(Map.Entry<String, Cache<?, ?>> input) {
             return new Impl<String, Cache<?, ?>>(input.getKey(), input.getValue());
         }};
@@ -159,7 +182,9 @@ public class DefaultCacheRepository implements CacheRepository, AutoCloseable {
     @Override
     @PreDestroy
     public void close() throws Exception {
-        synchronized (_idToCache) {
+        synchronized (_lock) {
+            beforeShutdown();
+            _typeToResolvedCaches.clear();
             final Iterator<Map.Entry<String,Cache<?,?>>> i = _idToCache.entrySet().iterator();
             while (i.hasNext()) {
                 final Map.Entry<String,Cache<?,?>> entry = i.next();
@@ -180,6 +205,19 @@ public class DefaultCacheRepository implements CacheRepository, AutoCloseable {
         }
     }
 
+    @Nonnull
+    protected ResolvedCaches resolvedCachesOf(@Nonnull Class<?> type) {
+        ResolvedCaches result = _typeToResolvedCaches.get(type);
+        if (result == null) {
+            final ResolvedCaches newResolvedCaches = new ResolvedCaches();
+            result = _typeToResolvedCaches.putIfAbsent(type, newResolvedCaches);
+            if (result == null) {
+                result = newResolvedCaches;
+            }
+        }
+        return result;
+    }
+
     @Nonnull
     protected <K, V> CacheDefinition<K, V, ?> selectDefinitionBy(@Nonnull String id, @Nullable CacheDefinition<K, V, ?> specifiedDefaultDefinition) {
         final Map<String, CacheDefinition<?, ?, ?>> overwrittenCacheDefinitions = _overwrittenCacheDefinitions;
@@ -253,12 +291,23 @@ public class DefaultCacheRepository implements CacheRepository, AutoCloseable {
         }
     }
 
+    protected void beforeShutdown() throws Exception {
+        final Iterable<CacheListener> listeners = _listeners;
+        if (listeners != null) {
+            for (final CacheListener listener : listeners) {
+                if (listener instanceof ShutdownCacheListener) {
+                    ((ShutdownCacheListener)listener).beforeShutdown(this);
+                }
+            }
+        }
+    }
+
     protected <K, V> boolean beforeDestroy(@Nonnull String id, @Nonnull Cache<K, V> cache) throws Exception {
         final Iterable<CacheListener> listeners = _listeners;
         boolean result = true;
         if (listeners != null) {
             for (final CacheListener listener : listeners) {
-                if (listener instanceof CreationCacheListener) {
+                if (listener instanceof DestroyCacheListener) {
                     if (!((DestroyCacheListener)listener).beforeDestroy(id, cache)) {
                         result = false;
                         break;
@@ -280,4 +329,26 @@ public class DefaultCacheRepository implements CacheRepository, AutoCloseable {
         }
     }
 
+    /**
+     * The caches of one type which were already provided, by their variant.
+     */
+    protected static class ResolvedCaches {
+
+        private final ConcurrentMap<String, Cache<?, ?>> _variantToCache = new ConcurrentHashMap<>();
+        private volatile Cache<?, ?> _withoutVariant;
+
+        @Nullable
+        public Cache<?, ?> find(@Nullable String variant) {
+            return variant != null ? _variantToCache.get(variant) : _withoutVariant;
+        }
+
+        public void register(@Nullable String variant, @Nonnull Cache<?, ?> cache) {
+            if (variant != null) {
+                _variantToCache.put(variant, cache);
+            } else {
+                _withoutVariant = cache;
+            }
+        }
+    }
+
 }
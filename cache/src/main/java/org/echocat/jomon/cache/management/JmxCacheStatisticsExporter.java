@@ -0,0 +1,290 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache.management;
+
+import org.echocat.jomon.cache.Cache;
+import org.echocat.jomon.cache.CacheStatistics;
+import org.echocat.jomon.cache.DetailedStatisticsEnabledCache;
+import org.echocat.jomon.cache.EvictionCause;
+import org.echocat.jomon.cache.ProducingStatistics;
+import org.echocat.jomon.cache.WeightLimitedCache;
+import org.echocat.jomon.runtime.util.ByteCount;
+import org.echocat.jomon.runtime.util.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.lang.management.ManagementFactory.getPlatformMBeanServer;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Exports the {@link CacheStatistics statistics} of every {@link DetailedStatisticsEnabledCache} which is created by a
+ * {@link DefaultCacheRepository} over JMX. Add it to the {@link DefaultCacheRepository#setListeners(java.util.Collection) listeners} of
+ * the repository, the caches are then available as <code>org.echocat.jomon.cache:type=Cache,name=&lt;id&gt;</code>.</p>
+ */
+@ThreadSafe
+public class JmxCacheStatisticsExporter implements CreationCacheListener, DestroyCacheListener, AutoCloseable {
+
+    public static final String DEFAULT_DOMAIN = "org.echocat.jomon.cache";
+
+    private static final Logger LOG = LoggerFactory.getLogger(JmxCacheStatisticsExporter.class);
+
+    private final MBeanServer _server;
+    private final ConcurrentMap<String, ObjectName> _registered = new ConcurrentHashMap<>();
+
+    private volatile String _domain = DEFAULT_DOMAIN;
+
+    public JmxCacheStatisticsExporter() {
+        this(getPlatformMBeanServer());
+    }
+
+    public JmxCacheStatisticsExporter(@Nonnull MBeanServer server) {
+        _server = server;
+    }
+
+    @Nonnull
+    public String getDomain() {
+        return _domain;
+    }
+
+    public void setDomain(@Nonnull String domain) {
+        _domain = domain;
+    }
+
+    @Override
+    public boolean beforeCreate(@Nonnull String id, @Nonnull CacheDefinition<?, ?, ?> definition) {
+        return true;
+    }
+
+    @Override
+    public void afterCreate(@Nonnull String id, @Nonnull CacheDefinition<?, ?, ?> definition, @Nonnull Cache<?, ?> cache) {
+        if (cache instanceof DetailedStatisticsEnabledCache) {
+            register(id, (DetailedStatisticsEnabledCache<?, ?>) cache);
+        }
+    }
+
+    @Override
+    public boolean beforeDestroy(@Nonnull String id, @Nonnull Cache<?, ?> cache) {
+        return true;
+    }
+
+    @Override
+    public void afterDestroy(@Nonnull String id, @Nonnull Cache<?, ?> cache) {
+        unregister(id);
+    }
+
+    public void register(@Nonnull String id, @Nonnull DetailedStatisticsEnabledCache<?, ?> cache) {
+        unregister(id);
+        try {
+            final ObjectName objectName = createObjectName(id);
+            _server.registerMBean(new StandardMBean(new Adapter(cache), CacheStatisticsMBean.class), objectName);
+            _registered.put(id, objectName);
+        } catch (final Exception e) {
+            LOG.warn("Could not register cache '" + id + "' in JMX. This cache will be available but its statistics are not visible over JMX.", e);
+        }
+    }
+
+    public void unregister(@Nonnull String id) {
+        final ObjectName objectName = _registered.remove(id);
+        if (objectName != null) {
+            try {
+                _server.unregisterMBean(objectName);
+            } catch (final Exception e) {
+                LOG.warn("Could not unregister cache '" + id + "' in JMX. Its statistics are still visible over JMX.", e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (final Map.Entry<String, ObjectName> idAndObjectName : _registered.entrySet()) {
+            unregister(idAndObjectName.getKey());
+        }
+    }
+
+    @Nonnull
+    protected ObjectName createObjectName(@Nonnull String id) throws MalformedObjectNameException {
+        return new ObjectName(_domain + ":type=Cache,name=" + ObjectName.quote(id));
+    }
+
+    protected static class Adapter implements CacheStatisticsMBean {
+
+        private final DetailedStatisticsEnabledCache<?, ?> _cache;
+
+        public Adapter(@Nonnull DetailedStatisticsEnabledCache<?, ?> cache) {
+            _cache = cache;
+        }
+
+        @Override
+        public long getNumberOfRequests() {
+            return statistics().getNumberOfRequests();
+        }
+
+        @Override
+        public long getNumberOfHits() {
+            return statistics().getNumberOfHits();
+        }
+
+        @Override
+        public long getNumberOfMisses() {
+            return statistics().getNumberOfMisses();
+        }
+
+        @Override
+        public Double getHitRatio() {
+            return statistics().getHitRatio();
+        }
+
+        @Override
+        public String getMeasurePeriod() {
+            return statistics().getMeasurePeriod().toString();
+        }
+
+        @Override
+        public long getNumberOfRequestsOverPeriod() {
+            return statistics().getNumberOfRequestsOverPeriod();
+        }
+
+        @Override
+        public long getNumberOfHitsOverPeriod() {
+            return statistics().getNumberOfHitsOverPeriod();
+        }
+
+        @Override
+        public long getNumberOfMissesOverPeriod() {
+            return statistics().getNumberOfMissesOverPeriod();
+        }
+
+        @Override
+        public Double getHitRatioOverPeriod() {
+            return statistics().getHitRatioOverPeriod();
+        }
+
+        @Override
+        public Double getMissRatioOverPeriod() {
+            return statistics().getMissRatioOverPeriod();
+        }
+
+        @Override
+        public long getNumberOfEvictions() {
+            return statistics().getNumberOfEvictions();
+        }
+
+        @Override
+        public long getNumberOfCapacityEvictions() {
+            return statistics().getNumberOfEvictions(EvictionCause.capacity);
+        }
+
+        @Override
+        public long getNumberOfExpiryEvictions() {
+            return statistics().getNumberOfEvictions(EvictionCause.expiry);
+        }
+
+        @Override
+        public long getNumberOfExplicitRemovals() {
+            return statistics().getNumberOfEvictions(EvictionCause.explicit);
+        }
+
+        @Override
+        public long getNumberOfReplacements() {
+            return statistics().getNumberOfEvictions(EvictionCause.replaced);
+        }
+
+        @Override
+        public long getNumberOfProductions() {
+            return producingStatistics().getNumberOfProductions();
+        }
+
+        @Override
+        public long getNumberOfCoalescedRequests() {
+            return producingStatistics().getNumberOfCoalescedRequests();
+        }
+
+        @Override
+        public double getAverageProducingMillis() {
+            return toMillis(producingStatistics().getAverageProducingDuration());
+        }
+
+        @Override
+        public double getMedianProducingMillis() {
+            return toMillis(producingStatistics().getProducingDurationAt(50));
+        }
+
+        @Override
+        public double getProducing95thPercentileMillis() {
+            return toMillis(producingStatistics().getProducingDurationAt(95));
+        }
+
+        @Override
+        public double getProducing99thPercentileMillis() {
+            return toMillis(producingStatistics().getProducingDurationAt(99));
+        }
+
+        @Override
+        public double getMaximumProducingMillis() {
+            return toMillis(producingStatistics().getMaximumProducingDuration());
+        }
+
+        @Override
+        public Long getSize() {
+            return _cache.size();
+        }
+
+        @Override
+        public Long getWeightInBytes() {
+            return _cache instanceof WeightLimitedCache ? toBytes(((WeightLimitedCache<?, ?>) _cache).getWeight()) : null;
+        }
+
+        @Override
+        public Long getEstimatedSizeInBytes() {
+            return toBytes(_cache.getEstimatedSize());
+        }
+
+        @Override
+        public void resetStatistics() {
+            _cache.resetStatistics();
+        }
+
+        @Nonnull
+        protected CacheStatistics statistics() {
+            return _cache.getStatistics();
+        }
+
+        @Nonnull
+        protected ProducingStatistics producingStatistics() {
+            return statistics().getProducingStatistics();
+        }
+
+        protected static double toMillis(@Nonnull Duration duration) {
+            return duration.in(MICROSECONDS) / 1000d;
+        }
+
+        @Nullable
+        protected static Long toBytes(@Nullable ByteCount byteCount) {
+            return byteCount != null ? byteCount.toByteCount() : null;
+        }
+    }
+}
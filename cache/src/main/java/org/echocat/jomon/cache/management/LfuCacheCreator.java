@@ -15,6 +15,8 @@
 package org.echocat.jomon.cache.management;
 
 import org.echocat.jomon.cache.Cache;
+import org.echocat.jomon.cache.ConcurrentLfuCache;
+import org.echocat.jomon.cache.FrequencyBucketLfuCache;
 import org.echocat.jomon.cache.LfuCache;
 import org.echocat.jomon.cache.LimitedCache;
 
@@ -24,13 +26,21 @@ public class LfuCacheCreator extends DefaultCacheCreatorSupport {
 
     @Override
     public boolean canHandleType(@Nonnull Class<? extends Cache<?, ?>> type) throws Exception {
-        return LfuCache.class.isAssignableFrom(type);
+        return LfuCache.class.isAssignableFrom(type) || ConcurrentLfuCache.class.isAssignableFrom(type) || FrequencyBucketLfuCache.class.isAssignableFrom(type);
     }
 
     @Nonnull
     @Override
     protected <K, V> LimitedCache<K, V> newInstance(@Nonnull CacheDefinition<K, V, ?> by) throws Exception {
-        return new LfuCache<>(by.getKeyType(), by.getValueType());
+        final LimitedCache<K, V> result;
+        if (FrequencyBucketLfuCache.class.isAssignableFrom(by.getRequiredType())) {
+            result = new FrequencyBucketLfuCache<>(by.getKeyType(), by.getValueType(), getConcurrencyLevelFor(by));
+        } else if (ConcurrentLfuCache.class.isAssignableFrom(by.getRequiredType())) {
+            result = new ConcurrentLfuCache<>(by.getKeyType(), by.getValueType(), getConcurrencyLevelFor(by));
+        } else {
+            result = new LfuCache<>(by.getKeyType(), by.getValueType());
+        }
+        return result;
     }
 
 }
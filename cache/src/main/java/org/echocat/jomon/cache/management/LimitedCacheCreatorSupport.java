@@ -15,13 +15,62 @@
 package org.echocat.jomon.cache.management;
 
 import org.echocat.jomon.cache.Cache;
+import org.echocat.jomon.cache.ExpirationSweeper;
+import org.echocat.jomon.cache.ExpirationSweeperEnabledCache;
 import org.echocat.jomon.cache.LimitedCache;
+import org.echocat.jomon.cache.RefreshEnabledCache;
+import org.echocat.jomon.cache.WeightLimitedCache;
+import org.echocat.jomon.cache.Weigher;
+import org.echocat.jomon.runtime.util.ByteCount;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 public abstract class LimitedCacheCreatorSupport extends CacheCreatorSupport {
 
+    private Weigher<Object, Object> _defaultWeigher;
+    private ByteCount _defaultMaximumWeight;
+    private ExpirationSweeper _expirationSweeper;
+
+    @Nullable
+    public Weigher<Object, Object> getDefaultWeigher() {
+        return _defaultWeigher;
+    }
+
+    /**
+     * Weigher used by all created {@link WeightLimitedCache}s whose definition does not define its own weigher.
+     */
+    public void setDefaultWeigher(@Nullable Weigher<Object, Object> defaultWeigher) {
+        _defaultWeigher = defaultWeigher;
+    }
+
+    @Nullable
+    public ByteCount getDefaultMaximumWeight() {
+        return _defaultMaximumWeight;
+    }
+
+    /**
+     * Maximum weight of all created {@link WeightLimitedCache}s whose definition does not define its own maximum weight.
+     */
+    public void setDefaultMaximumWeight(@Nullable ByteCount defaultMaximumWeight) {
+        _defaultMaximumWeight = defaultMaximumWeight;
+    }
+
+    @Nullable
+    public ExpirationSweeper getExpirationSweeper() {
+        return _expirationSweeper;
+    }
+
+    /**
+     * Sweeper used by all created {@link ExpirationSweeperEnabledCache}s to reclaim their expired entries in background, if not disabled by
+     * {@link LimitedCacheDefinition#withBackgroundExpiration(boolean)}. This is <code>null</code> by default, so the created caches keep
+     * their own default and background expiration is only enabled for caches whose definition requests it. Registering every cache with a
+     * sweeper is not for free, for example if caches are created for every request.
+     */
+    public void setExpirationSweeper(@Nullable ExpirationSweeper expirationSweeper) {
+        _expirationSweeper = expirationSweeper;
+    }
+
     @Override
     @Nonnull
     public <K, V> Cache<K, V> create(@Nullable CacheProvider cacheProvider, @Nonnull CacheCreator master, @Nonnull CacheDefinition<K, V, ?> by) throws Exception {
@@ -31,10 +80,50 @@ public abstract class LimitedCacheCreatorSupport extends CacheCreatorSupport {
             final LimitedCacheDefinition<K, V, ?> limitedDefinition = (LimitedCacheDefinition<K, V, ?>) by;
             result.setCapacity(limitedDefinition.getCapacity());
             result.setMaximumLifetime(limitedDefinition.getMaximumLifetime());
+            if (result instanceof RefreshEnabledCache) {
+                ((RefreshEnabledCache<K, V>) result).setRefreshAfter(limitedDefinition.getRefreshAfter());
+            }
+        }
+        if (result instanceof WeightLimitedCache) {
+            applyWeightLimitTo((WeightLimitedCache<K, V>) result, by);
+        }
+        if (result instanceof ExpirationSweeperEnabledCache) {
+            applyExpirationSweeperTo((ExpirationSweeperEnabledCache<K, V>) result, by);
         }
         return result;
     }
 
+    protected <K, V> void applyExpirationSweeperTo(@Nonnull ExpirationSweeperEnabledCache<K, V> cache, @Nonnull CacheDefinition<K, V, ?> by) {
+        final Boolean backgroundExpiration = by instanceof LimitedCacheDefinition ? ((LimitedCacheDefinition<?, ?, ?>) by).getBackgroundExpiration() : null;
+        final ExpirationSweeper expirationSweeper = _expirationSweeper;
+        if (backgroundExpiration == null) {
+            if (expirationSweeper != null) {
+                cache.setExpirationSweeper(expirationSweeper);
+            }
+        } else if (backgroundExpiration) {
+            cache.setExpirationSweeper(expirationSweeper != null ? expirationSweeper : ExpirationSweeper.getDefaultInstance());
+        } else {
+            cache.setExpirationSweeper(null);
+        }
+    }
+
+    protected <K, V> void applyWeightLimitTo(@Nonnull WeightLimitedCache<K, V> cache, @Nonnull CacheDefinition<K, V, ?> by) {
+        // noinspection unchecked
+        final LimitedCacheDefinition<K, V, ?> limitedDefinition = by instanceof LimitedCacheDefinition ? (LimitedCacheDefinition<K, V, ?>) by : null;
+        final Weigher<? super K, ? super V> weigher;
+        if (limitedDefinition != null && limitedDefinition.getWeigher() != null) {
+            weigher = limitedDefinition.getWeigher();
+        } else {
+            weigher = _defaultWeigher;
+        }
+        final ByteCount maximumWeight = limitedDefinition != null && limitedDefinition.getMaximumWeight() != null ? limitedDefinition.getMaximumWeight() : _defaultMaximumWeight;
+        if (maximumWeight != null && weigher == null) {
+            throw new IllegalCacheDefinitionException("There is a maximumWeight of " + maximumWeight + " defined for " + by + " but no weigher.");
+        }
+        cache.setWeigher(weigher);
+        cache.setMaximumWeight(maximumWeight);
+    }
+
     @Nonnull
     protected abstract <K, V> LimitedCache<K, V> newInstance(@Nonnull CacheDefinition<K, V, ?> by) throws Exception;
 
@@ -15,6 +15,8 @@
 package org.echocat.jomon.cache.management;
 
 import org.echocat.jomon.cache.Cache;
+import org.echocat.jomon.cache.Weigher;
+import org.echocat.jomon.runtime.util.ByteCount;
 import org.echocat.jomon.runtime.util.Duration;
 
 import javax.annotation.Nonnegative;
@@ -25,6 +27,10 @@ public abstract class LimitedCacheDefinition<K, V, T extends LimitedCacheDefinit
 
     private Long _capacity;
     private Duration _maximumLifetime;
+    private Duration _refreshAfter;
+    private ByteCount _maximumWeight;
+    private Weigher<? super K, ? super V> _weigher;
+    private Boolean _backgroundExpiration;
 
     public LimitedCacheDefinition(@Nonnull Class<? extends Cache<?, ?>> requiredType, @Nonnull Class<K> keyType, @Nonnull Class<V> valueType) {
         super(requiredType, keyType, valueType);
@@ -52,6 +58,58 @@ public abstract class LimitedCacheDefinition<K, V, T extends LimitedCacheDefinit
         return withMaximumLifetime(new Duration(maximumLifetime));
     }
 
+    /**
+     * After the given duration a requested entry is produced again in background while the current value is still returned.
+     */
+    @Nonnull
+    public T withRefreshAfter(@Nonnull Duration refreshAfter) {
+        setRefreshAfter(refreshAfter);
+        return thisInstance();
+    }
+
+    @Nonnull
+    public T withRefreshAfter(@Nonnull String refreshAfter) {
+        return withRefreshAfter(new Duration(refreshAfter));
+    }
+
+    @Nonnull
+    public T withRefreshAfter(@Nonnegative long refreshAfter) {
+        return withRefreshAfter(new Duration(refreshAfter));
+    }
+
+    /**
+     * Limits the sum of the weights of all entries. If no {@link #withWeigher(Weigher) weigher} is defined the default weigher of the
+     * {@link LimitedCacheCreatorSupport creator} is used.
+     */
+    @Nonnull
+    public T withMaximumWeight(@Nonnull ByteCount maximumWeight) {
+        setMaximumWeight(maximumWeight);
+        return thisInstance();
+    }
+
+    @Nonnull
+    public T withMaximumWeight(@Nonnull String maximumWeight) {
+        return withMaximumWeight(new ByteCount(maximumWeight));
+    }
+
+    @Nonnull
+    public T withWeigher(@Nonnull Weigher<? super K, ? super V> weigher) {
+        setWeigher(weigher);
+        return thisInstance();
+    }
+
+    /**
+     * If enabled the expired entries are reclaimed in background by the {@link LimitedCacheCreatorSupport#getExpirationSweeper() expiration
+     * sweeper of the creator} or the {@link org.echocat.jomon.cache.ExpirationSweeper#getDefaultInstance() shared one} if the creator has
+     * none. If disabled expired entries are only reclaimed if they are requested or the capacity is reached. If not set the cache keeps its
+     * own default unless the creator has an expiration sweeper.
+     */
+    @Nonnull
+    public T withBackgroundExpiration(boolean backgroundExpiration) {
+        setBackgroundExpiration(backgroundExpiration);
+        return thisInstance();
+    }
+
     public void setCapacity(@Nullable Long capacity) {
         _capacity = capacity;
     }
@@ -60,6 +118,22 @@ public abstract class LimitedCacheDefinition<K, V, T extends LimitedCacheDefinit
         _maximumLifetime = maximumLifetime;
     }
 
+    public void setRefreshAfter(@Nullable Duration refreshAfter) {
+        _refreshAfter = refreshAfter;
+    }
+
+    public void setMaximumWeight(@Nullable ByteCount maximumWeight) {
+        _maximumWeight = maximumWeight;
+    }
+
+    public void setWeigher(@Nullable Weigher<? super K, ? super V> weigher) {
+        _weigher = weigher;
+    }
+
+    public void setBackgroundExpiration(@Nullable Boolean backgroundExpiration) {
+        _backgroundExpiration = backgroundExpiration;
+    }
+
     @Nullable
     public Long getCapacity() {
         return _capacity;
@@ -70,4 +144,24 @@ public abstract class LimitedCacheDefinition<K, V, T extends LimitedCacheDefinit
         return _maximumLifetime;
     }
 
+    @Nullable
+    public Duration getRefreshAfter() {
+        return _refreshAfter;
+    }
+
+    @Nullable
+    public ByteCount getMaximumWeight() {
+        return _maximumWeight;
+    }
+
+    @Nullable
+    public Weigher<? super K, ? super V> getWeigher() {
+        return _weigher;
+    }
+
+    @Nullable
+    public Boolean getBackgroundExpiration() {
+        return _backgroundExpiration;
+    }
+
 }
@@ -15,6 +15,7 @@
 package org.echocat.jomon.cache.management;
 
 import org.echocat.jomon.cache.Cache;
+import org.echocat.jomon.cache.ConcurrentLruCache;
 import org.echocat.jomon.cache.LimitedCache;
 import org.echocat.jomon.cache.LruCache;
 
@@ -24,13 +25,19 @@ public class LruCacheCreator extends DefaultCacheCreatorSupport {
 
     @Override
     public boolean canHandleType(@Nonnull Class<? extends Cache<?, ?>> type) throws Exception {
-        return LruCache.class.isAssignableFrom(type);
+        return LruCache.class.isAssignableFrom(type) || ConcurrentLruCache.class.isAssignableFrom(type);
     }
 
     @Nonnull
     @Override
     protected <K, V> LimitedCache<K, V> newInstance(@Nonnull CacheDefinition<K, V, ?> by) throws Exception {
-        return new LruCache<>(by.getKeyType(), by.getValueType());
+        final LimitedCache<K, V> result;
+        if (ConcurrentLruCache.class.isAssignableFrom(by.getRequiredType())) {
+            result = new ConcurrentLruCache<>(by.getKeyType(), by.getValueType(), getConcurrencyLevelFor(by));
+        } else {
+            result = new LruCache<>(by.getKeyType(), by.getValueType());
+        }
+        return result;
     }
 
 }
@@ -0,0 +1,71 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache.management;
+
+import org.echocat.jomon.cache.Cache;
+import org.echocat.jomon.cache.LimitedCache;
+import org.echocat.jomon.cache.OffHeapCache;
+import org.echocat.jomon.cache.OffHeapStorage.DirectSlabFactory;
+import org.echocat.jomon.cache.OffHeapStorage.SlabFactory;
+import org.echocat.jomon.runtime.io.Serializer;
+import org.echocat.jomon.runtime.util.ByteCount;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import static org.echocat.jomon.cache.OffHeapStorage.DEFAULT_BLOCK_SIZE;
+import static org.echocat.jomon.cache.OffHeapStorage.DEFAULT_SLAB_SIZE;
+import static org.echocat.jomon.runtime.io.Serializers.getSerializerOf;
+
+public class OffHeapCacheCreator extends LimitedCacheCreatorSupport {
+
+    private SlabFactory _defaultSlabFactory;
+
+    @Nullable
+    public SlabFactory getDefaultSlabFactory() {
+        return _defaultSlabFactory;
+    }
+
+    /**
+     * Used for all definitions without an own {@link OffHeapCacheDefinition#getSlabFactory() slab factory}. <code>null</code> selects direct byte
+     * buffers.
+     */
+    public void setDefaultSlabFactory(@Nullable SlabFactory defaultSlabFactory) {
+        _defaultSlabFactory = defaultSlabFactory;
+    }
+
+    @Override
+    public boolean canHandleType(@Nonnull Class<? extends Cache<?, ?>> type) throws Exception {
+        return OffHeapCache.class.isAssignableFrom(type);
+    }
+
+    @Nonnull
+    @Override
+    protected <K, V> LimitedCache<K, V> newInstance(@Nonnull CacheDefinition<K, V, ?> by) throws Exception {
+        // noinspection unchecked
+        final OffHeapCacheDefinition<K, V> definition = by instanceof OffHeapCacheDefinition ? (OffHeapCacheDefinition<K, V>) by : null;
+        final Serializer<K> keySerializer = definition != null && definition.getKeySerializer() != null ? definition.getKeySerializer() : getSerializerOf(by.getKeyType());
+        final Serializer<V> valueSerializer = definition != null && definition.getValueSerializer() != null ? definition.getValueSerializer() : getSerializerOf(by.getValueType());
+        final SlabFactory slabFactory = definition != null && definition.getSlabFactory() != null ? definition.getSlabFactory() : getDefaultSlabFactory();
+        final ByteCount blockSize = definition != null && definition.getBlockSize() != null ? definition.getBlockSize() : DEFAULT_BLOCK_SIZE;
+        final ByteCount slabSize = definition != null && definition.getSlabSize() != null ? definition.getSlabSize() : DEFAULT_SLAB_SIZE;
+        final OffHeapCache<K, V> result = new OffHeapCache<>(by.getKeyType(), by.getValueType(), keySerializer, valueSerializer, slabFactory != null ? slabFactory : new DirectSlabFactory(), blockSize, slabSize);
+        if (definition != null && definition.getMaximumSize() != null) {
+            result.setMaximumSize(definition.getMaximumSize());
+        }
+        return result;
+    }
+
+}
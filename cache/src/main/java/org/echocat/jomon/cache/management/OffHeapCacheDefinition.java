@@ -0,0 +1,184 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache.management;
+
+import org.echocat.jomon.cache.Cache;
+import org.echocat.jomon.cache.OffHeapCache;
+import org.echocat.jomon.cache.OffHeapStorage.SlabFactory;
+import org.echocat.jomon.runtime.io.Serializer;
+import org.echocat.jomon.runtime.util.ByteCount;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import static org.echocat.jomon.runtime.util.ByteCount.byteCountOf;
+
+public class OffHeapCacheDefinition<K, V> extends LimitedCacheDefinition<K, V, OffHeapCacheDefinition<K, V>> {
+
+    @Nonnull
+    public static <K, V> OffHeapCacheDefinition<K, V> offHeapCache(@Nonnull Class<K> keyType, @Nonnull Class<V> valueType) {
+        return new OffHeapCacheDefinition<>(keyType, valueType);
+    }
+
+    @Nonnull
+    public static <K, V> OffHeapCacheDefinition<K, V> offHeapCacheOf(@Nonnull Class<K> keyType, @Nonnull Class<V> valueType) {
+        return offHeapCache(keyType, valueType);
+    }
+
+    private Serializer<K> _keySerializer;
+    private Serializer<V> _valueSerializer;
+    private ByteCount _maximumSize;
+    private ByteCount _blockSize;
+    private ByteCount _slabSize;
+    private SlabFactory _slabFactory;
+
+    public OffHeapCacheDefinition(@Nonnull Class<K> keyType, @Nonnull Class<V> valueType) {
+        // noinspection unchecked
+        super((Class<? extends Cache<?, ?>>) (Class) OffHeapCache.class, keyType, valueType);
+    }
+
+    /**
+     * @return <code>null</code> if the serializer is looked up using {@link org.echocat.jomon.runtime.io.Serializers#getSerializerOf(Class)}.
+     */
+    @Nullable
+    public Serializer<K> getKeySerializer() {
+        return _keySerializer;
+    }
+
+    public void setKeySerializer(@Nullable Serializer<K> keySerializer) {
+        _keySerializer = keySerializer;
+    }
+
+    @Nonnull
+    public OffHeapCacheDefinition<K, V> withKeySerializer(@Nonnull Serializer<K> keySerializer) {
+        if (_keySerializer != null) {
+            throw new IllegalStateException("KeySerializer already set.");
+        }
+        _keySerializer = keySerializer;
+        return thisInstance();
+    }
+
+    /**
+     * @return <code>null</code> if the serializer is looked up using {@link org.echocat.jomon.runtime.io.Serializers#getSerializerOf(Class)}.
+     */
+    @Nullable
+    public Serializer<V> getValueSerializer() {
+        return _valueSerializer;
+    }
+
+    public void setValueSerializer(@Nullable Serializer<V> valueSerializer) {
+        _valueSerializer = valueSerializer;
+    }
+
+    @Nonnull
+    public OffHeapCacheDefinition<K, V> withValueSerializer(@Nonnull Serializer<V> valueSerializer) {
+        if (_valueSerializer != null) {
+            throw new IllegalStateException("ValueSerializer already set.");
+        }
+        _valueSerializer = valueSerializer;
+        return thisInstance();
+    }
+
+    @Nullable
+    public ByteCount getMaximumSize() {
+        return _maximumSize;
+    }
+
+    public void setMaximumSize(@Nullable ByteCount maximumSize) {
+        _maximumSize = maximumSize;
+    }
+
+    @Nonnull
+    public OffHeapCacheDefinition<K, V> withMaximumSize(@Nonnull ByteCount maximumSize) {
+        if (_maximumSize != null) {
+            throw new IllegalStateException("MaximumSize already set.");
+        }
+        _maximumSize = maximumSize;
+        return thisInstance();
+    }
+
+    @Nonnull
+    public OffHeapCacheDefinition<K, V> withMaximumSize(@Nonnull String maximumSize) {
+        return withMaximumSize(byteCountOf(maximumSize));
+    }
+
+    @Nullable
+    public ByteCount getBlockSize() {
+        return _blockSize;
+    }
+
+    public void setBlockSize(@Nullable ByteCount blockSize) {
+        _blockSize = blockSize;
+    }
+
+    @Nonnull
+    public OffHeapCacheDefinition<K, V> withBlockSize(@Nonnull ByteCount blockSize) {
+        if (_blockSize != null) {
+            throw new IllegalStateException("BlockSize already set.");
+        }
+        _blockSize = blockSize;
+        return thisInstance();
+    }
+
+    @Nonnull
+    public OffHeapCacheDefinition<K, V> withBlockSize(@Nonnull String blockSize) {
+        return withBlockSize(byteCountOf(blockSize));
+    }
+
+    @Nullable
+    public ByteCount getSlabSize() {
+        return _slabSize;
+    }
+
+    public void setSlabSize(@Nullable ByteCount slabSize) {
+        _slabSize = slabSize;
+    }
+
+    @Nonnull
+    public OffHeapCacheDefinition<K, V> withSlabSize(@Nonnull ByteCount slabSize) {
+        if (_slabSize != null) {
+            throw new IllegalStateException("SlabSize already set.");
+        }
+        _slabSize = slabSize;
+        return thisInstance();
+    }
+
+    @Nonnull
+    public OffHeapCacheDefinition<K, V> withSlabSize(@Nonnull String slabSize) {
+        return withSlabSize(byteCountOf(slabSize));
+    }
+
+    /**
+     * @return <code>null</code> if direct byte buffers are used.
+     */
+    @Nullable
+    public SlabFactory getSlabFactory() {
+        return _slabFactory;
+    }
+
+    public void setSlabFactory(@Nullable SlabFactory slabFactory) {
+        _slabFactory = slabFactory;
+    }
+
+    @Nonnull
+    public OffHeapCacheDefinition<K, V> withSlabFactory(@Nonnull SlabFactory slabFactory) {
+        if (_slabFactory != null) {
+            throw new IllegalStateException("SlabFactory already set.");
+        }
+        _slabFactory = slabFactory;
+        return thisInstance();
+    }
+
+}
@@ -0,0 +1,53 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache.management;
+
+import org.echocat.jomon.cache.LimitedCache;
+import org.echocat.jomon.cache.PersistentCache;
+import org.echocat.jomon.runtime.io.Serializer;
+
+import javax.annotation.Nonnull;
+
+import static org.echocat.jomon.cache.PersistentCache.DEFAULT_SEGMENT_SIZE;
+import static org.echocat.jomon.runtime.io.Serializers.getSerializerOf;
+
+public class PersistentCacheCreator extends LimitedCacheCreatorSupport {
+
+    @Override
+    public boolean canHandleType(@Nonnull CacheDefinition<?, ?, ?> by) throws Exception {
+        return by instanceof PersistentCacheDefinition;
+    }
+
+    @Nonnull
+    @Override
+    protected <K, V> LimitedCache<K, V> newInstance(@Nonnull CacheDefinition<K, V, ?> by) throws Exception {
+        if (!canHandleType(by)) {
+            throw new IllegalArgumentException("Could not handle " + by + ".");
+        }
+        // noinspection unchecked
+        final PersistentCacheDefinition<K, V> definition = (PersistentCacheDefinition<K, V>) by;
+        final Serializer<K> keySerializer = definition.getKeySerializer() != null ? definition.getKeySerializer() : getSerializerOf(by.getKeyType());
+        final Serializer<V> valueSerializer = definition.getValueSerializer() != null ? definition.getValueSerializer() : getSerializerOf(by.getValueType());
+        final PersistentCache<K, V> result = new PersistentCache<>(by.getKeyType(), by.getValueType(), keySerializer, valueSerializer, definition.getDirectory(), definition.getSegmentSize() != null ? definition.getSegmentSize() : DEFAULT_SEGMENT_SIZE);
+        if (definition.getCompactionThreshold() != null) {
+            result.setCompactionThreshold(definition.getCompactionThreshold());
+        }
+        if (definition.getSynchronousWrites() != null) {
+            result.setSynchronousWrites(definition.getSynchronousWrites());
+        }
+        return result;
+    }
+
+}
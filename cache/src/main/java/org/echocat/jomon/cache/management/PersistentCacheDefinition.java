@@ -0,0 +1,160 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache.management;
+
+import org.echocat.jomon.cache.Cache;
+import org.echocat.jomon.cache.PersistentCache;
+import org.echocat.jomon.runtime.io.Serializer;
+import org.echocat.jomon.runtime.util.ByteCount;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+
+import static org.echocat.jomon.runtime.util.ByteCount.byteCountOf;
+
+public class PersistentCacheDefinition<K, V> extends LimitedCacheDefinition<K, V, PersistentCacheDefinition<K, V>> {
+
+    @Nonnull
+    public static <K, V> PersistentCacheDefinition<K, V> persistentCache(@Nonnull Class<K> keyType, @Nonnull Class<V> valueType, @Nonnull File directory) {
+        return new PersistentCacheDefinition<>(keyType, valueType, directory);
+    }
+
+    @Nonnull
+    public static <K, V> PersistentCacheDefinition<K, V> persistentCacheOf(@Nonnull Class<K> keyType, @Nonnull Class<V> valueType, @Nonnull File directory) {
+        return persistentCache(keyType, valueType, directory);
+    }
+
+    private final File _directory;
+
+    private Serializer<K> _keySerializer;
+    private Serializer<V> _valueSerializer;
+    private ByteCount _segmentSize;
+    private Double _compactionThreshold;
+    private Boolean _synchronousWrites;
+
+    public PersistentCacheDefinition(@Nonnull Class<K> keyType, @Nonnull Class<V> valueType, @Nonnull File directory) {
+        // noinspection unchecked
+        super((Class<? extends Cache<?, ?>>) (Class) PersistentCache.class, keyType, valueType);
+        _directory = directory;
+    }
+
+    @Nonnull
+    public File getDirectory() {
+        return _directory;
+    }
+
+    /**
+     * @return <code>null</code> if the serializer is looked up using {@link org.echocat.jomon.runtime.io.Serializers#getSerializerOf(Class)}.
+     */
+    @Nullable
+    public Serializer<K> getKeySerializer() {
+        return _keySerializer;
+    }
+
+    public void setKeySerializer(@Nullable Serializer<K> keySerializer) {
+        _keySerializer = keySerializer;
+    }
+
+    @Nonnull
+    public PersistentCacheDefinition<K, V> withKeySerializer(@Nonnull Serializer<K> keySerializer) {
+        if (_keySerializer != null) {
+            throw new IllegalStateException("KeySerializer already set.");
+        }
+        _keySerializer = keySerializer;
+        return thisInstance();
+    }
+
+    /**
+     * @return <code>null</code> if the serializer is looked up using {@link org.echocat.jomon.runtime.io.Serializers#getSerializerOf(Class)}.
+     */
+    @Nullable
+    public Serializer<V> getValueSerializer() {
+        return _valueSerializer;
+    }
+
+    public void setValueSerializer(@Nullable Serializer<V> valueSerializer) {
+        _valueSerializer = valueSerializer;
+    }
+
+    @Nonnull
+    public PersistentCacheDefinition<K, V> withValueSerializer(@Nonnull Serializer<V> valueSerializer) {
+        if (_valueSerializer != null) {
+            throw new IllegalStateException("ValueSerializer already set.");
+        }
+        _valueSerializer = valueSerializer;
+        return thisInstance();
+    }
+
+    @Nullable
+    public ByteCount getSegmentSize() {
+        return _segmentSize;
+    }
+
+    public void setSegmentSize(@Nullable ByteCount segmentSize) {
+        _segmentSize = segmentSize;
+    }
+
+    @Nonnull
+    public PersistentCacheDefinition<K, V> withSegmentSize(@Nonnull ByteCount segmentSize) {
+        if (_segmentSize != null) {
+            throw new IllegalStateException("SegmentSize already set.");
+        }
+        _segmentSize = segmentSize;
+        return thisInstance();
+    }
+
+    @Nonnull
+    public PersistentCacheDefinition<K, V> withSegmentSize(@Nonnull String segmentSize) {
+        return withSegmentSize(byteCountOf(segmentSize));
+    }
+
+    @Nullable
+    public Double getCompactionThreshold() {
+        return _compactionThreshold;
+    }
+
+    public void setCompactionThreshold(@Nullable Double compactionThreshold) {
+        _compactionThreshold = compactionThreshold;
+    }
+
+    @Nonnull
+    public PersistentCacheDefinition<K, V> withCompactionThreshold(double compactionThreshold) {
+        if (_compactionThreshold != null) {
+            throw new IllegalStateException("CompactionThreshold already set.");
+        }
+        _compactionThreshold = compactionThreshold;
+        return thisInstance();
+    }
+
+    @Nullable
+    public Boolean getSynchronousWrites() {
+        return _synchronousWrites;
+    }
+
+    public void setSynchronousWrites(@Nullable Boolean synchronousWrites) {
+        _synchronousWrites = synchronousWrites;
+    }
+
+    @Nonnull
+    public PersistentCacheDefinition<K, V> withSynchronousWrites(boolean synchronousWrites) {
+        if (_synchronousWrites != null) {
+            throw new IllegalStateException("SynchronousWrites already set.");
+        }
+        _synchronousWrites = synchronousWrites;
+        return thisInstance();
+    }
+
+}
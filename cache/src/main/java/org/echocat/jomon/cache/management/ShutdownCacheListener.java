@@ -0,0 +1,31 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+
+package org.echocat.jomon.cache.management;
+
+import org.echocat.jomon.cache.CacheListener;
+
+import javax.annotation.Nonnull;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Is informed when a {@link CacheRepository} is closed - while all of its caches are still alive. In contrast to a
+ * {@link DestroyCacheListener} it is not called if only a single cache is removed from the repository.</p>
+ */
+public interface ShutdownCacheListener extends CacheListener {
+
+    public void beforeShutdown(@Nonnull CacheRepository repository);
+
+}
@@ -24,8 +24,11 @@ import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
+import static org.echocat.jomon.cache.CacheUtils.getAll;
+import static org.echocat.jomon.cache.support.PutInCacheIterator.DEFAULT_BATCH_SIZE;
 import static org.echocat.jomon.runtime.util.ResourceUtils.closeQuietlyIfAutoCloseable;
 
 public abstract class OptimizedByCacheIterator<K, T extends IdEnabled<K>> implements CloseableIterator<T> {
@@ -51,8 +54,9 @@ public abstract class OptimizedByCacheIterator<K, T extends IdEnabled<K>> implem
         if (_fromCache == null) {
             final List<T> fromCache = new ArrayList<>();
             final List<K> idsNotInCache = new ArrayList<>();
+            final Map<K, T> cachedById = getAll(_cache, _ids);
             for (final K id : _ids) {
-                final T cached = _cache.get(id);
+                final T cached = cachedById.get(id);
                 if (cached != null) {
                     fromCache.add(cached);
                 } else {
@@ -66,7 +70,7 @@ public abstract class OptimizedByCacheIterator<K, T extends IdEnabled<K>> implem
             result = true;
         } else if (!_fromCache.hasNext() && _delegate == null) {
             final Iterator<T> delegate = getDelegateFor(_idsNotInCache);
-            _delegate = new PutInCacheIterator<>(delegate != null ? delegate : CollectionUtils.<T>emptyIterator(), _cache);
+            _delegate = new PutInCacheIterator<>(delegate != null ? delegate : CollectionUtils.<T>emptyIterator(), _cache, DEFAULT_BATCH_SIZE);
             result = _delegate.hasNext();
         } else {
             result = _delegate.hasNext();
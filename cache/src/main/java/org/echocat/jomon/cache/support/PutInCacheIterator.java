@@ -15,39 +15,78 @@
 package org.echocat.jomon.cache.support;
 
 import org.echocat.jomon.cache.Cache;
+import org.echocat.jomon.cache.CacheUtils;
 import org.echocat.jomon.runtime.iterators.CloseableIterator;
 import org.echocat.jomon.runtime.util.IdEnabled;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import static org.echocat.jomon.cache.CacheUtils.putAll;
 import static org.echocat.jomon.runtime.util.ResourceUtils.closeQuietlyIfAutoCloseable;
 
+/**
+ * <h1>Synopsis</h1>
+ * <p>Puts every element of the delegate into the given cache while it is iterated. With a {@link #PutInCacheIterator(Iterator, Cache, int) batchSize}
+ * greater than <code>1</code> the elements are collected and put with one {@link CacheUtils#putAll(Cache, Map) bulk operation} into the cache -
+ * as soon as the batch is full, the delegate is exhausted or this iterator is closed.</p>
+ */
 public class PutInCacheIterator<K, T extends IdEnabled<K>> implements CloseableIterator<T> {
 
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
     private final Iterator<T> _delegate;
     private final Cache<K, T> _cache;
+    private final int _batchSize;
+    private final Map<K, T> _batch;
 
     public PutInCacheIterator(@Nonnull Iterator<T> delegate, @Nonnull Cache<K, T> cache) {
+        this(delegate, cache, 1);
+    }
+
+    public PutInCacheIterator(@Nonnull Iterator<T> delegate, @Nonnull Cache<K, T> cache, @Nonnegative int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize should be at least 1 but is " + batchSize + ".");
+        }
         _delegate = delegate;
         _cache = cache;
+        _batchSize = batchSize;
+        _batch = new LinkedHashMap<>();
     }
 
     @Override
     public void close() {
-        closeQuietlyIfAutoCloseable(_delegate);
+        try {
+            flush();
+        } finally {
+            closeQuietlyIfAutoCloseable(_delegate);
+        }
     }
 
     @Override
     public boolean hasNext() {
-        return _delegate.hasNext();
+        final boolean result = _delegate.hasNext();
+        if (!result) {
+            flush();
+        }
+        return result;
     }
 
     @Override
     public T next() {
         final T next = _delegate.next();
         if (next != null) {
-            _cache.put(next.getId(), next);
+            if (_batchSize == 1) {
+                _cache.put(next.getId(), next);
+            } else {
+                _batch.put(next.getId(), next);
+                if (_batch.size() >= _batchSize) {
+                    flush();
+                }
+            }
         }
         return next;
     }
@@ -57,4 +96,11 @@ public class PutInCacheIterator<K, T extends IdEnabled<K>> implements CloseableI
         _delegate.remove();
     }
 
+    protected void flush() {
+        if (!_batch.isEmpty()) {
+            putAll(_cache, _batch);
+            _batch.clear();
+        }
+    }
+
 }
@@ -14,18 +14,27 @@
 
 package org.echocat.jomon.cache;
 
+import org.echocat.jomon.runtime.util.ByteCount;
 import org.echocat.jomon.runtime.util.Duration;
+import org.echocat.jomon.runtime.util.Value;
+import org.echocat.jomon.runtime.util.ValueProducer;
 import org.echocat.jomon.testing.concurrent.ParallelTestRunner;
 import org.junit.Test;
 
 import javax.annotation.Nonnull;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Random;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static java.lang.System.currentTimeMillis;
+import static java.util.Arrays.asList;
+import static org.echocat.jomon.runtime.util.ProducingType.singleFlight;
+import static org.echocat.jomon.testing.BaseMatchers.isGreaterThanOrEqualTo;
 import static org.echocat.jomon.testing.BaseMatchers.isLessThanOrEqualTo;
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 
 public abstract class CacheUnitTestSupport<T extends LimitedCache<Object, Object> & StatisticsEnabledCache<Object, Object>> {
 
@@ -215,4 +224,329 @@ public abstract class CacheUnitTestSupport<T extends LimitedCache<Object, Object
         assertThat(cache.size(), isLessThanOrEqualTo(maxCacheSize));
     }
 
+    @Test
+    public void testSingleFlightProducing() throws Exception {
+        final T cache = getInstance(Integer.MAX_VALUE, 100);
+        assumeTrue(cache instanceof ProducingStatisticsEnabledCache);
+        final ProducingStatisticsEnabledCache<?, ?> statisticsCache = (ProducingStatisticsEnabledCache<?, ?>) cache;
+        if (cache instanceof ProducingTypeEnabledCache) {
+            ((ProducingTypeEnabledCache<?, ?>) cache).setProducingType(singleFlight);
+        }
+        final int numberOfWaitingThreads = 4;
+        final CountDownLatch slowProductionStarted = new CountDownLatch(1);
+        final CountDownLatch slowProductionReleased = new CountDownLatch(1);
+        final AtomicInteger productions = new AtomicInteger();
+        final ValueProducer<Object, Object> producer = new ValueProducer<Object, Object>() {
+            @Override
+            public Object produce(Object key) throws Exception {
+                productions.incrementAndGet();
+                if ("slow".equals(key)) {
+                    slowProductionStarted.countDown();
+                    slowProductionReleased.await();
+                }
+                return "valueOf" + key;
+            }
+        };
+        final List<ParallelTestRunner.Worker> workers = new ArrayList<>();
+        for (int i = 0; i < numberOfWaitingThreads + 1; i++) {
+            workers.add(new ParallelTestRunner.Worker() {
+                @Override
+                public void run() throws Exception {
+                    assertEquals("valueOfslow", cache.get("slow", producer));
+                }
+            });
+        }
+        workers.add(new ParallelTestRunner.Worker() {
+            @Override
+            public void run() throws Exception {
+                slowProductionStarted.await();
+                // Another key with the same producer is not blocked by the production of the slow one ...
+                assertEquals("valueOffast", cache.get("fast", producer));
+                final long waitUntil = currentTimeMillis() + 5000;
+                while (statisticsCache.getNumberOfCoalescedRequests() < numberOfWaitingThreads && currentTimeMillis() < waitUntil) {
+                    Thread.sleep(1);
+                }
+                slowProductionReleased.countDown();
+            }
+        });
+        new ParallelTestRunner(workers).run();
+
+        assertEquals(2, productions.get());
+        assertEquals(2, (long) statisticsCache.getNumberOfProductions());
+        assertEquals(numberOfWaitingThreads, (long) statisticsCache.getNumberOfCoalescedRequests());
+        assertThat(statisticsCache.getMaximumProducingDuration(), isGreaterThanOrEqualTo(statisticsCache.getAverageProducingDuration()));
+    }
+
+    @Test
+    public void testRefreshAhead() throws Exception {
+        final T cache = getInstance(Integer.MAX_VALUE, 100);
+        assumeTrue(cache instanceof RefreshEnabledCache && cache instanceof ListenerEnabledCache);
+        final List<Runnable> pendingRefreshes = new ArrayList<>();
+        final List<Object> refreshedValues = new ArrayList<>();
+        final List<Throwable> failures = new ArrayList<>();
+        ((RefreshEnabledCache<?, ?>) cache).setRefreshAfter(new Duration(1));
+        ((RefreshEnabledCache<?, ?>) cache).setRefreshExecutor(new Executor() {
+            @Override
+            public void execute(@Nonnull Runnable command) {
+                pendingRefreshes.add(command);
+            }
+        });
+        ((ListenerEnabledCache<?, ?>) cache).setListeners(Collections.<CacheListener>singletonList(new RefreshCacheListener() {
+            @Override
+            public void afterRefresh(@Nonnull Cache<?, ?> cache, @Nullable Object key, @Nullable Value<?> value) {
+                refreshedValues.add(value != null ? value.getValue() : null);
+            }
+
+            @Override
+            public void afterRefreshFailed(@Nonnull Cache<?, ?> cache, @Nullable Object key, @Nonnull Throwable cause) {
+                failures.add(cause);
+            }
+        }));
+        final AtomicInteger productions = new AtomicInteger();
+        final ValueProducer<Object, Object> producer = new ValueProducer<Object, Object>() {
+            @Override
+            public Object produce(Object key) throws Exception {
+                final int production = productions.incrementAndGet();
+                if (production == 3) {
+                    throw new IllegalStateException("Production failed.");
+                }
+                return key + "#" + production;
+            }
+        };
+
+        assertEquals("a#1", cache.get("a", producer));
+        Thread.sleep(10);
+        // The stale value is returned and only one refresh is scheduled ...
+        assertEquals("a#1", cache.get("a", producer));
+        assertEquals("a#1", cache.get("a", producer));
+        assertEquals(1, pendingRefreshes.size());
+        pendingRefreshes.remove(0).run();
+        assertEquals(asList((Object) "a#2"), refreshedValues);
+        assertEquals("a#2", cache.get("a", producer));
+
+        Thread.sleep(10);
+        assertEquals("a#2", cache.get("a", producer));
+        assertEquals(1, pendingRefreshes.size());
+        pendingRefreshes.remove(0).run();
+        // A failed refresh keeps the old value ...
+        assertEquals(1, failures.size());
+        assertEquals("a#2", cache.get("a", producer));
+        assertEquals(1, pendingRefreshes.size());
+        if (cache instanceof ProducingStatisticsEnabledCache) {
+            // The initial production and both refreshes ...
+            assertEquals((Long) 3L, ((ProducingStatisticsEnabledCache<?, ?>) cache).getNumberOfProductions());
+        }
+    }
+
+    @Test
+    public void testBulkOperations() throws Exception {
+        final T cache = getInstance(Integer.MAX_VALUE, 100);
+        assumeTrue(cache instanceof BulkEnabledCache);
+        // noinspection unchecked
+        final BulkEnabledCache<Object, Object> bulkCache = (BulkEnabledCache<Object, Object>) cache;
+        final Map<Object, Object> values = new LinkedHashMap<>();
+        values.put("a", "A");
+        values.put("b", "B");
+        values.put(null, "N");
+        bulkCache.putAll(values);
+        assertEquals("A", cache.get("a"));
+        assertEquals("N", cache.get(null));
+
+        final List<Collection<Object>> productions = new ArrayList<>();
+        final Map<Object, Object> result = bulkCache.getAll(asList("a", "c", "b", "d", null), new BulkValueProducer<Object, Object>() {
+            @Nonnull
+            @Override
+            public Map<Object, Object> produce(@Nonnull Collection<Object> keys) throws Exception {
+                productions.add(new ArrayList<>(keys));
+                final Map<Object, Object> produced = new HashMap<>();
+                produced.put("c", "C");
+                return produced;
+            }
+        }, null);
+        assertEquals(asList((Object) "a", "c", "b", null), new ArrayList<>(result.keySet()));
+        assertEquals("C", result.get("c"));
+        // All missing keys are produced with only one call ...
+        assertEquals(asList((Collection<Object>) asList((Object) "c", "d")), productions);
+        assertEquals("C", cache.get("c"));
+        assertNull(cache.get("d"));
+
+        bulkCache.removeAll(asList("a", "c", "x"));
+        assertEquals(Collections.<Object, Object>singletonMap("b", "B"), bulkCache.getAll(asList("a", "b", "c")));
+        assertEquals(2L, (long) cache.size());
+    }
+
+    @Test
+    public void testMaximumWeight() throws Exception {
+        final T cache = getInstance(Integer.MAX_VALUE, 100);
+        assumeTrue(cache instanceof WeightLimitedCache);
+        // noinspection unchecked
+        final WeightLimitedCache<Object, Object> weightLimitedCache = (WeightLimitedCache<Object, Object>) cache;
+        weightLimitedCache.setWeigher(new Weigher<Object, Object>() {
+            @Override
+            public long weightOf(Object key, Object value) {
+                return value instanceof String ? ((String) value).length() : 0;
+            }
+        });
+        weightLimitedCache.setMaximumWeight(new ByteCount(10));
+        cache.put("a", "1234");
+        cache.put("b", "1234");
+        assertEquals(new ByteCount(8), weightLimitedCache.getWeight());
+
+        cache.put("c", "1234");
+        assertEquals(2L, (long) cache.size());
+        assertEquals(new ByteCount(8), weightLimitedCache.getWeight());
+        assertEquals("1234", cache.get("c"));
+
+        cache.put("c", "12");
+        assertEquals(new ByteCount(6), weightLimitedCache.getWeight());
+        cache.remove("c");
+        assertEquals(new ByteCount(4), weightLimitedCache.getWeight());
+
+        // The weight of produced values is also respected ...
+        assertEquals("123456", cache.get("d", new ValueProducer<Object, Object>() {
+            @Override
+            public Object produce(Object key) throws Exception {
+                return "123456";
+            }
+        }));
+        assertEquals(new ByteCount(10), weightLimitedCache.getWeight());
+
+        // An entry which exceeds the maximum weight on its own is not cached and does not evict any other entry ...
+        cache.put("e", "12345678901");
+        assertFalse(cache.contains("e"));
+        assertEquals(2L, (long) cache.size());
+        assertEquals(new ByteCount(10), weightLimitedCache.getWeight());
+        assertEquals("12345678901", cache.get("f", new ValueProducer<Object, Object>() {
+            @Override
+            public Object produce(Object key) throws Exception {
+                return "12345678901";
+            }
+        }));
+        assertFalse(cache.contains("f"));
+        assertEquals(2L, (long) cache.size());
+        assertEquals(new ByteCount(10), weightLimitedCache.getWeight());
+    }
+
+    @Test
+    public void testDetailedStatistics() throws Exception {
+        final T cache = getInstance(Integer.MAX_VALUE, 3);
+        assumeTrue(cache instanceof DetailedStatisticsEnabledCache);
+        final CacheStatistics statistics = ((DetailedStatisticsEnabledCache<?, ?>) cache).getStatistics();
+        cache.put("a", "A");
+        cache.put("b", "B");
+        assertEquals("A", cache.get("a"));
+        assertNull(cache.get("x"));
+        assertEquals(2L, statistics.getNumberOfRequests());
+        assertEquals(1L, statistics.getNumberOfHits());
+        assertEquals(1L, statistics.getNumberOfMisses());
+        assertEquals(0.5d, statistics.getHitRatio(), 0d);
+        assertEquals(2L, statistics.getNumberOfRequestsOverPeriod());
+        assertEquals(0.5d, statistics.getMissRatioOverPeriod(), 0d);
+
+        cache.put("a", "AA");
+        assertEquals(2L, statistics.getNumberOfRequests());
+        assertEquals(1L, statistics.getNumberOfHits());
+        cache.put("c", "C");
+        cache.put("d", "D");
+        cache.remove("d");
+        assertEquals(1L, statistics.getNumberOfEvictions(EvictionCause.replaced));
+        assertEquals(1L, statistics.getNumberOfEvictions(EvictionCause.capacity));
+        assertEquals(1L, statistics.getNumberOfEvictions(EvictionCause.explicit));
+        assertEquals(0L, statistics.getNumberOfEvictions(EvictionCause.expiry));
+        assertEquals(3L, (long) cache.getNumberOfDrops());
+        assertEquals(2L, (long) cache.size());
+        assertNotNull(((DetailedStatisticsEnabledCache<?, ?>) cache).getEstimatedSize());
+
+        cache.resetStatistics();
+        assertEquals(0L, statistics.getNumberOfRequests());
+        assertEquals(0L, statistics.getNumberOfEvictions());
+        assertNull(statistics.getHitRatioOverPeriod());
+    }
+
+    @Test
+    public void testSnapshotAndRestore() throws Exception {
+        final T cache = getInstance(Integer.MAX_VALUE, 5);
+        assumeTrue(cache instanceof SnapshotEnabledCache);
+        final SnapshotEnabledCache<Object, Object> snapshotCache = (SnapshotEnabledCache<Object, Object>) cache;
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.put("c", "C");
+        cache.get("c");
+        cache.get("c");
+        cache.get("a");
+        final List<SnapshotEntry<Object, Object>> snapshot = snapshotCache.snapshot(10);
+        assertEquals(3, snapshot.size());
+        assertEquals(2, snapshotCache.snapshot(2).size());
+
+        final T restored = getInstance(Integer.MAX_VALUE, 5);
+        final SnapshotEnabledCache<Object, Object> restoredCache = (SnapshotEnabledCache<Object, Object>) restored;
+        assertEquals(3, restoredCache.restore(snapshot));
+        final List<SnapshotEntry<Object, Object>> restoredSnapshot = restoredCache.snapshot(10);
+        assertEquals(keysOf(snapshot), keysOf(restoredSnapshot));
+        for (int i = 0; i < snapshot.size(); i++) {
+            assertEquals(snapshot.get(i).getHits(), restoredSnapshot.get(i).getHits());
+            assertEquals(snapshot.get(i).getValue(), restoredSnapshot.get(i).getValue());
+            assertNotNull(restoredSnapshot.get(i).getRemainingLifetime());
+        }
+        assertEquals("C", restored.get("c"));
+
+        assertEquals(0, restoredCache.restore(snapshot));
+        assertEquals(0, restoredCache.restore(Collections.singletonList(new SnapshotEntry<Object, Object>("x", "X", 0L, 0))));
+        assertFalse(restored.contains("x"));
+
+        final T small = getInstance(Integer.MAX_VALUE, 2);
+        assertEquals(2, ((SnapshotEnabledCache<Object, Object>) small).restore(snapshot));
+        assertEquals(keysOf(snapshot.subList(0, 2)), keysOf(((SnapshotEnabledCache<Object, Object>) small).snapshot(10)));
+    }
+
+    @Test
+    public void testRestoreKeepsFirstEntryOfEveryKeyAndNotifiesOnlyRestoredEntries() throws Exception {
+        final T cache = getInstance(Integer.MAX_VALUE, 2);
+        assumeTrue(cache instanceof SnapshotEnabledCache && cache instanceof ListenerEnabledCache);
+        final List<Object> beforePut = new ArrayList<>();
+        final List<Object> afterPut = new ArrayList<>();
+        ((ListenerEnabledCache<?, ?>) cache).setListeners(Collections.<CacheListener>singletonList(new PutCacheListener() {
+            @Override
+            public boolean beforePut(@Nonnull Cache<?, ?> cache, @Nullable Object key, @Nullable Value<?> value, @Nullable Duration expireAfter) {
+                beforePut.add(key);
+                return true;
+            }
+
+            @Override
+            public void afterPut(@Nonnull Cache<?, ?> cache, @Nullable Object key, @Nullable Value<?> value, @Nullable Duration expireAfter) {
+                afterPut.add(key);
+            }
+        }));
+        cache.put("a", "A");
+        beforePut.clear();
+        afterPut.clear();
+
+        final List<SnapshotEntry<Object, Object>> snapshot = asList(
+            new SnapshotEntry<Object, Object>("a", "A2", null, 5),
+            new SnapshotEntry<Object, Object>("b", "B", null, 4),
+            new SnapshotEntry<Object, Object>("b", "B2", 1000000L, 3),
+            new SnapshotEntry<Object, Object>("c", "C", null, 2)
+        );
+        assertEquals(1, ((SnapshotEnabledCache<Object, Object>) cache).restore(snapshot));
+        assertEquals("A", cache.get("a"));
+        assertEquals("B", cache.get("b"));
+        assertFalse(cache.contains("c"));
+        assertEquals(afterPut, beforePut);
+        assertEquals(Collections.<Object>singletonList("b"), afterPut);
+        for (final SnapshotEntry<Object, Object> entry : ((SnapshotEnabledCache<Object, Object>) cache).snapshot(10)) {
+            if ("b".equals(entry.getKey())) {
+                assertNull(entry.getRemainingLifetime());
+            }
+        }
+    }
+
+    @Nonnull
+    protected static List<Object> keysOf(@Nonnull List<SnapshotEntry<Object, Object>> entries) {
+        final List<Object> result = new ArrayList<>();
+        for (final SnapshotEntry<Object, Object> entry : entries) {
+            result.add(entry.getKey());
+        }
+        return result;
+    }
+
 }
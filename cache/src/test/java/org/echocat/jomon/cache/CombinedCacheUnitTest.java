@@ -14,10 +14,21 @@
 
 package org.echocat.jomon.cache;
 
+import org.echocat.jomon.runtime.util.Duration;
+import org.echocat.jomon.runtime.util.Value;
+import org.echocat.jomon.runtime.util.ValueProducer;
 import org.junit.Test;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.echocat.jomon.testing.Assert.assertThat;
 import static org.echocat.jomon.testing.BaseMatchers.is;
 
@@ -44,6 +55,165 @@ public class CombinedCacheUnitTest {
 
     }
 
+    @Test
+    public void testBulkOperations() throws Exception {
+        final LruCache<String, Integer> cacheA = cacheWithCapacity(4);
+        final LruCache<String, Integer> cacheB = cacheWithCapacity(4);
+        final CombinedCache<String, Number> cache = new CombinedCache<>(String.class, Number.class, cacheA, cacheB);
+        cacheB.put("foo1", 1);
+
+        final List<Collection<String>> productions = new ArrayList<>();
+        final Map<String, Number> result = cache.getAll(asList("foo1", "foo2", "foo3"), new BulkValueProducer<String, Number>() { @Nonnull @Override public Map<String, Number> produce(@Nonnull Collection<String> keys) throws Exception {
+            productions.add(new ArrayList<>(keys));
+            return Collections.<String, Number>singletonMap("foo2", 2);
+        }}, null);
+        assertThat(new ArrayList<>(result.keySet()), is((List<String>) asList("foo1", "foo2")));
+        assertThat(productions, is((List<Collection<String>>) Collections.<Collection<String>>singletonList(asList("foo2", "foo3"))));
+        // Values found on a lower level or produced are restored on every level that missed them ...
+        assertThat(cacheA.get("foo1"), is(1));
+        assertThat(cacheA.get("foo2"), is(2));
+        assertThat(cacheB.get("foo2"), is(2));
+        assertThat(cacheA.get("foo3"), is(null));
+
+        cache.removeAll(asList("foo1", "foo2"));
+        assertThat(cacheA.size(), is(0L));
+        assertThat(cacheB.size(), is(0L));
+    }
+
+    @Test
+    public void testBulkGetOnlyWritesBackToLevelsWhichMissed() throws Exception {
+        final LruCache<String, Integer> cacheA = cacheWithCapacity(4);
+        final LruCache<String, Integer> cacheB = cacheWithCapacity(4);
+        final CombinedCache<String, Number> cache = new CombinedCache<>(String.class, Number.class, cacheA, cacheB);
+        cacheA.put("foo1", 1);
+        cacheB.put("foo2", 2);
+        final List<Object> putOnCacheA = new ArrayList<>();
+        cacheA.setListeners(Collections.<CacheListener>singletonList(new PutCacheListener() {
+            @Override
+            public boolean beforePut(@Nonnull Cache<?, ?> cache, @Nullable Object key, @Nullable Value<?> value, @Nullable Duration expireAfter) {
+                putOnCacheA.add(key);
+                return true;
+            }
+
+            @Override
+            public void afterPut(@Nonnull Cache<?, ?> cache, @Nullable Object key, @Nullable Value<?> value, @Nullable Duration expireAfter) {}
+        }));
+
+        final Map<String, Number> result = cache.getAll(asList("foo1", "foo2"));
+        assertThat(new ArrayList<>(result.keySet()), is((List<String>) asList("foo1", "foo2")));
+        // foo1 was a hit on the first level and must not be written to it again ...
+        assertThat(putOnCacheA, is((List<Object>) Collections.<Object>singletonList("foo2")));
+        assertThat(cacheA.get("foo2"), is(2));
+    }
+
+    @Test
+    public void testHitOnFirstLevelDoesNotAskLowerLevels() throws Exception {
+        final LruCache<String, Integer> cacheA = cacheWithCapacity(4);
+        final LruCache<String, Integer> cacheB = cacheWithCapacity(4);
+        final CombinedCache<String, Number> cache = new CombinedCache<>(String.class, Number.class, cacheA, cacheB);
+        cacheA.put("foo1", 1);
+
+        assertThat((Integer) cache.get("foo1"), is(1));
+        assertThat(cacheB.getNumberOfRequests(), is(0L));
+    }
+
+    @Test
+    public void testAsynchronousWriteBack() throws Exception {
+        final LruCache<String, Integer> cacheA = cacheWithCapacity(4);
+        final LruCache<String, Integer> cacheB = cacheWithCapacity(4);
+        final CombinedCache<String, Number> cache = new CombinedCache<>(String.class, Number.class, cacheA, cacheB);
+        final List<Runnable> pending = new ArrayList<>();
+        cache.setExecutor(new Executor() { @Override public void execute(Runnable command) {
+            pending.add(command);
+        }});
+        cache.setAsynchronousWriteBack(true);
+        cacheB.put("foo1", 1);
+
+        assertThat((Integer) cache.get("foo1"), is(1));
+        assertThat(cacheA.contains("foo1"), is(false));
+        assertThat(pending.size(), is(1));
+
+        pending.get(0).run();
+        assertThat(cacheA.get("foo1"), is(1));
+    }
+
+    @Test
+    public void testSlowLowerLevelCountsAsMissAfterTimeout() throws Exception {
+        final LruCache<String, Integer> cacheA = cacheWithCapacity(4);
+        final LruCache<String, Integer> cacheB = new LruCache<String, Integer>(String.class, Integer.class) {
+            @Override
+            public Integer get(String key) {
+                new Duration("2s").sleepSafe();
+                return super.get(key);
+            }
+        };
+        final CombinedCache<String, Number> cache = new CombinedCache<>(String.class, Number.class, cacheA, cacheB);
+        cache.setLowerLevelTimeout(new Duration("50ms"));
+        cacheB.put("foo1", 1);
+
+        final Number result = cache.get("foo1", new ValueProducer<String, Number>() { @Override public Number produce(String key) throws Exception {
+            return 2;
+        }});
+        assertThat((Integer) result, is(2));
+        assertThat(cache.getNumberOfTimedOutLookups(), is(1L));
+        assertThat(cacheA.get("foo1"), is(2));
+    }
+
+    @Test
+    public void testTimedOutLookupIsCancelled() throws Exception {
+        final LruCache<String, Integer> cacheA = cacheWithCapacity(4);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final LruCache<String, Integer> cacheB = new LruCache<String, Integer>(String.class, Integer.class) {
+            @Override
+            public Integer get(String key) {
+                try {
+                    Thread.sleep(5000);
+                } catch (final InterruptedException ignored) {
+                    interrupted.countDown();
+                }
+                return super.get(key);
+            }
+        };
+        final CombinedCache<String, Number> cache = new CombinedCache<>(String.class, Number.class, cacheA, cacheB);
+        cache.setLowerLevelTimeout(new Duration("50ms"));
+
+        assertThat(cache.get("foo1"), is(null));
+        assertThat(cache.getNumberOfTimedOutLookups(), is(1L));
+        assertThat(interrupted.await(1, SECONDS), is(true));
+    }
+
+    @Test
+    public void testRejectedLookupCountsAsTimedOutMiss() throws Exception {
+        final LruCache<String, Integer> cacheA = cacheWithCapacity(4);
+        final AtomicInteger lookupsOnCacheB = new AtomicInteger();
+        final LruCache<String, Integer> cacheB = new LruCache<String, Integer>(String.class, Integer.class) {
+            @Override
+            public Integer get(String key) {
+                lookupsOnCacheB.incrementAndGet();
+                return super.get(key);
+            }
+        };
+        final CombinedCache<String, Number> cache = new CombinedCache<>(String.class, Number.class, cacheA, cacheB);
+        cache.setLowerLevelTimeout(new Duration("50ms"));
+        cache.setExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+        cacheB.put("foo1", 1);
+
+        final Number result = cache.get("foo1", new ValueProducer<String, Number>() {
+            @Override
+            public Number produce(String key) throws Exception {
+                return 2;
+            }
+        });
+        assertThat((Integer) result, is(2));
+        assertThat(cache.getNumberOfTimedOutLookups(), is(1L));
+        assertThat(lookupsOnCacheB.get(), is(0));
+    }
+
     private void assertThatFirstValuesArePresent(@Nonnull LruCache<String, Integer> cacheA, @Nonnull LruCache<String, Integer> cacheB, @Nonnull CombinedCache<String, Number> cache) {
         assertThat((Integer) cache.get("foo1"), is(1));
         assertThat(cache.contains("foo1"), is(true));
@@ -0,0 +1,48 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.junit.Test;
+
+import static org.echocat.jomon.testing.BaseMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ConcurrentLfuCacheUnitTest extends CacheUnitTestSupport<ConcurrentLfuCache<Object, Object>> {
+
+    @Override
+    protected ConcurrentLfuCache<Object, Object> getInstance() {
+        return new ConcurrentLfuCache<>(Object.class, Object.class);
+    }
+
+    @Test
+    public void testEvictionOrderWithOneSegment() throws Exception {
+        final ConcurrentLfuCache<Object, Object> cache = new ConcurrentLfuCache<>(Object.class, Object.class, 1);
+        cache.setCapacity(3L);
+        cache.put("1", "_1");
+        cache.put("2", "_2");
+        cache.put("3", "_3");
+        cache.get("1");
+        cache.get("1");
+        cache.get("3");
+
+        cache.put("4", "_4");
+        assertThat(cache.contains("2"), is(false));
+        assertThat(cache.contains("1"), is(true));
+        assertThat(cache.contains("3"), is(true));
+        assertThat(cache.contains("4"), is(true));
+        assertThat(cache.size(), is(3L));
+    }
+
+}
@@ -0,0 +1,160 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.echocat.jomon.runtime.util.Duration;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.echocat.jomon.runtime.CollectionUtils.asSet;
+import static org.echocat.jomon.testing.BaseMatchers.is;
+import static org.junit.Assert.*;
+
+public class ConcurrentLruCacheUnitTest extends CacheUnitTestSupport<ConcurrentLruCache<Object, Object>> {
+
+    @Override
+    protected ConcurrentLruCache<Object, Object> getInstance() {
+        return new ConcurrentLruCache<>(Object.class, Object.class);
+    }
+
+    @Test
+    public void testEvictionOrderWithOneSegment() throws Exception {
+        final ConcurrentLruCache<Object, Object> cache = new ConcurrentLruCache<>(Object.class, Object.class, 1);
+        cache.setCapacity(3L);
+        cache.put("1", "_1");
+        cache.put("2", "_2");
+        cache.put("3", "_3");
+        assertThat(cache.get("1"), is((Object) "_1"));
+
+        cache.put("4", "_4");
+        assertThat(cache.contains("2"), is(false));
+        assertThat(cache.contains("1"), is(true));
+        assertThat(cache.contains("3"), is(true));
+        assertThat(cache.contains("4"), is(true));
+        assertThat(cache.size(), is(3L));
+    }
+
+    @Test
+    public void testBufferedHitsAreAppliedBeforeEviction() throws Exception {
+        final ConcurrentLruCache<Object, Object> cache = new ConcurrentLruCache<>(Object.class, Object.class, 1);
+        cache.setCapacity(3L);
+        cache.put("1", "_1");
+        cache.put("2", "_2");
+        cache.put("3", "_3");
+        for (int i = 0; i < ConcurrentInMemoryBasedCacheSupport.READ_BUFFER_SIZE * 3; i++) {
+            assertThat(cache.get(i % 2 == 0 ? "1" : "2"), is((Object) (i % 2 == 0 ? "_1" : "_2")));
+        }
+        assertThat(cache.getNumberOfHits(), is((long) ConcurrentInMemoryBasedCacheSupport.READ_BUFFER_SIZE * 3));
+
+        cache.put("4", "_4");
+        assertThat(cache.contains("3"), is(false));
+        assertThat(cache.contains("1"), is(true));
+        assertThat(cache.contains("2"), is(true));
+        assertThat(cache.contains("4"), is(true));
+    }
+
+    @Test
+    public void testEvictionOrderWithoutHitBuffering() throws Exception {
+        final ConcurrentLruCache<Object, Object> cache = new ConcurrentLruCache<>(Object.class, Object.class, 1);
+        cache.setHitBuffering(false);
+        cache.setCapacity(2L);
+        cache.put("1", "_1");
+        cache.put("2", "_2");
+        assertThat(cache.get("1"), is((Object) "_1"));
+
+        cache.put("3", "_3");
+        assertThat(cache.contains("2"), is(false));
+        assertThat(cache.contains("1"), is(true));
+        assertThat(cache.contains("3"), is(true));
+    }
+
+    @Test
+    public void testPutGetRemoveForOneItem() throws Exception {
+        final ConcurrentLruCache<Object, Object> cache = getInstance(1000, 5);
+        cache.put(1, "foo");
+        assertEquals("foo", cache.get(1));
+        cache.remove(1);
+        assertNull(cache.get(1));
+        assertThat(cache.size(), is(0L));
+    }
+
+    @Test
+    public void testReplaceRespectsNewLifetime() throws Exception {
+        final ConcurrentLruCache<Object, Object> cache = getInstance();
+        cache.put("1", "_1", new Duration("10s"));
+        cache.put("1", "_2", new Duration("50ms"));
+        assertThat(cache.get("1"), is((Object) "_2"));
+        assertThat(cache.size(), is(1L));
+        Thread.sleep(100);
+        assertNull(cache.get("1"));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        final ConcurrentLruCache<Object, Object> cache = getInstance(1000, 5);
+        cache.put("1", "v1");
+        cache.put("2", "v2");
+        cache.put("3", "v3");
+        assertEquals("Initialization", 3, (long) cache.size());
+
+        cache.clear();
+        assertEquals("size()", 0, (long) cache.size());
+
+        assertNull("get after clear", cache.get("1"));
+    }
+
+    @Test
+    public void testHandleRemove() {
+        final Set<Integer> handled = new HashSet<>();
+        final ConcurrentLruCache<Integer, Integer> cache = new ConcurrentLruCache<Integer, Integer>(Integer.class, Integer.class, 1) {
+            @Override
+            protected void handleRemove(CacheEntry<Integer, Integer> value) {
+                super.handleRemove(value);
+                handled.add(value.getValue().getValue());
+            }
+        };
+        cache.setCapacity(3L);
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.put(3, 3);
+        // This should lead to a call to handleRemove(1), because max size = 3 and therefore the last entry will be removed ...
+        cache.put(4, 4);
+        assertThat(handled, is(asSet(1)));
+        // This should of course lead to a call to handleRemove(3) ...
+        cache.remove(3);
+        assertThat(handled, is(asSet(1, 3)));
+        // This should lead to a call to handleRemove(2), because the cached value for key 2 is 5 now ...
+        cache.put(2, 5);
+        assertThat(cache.get(2), is(5));
+        assertThat(handled, is(asSet(1, 2, 3)));
+        // This should lead to handleRemove(...) calls for all remaining values in the cache ...
+        cache.clear();
+        assertThat(handled, is(asSet(1, 2, 3, 4, 5)));
+    }
+
+    @Test
+    public void testSetCapacityEvictsExceedingEntries() throws Exception {
+        final ConcurrentLruCache<Object, Object> cache = getInstance();
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, i);
+        }
+        assertThat(cache.size(), is(100L));
+        cache.setCapacity(10L);
+        assertThat(cache.size(), is(10L));
+    }
+
+}
@@ -0,0 +1,40 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+import static org.echocat.jomon.testing.BaseMatchers.is;
+import static org.echocat.jomon.testing.BaseMatchers.isSameAs;
+import static org.echocat.jomon.testing.BaseMatchers.not;
+import static org.junit.Assert.assertThat;
+
+public class EntryRefresherUnitTest {
+
+    @Test
+    public void testShutdownDefaultExecutor() throws Exception {
+        final Executor executor = EntryRefresher.getDefaultExecutor();
+        EntryRefresher.shutdownDefaultExecutor();
+        assertThat(((ExecutorService) executor).isShutdown(), is(true));
+
+        final Executor newExecutor = EntryRefresher.getDefaultExecutor();
+        assertThat(newExecutor, not(isSameAs(executor)));
+        assertThat(((ExecutorService) newExecutor).isShutdown(), is(false));
+    }
+
+}
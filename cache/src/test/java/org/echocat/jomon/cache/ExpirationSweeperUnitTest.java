@@ -0,0 +1,64 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.echocat.jomon.runtime.util.Duration;
+import org.junit.Test;
+
+import static org.echocat.jomon.testing.BaseMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ExpirationSweeperUnitTest {
+
+    @Test
+    public void testSweepsExpiredEntriesInBackground() throws Exception {
+        try (final ExpirationSweeper sweeper = new ExpirationSweeper()) {
+            sweeper.setInterval(new Duration("10ms"));
+            final LruCache<String, String> lru = new LruCache<>(String.class, String.class);
+            lru.setExpirationSweeper(sweeper);
+            final ConcurrentLruCache<String, String> concurrentLru = new ConcurrentLruCache<>(String.class, String.class);
+            concurrentLru.setExpirationSweeper(sweeper);
+
+            lru.put("a", "a", new Duration("50ms"));
+            lru.put("b", "b");
+            concurrentLru.put("a", "a", new Duration("50ms"));
+            concurrentLru.put("b", "b");
+            assertThat(sweeper.isRegistered(lru), is(true));
+            assertThat(sweeper.isRegistered(concurrentLru), is(true));
+
+            Thread.sleep(500);
+            assertThat(lru.size(), is(1L));
+            assertThat(lru.getNumberOfDrops(), is(1L));
+            assertThat(concurrentLru.size(), is(1L));
+            assertThat(concurrentLru.getNumberOfDrops(), is(1L));
+
+            lru.close();
+            concurrentLru.close();
+            assertThat(sweeper.isRegistered(lru), is(false));
+            assertThat(sweeper.isRegistered(concurrentLru), is(false));
+        }
+    }
+
+    @Test
+    public void testCachesWithoutExpiringEntriesAreNotRegistered() throws Exception {
+        try (final ExpirationSweeper sweeper = new ExpirationSweeper()) {
+            final LruCache<String, String> cache = new LruCache<>(String.class, String.class);
+            cache.setExpirationSweeper(sweeper);
+            cache.put("a", "a");
+            assertThat(sweeper.isRegistered(cache), is(false));
+        }
+    }
+
+}
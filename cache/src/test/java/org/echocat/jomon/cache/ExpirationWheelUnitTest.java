@@ -0,0 +1,112 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.System.currentTimeMillis;
+import static java.util.Arrays.asList;
+import static org.echocat.jomon.testing.BaseMatchers.is;
+import static org.echocat.jomon.testing.IterableMatchers.hasSize;
+import static org.junit.Assert.assertThat;
+
+public class ExpirationWheelUnitTest {
+
+    @Test
+    public void testExpire() throws Exception {
+        final ExpirationWheel<String, String> wheel = new ExpirationWheel<>(10, 16);
+        final CacheEntry<String, String> a = new CacheEntry<>("a", 20L, "a");
+        final CacheEntry<String, String> b = new CacheEntry<>("b", 1000L, "b");
+        final CacheEntry<String, String> c = new CacheEntry<>("c", null, "c");
+        wheel.add(a);
+        wheel.add(b);
+        wheel.add(c);
+        assertThat(wheel.size(), is(2));
+
+        final List<CacheEntry<String, String>> expired = new ArrayList<>();
+        wheel.expire(currentTimeMillis(), expired);
+        assertThat(expired, hasSize(0));
+
+        wheel.expire(a.getExpire(), expired);
+        assertThat(expired, is(asList(a)));
+        assertThat(wheel.size(), is(1));
+
+        expired.clear();
+        wheel.expire(b.getExpire() - 1, expired);
+        assertThat(expired, hasSize(0));
+        wheel.expire(b.getExpire(), expired);
+        assertThat(expired, is(asList(b)));
+        assertThat(wheel.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testEntriesOfLaterRotationsAreKept() throws Exception {
+        final ExpirationWheel<String, String> wheel = new ExpirationWheel<>(10, 4);
+        final CacheEntry<String, String> near = new CacheEntry<>("near", 10L, "near");
+        // Same bucket as near, but several rotations later ...
+        final CacheEntry<String, String> far = new CacheEntry<>("far", 10L + (10 * 4 * 5), "far");
+        wheel.add(near);
+        wheel.add(far);
+
+        final List<CacheEntry<String, String>> expired = new ArrayList<>();
+        wheel.expire(near.getExpire() + 10, expired);
+        assertThat(expired, is(asList(near)));
+
+        expired.clear();
+        wheel.expire(far.getExpire(), expired);
+        assertThat(expired, is(asList(far)));
+    }
+
+    @Test
+    public void testRemoveAndReAdd() throws Exception {
+        final ExpirationWheel<String, String> wheel = new ExpirationWheel<>(10, 16);
+        final CacheEntry<String, String> a = new CacheEntry<>("a", 20L, "a");
+        final CacheEntry<String, String> b = new CacheEntry<>("b", 20L, "b");
+        wheel.add(a);
+        wheel.add(b);
+        wheel.remove(a);
+        wheel.remove(a);
+        assertThat(wheel.size(), is(1));
+
+        b.setValue(5000L, "b2");
+        wheel.add(b);
+        assertThat(wheel.size(), is(1));
+
+        final List<CacheEntry<String, String>> expired = new ArrayList<>();
+        wheel.expire(currentTimeMillis() + 100, expired);
+        assertThat(expired, hasSize(0));
+
+        wheel.clear();
+        assertThat(wheel.isEmpty(), is(true));
+        assertThat(b.getExpirationBucket(), is(-1));
+    }
+
+    @Test
+    public void testBucketsAreOnlyCreatedForExpiringEntries() throws Exception {
+        final ExpirationWheel<String, String> wheel = new ExpirationWheel<>(10, 16);
+        wheel.add(new CacheEntry<>("a", null, "a"));
+        wheel.expire(currentTimeMillis(), new ArrayList<CacheEntry<String, String>>());
+        wheel.clear();
+        assertThat(wheel.isAllocated(), is(false));
+
+        wheel.add(new CacheEntry<>("b", 20L, "b"));
+        assertThat(wheel.isAllocated(), is(true));
+        assertThat(wheel.size(), is(1));
+    }
+
+}
@@ -0,0 +1,131 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.junit.Test;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.echocat.jomon.testing.BaseMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class FrequencyBucketLfuCacheUnitTest extends CacheUnitTestSupport<FrequencyBucketLfuCache<Object, Object>> {
+
+    @Override
+    protected FrequencyBucketLfuCache<Object, Object> getInstance() {
+        return new FrequencyBucketLfuCache<>(Object.class, Object.class);
+    }
+
+    @Test
+    public void testEvictionOrderWithOneSegment() throws Exception {
+        final FrequencyBucketLfuCache<Object, Object> cache = new FrequencyBucketLfuCache<>(Object.class, Object.class, 1);
+        cache.setCapacity(3L);
+        cache.put("1", "_1");
+        cache.put("2", "_2");
+        cache.put("3", "_3");
+        cache.get("1");
+        cache.get("1");
+        cache.get("3");
+        cache.get("2");
+        cache.get("3");
+
+        // 1 and 3 are hit twice, 2 only once ...
+        cache.put("4", "_4");
+        assertThat(cache.contains("2"), is(false));
+        assertThat(cache.size(), is(3L));
+
+        // 4 was never hit ...
+        cache.put("5", "_5");
+        assertThat(cache.contains("4"), is(false));
+        assertThat(cache.contains("1"), is(true));
+        assertThat(cache.contains("3"), is(true));
+        assertThat(cache.contains("5"), is(true));
+    }
+
+    @Test
+    public void testLateHotEntryIsNotEvicted() throws Exception {
+        final FrequencyBucketLfuCache<Object, Object> cache = new FrequencyBucketLfuCache<>(Object.class, Object.class, 1);
+        cache.setCapacity(100L);
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, i);
+            cache.get(i);
+            cache.get(i);
+        }
+        cache.put("hot", "hot");
+        for (int i = 0; i < 10; i++) {
+            cache.get("hot");
+        }
+        for (int i = 100; i < 200; i++) {
+            cache.put(i, i);
+        }
+        assertThat(cache.get("hot"), is((Object) "hot"));
+        assertThat(cache.size(), is(100L));
+    }
+
+    @Test
+    public void testHitRatioOnZipfTrace() throws Exception {
+        final int[] trace = zipfTrace(1000, 100000, new Random(4711));
+        final double frequencyBucketLfu = hitRatioOf(new FrequencyBucketLfuCache<Integer, Integer>(Integer.class, Integer.class, 1), trace, 100);
+        final double adjacentSwapLfu = hitRatioOf(new LfuCache<>(Integer.class, Integer.class), trace, 100);
+        final double lru = hitRatioOf(new LruCache<>(Integer.class, Integer.class), trace, 100);
+        assertThat(frequencyBucketLfu, isGreaterThanOrEqualTo(adjacentSwapLfu));
+        assertThat(frequencyBucketLfu, isGreaterThan(lru));
+    }
+
+    @Test
+    public void testHitRatioOnShiftingZipfTrace() throws Exception {
+        final int[] first = zipfTrace(1000, 50000, new Random(4711));
+        final int[] second = zipfTrace(1000, 50000, new Random(815));
+        final int[] trace = Arrays.copyOf(first, first.length + second.length);
+        for (int i = 0; i < second.length; i++) {
+            // The popular keys of the second half of the trace were never requested before.
+            trace[first.length + i] = second[i] + 1000;
+        }
+        final double frequencyBucketLfu = hitRatioOf(new FrequencyBucketLfuCache<Integer, Integer>(Integer.class, Integer.class, 1), trace, 100);
+        final double adjacentSwapLfu = hitRatioOf(new LfuCache<>(Integer.class, Integer.class), trace, 100);
+        assertThat(frequencyBucketLfu, isGreaterThanOrEqualTo(adjacentSwapLfu));
+    }
+
+    @Nonnegative
+    protected static <T extends LimitedCache<Integer, Integer> & StatisticsEnabledCache<Integer, Integer>> double hitRatioOf(@Nonnull T cache, @Nonnull int[] trace, @Nonnegative long capacity) {
+        cache.setCapacity(capacity);
+        for (final int key : trace) {
+            if (cache.get(key) == null) {
+                cache.put(key, key);
+            }
+        }
+        return (double) cache.getNumberOfHits() / (double) cache.getNumberOfRequests();
+    }
+
+    @Nonnull
+    protected static int[] zipfTrace(@Nonnegative int numberOfKeys, @Nonnegative int length, @Nonnull Random random) {
+        final double[] cumulated = new double[numberOfKeys];
+        double sum = 0;
+        for (int i = 0; i < numberOfKeys; i++) {
+            sum += 1d / (i + 1);
+            cumulated[i] = sum;
+        }
+        final int[] result = new int[length];
+        for (int i = 0; i < length; i++) {
+            final int index = Arrays.binarySearch(cumulated, random.nextDouble() * sum);
+            result[i] = index >= 0 ? index : -index - 1;
+        }
+        return result;
+    }
+
+}
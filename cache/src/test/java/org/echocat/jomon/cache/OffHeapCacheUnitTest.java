@@ -0,0 +1,243 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.echocat.jomon.cache.OffHeapStorage.DirectSlabFactory;
+import org.echocat.jomon.cache.OffHeapStorage.MemoryMappedSlabFactory;
+import org.echocat.jomon.cache.OffHeapStorage.SlabFactory;
+import org.echocat.jomon.cache.management.CombinedCacheCreator;
+import org.echocat.jomon.cache.management.OffHeapCacheDefinition;
+import org.echocat.jomon.runtime.io.Serializer;
+import org.echocat.jomon.runtime.io.Serializers;
+import org.echocat.jomon.runtime.iterators.CloseableIterator;
+import org.echocat.jomon.runtime.util.Duration;
+import org.echocat.jomon.runtime.util.ValueProducer;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.echocat.jomon.runtime.util.ByteCount.byteCountOf;
+import static org.echocat.jomon.testing.BaseMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class OffHeapCacheUnitTest {
+
+    @Test
+    public void testPutGetAndRemove() throws Exception {
+        try (final OffHeapCache<String, String> cache = new OffHeapCache<>(String.class, String.class)) {
+            cache.put("a", "valueOfA");
+            cache.put(null, "valueOfNull");
+            cache.put("b", null);
+            cache.put("c", repeat('c', 1000));
+
+            assertThat(cache.get("a"), is("valueOfA"));
+            assertThat(cache.get(null), is("valueOfNull"));
+            assertThat(cache.get("b"), is((String) null));
+            assertThat(cache.contains("b"), is(true));
+            assertThat(cache.get("c"), is(repeat('c', 1000)));
+            assertThat(cache.get("d"), is((String) null));
+            assertThat(cache.size(), is(4L));
+
+            cache.put("a", "newValueOfA");
+            assertThat(cache.get("a"), is("newValueOfA"));
+            assertThat(cache.size(), is(4L));
+
+            assertThat(cache.remove("a").getValue(), is("newValueOfA"));
+            assertThat(cache.remove("a"), is((Object) null));
+            assertThat(cache.contains("a"), is(false));
+            assertThat(cache.size(), is(3L));
+            assertThat(cache.getNumberOfHits(), is(5L));
+        }
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedIfMaximumSizeIsReached() throws Exception {
+        try (final OffHeapCache<String, String> cache = new OffHeapCache<>(String.class, String.class, stringSerializer(), stringSerializer(), new DirectSlabFactory(), byteCountOf("16B"), byteCountOf("64B"))) {
+            cache.setMaximumSize(byteCountOf("64B"));
+            cache.put("a", repeat('a', 14));
+            cache.put("b", repeat('b', 14));
+            cache.put("c", repeat('c', 14));
+            cache.put("d", repeat('d', 14));
+            assertThat(cache.getUsedSize(), is(byteCountOf("64B")));
+            assertThat(cache.get("a"), is(repeat('a', 14)));
+
+            cache.put("e", repeat('e', 30));
+            assertThat(cache.contains("a"), is(true));
+            assertThat(cache.contains("b"), is(false));
+            assertThat(cache.contains("c"), is(false));
+            assertThat(cache.contains("d"), is(true));
+            assertThat(cache.get("e"), is(repeat('e', 30)));
+            assertThat(cache.getUsedSize(), is(byteCountOf("64B")));
+
+            // Larger than the whole cache ...
+            cache.put("f", repeat('f', 100));
+            assertThat(cache.contains("f"), is(false));
+            assertThat(cache.size(), is(3L));
+
+            cache.setMaximumSize(byteCountOf("32B"));
+            assertThat(cache.getUsedSize(), is(byteCountOf("32B")));
+            assertThat(cache.size(), is(1L));
+        }
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedIfCapacityIsReached() throws Exception {
+        try (final OffHeapCache<Integer, Long> cache = new OffHeapCache<>(Integer.class, Long.class)) {
+            cache.setCapacity(2L);
+            cache.put(1, 1L);
+            cache.put(2, 2L);
+            cache.get(1);
+            cache.put(3, 3L);
+            assertThat(keysOf(cache), is((Set<Integer>) new HashSet<>(asList(1, 3))));
+            assertThat(cache.getNumberOfDrops(), is(1L));
+        }
+    }
+
+    @Test
+    public void testMaximumLifetime() throws Exception {
+        try (final OffHeapCache<String, String> cache = new OffHeapCache<>(String.class, String.class)) {
+            cache.setMaximumLifetime(new Duration("50ms"));
+            cache.put("a", "valueOfA");
+            cache.put("b", "valueOfB", new Duration("1h"));
+            assertThat(cache.get("a"), is("valueOfA"));
+            Thread.sleep(200);
+            assertThat(cache.get("a"), is((String) null));
+            cache.cleanUpLifetimeExpired();
+            assertThat(cache.size(), is(1L));
+            assertThat(cache.get("b"), is("valueOfB"));
+        }
+    }
+
+    @Test
+    public void testProducing() throws Exception {
+        try (final OffHeapCache<String, String> cache = new OffHeapCache<>(String.class, String.class)) {
+            final ValueProducer<String, String> producer = new ValueProducer<String, String>() { @Override public String produce(@Nonnull String key) throws Exception {
+                return "valueOf" + key;
+            }};
+            assertThat(cache.get("a", producer), is("valueOfa"));
+            assertThat(cache.get("a", producer), is("valueOfa"));
+            assertThat(cache.getNumberOfProductions(), is(1L));
+            assertThat(cache.getNumberOfHits(), is(1L));
+        }
+    }
+
+    @Test
+    public void testBulkOperations() throws Exception {
+        try (final OffHeapCache<String, String> cache = new OffHeapCache<>(String.class, String.class)) {
+            final Map<String, String> values = new HashMap<>();
+            values.put("a", "valueOfA");
+            values.put("b", "valueOfB");
+            cache.putAll(values);
+            final Map<String, String> result = cache.getAll(asList("b", "c", "a"), new BulkValueProducer<String, String>() { @Nonnull @Override public Map<String, String> produce(@Nonnull Collection<String> keys) throws Exception {
+                assertThat(keys, is((Collection<String>) asList("c")));
+                return Collections.singletonMap("c", "valueOfC");
+            }}, null);
+            assertThat(new ArrayList<>(result.values()), is((List<String>) asList("valueOfB", "valueOfC", "valueOfA")));
+            assertThat(cache.get("c"), is("valueOfC"));
+
+            cache.removeAll(asList("a", "c"));
+            assertThat(cache.getAll(asList("a", "b", "c")), is(Collections.singletonMap("b", "valueOfB")));
+            assertThat(cache.size(), is(1L));
+        }
+    }
+
+    @Test
+    public void testMemoryMappedSlabs() throws Exception {
+        try (final OffHeapCache<String, String> cache = new OffHeapCache<>(String.class, String.class, stringSerializer(), stringSerializer(), new MemoryMappedSlabFactory(), byteCountOf("64B"), byteCountOf("1k"))) {
+            for (int i = 0; i < 100; i++) {
+                cache.put("key" + i, repeat((char) ('a' + i % 26), i));
+            }
+            for (int i = 0; i < 100; i++) {
+                assertThat(cache.get("key" + i), is(repeat((char) ('a' + i % 26), i)));
+            }
+        }
+    }
+
+    @Test
+    public void testFailedSlabCreationReleasesAlreadyAllocatedBlocks() throws Exception {
+        final AtomicInteger remainingSlabs = new AtomicInteger(1);
+        final OffHeapStorage storage = new OffHeapStorage(new SlabFactory() {
+            @Nonnull
+            @Override
+            public ByteBuffer create(int size) throws IOException {
+                if (remainingSlabs.getAndDecrement() <= 0) {
+                    throw new IOException("No more slabs.");
+                }
+                return ByteBuffer.allocate(size);
+            }
+
+            @Override
+            public void release(@Nonnull ByteBuffer slab) {}
+        }, byteCountOf("16B"), byteCountOf("32B"), byteCountOf("1k"));
+        try {
+            storage.write(new byte[48], 48);
+            fail("Expected an IllegalStateException.");
+        } catch (final IllegalStateException ignored) {}
+        assertThat(storage.getUsedSize(), is(byteCountOf("0B")));
+
+        // The blocks of the first slab are free again ...
+        final int[] blocks = storage.write(new byte[32], 32);
+        assertThat(blocks.length, is(2));
+        assertThat(storage.getUsedSize(), is(byteCountOf("32B")));
+    }
+
+    @Test
+    public void testAsLevelOfCombinedCache() throws Exception {
+        final LruCache<String, String> firstLevel = new LruCache<>(String.class, String.class);
+        firstLevel.setCapacity(1L);
+        final Cache<String, String> secondLevel = new CombinedCacheCreator().create(null, new CombinedCacheCreator(), OffHeapCacheDefinition.offHeapCache(String.class, String.class).withMaximumSize("1M"));
+        assertThat(secondLevel, isInstanceOf(OffHeapCache.class));
+        final CombinedCache<String, String> cache = new CombinedCache<>(String.class, String.class, firstLevel, secondLevel);
+
+        cache.put("a", "valueOfA");
+        cache.put("b", "valueOfB");
+        firstLevel.put("b", "valueOfB");
+        assertThat(firstLevel.contains("a"), is(false));
+        assertThat(cache.get("a"), is("valueOfA"));
+        assertThat(firstLevel.get("a"), is("valueOfA"));
+    }
+
+    @Nonnull
+    protected static Set<Integer> keysOf(@Nonnull OffHeapCache<Integer, ?> cache) throws Exception {
+        final Set<Integer> result = new HashSet<>();
+        try (final CloseableIterator<Integer> i = cache.iterator()) {
+            while (i.hasNext()) {
+                result.add(i.next());
+            }
+        }
+        return result;
+    }
+
+    @Nonnull
+    protected static Serializer<String> stringSerializer() {
+        return Serializers.stringSerializer();
+    }
+
+    @Nonnull
+    protected static String repeat(char c, int times) {
+        final StringBuilder sb = new StringBuilder(times);
+        for (int i = 0; i < times; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+}
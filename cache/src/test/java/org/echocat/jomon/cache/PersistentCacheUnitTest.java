@@ -0,0 +1,335 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache;
+
+import org.echocat.jomon.cache.management.CombinedCacheCreator;
+import org.echocat.jomon.cache.management.DefaultCacheRepository;
+import org.echocat.jomon.runtime.io.Serializers;
+import org.echocat.jomon.runtime.util.ByteCount;
+import org.echocat.jomon.runtime.util.Duration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.echocat.jomon.cache.management.CombinedCacheDefinition.combinedCache;
+import static org.echocat.jomon.cache.management.CombinedCacheDefinition.with;
+import static org.echocat.jomon.cache.management.DefaultCacheDefinition.lruCache;
+import static org.echocat.jomon.cache.management.PersistentCacheDefinition.persistentCache;
+import static org.echocat.jomon.runtime.util.ByteCount.byteCountOf;
+import static org.echocat.jomon.testing.BaseMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class PersistentCacheUnitTest {
+
+    @Rule
+    public final TemporaryFolder _folder = new TemporaryFolder();
+
+    @Test
+    public void testBulkOperationsSurviveRestart() throws Exception {
+        final File directory = _folder.newFolder();
+        try (final PersistentCache<String, String> cache = new PersistentCache<>(String.class, String.class, directory)) {
+            cache.setSynchronousWrites(true);
+            final Map<String, String> values = new LinkedHashMap<>();
+            values.put("a", "valueOfA");
+            values.put("b", "valueOfB");
+            values.put("c", "valueOfC");
+            cache.putAll(values);
+            cache.removeAll(asList("b", "x"));
+        }
+        try (final PersistentCache<String, String> cache = new PersistentCache<>(String.class, String.class, directory)) {
+            final Map<String, String> expected = new LinkedHashMap<>();
+            expected.put("c", "valueOfC");
+            expected.put("a", "valueOfA");
+            assertThat(cache.getAll(asList("c", "b", "a")), is(expected));
+            assertThat(cache.size(), is(2L));
+        }
+    }
+
+    @Test
+    public void testEntriesSurviveRestart() throws Exception {
+        final File directory = _folder.newFolder();
+        try (final PersistentCache<String, String> cache = new PersistentCache<>(String.class, String.class, directory)) {
+            cache.put("a", "valueOfA");
+            cache.put("b", "valueOfB");
+            cache.put(null, null);
+            cache.put("b", "newValueOfB");
+            cache.put("c", "valueOfC");
+            cache.remove("c");
+            cache.put("d", "valueOfD", new Duration(1));
+        }
+        Thread.sleep(10);
+        try (final PersistentCache<String, String> cache = new PersistentCache<>(String.class, String.class, directory)) {
+            assertThat(cache.size(), is(3L));
+            assertThat(cache.get("a"), is("valueOfA"));
+            assertThat(cache.get("b"), is("newValueOfB"));
+            assertThat(cache.contains(null), is(true));
+            assertThat(cache.get(null), is((String) null));
+            assertThat(cache.contains("c"), is(false));
+            assertThat(cache.contains("d"), is(false));
+        }
+    }
+
+    @Test
+    public void testPartiallyWrittenRecordsAreIgnored() throws Exception {
+        final File directory = _folder.newFolder();
+        try (final PersistentCache<String, String> cache = new PersistentCache<>(String.class, String.class, directory)) {
+            cache.put("a", "valueOfA");
+            cache.put("b", "valueOfB");
+        }
+        final File segment = segmentOf(directory);
+        // Simulate a crash while the second record was written ...
+        try (final RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.seek(findLast(segment, "valueOfB"));
+            file.write(new byte[]{'x'});
+        }
+        try (final PersistentCache<String, String> cache = new PersistentCache<>(String.class, String.class, directory)) {
+            assertThat(cache.get("a"), is("valueOfA"));
+            assertThat(cache.contains("b"), is(false));
+            cache.put("c", "valueOfC");
+        }
+        try (final PersistentCache<String, String> cache = new PersistentCache<>(String.class, String.class, directory)) {
+            assertThat(cache.get("a"), is("valueOfA"));
+            assertThat(cache.contains("b"), is(false));
+            assertThat(cache.get("c"), is("valueOfC"));
+        }
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        final File directory = _folder.newFolder();
+        try (final PersistentCache<Integer, String> cache = newCacheWithSmallSegments(directory)) {
+            for (int i = 0; i < 1000; i++) {
+                cache.put(i % 10, "value" + i);
+            }
+            cache.put(100, "toBeRemoved");
+            cache.remove(100);
+            assertThat(numberOfSegmentsIn(directory), isLessThanOrEqualTo(3));
+        }
+        try (final PersistentCache<Integer, String> cache = newCacheWithSmallSegments(directory)) {
+            assertThat(cache.size(), is(10L));
+            for (int i = 0; i < 10; i++) {
+                assertThat(cache.get(i), is("value" + (990 + i)));
+            }
+            assertThat(cache.contains(100), is(false));
+        }
+    }
+
+    @Test
+    public void testCompactionDropsRemovalsWhichHideNothing() throws Exception {
+        final File directory = _folder.newFolder();
+        try (final PersistentCache<Integer, String> cache = newCacheWithSmallSegments(directory)) {
+            cache.put(-1, "toBeRemovedLater");
+            // Keeps the oldest segment alive, so the removals below are always part of newer segments ...
+            for (int i = 0; i < 20; i++) {
+                cache.put(1000 + i, "keptInTheOldestSegment" + i);
+            }
+            for (int i = 0; i < 1000; i++) {
+                cache.put(i, "value" + i);
+                cache.remove(i);
+            }
+            cache.remove(-1);
+            for (int i = 0; i < 100; i++) {
+                cache.put(i % 10, "value" + i);
+            }
+            assertThat(numberOfSegmentsIn(directory), isLessThanOrEqualTo(3));
+        }
+        try (final PersistentCache<Integer, String> cache = newCacheWithSmallSegments(directory)) {
+            assertThat(cache.size(), is(30L));
+            assertThat(cache.contains(-1), is(false));
+            assertThat(cache.contains(500), is(false));
+        }
+    }
+
+    @Test
+    public void testCompactedRemovalsAreNotCountedAsUsedSize() throws Exception {
+        final File directory = _folder.newFolder();
+        final ByteCount usedSize;
+        try (final PersistentCache<Integer, String> cache = newCacheWithSmallSegments(directory)) {
+            cache.put(-1, "toBeRemovedLater");
+            for (int i = 0; i < 20; i++) {
+                cache.put(1000 + i, "keptInTheOldestSegment" + i);
+            }
+            cache.remove(-1);
+            for (int i = 0; i < 1000; i++) {
+                cache.put(i % 10, "value" + i);
+            }
+            usedSize = cache.getUsedSize();
+        }
+        try (final PersistentCache<Integer, String> cache = newCacheWithSmallSegments(directory)) {
+            assertThat(cache.getUsedSize(), is(usedSize));
+        }
+    }
+
+    @Test
+    public void testIteratorSkipsExpiredKeys() throws Exception {
+        try (final PersistentCache<String, String> cache = new PersistentCache<>(String.class, String.class, _folder.newFolder())) {
+            cache.put("a", "valueOfA", new Duration("10ms"));
+            cache.put("b", "valueOfB");
+            Thread.sleep(50);
+            final List<String> keys = new ArrayList<>();
+            for (final String key : cache) {
+                keys.add(key);
+            }
+            assertThat(keys, is(singletonList("b")));
+        }
+    }
+
+    @Test
+    public void testCapacityAndClear() throws Exception {
+        final File directory = _folder.newFolder();
+        try (final PersistentCache<String, String> cache = new PersistentCache<>(String.class, String.class, directory)) {
+            cache.setCapacity(2L);
+            cache.put("a", "valueOfA");
+            cache.put("b", "valueOfB");
+            cache.get("a");
+            cache.put("c", "valueOfC");
+            assertThat(cache.contains("a"), is(true));
+            assertThat(cache.contains("b"), is(false));
+            assertThat(cache.contains("c"), is(true));
+
+            cache.clear();
+            assertThat(cache.size(), is(0L));
+            cache.put("d", "valueOfD");
+        }
+        try (final PersistentCache<String, String> cache = new PersistentCache<>(String.class, String.class, directory)) {
+            assertThat(cache.size(), is(1L));
+            assertThat(cache.get("d"), is("valueOfD"));
+        }
+    }
+
+    @Test
+    public void testExpiredEntriesAreSwept() throws Exception {
+        try (final ExpirationSweeper sweeper = new ExpirationSweeper()) {
+            try (final PersistentCache<String, String> cache = new PersistentCache<>(String.class, String.class, _folder.newFolder())) {
+                cache.setExpirationSweeper(sweeper);
+                assertThat(sweeper.isRegistered(cache), is(true));
+                cache.put("a", "valueOfA", new Duration("10ms"));
+                cache.put("b", "valueOfB", new Duration("1h"));
+                cache.put("c", "valueOfC");
+                cache.put("d", "valueOfD", new Duration("10ms"));
+                cache.put("d", "valueOfD");
+                Thread.sleep(50);
+
+                sweeper.sweep();
+                assertThat(cache.size(), is(3L));
+                assertThat(cache.contains("a"), is(false));
+                assertThat(cache.contains("d"), is(true));
+                assertThat(cache.getNumberOfDrops(), is(1L));
+
+                cache.close();
+                assertThat(sweeper.isRegistered(cache), is(false));
+            }
+        }
+    }
+
+    @Test
+    public void testDirectoryCouldOnlyBeUsedOnce() throws Exception {
+        final File directory = _folder.newFolder();
+        try (final PersistentCache<String, String> ignored = new PersistentCache<>(String.class, String.class, directory)) {
+            try {
+                new PersistentCache<>(String.class, String.class, directory);
+                fail("Expected exception missing.");
+            } catch (final IOException expected) {}
+        }
+    }
+
+    @Test
+    public void testAsLastLevelOfCombinedCacheCreatedByRepository() throws Exception {
+        final File directory = _folder.newFolder();
+        try (final DefaultCacheRepository repository = new DefaultCacheRepository(new CombinedCacheCreator())) {
+            final Cache<String, String> cache = repository.provide("test", combinedCache(String.class, String.class,
+                with("test.memory", lruCache(String.class, String.class)),
+                with("test.disk", persistentCache(String.class, String.class, directory))
+            ));
+            assertThat(cache, isInstanceOf(CombinedCache.class));
+            assertThat(repository.find("test.disk"), isInstanceOf(PersistentCache.class));
+            cache.put("a", "valueOfA");
+        }
+        try (final DefaultCacheRepository repository = new DefaultCacheRepository(new CombinedCacheCreator())) {
+            final Cache<String, String> cache = repository.provide("test", combinedCache(String.class, String.class,
+                with("test.memory", lruCache(String.class, String.class)),
+                with("test.disk", persistentCache(String.class, String.class, directory))
+            ));
+            assertThat(cache.get("a"), is("valueOfA"));
+            assertThat(repository.<String, String>find("test.memory").contains("a"), is(true));
+        }
+    }
+
+    @Nonnull
+    protected static PersistentCache<Integer, String> newCacheWithSmallSegments(@Nonnull File directory) throws IOException {
+        return new PersistentCache<>(Integer.class, String.class, Serializers.integerSerializer(), Serializers.stringSerializer(), directory, byteCountOf("1k"));
+    }
+
+    @Nonnull
+    protected static File segmentOf(@Nonnull File directory) {
+        final File[] files = directory.listFiles();
+        File result = null;
+        if (files != null) {
+            for (final File file : files) {
+                if (file.getName().endsWith(PersistentCache.SEGMENT_SUFFIX)) {
+                    result = file;
+                }
+            }
+        }
+        if (result == null) {
+            throw new IllegalStateException("There is no segment in " + directory + ".");
+        }
+        return result;
+    }
+
+    protected static int numberOfSegmentsIn(@Nonnull File directory) {
+        final File[] files = directory.listFiles();
+        int result = 0;
+        if (files != null) {
+            for (final File file : files) {
+                if (file.getName().endsWith(PersistentCache.SEGMENT_SUFFIX)) {
+                    result++;
+                }
+            }
+        }
+        return result;
+    }
+
+    protected static long findLast(@Nonnull File file, @Nonnull String what) throws IOException {
+        final byte[] content = new byte[(int) file.length()];
+        try (final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            randomAccessFile.readFully(content);
+        }
+        final byte[] pattern = what.getBytes("UTF-8");
+        for (int i = content.length - pattern.length; i >= 0; i--) {
+            boolean matches = true;
+            for (int j = 0; j < pattern.length && matches; j++) {
+                matches = content[i + j] == pattern[j];
+            }
+            if (matches) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Could not find '" + what + "' in " + file + ".");
+    }
+
+}
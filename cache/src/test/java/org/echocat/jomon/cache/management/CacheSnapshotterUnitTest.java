@@ -0,0 +1,188 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache.management;
+
+import org.echocat.jomon.cache.Cache;
+import org.echocat.jomon.cache.CacheListener;
+import org.echocat.jomon.cache.LruCache;
+import org.echocat.jomon.runtime.util.ByteCount;
+import org.echocat.jomon.runtime.util.Duration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.Executor;
+
+import static java.lang.System.currentTimeMillis;
+import static java.util.Collections.singletonList;
+import static org.echocat.jomon.cache.management.DefaultCacheDefinition.lruCache;
+import static org.echocat.jomon.testing.Assert.assertThat;
+import static org.echocat.jomon.testing.BaseMatchers.is;
+
+public class CacheSnapshotterUnitTest {
+
+    protected static final Executor SAME_THREAD = new Executor() { @Override public void execute(@Nonnull Runnable command) {
+        command.run();
+    }};
+
+    @Rule
+    public final TemporaryFolder _folder = new TemporaryFolder();
+
+    @Test
+    public void testRestoreAfterRestartOfRepository() throws Exception {
+        final CacheSnapshotter snapshotter = snapshotter();
+        try (final DefaultCacheRepository repository = repositoryWith(snapshotter)) {
+            final Cache<String, Integer> cache = repository.provide("test:cache", lruCache(String.class, Integer.class).withCapacity(10));
+            cache.put("a", 1);
+            cache.put("b", 2);
+            cache.get("a");
+        }
+        assertThat(snapshotter.fileFor("test:cache").isFile(), is(true));
+
+        try (final DefaultCacheRepository repository = repositoryWith(snapshotter())) {
+            final Cache<String, Integer> cache = repository.provide("test:cache", lruCache(String.class, Integer.class).withCapacity(10));
+            assertThat(cache.contains("a"), is(true));
+            assertThat(cache.get("a"), is(1));
+            assertThat(cache.get("b"), is(2));
+            assertThat(snapshotter.fileFor("test:cache").isFile(), is(false));
+        }
+    }
+
+    @Test
+    public void testRestoreWithoutExecutorStopsItsThreadsAfterwards() throws Exception {
+        final CacheSnapshotter snapshotter = snapshotter();
+        final LruCache<String, Integer> cache = new LruCache<>(String.class, Integer.class);
+        cache.put("a", 1);
+        snapshotter.export("test:cache", cache);
+
+        final CacheSnapshotter restoring = new CacheSnapshotter(_folder.getRoot());
+        try (final DefaultCacheRepository repository = repositoryWith(restoring)) {
+            final Cache<String, Integer> restored = repository.provide("test:cache", lruCache(String.class, Integer.class).withCapacity(10));
+            final long timeoutAt = currentTimeMillis() + 5000;
+            while (restoring.hasPendingRestores() && currentTimeMillis() < timeoutAt) {
+                Thread.sleep(10);
+            }
+            assertThat(restoring.hasPendingRestores(), is(false));
+            assertThat(restored.get("a"), is(1));
+        }
+    }
+
+    @Test
+    public void testRemoveOfCacheDoesNotWriteSnapshot() throws Exception {
+        final CacheSnapshotter snapshotter = snapshotter();
+        try (final DefaultCacheRepository repository = repositoryWith(snapshotter)) {
+            final Cache<String, Integer> cache = repository.provide("test:cache", lruCache(String.class, Integer.class).withCapacity(10));
+            cache.put("a", 1);
+            repository.remove("test:cache");
+            assertThat(snapshotter.fileFor("test:cache").isFile(), is(false));
+        }
+        assertThat(snapshotter.fileFor("test:cache").isFile(), is(false));
+    }
+
+    @Test
+    public void testRestoreConsumesSnapshot() throws Exception {
+        final CacheSnapshotter snapshotter = snapshotter();
+        final LruCache<String, Integer> cache = new LruCache<>(String.class, Integer.class);
+        cache.put("a", 1);
+        snapshotter.export("test", cache);
+
+        assertThat(snapshotter.restore("test", new LruCache<>(String.class, Integer.class)), is(1));
+        assertThat(snapshotter.fileFor("test").isFile(), is(false));
+        assertThat(snapshotter.restore("test", new LruCache<>(String.class, Integer.class)), is(0));
+    }
+
+    @Test
+    public void testRestoreDropsEntriesWhichExpiredMeanwhile() throws Exception {
+        final CacheSnapshotter snapshotter = snapshotter();
+        final LruCache<String, Integer> cache = new LruCache<>(String.class, Integer.class);
+        cache.put("a", 1, new Duration("100ms"));
+        cache.put("b", 2, new Duration("1h"));
+        cache.put("c", 3);
+        snapshotter.export("test", cache);
+        Thread.sleep(200);
+
+        final LruCache<String, Integer> restored = new LruCache<>(String.class, Integer.class);
+        assertThat(snapshotter.restore("test", restored), is(2));
+        assertThat(restored.contains("a"), is(false));
+        assertThat(restored.contains("b"), is(true));
+        assertThat(restored.contains("c"), is(true));
+    }
+
+    @Test
+    public void testExportAndRestoreKeepsOrderAndHits() throws Exception {
+        final CacheSnapshotter snapshotter = snapshotter();
+        final LruCache<String, Integer> cache = new LruCache<>(String.class, Integer.class);
+        for (int i = 0; i < 10; i++) {
+            cache.put("k" + i, i);
+        }
+        cache.get("k3");
+        cache.get("k3");
+        snapshotter.setMaximumEntriesPerCache(5);
+        assertThat(snapshotter.export("test", cache), is(5));
+
+        final LruCache<String, Integer> restored = new LruCache<>(String.class, Integer.class);
+        assertThat(snapshotter.restore("test", restored), is(5));
+        assertThat(restored.snapshot(1).get(0).getKey(), is("k3"));
+        assertThat(restored.snapshot(1).get(0).getHits(), is(2));
+        assertThat(restored.contains("k0"), is(false));
+        assertThat(restored.contains("k9"), is(true));
+    }
+
+    @Test
+    public void testRestoreIgnoresSnapshotOfOtherTypes() throws Exception {
+        final CacheSnapshotter snapshotter = snapshotter();
+        final LruCache<String, Integer> cache = new LruCache<>(String.class, Integer.class);
+        cache.put("a", 1);
+        snapshotter.export("test", cache);
+
+        final LruCache<String, String> other = new LruCache<>(String.class, String.class);
+        assertThat(snapshotter.restore("test", other), is(0));
+        assertThat(snapshotter.restore("unknown", other), is(0));
+    }
+
+    @Test
+    public void testRestoreStopsIfWarmUpSizeIsExceeded() throws Exception {
+        final CacheSnapshotter snapshotter = snapshotter();
+        final LruCache<Integer, Integer> cache = new LruCache<>(Integer.class, Integer.class);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, i);
+        }
+        snapshotter.export("test1", cache);
+        snapshotter.export("test2", cache);
+
+        final CacheSnapshotter limited = snapshotter();
+        limited.setMaximumWarmUpSize(new ByteCount(1));
+        final LruCache<Integer, Integer> restored = new LruCache<>(Integer.class, Integer.class);
+        assertThat(limited.restore("test1", restored), is(CacheSnapshotter.BATCH_SIZE));
+        assertThat(restored.contains(999), is(true));
+        // Every warm up has its own budget, so a later restore is limited in the same way ...
+        assertThat(limited.restore("test2", new LruCache<>(Integer.class, Integer.class)), is(CacheSnapshotter.BATCH_SIZE));
+    }
+
+    @Nonnull
+    protected CacheSnapshotter snapshotter() {
+        final CacheSnapshotter result = new CacheSnapshotter(_folder.getRoot());
+        result.setExecutor(SAME_THREAD);
+        return result;
+    }
+
+    @Nonnull
+    protected static DefaultCacheRepository repositoryWith(@Nonnull CacheSnapshotter snapshotter) {
+        final DefaultCacheRepository result = new DefaultCacheRepository(new LruCacheCreator());
+        result.setListeners(singletonList((CacheListener) snapshotter));
+        return result;
+    }
+}
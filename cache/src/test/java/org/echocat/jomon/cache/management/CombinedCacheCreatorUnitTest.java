@@ -15,6 +15,7 @@
 package org.echocat.jomon.cache.management;
 
 import org.echocat.jomon.cache.*;
+import org.echocat.jomon.runtime.util.Duration;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -59,4 +60,16 @@ public class CombinedCacheCreatorUnitTest {
         assertThat(((LimitedCache) delegates[1]).getCapacity(), is(100L));
     }
 
+    @Test
+    public void testCreateWithWriteBackOptions() throws Exception {
+        final CombinedCacheCreator creator = new CombinedCacheCreator();
+        final CombinedCache<String, Number> cache = (CombinedCache<String, Number>) creator.create(null, creator, combinedCacheOf(String.class, Number.class,
+            with("a", lruCache(String.class, Integer.class).withCapacity(10)),
+            with("b", lfuCache(String.class, Integer.class).withCapacity(100))
+        ).withAsynchronousWriteBack().withLowerLevelTimeout("100ms"));
+        assertThat(cache.getDelegates(), hasSize(2));
+        assertThat(cache.isAsynchronousWriteBack(), is(true));
+        assertThat(cache.getLowerLevelTimeout(), is(new Duration("100ms")));
+    }
+
 }
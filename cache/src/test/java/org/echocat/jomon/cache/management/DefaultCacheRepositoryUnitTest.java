@@ -0,0 +1,106 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache.management;
+
+import org.echocat.jomon.cache.Cache;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.echocat.jomon.cache.management.DefaultCacheDefinition.lruCache;
+import static org.echocat.jomon.testing.Assert.assertThat;
+import static org.echocat.jomon.testing.BaseMatchers.is;
+import static org.echocat.jomon.testing.BaseMatchers.isSameAs;
+
+public class DefaultCacheRepositoryUnitTest {
+
+    @Test
+    public void testProvideByTypeAndVariant() throws Exception {
+        final CountingCacheCreator creator = new CountingCacheCreator();
+        try (final DefaultCacheRepository repository = new DefaultCacheRepository(creator)) {
+            final Cache<String, Integer> a = repository.provide(DefaultCacheRepositoryUnitTest.class, lruCache(String.class, Integer.class));
+            final Cache<String, Integer> b = repository.provide(DefaultCacheRepositoryUnitTest.class, "b", lruCache(String.class, Integer.class));
+            assertThat(a == b, is(false));
+            assertThat(repository.provide(DefaultCacheRepositoryUnitTest.class, lruCache(String.class, Integer.class)), isSameAs(a));
+            assertThat(repository.provide(DefaultCacheRepositoryUnitTest.class, "b", lruCache(String.class, Integer.class)), isSameAs(b));
+            assertThat(repository.<String, Integer>find(DefaultCacheRepositoryUnitTest.class.getName() + ".b"), isSameAs(b));
+            assertThat(creator.getNumberOfCreations(), is(2));
+        }
+    }
+
+    @Test
+    public void testProvideAfterRemoveCreatesNewCache() throws Exception {
+        final CountingCacheCreator creator = new CountingCacheCreator();
+        try (final DefaultCacheRepository repository = new DefaultCacheRepository(creator)) {
+            final Cache<String, Integer> a = repository.provide(DefaultCacheRepositoryUnitTest.class, lruCache(String.class, Integer.class));
+            repository.remove(DefaultCacheRepositoryUnitTest.class.getName());
+            assertThat(repository.find(DefaultCacheRepositoryUnitTest.class.getName()), is(null));
+
+            final Cache<String, Integer> b = repository.provide(DefaultCacheRepositoryUnitTest.class, lruCache(String.class, Integer.class));
+            assertThat(b == a, is(false));
+            assertThat(creator.getNumberOfCreations(), is(2));
+        }
+    }
+
+    @Test
+    public void testConcurrentProvideCreatesOnlyOnce() throws Exception {
+        final CountingCacheCreator creator = new CountingCacheCreator();
+        try (final DefaultCacheRepository repository = new DefaultCacheRepository(creator)) {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                threads.add(new Thread() { @Override public void run() {
+                    try {
+                        start.await();
+                    } catch (final InterruptedException ignored) {
+                        return;
+                    }
+                    for (int j = 0; j < 1000; j++) {
+                        repository.provide(DefaultCacheRepositoryUnitTest.class, "concurrent", lruCache(String.class, Integer.class));
+                    }
+                }});
+            }
+            for (final Thread thread : threads) {
+                thread.start();
+            }
+            start.countDown();
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+            assertThat(creator.getNumberOfCreations(), is(1));
+        }
+    }
+
+    protected static class CountingCacheCreator extends LruCacheCreator {
+
+        private final AtomicInteger _numberOfCreations = new AtomicInteger();
+
+        @Nonnull
+        @Override
+        public <K, V> Cache<K, V> create(@Nullable CacheProvider provider, @Nonnull CacheCreator master, @Nonnull CacheDefinition<K, V, ?> by) throws Exception {
+            _numberOfCreations.incrementAndGet();
+            return super.create(provider, master, by);
+        }
+
+        public int getNumberOfCreations() {
+            return _numberOfCreations.get();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache.management;
+
+import org.echocat.jomon.cache.Cache;
+import org.echocat.jomon.cache.CacheListener;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static java.util.Collections.singletonList;
+import static javax.management.MBeanServerFactory.newMBeanServer;
+import static org.echocat.jomon.cache.management.DefaultCacheDefinition.lruCache;
+import static org.echocat.jomon.testing.Assert.assertThat;
+import static org.echocat.jomon.testing.BaseMatchers.is;
+
+public class JmxCacheStatisticsExporterUnitTest {
+
+    @Test
+    public void testExportOfCreatedAndDestroyedCaches() throws Exception {
+        final MBeanServer server = newMBeanServer();
+        final JmxCacheStatisticsExporter exporter = new JmxCacheStatisticsExporter(server);
+        final DefaultCacheRepository repository = new DefaultCacheRepository(new LruCacheCreator());
+        repository.setListeners(singletonList((CacheListener) exporter));
+        final ObjectName objectName = exporter.createObjectName("test:cache");
+
+        final Cache<String, Integer> cache = repository.provide("test:cache", lruCache(String.class, Integer.class).withCapacity(10));
+        assertThat(server.isRegistered(objectName), is(true));
+        cache.put("a", 1);
+        cache.get("a");
+        cache.get("b");
+        assertThat(server.getAttribute(objectName, "NumberOfRequests"), is((Object) 2L));
+        assertThat(server.getAttribute(objectName, "NumberOfHits"), is((Object) 1L));
+        assertThat(server.getAttribute(objectName, "HitRatio"), is((Object) 0.5d));
+        assertThat(server.getAttribute(objectName, "Size"), is((Object) 1L));
+
+        repository.remove("test:cache");
+        assertThat(server.isRegistered(objectName), is(false));
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        final MBeanServer server = newMBeanServer();
+        final JmxCacheStatisticsExporter exporter = new JmxCacheStatisticsExporter(server);
+        final DefaultCacheRepository repository = new DefaultCacheRepository(new LruCacheCreator());
+        repository.setListeners(singletonList((CacheListener) exporter));
+        repository.provide("a", lruCache(String.class, Integer.class));
+        repository.provide("b", lruCache(String.class, Integer.class));
+        assertThat(server.isRegistered(exporter.createObjectName("a")), is(true));
+
+        exporter.close();
+        assertThat(server.isRegistered(exporter.createObjectName("a")), is(false));
+        assertThat(server.isRegistered(exporter.createObjectName("b")), is(false));
+    }
+}
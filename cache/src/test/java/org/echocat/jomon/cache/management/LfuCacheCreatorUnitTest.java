@@ -0,0 +1,100 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.cache.management;
+
+import org.echocat.jomon.cache.*;
+import org.junit.Test;
+
+import static org.echocat.jomon.cache.management.DefaultCacheDefinition.*;
+import static org.echocat.jomon.runtime.util.ByteCount.byteCountOf;
+import static org.echocat.jomon.testing.Assert.assertThat;
+import static org.echocat.jomon.testing.BaseMatchers.*;
+
+public class LfuCacheCreatorUnitTest {
+
+    @Test
+    public void testCanHandleType() throws Exception {
+        final LfuCacheCreator creator = new LfuCacheCreator();
+        assertThat(creator.canHandleType(lfuCache(String.class, Integer.class)), is(true));
+        assertThat(creator.canHandleType(concurrentLfuCache(String.class, Integer.class)), is(true));
+        assertThat(creator.canHandleType(frequencyBucketLfuCache(String.class, Integer.class)), is(true));
+        assertThat(creator.canHandleType(lruCache(String.class, Integer.class)), is(false));
+    }
+
+    @Test
+    public void testCreate() throws Exception {
+        final LfuCacheCreator creator = new LfuCacheCreator();
+
+        final Cache<String, Integer> lfu = creator.create(null, creator, lfuCache(String.class, Integer.class).withCapacity(10));
+        assertThat(lfu, isInstanceOf(LfuCache.class));
+        assertThat(((LimitedCache<?, ?>) lfu).getCapacity(), is(10L));
+
+        final Cache<String, Integer> concurrentLfu = creator.create(null, creator, concurrentLfuCache(String.class, Integer.class).withConcurrencyLevel(4));
+        assertThat(concurrentLfu, isInstanceOf(ConcurrentLfuCache.class));
+        assertThat(((ConcurrentLfuCache<?, ?>) concurrentLfu).getConcurrencyLevel(), is(4));
+
+        final Cache<String, Integer> frequencyBucketLfu = creator.create(null, creator, frequencyBucketLfuCache(String.class, Integer.class).withCapacity(100));
+        assertThat(frequencyBucketLfu, isInstanceOf(FrequencyBucketLfuCache.class));
+        assertThat(((LimitedCache<?, ?>) frequencyBucketLfu).getCapacity(), is(100L));
+    }
+
+    @Test
+    public void testCreateWithMaximumWeight() throws Exception {
+        final LfuCacheCreator creator = new LfuCacheCreator();
+        final Weigher<Object, Object> weigher = new Weigher<Object, Object>() { @Override public long weightOf(Object key, Object value) {
+            return 4;
+        }};
+
+        final Cache<String, Integer> lfu = creator.create(null, creator, lfuCache(String.class, Integer.class).withMaximumWeight("1k").withWeigher(weigher));
+        assertThat(((WeightLimitedCache<?, ?>) lfu).getMaximumWeight(), is(byteCountOf("1k")));
+        assertThat(((WeightLimitedCache<?, ?>) lfu).getWeigher(), is((Object) weigher));
+
+        creator.setDefaultWeigher(weigher);
+        creator.setDefaultMaximumWeight(byteCountOf("2k"));
+        final Cache<String, Integer> concurrentLfu = creator.create(null, creator, concurrentLfuCache(String.class, Integer.class));
+        assertThat(((WeightLimitedCache<?, ?>) concurrentLfu).getMaximumWeight(), is(byteCountOf("2k")));
+        concurrentLfu.put("a", 1);
+        assertThat(((WeightLimitedCache<?, ?>) concurrentLfu).getWeight(), is(byteCountOf(4)));
+    }
+
+    @Test
+    public void testCreateWithBackgroundExpiration() throws Exception {
+        final LfuCacheCreator creator = new LfuCacheCreator();
+        final Cache<String, Integer> lfu = creator.create(null, creator, lfuCache(String.class, Integer.class));
+        assertThat(((ExpirationSweeperEnabledCache<?, ?>) lfu).getExpirationSweeper(), is(null));
+
+        final Cache<String, Integer> withBackgroundExpiration = creator.create(null, creator, lfuCache(String.class, Integer.class).withBackgroundExpiration(true));
+        assertThat(((ExpirationSweeperEnabledCache<?, ?>) withBackgroundExpiration).getExpirationSweeper(), isSameAs(ExpirationSweeper.getDefaultInstance()));
+
+        final Cache<String, Integer> concurrentLfu = creator.create(null, creator, concurrentLfuCache(String.class, Integer.class).withBackgroundExpiration(false));
+        assertThat(((ExpirationSweeperEnabledCache<?, ?>) concurrentLfu).getExpirationSweeper(), is(null));
+
+        try (final ExpirationSweeper sweeper = new ExpirationSweeper()) {
+            creator.setExpirationSweeper(sweeper);
+            final Cache<String, Integer> sweptLfu = creator.create(null, creator, lfuCache(String.class, Integer.class));
+            assertThat(((ExpirationSweeperEnabledCache<?, ?>) sweptLfu).getExpirationSweeper(), isSameAs(sweeper));
+
+            final Cache<String, Integer> withoutBackgroundExpiration = creator.create(null, creator, lfuCache(String.class, Integer.class).withBackgroundExpiration(false));
+            assertThat(((ExpirationSweeperEnabledCache<?, ?>) withoutBackgroundExpiration).getExpirationSweeper(), is(null));
+        }
+    }
+
+    @Test(expected = IllegalCacheDefinitionException.class)
+    public void testCreateWithMaximumWeightButWithoutWeigher() throws Exception {
+        final LfuCacheCreator creator = new LfuCacheCreator();
+        creator.create(null, creator, lfuCache(String.class, Integer.class).withMaximumWeight("1k"));
+    }
+
+}
@@ -23,6 +23,7 @@ import java.util.Iterator;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.echocat.jomon.testing.Assert.assertThat;
+import static org.echocat.jomon.testing.BaseMatchers.is;
 
 public class PutInCacheIteratorUnitTest {
 
@@ -38,6 +39,23 @@ public class PutInCacheIteratorUnitTest {
         iterator.close();
     }
 
+    @Test
+    public void testBatchedCacheAccess() throws Exception {
+        final Cache<Integer, SimpleIdEnabled> cache = new LruCache<>(Integer.class, SimpleIdEnabled.class);
+        final PutInCacheIterator<Integer, SimpleIdEnabled> iterator = new PutInCacheIterator<>(getIncreasingIterator(), cache, 30);
+        for (int i = 0; i < 29; i++) {
+            iterator.next();
+        }
+        assertThat(cache.get(0), is(null));
+        iterator.next();
+        assertThat(cache.get(29), is(new SimpleIdEnabled(29)));
+        while (iterator.hasNext()) {
+            iterator.next();
+        }
+        assertThat(cache.get(MAX_VALUES - 1), is(new SimpleIdEnabled(MAX_VALUES - 1)));
+        iterator.close();
+    }
+
     @Nonnull
     private Iterator<SimpleIdEnabled> getIncreasingIterator() {
         final AtomicInteger integer = new AtomicInteger();
@@ -21,5 +21,9 @@ public interface CacheClusterChannelConstants {
 
     public static final byte removeCommand = pingCommand + 1;
     public static final byte clearCommand = pingCommand + 2;
+    public static final byte removeBatchCommand = pingCommand + 3;
+    public static final byte clearByIdCommand = pingCommand + 4;
+    public static final byte cacheIdDefinitionCommand = pingCommand + 5;
+    public static final byte cacheIdRequestCommand = pingCommand + 6;
 
 }
@@ -14,17 +14,18 @@
 
 package org.echocat.jomon.net.cluster.cache;
 
-import org.echocat.jomon.cache.Cache;
-import org.echocat.jomon.cache.InMemoryBasedCacheSupport;
-import org.echocat.jomon.cache.LocalTrackingEnabledCacheListener;
-import org.echocat.jomon.cache.LruCache;
+import org.echocat.jomon.cache.*;
 import org.echocat.jomon.cache.management.CacheRepository;
 import org.echocat.jomon.net.cluster.channel.HandlerEnabledClusterChannel;
 import org.echocat.jomon.net.cluster.channel.HandlerEnabledClusterChannel.MessageHandler;
 import org.echocat.jomon.net.cluster.channel.Message;
+import org.echocat.jomon.net.cluster.channel.Node;
 import org.echocat.jomon.runtime.math.OverPeriodCounter;
 import org.echocat.jomon.runtime.util.Duration;
+import org.echocat.jomon.runtime.util.Entry;
 import org.echocat.jomon.runtime.util.ValueProducer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.annotation.*;
 import java.nio.charset.Charset;
@@ -40,22 +41,32 @@ import static java.lang.Boolean.TRUE;
 import static java.lang.System.getProperty;
 import static java.lang.Thread.currentThread;
 import static java.util.Collections.unmodifiableCollection;
+import static org.echocat.jomon.net.cluster.cache.ClusterCacheIds.cacheIdsOf;
 
 public abstract class CacheListenerForClusterChannelSupport implements LocalTrackingEnabledCacheListener, AutoCloseable {
 
+    private static final Logger LOG = LoggerFactory.getLogger(CacheListenerForClusterChannelSupport.class);
+
     public static final Charset CHARSET = Charset.forName("ISO-8859-1");
 
     private final ThreadLocal<Boolean> _inHandleMessage = new ThreadLocal<>();
 
     private final CacheRepository _cacheRepository;
     private final HandlerEnabledClusterChannel<?, ?> _clusterChannel;
+    private final ClusterCacheIds _cacheIds;
 
     private final InMemoryBasedCacheSupport<ReportKey, ReportImpl> _localTrackingCache;
     private volatile boolean _trackLocalEventsEnabled;
+    private volatile boolean _legacyFormat = true;
 
     public CacheListenerForClusterChannelSupport(@Nonnull CacheRepository cacheRepository, @Nonnull HandlerEnabledClusterChannel<?, ?> clusterChannel) {
+        this(cacheRepository, clusterChannel, cacheIdsOf(clusterChannel));
+    }
+
+    public CacheListenerForClusterChannelSupport(@Nonnull CacheRepository cacheRepository, @Nonnull HandlerEnabledClusterChannel<?, ?> clusterChannel, @Nonnull ClusterCacheIds cacheIds) {
         _cacheRepository = cacheRepository;
         _clusterChannel = clusterChannel;
+        _cacheIds = cacheIds;
         _localTrackingCache = createCache();
     }
 
@@ -98,6 +109,18 @@ public abstract class CacheListenerForClusterChannelSupport implements LocalTrac
         }
     }
 
+    public boolean isLegacyFormat() {
+        return _legacyFormat;
+    }
+
+    /**
+     * If <code>true</code> (the default) messages are sent in the string based format which is also understood by nodes of older versions.
+     * Otherwise the binary format with {@link ClusterCacheIds interned cache ids} is used. Both formats are always understood by this listener.
+     */
+    public void setLegacyFormat(boolean legacyFormat) {
+        _legacyFormat = legacyFormat;
+    }
+
     @Nonnull
     protected abstract MessageHandler getMessageHandler();
 
@@ -123,6 +146,29 @@ public abstract class CacheListenerForClusterChannelSupport implements LocalTrac
         return _inHandleMessage;
     }
 
+    /**
+     * Is called if a message of the given node was dropped because it uses a numeric cache id which is not known yet and there are already
+     * {@link ClusterCacheIds#getMaximumNumberOfPendingCallbacks() too many messages} waiting for unknown ids. It is unknown which cache the
+     * message belongs to, so every cache this listener is registered at is cleared to not serve values the message should have invalidated.
+     */
+    protected void handleDroppedMessage(@Nonnull Node<?> from, @Nonnegative int id) {
+        LOG.warn("Dropped a message from " + from + " which uses the unknown cache id " + id + ". All caches of " + this + " will be cleared.");
+        for (final Entry<String, Cache<?, ?>> idAndCache : _cacheRepository) {
+            final Cache<?, ?> cache = idAndCache.getValue();
+            if (cache instanceof ClearableCache && cache instanceof ListenerEnabledCache) {
+                final Collection<CacheListener> listeners = ((ListenerEnabledCache<?, ?>) cache).getListeners();
+                if (listeners != null && listeners.contains(this)) {
+                    startHandleMessage();
+                    try {
+                        ((ClearableCache<?, ?>) cache).clear();
+                    } finally {
+                        finishHandleMessage();
+                    }
+                }
+            }
+        }
+    }
+
     @Nonnull
     protected CacheRepository getCacheRepository() {
         return _cacheRepository;
@@ -133,15 +179,25 @@ public abstract class CacheListenerForClusterChannelSupport implements LocalTrac
         return _clusterChannel;
     }
 
+    @Nonnull
+    protected ClusterCacheIds getCacheIds() {
+        return _cacheIds;
+    }
+
     @PostConstruct
     public void init() throws Exception {
+        _cacheIds.register(_clusterChannel);
         _clusterChannel.register(getMessageHandler());
     }
 
     @Override
     @PreDestroy
     public void close() throws Exception {
-        _clusterChannel.unregister(getMessageHandler());
+        try {
+            _clusterChannel.unregister(getMessageHandler());
+        } finally {
+            _cacheIds.unregister(_clusterChannel);
+        }
     }
 
     public void send(@Nonnull Message message) throws IllegalArgumentException {
@@ -16,6 +16,7 @@ package org.echocat.jomon.net.cluster.cache;
 
 import org.echocat.jomon.cache.*;
 import org.echocat.jomon.cache.management.CacheRepository;
+import org.echocat.jomon.net.cluster.cache.ClusterCacheIds.Callback;
 import org.echocat.jomon.net.cluster.channel.HandlerEnabledClusterChannel;
 import org.echocat.jomon.net.cluster.channel.HandlerEnabledClusterChannel.MessageHandler;
 import org.echocat.jomon.net.cluster.channel.Message;
@@ -24,10 +25,15 @@ import org.echocat.jomon.net.cluster.channel.ReceivedMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.echocat.jomon.cache.CacheUtils.assertValidCacheId;
+import static org.echocat.jomon.net.cluster.cache.CacheClusterChannelConstants.clearByIdCommand;
 import static org.echocat.jomon.net.cluster.cache.CacheClusterChannelConstants.clearCommand;
+import static org.echocat.jomon.net.cluster.channel.ByteUtils.getShort;
+import static org.echocat.jomon.net.cluster.channel.ByteUtils.putShort;
 
 public class ClearOverClusterListener extends CacheListenerForClusterChannelSupport implements ClearableCacheListener {
 
@@ -37,6 +43,8 @@ public class ClearOverClusterListener extends CacheListenerForClusterChannelSupp
         if (message.getCommand() == clearCommand) {
             final String cacheId = message.getDataAsString(CHARSET);
             clear(cacheId, message.getFrom());
+        } else if (message.getCommand() == clearByIdCommand) {
+            clearById(message, message.getFrom());
         }
     }};
 
@@ -44,6 +52,10 @@ public class ClearOverClusterListener extends CacheListenerForClusterChannelSupp
         super(cacheRepository, clusterChannel);
     }
 
+    public ClearOverClusterListener(@Nonnull CacheRepository cacheRepository, @Nonnull HandlerEnabledClusterChannel<?, ?> clusterChannel, @Nonnull ClusterCacheIds cacheIds) {
+        super(cacheRepository, clusterChannel, cacheIds);
+    }
+
     @Override
     @Nonnull
     protected MessageHandler getMessageHandler() {
@@ -59,11 +71,46 @@ public class ClearOverClusterListener extends CacheListenerForClusterChannelSupp
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Send clear for cache: " + cacheId, createThrowableIfLogStackTraceIsNeeded());
             }
-            send(new Message(clearCommand, cacheId, CHARSET));
+            if (isLegacyFormat()) {
+                send(new Message(clearCommand, cacheId, CHARSET));
+            } else {
+                final byte[] payload = new byte[2];
+                putShort(payload, 0, (short) getCacheIds().intern(cacheId, getClusterChannel()));
+                send(new Message(clearByIdCommand, payload));
+            }
             record(Event.afterClear);
         }
     }
 
+    protected void clearById(@Nonnull Message message, @Nonnull Node<?> from) {
+        if (message.getLength() == 2) {
+            clearById(getShort(message.getData(), message.getOffset()) & 0xFFFF, from);
+        }
+    }
+
+    protected void clearById(@Nonnegative final int id, @Nonnull final Node<?> from) {
+        String cacheId;
+        try {
+            cacheId = getCacheIds().findOrRequest(from, id, getClusterChannel(), new Callback() {
+                @Override
+                public void whenKnown() {
+                    clearById(id, from);
+                }
+
+                @Override
+                public void whenGivenUp() {
+                    handleDroppedMessage(from, id);
+                }
+            });
+        } catch (final RejectedExecutionException ignored) {
+            handleDroppedMessage(from, id);
+            cacheId = null;
+        }
+        if (cacheId != null) {
+            clear(cacheId, from);
+        }
+    }
+
     protected void clear(@Nonnull String cacheId, @Nonnull Node<?> from) {
         final Cache<Object, ?> cache = findCache(cacheId);
         if (cache instanceof ClearableCache) {
@@ -0,0 +1,554 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+
+package org.echocat.jomon.net.cluster.cache;
+
+import org.echocat.jomon.net.cluster.channel.ClusterChannel;
+import org.echocat.jomon.net.cluster.channel.HandlerEnabledClusterChannel;
+import org.echocat.jomon.net.cluster.channel.HandlerEnabledClusterChannel.Handler;
+import org.echocat.jomon.net.cluster.channel.HandlerEnabledClusterChannel.MessageHandler;
+import org.echocat.jomon.net.cluster.channel.HandlerEnabledClusterChannel.PresenceHandler;
+import org.echocat.jomon.net.cluster.channel.Message;
+import org.echocat.jomon.net.cluster.channel.Node;
+import org.echocat.jomon.net.cluster.channel.ReceivedMessage;
+import org.echocat.jomon.runtime.util.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+
+import static java.lang.System.currentTimeMillis;
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.echocat.jomon.net.cluster.cache.CacheClusterChannelConstants.cacheIdDefinitionCommand;
+import static org.echocat.jomon.net.cluster.cache.CacheClusterChannelConstants.cacheIdRequestCommand;
+import static org.echocat.jomon.net.cluster.cache.CacheListenerForClusterChannelSupport.CHARSET;
+import static org.echocat.jomon.net.cluster.channel.ByteUtils.*;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Interns cache ids to short numeric ids which are negotiated per channel. Every node assigns its own numeric ids to the cache ids it
+ * sends and announces each new assignment with a {@link CacheClusterChannelConstants#cacheIdDefinitionCommand} to all other nodes. A node
+ * which receives a numeric id it does not know yet asks the sender with a {@link CacheClusterChannelConstants#cacheIdRequestCommand} for it
+ * and handles the message again as soon as the answer arrives.</p>
+ *
+ * <p>Because a request or its answer could get lost, the request is repeated every {@link #getRequestInterval() request interval} by a
+ * background thread which only runs while there are unknown ids. After {@link #getMaximumNumberOfRequests() some requests} without an
+ * answer the waiting messages are {@link Callback#whenGivenUp() given up}.</p>
+ *
+ * <p>One instance should be shared by all listeners of one channel, see {@link #cacheIdsOf(HandlerEnabledClusterChannel)}.</p>
+ */
+@ThreadSafe
+public class ClusterCacheIds {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ClusterCacheIds.class);
+
+    public static final int MAXIMUM_NUMBER_OF_IDS = 0xFFFF;
+
+    @GuardedBy("CHANNEL_TO_CACHE_IDS")
+    private static final Map<HandlerEnabledClusterChannel<?, ?>, ClusterCacheIds> CHANNEL_TO_CACHE_IDS = new WeakHashMap<>();
+
+    @Nonnull
+    public static ClusterCacheIds cacheIdsOf(@Nonnull HandlerEnabledClusterChannel<?, ?> channel) {
+        synchronized (CHANNEL_TO_CACHE_IDS) {
+            ClusterCacheIds result = CHANNEL_TO_CACHE_IDS.get(channel);
+            if (result == null) {
+                result = new ClusterCacheIds();
+                CHANNEL_TO_CACHE_IDS.put(channel, result);
+            }
+            return result;
+        }
+    }
+
+    private final Handler _handler = new CacheIdsHandler();
+
+    @GuardedBy("_cacheIdToId")
+    private final Map<String, Integer> _cacheIdToId = new HashMap<>();
+    private final ConcurrentMap<Integer, String> _idToCacheId = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, ConcurrentMap<Integer, String>> _nodeToIdToCacheId = new ConcurrentHashMap<>();
+    @GuardedBy("_pendingResolves")
+    private final Map<RemoteId, PendingResolve> _pendingResolves = new HashMap<>();
+    @GuardedBy("_pendingResolves")
+    private int _numberOfPendingCallbacks;
+    @GuardedBy("_pendingResolves")
+    private Resolver _resolver;
+    @GuardedBy("this")
+    private int _numberOfRegistrations;
+
+    private volatile int _maximumNumberOfPendingCallbacks = 1000;
+    private volatile Duration _requestInterval = new Duration("1s");
+    private volatile int _maximumNumberOfRequests = 5;
+
+    @Nonnegative
+    public int getMaximumNumberOfPendingCallbacks() {
+        return _maximumNumberOfPendingCallbacks;
+    }
+
+    /**
+     * Sets how many messages which wait for an unknown numeric id are kept. If this limit is reached further messages with unknown ids are
+     * rejected by {@link #findOrRequest(Node, int, ClusterChannel, Callback)}.
+     */
+    public void setMaximumNumberOfPendingCallbacks(@Nonnegative int maximumNumberOfPendingCallbacks) {
+        _maximumNumberOfPendingCallbacks = maximumNumberOfPendingCallbacks;
+    }
+
+    @Nonnull
+    public Duration getRequestInterval() {
+        return _requestInterval;
+    }
+
+    /**
+     * Sets how long to wait for an answer before an unknown numeric id is requested again.
+     */
+    public void setRequestInterval(@Nonnull Duration requestInterval) {
+        _requestInterval = requestInterval;
+    }
+
+    @Nonnegative
+    public int getMaximumNumberOfRequests() {
+        return _maximumNumberOfRequests;
+    }
+
+    /**
+     * Sets how often an unknown numeric id is requested. If there is still no answer one {@link #getRequestInterval() request interval}
+     * after the last request, all messages which are waiting for it are {@link Callback#whenGivenUp() given up}.
+     */
+    public void setMaximumNumberOfRequests(@Nonnegative int maximumNumberOfRequests) {
+        _maximumNumberOfRequests = maximumNumberOfRequests;
+    }
+
+    @Nonnull
+    public Handler getHandler() {
+        return _handler;
+    }
+
+    public void register(@Nonnull HandlerEnabledClusterChannel<?, ?> channel) {
+        synchronized (this) {
+            if (_numberOfRegistrations++ == 0) {
+                channel.register(_handler);
+            }
+        }
+    }
+
+    public void unregister(@Nonnull HandlerEnabledClusterChannel<?, ?> channel) {
+        synchronized (this) {
+            if (_numberOfRegistrations > 0 && --_numberOfRegistrations == 0) {
+                channel.unregister(_handler);
+            }
+        }
+    }
+
+    /**
+     * @return the numeric id of the given <code>cacheId</code>. If there was no numeric id for it before the new assignment is sent to all
+     * other nodes of the given channel.
+     * @throws IllegalStateException if there are already {@link #MAXIMUM_NUMBER_OF_IDS} assigned.
+     */
+    @Nonnegative
+    public int intern(@Nonnull String cacheId, @Nonnull ClusterChannel<?, ?> over) throws IllegalStateException {
+        Integer result;
+        final boolean assigned;
+        synchronized (_cacheIdToId) {
+            result = _cacheIdToId.get(cacheId);
+            assigned = result == null;
+            if (assigned) {
+                result = _cacheIdToId.size() + 1;
+                if (result > MAXIMUM_NUMBER_OF_IDS) {
+                    throw new IllegalStateException("There are already " + MAXIMUM_NUMBER_OF_IDS + " cache ids assigned. Could not assign " + cacheId + ".");
+                }
+                _cacheIdToId.put(cacheId, result);
+                _idToCacheId.put(result, cacheId);
+            }
+        }
+        if (assigned) {
+            // Sent outside of the lock, a message of another thread which overtakes the definition is resolved by a request ...
+            sendDefinition(result, cacheId, over);
+        }
+        return result;
+    }
+
+    /**
+     * @return the cache id which was assigned by the given node to the given numeric id or <code>null</code> if this assignment is not known yet.
+     */
+    @Nullable
+    public String find(@Nonnull Node<?> of, @Nonnegative int id) {
+        final Map<Integer, String> idToCacheId = _nodeToIdToCacheId.get(of.getUuid());
+        return idToCacheId != null ? idToCacheId.get(id) : null;
+    }
+
+    /**
+     * @return the cache id which was assigned by the given node to the given numeric id. If this assignment is not known yet, it is requested
+     * from the node, <code>null</code> is returned and the given callback is called after the assignment was received or if it was given up.
+     * @throws RejectedExecutionException if the assignment is not known yet and there are already
+     * {@link #getMaximumNumberOfPendingCallbacks() too many callbacks} waiting. The given callback will never be called but the assignment
+     * is requested anyway.
+     */
+    @Nullable
+    public String findOrRequest(@Nonnull Node<?> of, @Nonnegative int id, @Nonnull ClusterChannel<?, ?> over, @Nonnull Callback callback) throws RejectedExecutionException {
+        String result = find(of, id);
+        if (result == null) {
+            final boolean requestRequired;
+            final boolean rejected;
+            final RemoteId remoteId = new RemoteId(of.getUuid(), id);
+            synchronized (_pendingResolves) {
+                result = find(of, id);
+                if (result == null) {
+                    PendingResolve pendingResolve = _pendingResolves.get(remoteId);
+                    if (pendingResolve == null) {
+                        pendingResolve = new PendingResolve(over);
+                        _pendingResolves.put(remoteId, pendingResolve);
+                        startResolverIfRequired();
+                    }
+                    rejected = _numberOfPendingCallbacks >= _maximumNumberOfPendingCallbacks;
+                    if (!rejected) {
+                        pendingResolve.add(callback);
+                        _numberOfPendingCallbacks++;
+                    }
+                    requestRequired = pendingResolve.isRequestRequired(_requestInterval);
+                } else {
+                    requestRequired = false;
+                    rejected = false;
+                }
+            }
+            if (requestRequired) {
+                sendRequest(remoteId, over);
+            }
+            if (rejected) {
+                throw new RejectedExecutionException("There are already " + _maximumNumberOfPendingCallbacks + " messages waiting for unknown cache ids. Could not keep a message from " + of + " which uses the unknown id " + id + ".");
+            }
+        }
+        return result;
+    }
+
+    protected void define(@Nonnull Node<?> by, @Nonnegative int id, @Nonnull String cacheId) {
+        final UUID uuid = by.getUuid();
+        ConcurrentMap<Integer, String> idToCacheId = _nodeToIdToCacheId.get(uuid);
+        if (idToCacheId == null) {
+            _nodeToIdToCacheId.putIfAbsent(uuid, new ConcurrentHashMap<Integer, String>());
+            idToCacheId = _nodeToIdToCacheId.get(uuid);
+        }
+        idToCacheId.put(id, cacheId);
+        final PendingResolve pendingResolve;
+        synchronized (_pendingResolves) {
+            pendingResolve = _pendingResolves.remove(new RemoteId(uuid, id));
+            if (pendingResolve != null) {
+                _numberOfPendingCallbacks -= pendingResolve.getCallbacks().size();
+            }
+        }
+        if (pendingResolve != null) {
+            for (final Callback callback : pendingResolve.getCallbacks()) {
+                callback.whenKnown();
+            }
+        }
+    }
+
+    /**
+     * Forgets all assignments of the given node. Messages which are still waiting for one of them are given up.
+     */
+    protected void forget(@Nonnull Node<?> node) {
+        final UUID uuid = node.getUuid();
+        _nodeToIdToCacheId.remove(uuid);
+        final List<Callback> givenUp = new ArrayList<>();
+        synchronized (_pendingResolves) {
+            final Iterator<Entry<RemoteId, PendingResolve>> i = _pendingResolves.entrySet().iterator();
+            while (i.hasNext()) {
+                final Entry<RemoteId, PendingResolve> remoteIdAndPendingResolve = i.next();
+                if (uuid.equals(remoteIdAndPendingResolve.getKey().getNode())) {
+                    givenUp.addAll(remoteIdAndPendingResolve.getValue().getCallbacks());
+                    _numberOfPendingCallbacks -= remoteIdAndPendingResolve.getValue().getCallbacks().size();
+                    i.remove();
+                }
+            }
+        }
+        giveUp(givenUp);
+    }
+
+    /**
+     * Requests all unknown ids again whose last request is older than the {@link #getRequestInterval() request interval} and gives up
+     * the ones which were already requested {@link #getMaximumNumberOfRequests() too often}.
+     */
+    protected void retryPendingResolves() {
+        final Duration requestInterval = _requestInterval;
+        final int maximumNumberOfRequests = _maximumNumberOfRequests;
+        final Map<RemoteId, ClusterChannel<?, ?>> toRequest = new HashMap<>();
+        final List<Callback> givenUp = new ArrayList<>();
+        synchronized (_pendingResolves) {
+            final Iterator<Entry<RemoteId, PendingResolve>> i = _pendingResolves.entrySet().iterator();
+            while (i.hasNext()) {
+                final Entry<RemoteId, PendingResolve> remoteIdAndPendingResolve = i.next();
+                final PendingResolve pendingResolve = remoteIdAndPendingResolve.getValue();
+                if (pendingResolve.isRequestRequired(requestInterval)) {
+                    if (pendingResolve.getNumberOfRequests() > maximumNumberOfRequests) {
+                        givenUp.addAll(pendingResolve.getCallbacks());
+                        _numberOfPendingCallbacks -= pendingResolve.getCallbacks().size();
+                        i.remove();
+                    } else {
+                        toRequest.put(remoteIdAndPendingResolve.getKey(), pendingResolve.getOver());
+                    }
+                }
+            }
+        }
+        for (final Entry<RemoteId, ClusterChannel<?, ?>> remoteIdAndOver : toRequest.entrySet()) {
+            sendRequest(remoteIdAndOver.getKey(), remoteIdAndOver.getValue());
+        }
+        giveUp(givenUp);
+    }
+
+    protected void giveUp(@Nonnull Iterable<Callback> callbacks) {
+        for (final Callback callback : callbacks) {
+            try {
+                callback.whenGivenUp();
+            } catch (final RuntimeException e) {
+                LOG.warn("Could not give up a message which was waiting for an unknown cache id.", e);
+            }
+        }
+    }
+
+    @GuardedBy("_pendingResolves")
+    protected void startResolverIfRequired() {
+        if (_resolver == null) {
+            _resolver = new Resolver();
+            _resolver.start();
+        }
+    }
+
+    protected void sendDefinition(@Nonnegative int id, @Nonnull String cacheId, @Nonnull ClusterChannel<?, ?> over) {
+        final byte[] plainCacheId = cacheId.getBytes(CHARSET);
+        final byte[] payload = new byte[plainCacheId.length + 2];
+        putShort(payload, 0, (short) id);
+        System.arraycopy(plainCacheId, 0, payload, 2, plainCacheId.length);
+        over.send(new Message(cacheIdDefinitionCommand, payload));
+    }
+
+    protected void sendRequest(@Nonnull RemoteId remoteId, @Nonnull ClusterChannel<?, ?> over) {
+        final byte[] payload = new byte[18];
+        putLong(payload, 0, remoteId.getNode().getMostSignificantBits());
+        putLong(payload, 8, remoteId.getNode().getLeastSignificantBits());
+        putShort(payload, 16, (short) remoteId.getId());
+        over.send(new Message(cacheIdRequestCommand, payload));
+    }
+
+    protected void handleDefinition(@Nonnull ReceivedMessage<?> message) {
+        if (message.getLength() > 2) {
+            final byte[] data = message.getData();
+            final int offset = message.getOffset();
+            final int id = getShort(data, offset) & 0xFFFF;
+            final String cacheId = new String(data, offset + 2, message.getLength() - 2, CHARSET);
+            define(message.getFrom(), id, cacheId);
+        }
+    }
+
+    protected void handleRequest(@Nonnull HandlerEnabledClusterChannel<?, ?> channel, @Nonnull ReceivedMessage<?> message) {
+        if (message.getLength() == 18) {
+            final byte[] data = message.getData();
+            final int offset = message.getOffset();
+            final UUID node = new UUID(getLong(data, offset), getLong(data, offset + 8));
+            final int id = getShort(data, offset + 16) & 0xFFFF;
+            if (node.equals(channel.getUuid())) {
+                final String cacheId = _idToCacheId.get(id);
+                if (cacheId != null) {
+                    sendDefinition(id, cacheId, channel);
+                }
+            }
+        }
+    }
+
+    protected void announceAll(@Nonnull ClusterChannel<?, ?> over) {
+        for (final Entry<Integer, String> idAndCacheId : _idToCacheId.entrySet()) {
+            sendDefinition(idAndCacheId.getKey(), idAndCacheId.getValue(), over);
+        }
+    }
+
+    protected class CacheIdsHandler implements MessageHandler, PresenceHandler {
+
+        @Override
+        public void handle(@Nonnull HandlerEnabledClusterChannel<?, ?> clusterChannel, @Nonnull ReceivedMessage<?> message) {
+            if (message.getCommand() == cacheIdDefinitionCommand) {
+                handleDefinition(message);
+            } else if (message.getCommand() == cacheIdRequestCommand) {
+                handleRequest(clusterChannel, message);
+            }
+        }
+
+        @Override
+        public void nodeEnter(@Nonnull HandlerEnabledClusterChannel<?, ?> clusterChannel, @Nonnull Node<?> entry) {
+            announceAll(clusterChannel);
+        }
+
+        @Override
+        public void nodeLeft(@Nonnull HandlerEnabledClusterChannel<?, ?> clusterChannel, @Nonnull Node<?> entry) {
+            forget(entry);
+        }
+    }
+
+    protected static class RemoteId {
+
+        private final UUID _node;
+        private final int _id;
+
+        public RemoteId(@Nonnull UUID node, @Nonnegative int id) {
+            _node = node;
+            _id = id;
+        }
+
+        @Nonnull
+        public UUID getNode() {
+            return _node;
+        }
+
+        @Nonnegative
+        public int getId() {
+            return _id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            final boolean result;
+            if (this == o) {
+                result = true;
+            } else if (!(o instanceof RemoteId)) {
+                result = false;
+            } else {
+                final RemoteId that = (RemoteId) o;
+                result = _id == that._id && _node.equals(that._node);
+            }
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * _node.hashCode() + _id;
+        }
+
+        @Override
+        public String toString() {
+            return _node + "/" + _id;
+        }
+    }
+
+    /**
+     * Is called for a message which waits for an unknown numeric id.
+     */
+    public static interface Callback {
+
+        /**
+         * The numeric id is known now, so the message could be handled again.
+         */
+        public void whenKnown();
+
+        /**
+         * The numeric id could not be resolved. It is unknown which cache the message belongs to, so the receiver has to handle this like
+         * a dropped message. Resources which were kept for the message have to be released.
+         */
+        public void whenGivenUp();
+
+    }
+
+    protected static class PendingResolve {
+
+        private final ClusterChannel<?, ?> _over;
+        private final List<Callback> _callbacks = new ArrayList<>();
+        private long _lastRequested;
+        private int _numberOfRequests;
+
+        public PendingResolve(@Nonnull ClusterChannel<?, ?> over) {
+            _over = over;
+        }
+
+        @Nonnull
+        public ClusterChannel<?, ?> getOver() {
+            return _over;
+        }
+
+        public void add(@Nonnull Callback callback) {
+            _callbacks.add(callback);
+        }
+
+        @Nonnull
+        public List<Callback> getCallbacks() {
+            return _callbacks;
+        }
+
+        /**
+         * @return the number of times the request was required until now.
+         */
+        @Nonnegative
+        public int getNumberOfRequests() {
+            return _numberOfRequests;
+        }
+
+        public boolean isRequestRequired(@Nonnull Duration requestInterval) {
+            final long now = currentTimeMillis();
+            final boolean result = _lastRequested + requestInterval.in(MILLISECONDS) <= now;
+            if (result) {
+                _lastRequested = now;
+                _numberOfRequests++;
+            }
+            return result;
+        }
+    }
+
+    protected class Resolver extends Thread {
+
+        public Resolver() {
+            super(ClusterCacheIds.class.getSimpleName() + ".Resolver");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (hasPendingResolves()) {
+                    _requestInterval.sleep();
+                    try {
+                        retryPendingResolves();
+                    } catch (final RuntimeException e) {
+                        LOG.warn("Could not request unknown cache ids again.", e);
+                    }
+                }
+            } catch (final InterruptedException ignored) {
+                currentThread().interrupt();
+                synchronized (_pendingResolves) {
+                    // noinspection ObjectEquality
+                    if (_resolver == this) {
+                        _resolver = null;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Stops this resolver if there is nothing to resolve anymore. A pending resolve which is added later starts a new one.
+         */
+        protected boolean hasPendingResolves() {
+            synchronized (_pendingResolves) {
+                final boolean result = !_pendingResolves.isEmpty();
+                if (!result) {
+                    _resolver = null;
+                }
+                return result;
+            }
+        }
+    }
+
+}
@@ -12,32 +12,87 @@
  * *** END LICENSE BLOCK *****
  ****************************************************************************************/
 
+
 package org.echocat.jomon.net.cluster.cache;
 
 import org.echocat.jomon.cache.*;
 import org.echocat.jomon.cache.management.CacheRepository;
+import org.echocat.jomon.net.cluster.cache.ClusterCacheIds.Callback;
 import org.echocat.jomon.net.cluster.channel.HandlerEnabledClusterChannel;
 import org.echocat.jomon.net.cluster.channel.HandlerEnabledClusterChannel.MessageHandler;
 import org.echocat.jomon.net.cluster.channel.Message;
 import org.echocat.jomon.net.cluster.channel.Node;
 import org.echocat.jomon.net.cluster.channel.ReceivedMessage;
+import org.echocat.jomon.runtime.io.Serializer;
+import org.echocat.jomon.runtime.io.Serializers;
+import org.echocat.jomon.runtime.util.Duration;
 import org.echocat.jomon.runtime.util.Value;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
+import javax.annotation.concurrent.GuardedBy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static java.lang.Boolean.TRUE;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Thread.currentThread;
+import static java.util.Arrays.copyOf;
 import static org.echocat.jomon.cache.CacheUtils.assertValidCacheId;
+import static org.echocat.jomon.cache.CacheUtils.removeAll;
+import static org.echocat.jomon.net.cluster.cache.CacheClusterChannelConstants.removeBatchCommand;
 import static org.echocat.jomon.net.cluster.cache.CacheClusterChannelConstants.removeCommand;
+import static org.echocat.jomon.net.cluster.channel.ByteUtils.*;
+import static org.echocat.jomon.runtime.concurrent.ThreadUtils.stop;
+import static org.echocat.jomon.runtime.io.Serializers.findSerializerOf;
 
+/**
+ * <h1>Synopsis</h1>
+ * <p>Sends every removal of a key from an {@link IdentifiedCache} to all other nodes of the cluster and removes the same key from the local
+ * cache if such a message is received.</p>
+ *
+ * <h1>Formats</h1>
+ * <p>In the {@link #setLegacyFormat(boolean) legacy format} (the default) a key of type {@link String}, {@link Integer}, {@link Long} or
+ * {@link Boolean} is sent as string together with the cache id. All other keys and all keys if the legacy format is disabled are sent in a
+ * binary frame using the {@link CacheClusterChannelConstants#removeBatchCommand}. Such a frame contains for every cache its
+ * {@link ClusterCacheIds interned id} and the keys written by the {@link Serializer} the
+ * {@link Serializers} provides for the key type of the cache. So every key type which is supported by
+ * {@link Serializers} could be removed. Keys of other types are ignored with a warning.</p>
+ *
+ * <h1>Batching</h1>
+ * <p>By default every removed key is sent directly as its own message. If a {@link #setMaximumBatchDelay(Duration) maximumBatchDelay}
+ * is set the removed keys are collected for at most this delay (or until {@link #setMaximumBatchSize(int) maximumBatchSize} different
+ * keys are pending), deduplicated per cache and sent as binary frames of at most {@link #setMaximumFrameSize(int) maximumFrameSize} bytes.
+ * A receiver removes all keys of one cache of such a frame in one pass. Because older nodes ignore this command batching should only be
+ * enabled if all nodes of the cluster understand it.</p>
+ */
 public class RemoveOverClusterListener extends CacheListenerForClusterChannelSupport implements RemoveCacheListener {
 
     private static final Logger LOG = LoggerFactory.getLogger(RemoveOverClusterListener.class);
 
     public static final String LOG_STACK_TRACE_PROPERTY_NAME = RemoveOverClusterListener.class.getName() + ".logStackTrace";
 
+    /**
+     * Fits into one packet of the {@link org.echocat.jomon.net.cluster.channel.multicast.MulticastClusterChannel}.
+     */
+    public static final int DEFAULT_MAXIMUM_FRAME_SIZE = 1021;
+    public static final int DEFAULT_MAXIMUM_BATCH_SIZE = 10000;
+
     private final MessageHandler _messageHandler = new MessageHandler() { @Override public void handle(@Nonnull HandlerEnabledClusterChannel<?, ?> clusterChannel, @Nonnull ReceivedMessage<?> message) {
         if (message.getCommand() == removeCommand) {
             final String removeMessage = message.getDataAsString(CHARSET);
@@ -47,33 +102,379 @@ public class RemoveOverClusterListener extends CacheListenerForClusterChannelSup
                 final String key = removeMessage.substring(fistIndex + 1);
                 remove(cacheId, key, message.getFrom());
             }
+        } else if (message.getCommand() == removeBatchCommand) {
+            removeBatch(message, message.getFrom());
         }
     }};
 
+    private final Lock _lock = new ReentrantLock();
+    private final Condition _condition = _lock.newCondition();
+
+    @GuardedBy("_lock")
+    private Map<String, PendingRemoves> _pendingRemoves = new LinkedHashMap<>();
+    @GuardedBy("_lock")
+    private int _numberOfPendingRemoves;
+    @GuardedBy("_lock")
+    private Flusher _flusher;
+    @GuardedBy("_lock")
+    private boolean _closed;
+
+    private volatile Duration _maximumBatchDelay = new Duration(0);
+    private volatile int _maximumBatchSize = DEFAULT_MAXIMUM_BATCH_SIZE;
+    private volatile int _maximumFrameSize = DEFAULT_MAXIMUM_FRAME_SIZE;
+
     public RemoveOverClusterListener(@Nonnull CacheRepository cacheRepository, @Nonnull HandlerEnabledClusterChannel<?, ?> clusterChannel) {
         super(cacheRepository, clusterChannel);
     }
 
+    public RemoveOverClusterListener(@Nonnull CacheRepository cacheRepository, @Nonnull HandlerEnabledClusterChannel<?, ?> clusterChannel, @Nonnull ClusterCacheIds cacheIds) {
+        super(cacheRepository, clusterChannel, cacheIds);
+    }
+
     @Nonnull
     @Override
     protected MessageHandler getMessageHandler() {
         return _messageHandler;
     }
 
+    @Nonnull
+    public Duration getMaximumBatchDelay() {
+        return _maximumBatchDelay;
+    }
+
+    /**
+     * Sets how long removed keys are collected before they are sent. An empty duration (the default) disables batching.
+     */
+    public void setMaximumBatchDelay(@Nonnull Duration maximumBatchDelay) {
+        _maximumBatchDelay = maximumBatchDelay;
+        if (maximumBatchDelay.isEmpty()) {
+            flush();
+        }
+    }
+
+    @Nonnegative
+    public int getMaximumBatchSize() {
+        return _maximumBatchSize;
+    }
+
+    /**
+     * Sets the number of pending keys after which the pending keys are sent immediately by the thread that removed the last key.
+     */
+    public void setMaximumBatchSize(@Nonnegative int maximumBatchSize) {
+        if (maximumBatchSize <= 0) {
+            throw new IllegalArgumentException("The maximumBatchSize have to be greater than 0 but was: " + maximumBatchSize);
+        }
+        _maximumBatchSize = maximumBatchSize;
+    }
+
+    @Nonnegative
+    public int getMaximumFrameSize() {
+        return _maximumFrameSize;
+    }
+
+    /**
+     * Sets the maximum number of bytes of one sent frame. A key which does not fit alone into one frame is still sent in its own frame.
+     */
+    public void setMaximumFrameSize(@Nonnegative int maximumFrameSize) {
+        if (maximumFrameSize <= 0) {
+            throw new IllegalArgumentException("The maximumFrameSize have to be greater than 0 but was: " + maximumFrameSize);
+        }
+        _maximumFrameSize = maximumFrameSize;
+    }
+
+    public boolean isBatching() {
+        return _maximumBatchDelay.hasContent();
+    }
+
+    @Nonnegative
+    public int getNumberOfPendingRemoves() {
+        _lock.lock();
+        try {
+            return _numberOfPendingRemoves;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
     @Override
     public void afterRemove(@Nonnull Cache<?, ?> cache, @Nullable Object key, @Nullable Value<?> oldValue) {
         // noinspection ObjectEquality
         if (cache instanceof IdentifiedCache && key != null && !isPossibleEndlessLoop()) {
-            if (key instanceof String || key instanceof Integer || key instanceof Long || key instanceof Boolean) {
-                final String cacheId = ((IdentifiedCache) cache).getId();
-                assertValidCacheId(cacheId);
+            final String cacheId = ((IdentifiedCache) cache).getId();
+            assertValidCacheId(cacheId);
+            if (!isBatching() && isLegacyFormat() && isLegacyKey(key)) {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug("Send remove for object: " + cacheId + "/" + key, createThrowableIfLogStackTraceIsNeeded());
                 }
                 send(new Message(removeCommand, cacheId + ";" + key, CHARSET));
                 record(Event.afterRemove);
             } else {
-                LOG.warn("Could only handle key of type string. Invalid key was: " + key, createThrowableIfLogStackTraceIsNeeded());
+                final Serializer<Object> keySerializer = findKeySerializerOf(cache);
+                if (keySerializer != null) {
+                    if (isBatching()) {
+                        if (LOG.isDebugEnabled()) {
+                            LOG.debug("Queue remove for object: " + cacheId + "/" + key, createThrowableIfLogStackTraceIsNeeded());
+                        }
+                        enqueueRemove(cacheId, keySerializer, key);
+                    } else {
+                        if (LOG.isDebugEnabled()) {
+                            LOG.debug("Send remove for object: " + cacheId + "/" + key, createThrowableIfLogStackTraceIsNeeded());
+                        }
+                        sendRemove(cacheId, keySerializer, key);
+                    }
+                    record(Event.afterRemove);
+                } else {
+                    LOG.warn("Could only handle keys of types which are supported by " + Serializers.class.getName() + ". Invalid key was: " + key, createThrowableIfLogStackTraceIsNeeded());
+                }
+            }
+        }
+    }
+
+    protected boolean isLegacyKey(@Nonnull Object key) {
+        return key instanceof String || key instanceof Integer || key instanceof Long || key instanceof Boolean;
+    }
+
+    @Nullable
+    protected Serializer<Object> findKeySerializerOf(@Nonnull Cache<?, ?> cache) {
+        // noinspection unchecked
+        return (Serializer<Object>) findSerializerOf(cache.getKeyType());
+    }
+
+    /**
+     * Removes of a listener which is already {@link #close() closed} are dropped - there is no flusher which would send them anymore.
+     */
+    protected void enqueueRemove(@Nonnull String cacheId, @Nonnull Serializer<Object> keySerializer, @Nonnull Object key) {
+        final boolean coalesced;
+        final Map<String, PendingRemoves> cacheIdToKeys;
+        _lock.lock();
+        try {
+            if (_closed) {
+                LOG.warn("Could not send remove for object " + cacheId + "/" + key + " because " + this + " is already closed. This key will not be removed on other nodes.");
+                coalesced = false;
+                cacheIdToKeys = null;
+            } else {
+                PendingRemoves pendingRemoves = _pendingRemoves.get(cacheId);
+                if (pendingRemoves == null) {
+                    pendingRemoves = new PendingRemoves(keySerializer, new LinkedHashSet<>());
+                    _pendingRemoves.put(cacheId, pendingRemoves);
+                }
+                coalesced = !pendingRemoves.getKeys().add(key);
+                if (!coalesced) {
+                    _numberOfPendingRemoves++;
+                }
+                if (_numberOfPendingRemoves >= _maximumBatchSize) {
+                    cacheIdToKeys = takePendingRemoves();
+                } else {
+                    cacheIdToKeys = null;
+                    if (_flusher == null) {
+                        _flusher = new Flusher();
+                        _flusher.start();
+                    }
+                    _condition.signalAll();
+                }
+            }
+        } finally {
+            _lock.unlock();
+        }
+        if (coalesced) {
+            record(Event.coalescedRemove);
+        }
+        if (cacheIdToKeys != null) {
+            sendBatch(cacheIdToKeys);
+        }
+    }
+
+    @Nonnull
+    @GuardedBy("_lock")
+    protected Map<String, PendingRemoves> takePendingRemoves() {
+        final Map<String, PendingRemoves> result = _pendingRemoves;
+        _pendingRemoves = new LinkedHashMap<>();
+        _numberOfPendingRemoves = 0;
+        return result;
+    }
+
+    /**
+     * Sends all currently pending removes in the current thread.
+     */
+    public void flush() {
+        final Map<String, PendingRemoves> cacheIdToKeys;
+        _lock.lock();
+        try {
+            cacheIdToKeys = takePendingRemoves();
+        } finally {
+            _lock.unlock();
+        }
+        sendBatch(cacheIdToKeys);
+    }
+
+    /**
+     * Sends the given key directly in its own frame.
+     */
+    protected void sendRemove(@Nonnull String cacheId, @Nonnull Serializer<Object> keySerializer, @Nonnull Object key) {
+        final RemoveBatchWriter writer = new RemoveBatchWriter(_maximumFrameSize);
+        writer.startCache(getCacheIds().intern(cacheId, getClusterChannel()));
+        try {
+            writer.writeKey(keySerializer, key);
+            sendBatch(writer);
+        } catch (final IOException e) {
+            LOG.warn("Could not serialize key " + key + " of cache " + cacheId + ". This key will not be removed on other nodes.", e);
+        }
+    }
+
+    protected void sendBatch(@Nonnull Map<String, PendingRemoves> cacheIdToKeys) {
+        final RemoveBatchWriter writer = new RemoveBatchWriter(_maximumFrameSize);
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(buffer);
+        for (final Entry<String, PendingRemoves> cacheIdAndKeys : cacheIdToKeys.entrySet()) {
+            final int cacheId = getCacheIds().intern(cacheIdAndKeys.getKey(), getClusterChannel());
+            final Serializer<Object> keySerializer = cacheIdAndKeys.getValue().getKeySerializer();
+            boolean cacheStarted = false;
+            for (final Object key : cacheIdAndKeys.getValue().getKeys()) {
+                buffer.reset();
+                try {
+                    keySerializer.write(key, out);
+                    out.flush();
+                } catch (final IOException e) {
+                    LOG.warn("Could not serialize key " + key + " of cache " + cacheIdAndKeys.getKey() + ". This key will not be removed on other nodes.", e);
+                    continue;
+                }
+                final byte[] encodedKey = buffer.toByteArray();
+                if (!writer.isEmpty() && !writer.fits((cacheStarted ? 0 : RemoveBatchWriter.CACHE_HEADER_SIZE) + encodedKey.length)) {
+                    sendBatch(writer);
+                    cacheStarted = false;
+                }
+                if (!cacheStarted) {
+                    writer.startCache(cacheId);
+                    cacheStarted = true;
+                }
+                writer.addKey(encodedKey);
+            }
+        }
+        if (!writer.isEmpty()) {
+            sendBatch(writer);
+        }
+    }
+
+    protected void sendBatch(@Nonnull RemoveBatchWriter writer) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Send remove batch with " + writer.getNumberOfKeys() + " keys.");
+        }
+        send(writer.toMessage());
+        writer.reset();
+        record(Event.sentRemoveBatch);
+    }
+
+    protected void removeBatch(@Nonnull Message message, @Nonnull Node<?> from) {
+        final byte[] data = message.getData();
+        final int end = message.getOffset() + message.getLength();
+        final Map<String, int[]> cacheIdToBlock = new LinkedHashMap<>();
+        int position = message.getOffset();
+        boolean handleable = true;
+        while (handleable && position < end) {
+            if (position + RemoveBatchWriter.CACHE_HEADER_SIZE > end) {
+                LOG.warn("Could not handle remove batch from " + from + ". It ends unexpected at position " + position + ".");
+                handleable = false;
+            } else {
+                final int id = getShort(data, position) & 0xFFFF;
+                final int length = getInt(data, position + 2);
+                position += RemoveBatchWriter.CACHE_HEADER_SIZE;
+                if (length < 0 || position + length > end) {
+                    LOG.warn("Could not handle remove batch from " + from + ". The keys of cache #" + id + " are exceeding the message.");
+                    handleable = false;
+                } else {
+                    final String cacheId = findOrRequestCacheId(message, from, id);
+                    if (cacheId != null) {
+                        cacheIdToBlock.put(cacheId, new int[]{position, length});
+                        position += length;
+                    } else {
+                        // This message will be handled again if the cache id is known or it was dropped.
+                        handleable = false;
+                    }
+                }
+            }
+        }
+        if (handleable) {
+            for (final Entry<String, int[]> cacheIdAndBlock : cacheIdToBlock.entrySet()) {
+                final int[] block = cacheIdAndBlock.getValue();
+                remove(cacheIdAndBlock.getKey(), data, block[0], block[1], from);
+            }
+            record(Event.receivedRemoveBatch);
+        }
+    }
+
+    /**
+     * @return <code>null</code> if the given id is not known yet. In this case the given message is handled again as soon as the id is known
+     *         or {@link #handleDroppedMessage(Node, int) dropped} if it could not be resolved.
+     */
+    @Nullable
+    protected String findOrRequestCacheId(@Nonnull final Message message, @Nonnull final Node<?> from, @Nonnegative final int id) {
+        // The payload could be a pooled buffer - so keep it valid while this message is waiting for the cache id.
+        retain(message);
+        String result;
+        try {
+            result = getCacheIds().findOrRequest(from, id, getClusterChannel(), new Callback() {
+                @Override
+                public void whenKnown() {
+                    try {
+                        removeBatch(message, from);
+                    } finally {
+                        release(message);
+                    }
+                }
+
+                @Override
+                public void whenGivenUp() {
+                    release(message);
+                    handleDroppedMessage(from, id);
+                }
+            });
+            if (result != null) {
+                release(message);
+            }
+        } catch (final RejectedExecutionException ignored) {
+            release(message);
+            handleDroppedMessage(from, id);
+            result = null;
+        }
+        return result;
+    }
+
+    protected static void retain(@Nonnull Message message) {
+        if (message instanceof ReceivedMessage) {
+            ((ReceivedMessage<?>) message).retain();
+        }
+    }
+
+    protected static void release(@Nonnull Message message) {
+        if (message instanceof ReceivedMessage) {
+            ((ReceivedMessage<?>) message).release();
+        }
+    }
+
+    protected void remove(@Nonnull String cacheId, @Nonnull byte[] keys, @Nonnegative int offset, @Nonnegative int length, @Nonnull Node<?> from) {
+        final Cache<Object, ?> cache = findCache(cacheId);
+        if (cache != null) {
+            final Serializer<Object> keySerializer = findKeySerializerOf(cache);
+            if (keySerializer != null) {
+                final List<Object> realKeys = new ArrayList<>();
+                try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(keys, offset, length))) {
+                    while (in.available() > 0) {
+                        realKeys.add(keySerializer.read(in));
+                    }
+                } catch (final IOException e) {
+                    LOG.warn("Could not read keys for cache " + cacheId + " from " + from + ". The " + realKeys.size() + " keys which could be read will be removed.", e);
+                }
+                startHandleMessage();
+                try {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Received remove for objects: " + cacheId + "/" + realKeys + " - from: " + from);
+                    }
+                    removeAll(cache, realKeys);
+                } finally {
+                    finishHandleMessage();
+                }
+            } else {
+                LOG.warn("Could not handle removes for cache " + cacheId + " from " + from + " because there is no serializer for " + cache.getKeyType().getName() + ".");
             }
         }
     }
@@ -109,8 +510,190 @@ public class RemoveOverClusterListener extends CacheListenerForClusterChannelSup
     @Override
     public boolean beforeRemove(@Nonnull Cache<?, ?> cache, @Nullable Object key) { return true; }
 
+    @Override
+    @PreDestroy
+    public void close() throws Exception {
+        try {
+            final Flusher flusher;
+            _lock.lock();
+            try {
+                flusher = _flusher;
+                _flusher = null;
+                _closed = true;
+            } finally {
+                _lock.unlock();
+            }
+            stop(flusher);
+            flush();
+        } finally {
+            super.close();
+        }
+    }
+
     public static enum Event implements LocalTrackingEnabledCacheListener.Event {
-        afterRemove
+        afterRemove,
+        coalescedRemove,
+        sentRemoveBatch,
+        receivedRemoveBatch
+    }
+
+    protected static class PendingRemoves {
+
+        private final Serializer<Object> _keySerializer;
+        private final Set<Object> _keys;
+
+        public PendingRemoves(@Nonnull Serializer<Object> keySerializer, @Nonnull Set<Object> keys) {
+            _keySerializer = keySerializer;
+            _keys = keys;
+        }
+
+        @Nonnull
+        public Serializer<Object> getKeySerializer() {
+            return _keySerializer;
+        }
+
+        @Nonnull
+        public Set<Object> getKeys() {
+            return _keys;
+        }
+    }
+
+    protected class Flusher extends Thread {
+
+        public Flusher() {
+            super(RemoveOverClusterListener.class.getSimpleName() + ".Flusher");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!currentThread().isInterrupted()) {
+                    waitForPendingRemoves();
+                    _maximumBatchDelay.sleep();
+                    try {
+                        flush();
+                    } catch (final RuntimeException e) {
+                        LOG.warn("Could not send pending removes. They are lost now.", e);
+                    }
+                }
+            } catch (final InterruptedException ignored) {
+                currentThread().interrupt();
+            }
+        }
+
+        protected void waitForPendingRemoves() throws InterruptedException {
+            _lock.lockInterruptibly();
+            try {
+                while (_numberOfPendingRemoves <= 0) {
+                    _condition.await();
+                }
+            } finally {
+                _lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes frames in the format <code>(cacheId:short length:int keys:byte[length])*</code> where <code>cacheId</code> is the
+     * {@link ClusterCacheIds interned id} of the cache and <code>keys</code> are the serialized keys.
+     */
+    protected static class RemoveBatchWriter {
+
+        public static final int CACHE_HEADER_SIZE = 6;
+
+        private final int _maximumSize;
+
+        private byte[] _buffer;
+        private int _length;
+        private int _cacheLengthOffset;
+        private int _numberOfKeys;
+
+        public static final int INITIAL_BUFFER_SIZE = 64;
+
+        private final DataOutputStream _out = new DataOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                ensureCapacity(1);
+                _buffer[_length++] = (byte) b;
+            }
+
+            @Override
+            public void write(@Nonnull byte[] b, int off, int len) {
+                ensureCapacity(len);
+                System.arraycopy(b, off, _buffer, _length, len);
+                _length += len;
+            }
+        });
+
+        /**
+         * The buffer starts small and grows up to <code>maximumSize</code>, so a writer for a single key does not allocate a whole frame.
+         */
+        public RemoveBatchWriter(@Nonnegative int maximumSize) {
+            _maximumSize = maximumSize;
+            _buffer = new byte[min(maximumSize, INITIAL_BUFFER_SIZE)];
+        }
+
+        public boolean isEmpty() {
+            return _length == 0;
+        }
+
+        public boolean fits(@Nonnegative int numberOfBytes) {
+            return _length + numberOfBytes <= _maximumSize;
+        }
+
+        @Nonnegative
+        public int getNumberOfKeys() {
+            return _numberOfKeys;
+        }
+
+        public void startCache(@Nonnegative int cacheId) {
+            ensureCapacity(CACHE_HEADER_SIZE);
+            putShort(_buffer, _length, (short) cacheId);
+            _cacheLengthOffset = _length + 2;
+            putInt(_buffer, _cacheLengthOffset, 0);
+            _length += CACHE_HEADER_SIZE;
+        }
+
+        public void addKey(@Nonnull byte[] encodedKey) {
+            ensureCapacity(encodedKey.length);
+            System.arraycopy(encodedKey, 0, _buffer, _length, encodedKey.length);
+            _length += encodedKey.length;
+            putInt(_buffer, _cacheLengthOffset, _length - _cacheLengthOffset - 4);
+            _numberOfKeys++;
+        }
+
+        /**
+         * Serializes the given key directly into this frame.
+         */
+        public void writeKey(@Nonnull Serializer<Object> keySerializer, @Nonnull Object key) throws IOException {
+            final int start = _length;
+            try {
+                keySerializer.write(key, _out);
+                _out.flush();
+            } catch (final IOException e) {
+                _length = start;
+                throw e;
+            }
+            putInt(_buffer, _cacheLengthOffset, _length - _cacheLengthOffset - 4);
+            _numberOfKeys++;
+        }
+
+        @Nonnull
+        public Message toMessage() {
+            return new Message(removeBatchCommand, copyOf(_buffer, _length));
+        }
+
+        public void reset() {
+            _length = 0;
+            _numberOfKeys = 0;
+        }
+
+        protected void ensureCapacity(@Nonnegative int additional) {
+            if (_length + additional > _buffer.length) {
+                _buffer = copyOf(_buffer, max(_length + additional, _buffer.length * 2));
+            }
+        }
     }
 
 }
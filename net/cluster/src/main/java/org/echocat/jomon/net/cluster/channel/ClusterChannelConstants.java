@@ -19,4 +19,35 @@ public interface ClusterChannelConstants {
 
     public static final byte pingCommand = Byte.MIN_VALUE;
 
+    /**
+     * Command of messages which carry another message compressed by a {@link MessageCompressor}.
+     */
+    public static final byte compressedCommand = Byte.MAX_VALUE;
+
+    /**
+     * Command of messages which carry the membership digest of a {@link GossipMembership}.
+     */
+    public static final byte gossipCommand = Byte.MAX_VALUE - 1;
+
+    /**
+     * Command of messages which carry another message together with the epoch and the sequence number of its sender.
+     * The epoch changes every time the sender is (re-)initialized and starts its sequence numbers from the beginning.
+     */
+    public static final byte sequencedCommand = Byte.MAX_VALUE - 2;
+
+    /**
+     * Command of messages which request the retransmission of a range of sequence numbers of one epoch from their sender.
+     */
+    public static final byte nakCommand = Byte.MAX_VALUE - 3;
+
+    /**
+     * Command of messages which announce the epoch and the highest sequence number a sender has sent yet.
+     */
+    public static final byte highestSequenceCommand = Byte.MAX_VALUE - 4;
+
+    /**
+     * Command of messages which carry one fragment of another message which is too large to be sent at once.
+     */
+    public static final byte fragmentCommand = Byte.MAX_VALUE - 5;
+
 }
@@ -57,10 +57,22 @@ public class ClusterChannelUtils {
 
     protected static void formatInbound(@Nonnull StringBuilder to, @Nonnull StatisticEnabledNode<?> of) {
         formatDetails("Inbound", to, of.getLastInboundMessage(), of.getNumberOfInboundMessages(), of.getNumberOfInboundMessagesPerSecond());
+        formatCompression(to, of.getInboundCompressionRatio());
     }
 
     protected static void formatOutbound(@Nonnull StringBuilder to, @Nonnull StatisticEnabledNode<?> of) {
         formatDetails("Outbound", to, of.getLastOutboundMessage(), of.getNumberOfOutboundMessages(), of.getNumberOfOutboundMessagesPerSecond());
+        final Double numberOfMessagesPerFlush = of.getNumberOfOutboundMessagesPerFlush();
+        if (numberOfMessagesPerFlush != null) {
+            to.append(", ").append(new DecimalFormat("#,##0.00", SYMBOLS).format(numberOfMessagesPerFlush)).append(" m/flush");
+        }
+        formatCompression(to, of.getOutboundCompressionRatio());
+    }
+
+    protected static void formatCompression(@Nonnull StringBuilder to, @Nullable Double compressionRatio) {
+        if (compressionRatio != null) {
+            to.append(", ").append(new DecimalFormat("#,##0.00", SYMBOLS).format(compressionRatio)).append(" compression ratio");
+        }
     }
 
     protected static void formatDetails(@Nonnull String prefix, @Nonnull StringBuilder to, @Nullable Date lastMessage, @Nullable Long numberOfMessages, @Nullable Double numberOfMessagesPerSecond) {
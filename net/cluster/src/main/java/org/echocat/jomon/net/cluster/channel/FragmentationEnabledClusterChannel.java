@@ -0,0 +1,49 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Cluster channel which splits messages that are too large for one packet into fragments and reassembles them on
+ * the receiving side.</p>
+ */
+public interface FragmentationEnabledClusterChannel<ID, N extends Node<ID>> extends StatisticEnabledClusterChannel<ID, N> {
+
+    /**
+     * @return the number of sent messages which were too large for one packet and were split into fragments.
+     */
+    @Nonnegative
+    @Nonnull
+    public Long getMessagesFragmented();
+
+    /**
+     * @return the average number of fragments of each {@link #getMessagesFragmented() fragmented message}.
+     */
+    @Nonnegative
+    @Nonnull
+    public Double getFragmentsPerMessage();
+
+    /**
+     * @return the number of received fragmented messages which could not be reassembled because not all of their
+     *         fragments were received in time or because of the memory limit.
+     */
+    @Nonnegative
+    @Nonnull
+    public Long getReassemblyFailures();
+
+}
@@ -0,0 +1,55 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Cluster channel which is able to maintain its {@link #getNodes() nodes} with a {@link GossipMembership} where the
+ * availability of each node is judged by a {@link PhiAccrualFailureDetector}. The gossip rounds are executed every
+ * {@link #getPingInterval() ping interval}.</p>
+ */
+public interface GossipEnabledClusterChannel<ID, N extends Node<ID>> extends PingEnabledClusterChannel<ID, N> {
+
+    public boolean isGossipEnabled();
+
+    public void setGossipEnabled(boolean gossipEnabled);
+
+    /**
+     * @return the number of nodes the membership digest is sent to each round.
+     */
+    @Nonnegative
+    public int getGossipFanout();
+
+    public void setGossipFanout(@Nonnegative int gossipFanout);
+
+    /**
+     * @return the phi above which a node is treated as gone.
+     */
+    @Nonnegative
+    public double getPhiThreshold();
+
+    public void setPhiThreshold(@Nonnegative double phiThreshold);
+
+    /**
+     * @return the current phi of the given node or <code>null</code> if the node is not judged by the gossip.
+     */
+    @Nullable
+    public Double getSuspicionLevelOf(@Nonnull N node);
+
+}
@@ -0,0 +1,494 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel;
+
+import org.echocat.jomon.runtime.util.Duration;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.lang.System.currentTimeMillis;
+import static java.util.Collections.newSetFromMap;
+import static java.util.Collections.shuffle;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.echocat.jomon.net.cluster.channel.ByteUtils.*;
+import static org.echocat.jomon.net.cluster.channel.ClusterChannelConstants.gossipCommand;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Membership of a cluster which is maintained by gossip instead of pings between all nodes.</p>
+ * <p>Every round each node increases its own heartbeat counter and sends a digest with the heartbeat counters of itself
+ * and of up to {@link #getMaximumDigestSize()} other members to only {@link #getFanout()} randomly selected nodes.
+ * The receivers {@link #merge(ReceivedMessage) merge} the digest into their own one. So the number of membership
+ * messages grows only linearly with the size of the cluster and the heartbeats still reach every node after a few
+ * rounds.</p>
+ * <p>Each increase of a heartbeat counter is fed into a {@link PhiAccrualFailureDetector}. Members whose phi exceeds
+ * the {@link #getPhiThreshold() threshold} are treated as unavailable and after {@link #getForgetAfter()} without
+ * any heartbeat they are removed.</p>
+ * <p>Every node announces with its {@link #announceIn(Message) pings} that it takes part in the gossip. Only these nodes
+ * are judged by this membership - all others (like older versions) have to be judged by their connection state.</p>
+ */
+@ThreadSafe
+public class GossipMembership {
+
+    public static final int DEFAULT_FANOUT = 3;
+    public static final int DEFAULT_MAXIMUM_DIGEST_SIZE = 64;
+    public static final Duration DEFAULT_FORGET_AFTER = new Duration("5m");
+
+    protected static final byte SUPPORTS_GOSSIP = 2;
+    protected static final int ENTRY_LENGTH = 24;
+
+    private final UUID _localUuid;
+    private final PhiAccrualFailureDetector<UUID> _detector = new PhiAccrualFailureDetector<>();
+    private final Set<UUID> _supportingNodes = newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+
+    @GuardedBy("this") private final Map<UUID, Member> _members = new HashMap<>();
+    @GuardedBy("this") private final Map<UUID, Member> _forgottenMembers = new HashMap<>();
+    @GuardedBy("this") private long _heartbeat;
+
+    private volatile boolean _enabled;
+    private volatile int _fanout = DEFAULT_FANOUT;
+    private volatile int _maximumDigestSize = DEFAULT_MAXIMUM_DIGEST_SIZE;
+    private volatile Duration _forgetAfter = DEFAULT_FORGET_AFTER;
+    private volatile Listener _listener;
+
+    public GossipMembership(@Nonnull UUID localUuid) {
+        _localUuid = localUuid;
+    }
+
+    public boolean isEnabled() {
+        return _enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        _enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    /**
+     * @return the number of nodes a digest is sent to each round.
+     */
+    @Nonnegative
+    public int getFanout() {
+        return _fanout;
+    }
+
+    public void setFanout(@Nonnegative int fanout) {
+        if (fanout <= 0) {
+            throw new IllegalArgumentException("The fanout have to be greater than 0.");
+        }
+        _fanout = fanout;
+    }
+
+    @Nonnegative
+    public int getMaximumDigestSize() {
+        return _maximumDigestSize;
+    }
+
+    public void setMaximumDigestSize(@Nonnegative int maximumDigestSize) {
+        if (maximumDigestSize <= 0) {
+            throw new IllegalArgumentException("The maximumDigestSize have to be greater than 0.");
+        }
+        _maximumDigestSize = maximumDigestSize;
+    }
+
+    @Nonnull
+    public Duration getForgetAfter() {
+        return _forgetAfter;
+    }
+
+    public void setForgetAfter(@Nonnull Duration forgetAfter) {
+        if (forgetAfter == null) {
+            throw new NullPointerException();
+        }
+        _forgetAfter = forgetAfter;
+    }
+
+    @Nonnegative
+    public double getPhiThreshold() {
+        return _detector.getThreshold();
+    }
+
+    public void setPhiThreshold(@Nonnegative double phiThreshold) {
+        _detector.setThreshold(phiThreshold);
+    }
+
+    /**
+     * Sets the interval of the gossip rounds. It is used as estimate for members which were only seen once yet.
+     */
+    public void setInterval(@Nonnull Duration interval) {
+        _detector.setFirstHeartbeatEstimate(interval);
+    }
+
+    @Nonnull
+    public PhiAccrualFailureDetector<UUID> getDetector() {
+        return _detector;
+    }
+
+    @Nullable
+    public Listener getListener() {
+        return _listener;
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        _listener = listener;
+    }
+
+    /**
+     * @return the given ping extended by the announcement that this node takes part in the gossip - if it is
+     *         {@link #isEnabled() enabled}.
+     */
+    @Nonnull
+    public Message announceIn(@Nonnull Message ping) {
+        final Message result;
+        if (_enabled) {
+            final int length = ping.getLength();
+            final byte[] data = new byte[length > 0 ? length : 1];
+            System.arraycopy(ping.getData(), ping.getOffset(), data, 0, length);
+            data[0] |= SUPPORTS_GOSSIP;
+            result = new Message(ping.getCommand(), data);
+        } else {
+            result = ping;
+        }
+        return result;
+    }
+
+    /**
+     * Remembers if the sender of the given ping takes part in the gossip.
+     */
+    public void recordCapabilitiesOf(@Nonnull ReceivedMessage<?> ping) {
+        final UUID uuid = ping.getFrom().getUuid();
+        if (ping.getLength() > 0 && (ping.getData()[ping.getOffset()] & SUPPORTS_GOSSIP) != 0) {
+            _supportingNodes.add(uuid);
+        } else {
+            _supportingNodes.remove(uuid);
+        }
+    }
+
+    public void forget(@Nonnull UUID uuid) {
+        _supportingNodes.remove(uuid);
+    }
+
+    public boolean isSupportedBy(@Nonnull UUID uuid) {
+        return _supportingNodes.contains(uuid);
+    }
+
+    /**
+     * @return <code>true</code> if the given node is judged by this membership and does not require pings anymore.
+     */
+    public boolean isGossipingWith(@Nonnull UUID uuid) {
+        return _enabled && isSupportedBy(uuid);
+    }
+
+    /**
+     * @return <code>false</code> if the given node is judged by this membership and its phi exceeds the
+     *         {@link #getPhiThreshold() threshold} or if it was already forgotten.
+     */
+    public boolean isAvailable(@Nonnull UUID uuid) {
+        final boolean result;
+        if (_enabled) {
+            synchronized (this) {
+                if (_members.containsKey(uuid)) {
+                    result = _detector.isAvailable(uuid);
+                } else {
+                    result = !_forgottenMembers.containsKey(uuid);
+                }
+            }
+        } else {
+            result = true;
+        }
+        return result;
+    }
+
+    /**
+     * @return the current phi of the given node or <code>null</code> if it is not judged by this membership.
+     */
+    @Nullable
+    public Double getSuspicionLevelOf(@Nonnull UUID uuid) {
+        final Double result;
+        if (_enabled) {
+            synchronized (this) {
+                result = _members.containsKey(uuid) ? _detector.phi(uuid) : null;
+            }
+        } else {
+            result = null;
+        }
+        return result;
+    }
+
+    /**
+     * @return the ids of all members which are currently treated as available - without this node.
+     */
+    @Nonnull
+    public synchronized Set<UUID> getAvailableMembers() {
+        final Set<UUID> result = new HashSet<>();
+        for (final UUID uuid : _members.keySet()) {
+            if (_detector.isAvailable(uuid)) {
+                result.add(uuid);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return a randomly selected subset of the given candidates with at most {@link #getFanout()} entries. Only nodes
+     *         which take part in the gossip are selected.
+     */
+    @Nonnull
+    public <N extends Node<?>> List<N> selectTargets(@Nonnull Collection<? extends N> candidates) {
+        final List<N> result = new ArrayList<>();
+        if (_enabled) {
+            for (final N candidate : candidates) {
+                final UUID uuid = candidate.getUuid();
+                if (!_localUuid.equals(uuid) && isSupportedBy(uuid)) {
+                    result.add(candidate);
+                }
+            }
+            shuffle(result, ThreadLocalRandom.current());
+            final int fanout = _fanout;
+            if (result.size() > fanout) {
+                result.subList(fanout, result.size()).clear();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Starts a new round: Increases the own heartbeat and creates a digest which should be sent to the
+     * {@link #selectTargets(Collection) selected targets}.
+     */
+    @Nonnull
+    public Message createDigest() {
+        final List<Member> members = new ArrayList<>();
+        final long heartbeat;
+        synchronized (this) {
+            heartbeat = ++_heartbeat;
+            for (final Member member : _members.values()) {
+                if (_detector.isAvailable(member.getUuid())) {
+                    members.add(member.copy());
+                }
+            }
+        }
+        final int maximumOtherMembers = _maximumDigestSize - 1;
+        if (members.size() > maximumOtherMembers) {
+            shuffle(members, ThreadLocalRandom.current());
+            members.subList(maximumOtherMembers, members.size()).clear();
+        }
+        final byte[] data = new byte[4 + (members.size() + 1) * ENTRY_LENGTH];
+        putInt(data, 0, members.size() + 1);
+        int position = put(data, 4, _localUuid, heartbeat);
+        for (final Member member : members) {
+            position = put(data, position, member.getUuid(), member.getHeartbeat());
+        }
+        return new Message(gossipCommand, data);
+    }
+
+    /**
+     * Merges the given digest into the own one. Every member with an increased heartbeat is recorded as alive.
+     *
+     * @throws IOException if the given message is not a valid digest.
+     */
+    public void merge(@Nonnull ReceivedMessage<?> digest) throws IOException {
+        final byte[] data = digest.getData();
+        final int offset = digest.getOffset();
+        final int length = digest.getLength();
+        if (digest.getCommand() != gossipCommand || length < 4) {
+            throw new IOException("Received illegal gossip digest.");
+        }
+        final int numberOfEntries = getInt(data, offset);
+        if (numberOfEntries < 0 || length != 4 + numberOfEntries * ENTRY_LENGTH) {
+            throw new IOException("Received illegal gossip digest. It does not contain " + numberOfEntries + " entries.");
+        }
+        final Node<?> from = digest.getFrom();
+        if (_enabled) {
+            final long now = currentTimeMillis();
+            synchronized (this) {
+                for (int i = 0; i < numberOfEntries; i++) {
+                    final int position = offset + 4 + i * ENTRY_LENGTH;
+                    final UUID uuid = new UUID(getLong(data, position), getLong(data, position + 8));
+                    final long heartbeat = getLong(data, position + 16);
+                    if (!_localUuid.equals(uuid)) {
+                        final Member member = memberFor(uuid, heartbeat, now);
+                        if (member != null && uuid.equals(from.getUuid())) {
+                            member.setNode(from);
+                        }
+                    }
+                }
+            }
+            evaluate();
+        }
+    }
+
+    @GuardedBy("this")
+    @Nullable
+    protected Member memberFor(@Nonnull UUID uuid, long heartbeat, long now) {
+        Member result = _members.get(uuid);
+        if (result == null) {
+            final Member forgotten = _forgottenMembers.get(uuid);
+            if (forgotten == null || forgotten.getHeartbeat() < heartbeat) {
+                _forgottenMembers.remove(uuid);
+                result = new Member(uuid, heartbeat);
+                _members.put(uuid, result);
+                _detector.heartbeat(uuid, now);
+            }
+        } else if (result.getHeartbeat() < heartbeat) {
+            result.setHeartbeat(heartbeat);
+            _detector.heartbeat(uuid, now);
+        }
+        return result;
+    }
+
+    /**
+     * Informs the {@link #getListener() listener} about members which became available or unavailable and forgets
+     * members which were not seen since {@link #getForgetAfter()}.
+     */
+    public void evaluate() {
+        final List<Node<?>> available = new ArrayList<>();
+        final List<Node<?>> unavailable = new ArrayList<>();
+        final long now = currentTimeMillis();
+        final long forgetAfter = _forgetAfter.in(MILLISECONDS);
+        synchronized (this) {
+            final Iterator<Member> i = _members.values().iterator();
+            while (i.hasNext()) {
+                final Member member = i.next();
+                final UUID uuid = member.getUuid();
+                final Node<?> node = member.getNode();
+                if (_detector.isAvailable(uuid, now)) {
+                    if (!member.isAnnounced() && node != null) {
+                        member.setAnnounced(true);
+                        available.add(node);
+                    }
+                } else {
+                    if (member.isAnnounced()) {
+                        member.setAnnounced(false);
+                        unavailable.add(node);
+                    }
+                    final Long lastHeartbeatAt = _detector.getLastHeartbeatAt(uuid);
+                    if (lastHeartbeatAt == null || lastHeartbeatAt + forgetAfter < now) {
+                        i.remove();
+                        _detector.remove(uuid);
+                        member.setForgottenAt(now);
+                        _forgottenMembers.put(uuid, member);
+                    }
+                }
+            }
+            final Iterator<Member> j = _forgottenMembers.values().iterator();
+            while (j.hasNext()) {
+                if (j.next().getForgottenAt() + forgetAfter < now) {
+                    j.remove();
+                }
+            }
+        }
+        final Listener listener = _listener;
+        if (listener != null) {
+            for (final Node<?> node : unavailable) {
+                listener.onUnavailable(node);
+            }
+            for (final Node<?> node : available) {
+                listener.onAvailable(node);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        _members.clear();
+        _forgottenMembers.clear();
+        _detector.clear();
+    }
+
+    protected static int put(@Nonnull byte[] data, @Nonnegative int position, @Nonnull UUID uuid, long heartbeat) {
+        putLong(data, position, uuid.getMostSignificantBits());
+        putLong(data, position + 8, uuid.getLeastSignificantBits());
+        putLong(data, position + 16, heartbeat);
+        return position + ENTRY_LENGTH;
+    }
+
+    public interface Listener {
+
+        public void onAvailable(@Nonnull Node<?> node);
+
+        public void onUnavailable(@Nonnull Node<?> node);
+
+    }
+
+    protected static class Member {
+
+        private final UUID _uuid;
+
+        private long _heartbeat;
+        private Node<?> _node;
+        private boolean _announced;
+        private long _forgottenAt;
+
+        public Member(@Nonnull UUID uuid, long heartbeat) {
+            _uuid = uuid;
+            _heartbeat = heartbeat;
+        }
+
+        @Nonnull
+        public UUID getUuid() {
+            return _uuid;
+        }
+
+        public long getHeartbeat() {
+            return _heartbeat;
+        }
+
+        public void setHeartbeat(long heartbeat) {
+            _heartbeat = heartbeat;
+        }
+
+        @Nullable
+        public Node<?> getNode() {
+            return _node;
+        }
+
+        public void setNode(@Nullable Node<?> node) {
+            _node = node;
+        }
+
+        public boolean isAnnounced() {
+            return _announced;
+        }
+
+        public void setAnnounced(boolean announced) {
+            _announced = announced;
+        }
+
+        public long getForgottenAt() {
+            return _forgottenAt;
+        }
+
+        public void setForgottenAt(long forgottenAt) {
+            _forgottenAt = forgottenAt;
+        }
+
+        @Nonnull
+        public Member copy() {
+            return new Member(_uuid, _heartbeat);
+        }
+
+    }
+
+}
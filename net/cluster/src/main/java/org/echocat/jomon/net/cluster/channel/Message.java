@@ -17,7 +17,6 @@ package org.echocat.jomon.net.cluster.channel;
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import java.nio.charset.Charset;
-import java.util.Arrays;
 
 import static java.util.Arrays.copyOfRange;
 import static org.apache.commons.codec.binary.Hex.encodeHex;
@@ -78,6 +77,10 @@ public class Message {
         return new String(_data, _offset, _length, charset);
     }
 
+    /**
+     * Two messages are equal if they have the same command and the same payload - regardless of the arrays and offsets
+     * the payloads are stored in.
+     */
     @Override
     public boolean equals(Object o) {
         final boolean result;
@@ -88,19 +91,35 @@ public class Message {
         } else {
             final Message that = (Message) o;
             result = getCommand() == that.getCommand()
-                && Arrays.equals(getData(), that.getData())
-                && getOffset() == that.getOffset()
-                && getLength() == that.getLength();
+                && getLength() == that.getLength()
+                && hasSamePayloadAs(that);
+        }
+        return result;
+    }
+
+    protected boolean hasSamePayloadAs(@Nonnull Message that) {
+        final byte[] data = getData();
+        final byte[] thatData = that.getData();
+        final int offset = getOffset();
+        final int thatOffset = that.getOffset();
+        final int length = getLength();
+        boolean result = true;
+        for (int i = 0; result && i < length; i++) {
+            result = data[offset + i] == thatData[thatOffset + i];
         }
         return result;
     }
 
     @Override
     public int hashCode() {
+        final byte[] data = getData();
+        final int offset = getOffset();
+        final int length = getLength();
         int result = (int) getCommand();
-        result = 31 * result + Arrays.hashCode(getData());
-        result = 31 * result + getOffset();
-        result = 31 * result + getLength();
+        for (int i = offset; i < offset + length; i++) {
+            result = 31 * result + data[i];
+        }
+        result = 31 * result + length;
         return result;
     }
 
@@ -0,0 +1,287 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static java.lang.System.nanoTime;
+import static java.util.Collections.newSetFromMap;
+import static org.echocat.jomon.net.cluster.channel.ByteUtils.getInt;
+import static org.echocat.jomon.net.cluster.channel.ByteUtils.putInt;
+import static org.echocat.jomon.net.cluster.channel.ClusterChannelConstants.compressedCommand;
+import static org.echocat.jomon.net.cluster.channel.ClusterChannelConstants.pingCommand;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Compresses the payloads of messages with {@link Deflater} before they are sent to nodes which are able to
+ * decompress them.</p>
+ * <p>A compressed message is sent with the {@link ClusterChannelConstants#compressedCommand} and carries the original
+ * command and the original length in front of the deflated payload. Every node announces with the payload of its
+ * {@link #createPingMessage() pings} that it is able to decompress such messages. Nodes which do not announce this
+ * (like older versions) will always receive uncompressed messages.</p>
+ */
+@ThreadSafe
+public class MessageCompressor {
+
+    public static final int DEFAULT_LEVEL = Deflater.BEST_SPEED;
+
+    protected static final int HEADER_LENGTH = 5;
+    protected static final byte SUPPORTS_COMPRESSION = 1;
+
+    private static final ThreadLocal<Deflater> DEFLATERS = new ThreadLocal<Deflater>() { @Override protected Deflater initialValue() {
+        return new Deflater(DEFAULT_LEVEL);
+    }};
+    private static final ThreadLocal<Inflater> INFLATERS = new ThreadLocal<Inflater>() { @Override protected Inflater initialValue() {
+        return new Inflater();
+    }};
+
+    private final Set<UUID> _supportingNodes = newSetFromMap(new ConcurrentHashMap<UUID, Boolean>());
+
+    private volatile int _threshold;
+    private volatile int _level = DEFAULT_LEVEL;
+
+    /**
+     * @return the minimum length of a payload to be compressed. If <code>0</code> no message is compressed.
+     */
+    @Nonnegative
+    public int getThreshold() {
+        return _threshold;
+    }
+
+    public void setThreshold(@Nonnegative int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("The threshold could not be negative.");
+        }
+        _threshold = threshold;
+    }
+
+    public int getLevel() {
+        return _level;
+    }
+
+    /**
+     * @see Deflater#setLevel(int)
+     */
+    public void setLevel(int level) {
+        if ((level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Illegal compression level: " + level);
+        }
+        _level = level;
+    }
+
+    public boolean isEnabled() {
+        return _threshold > 0;
+    }
+
+    /**
+     * @return a ping which announces that this node is able to decompress messages.
+     */
+    @Nonnull
+    public static Message createPingMessage() {
+        return new Message(pingCommand, new byte[]{SUPPORTS_COMPRESSION});
+    }
+
+    /**
+     * Remembers if the sender of the given ping is able to decompress messages.
+     */
+    public void recordCapabilitiesOf(@Nonnull ReceivedMessage<?> ping) {
+        final UUID uuid = ping.getFrom().getUuid();
+        if (ping.getLength() > 0 && (ping.getData()[ping.getOffset()] & SUPPORTS_COMPRESSION) != 0) {
+            _supportingNodes.add(uuid);
+        } else {
+            _supportingNodes.remove(uuid);
+        }
+    }
+
+    public void forget(@Nonnull UUID uuid) {
+        _supportingNodes.remove(uuid);
+    }
+
+    public boolean isSupportedBy(@Nonnull Node<?> node) {
+        return _supportingNodes.contains(node.getUuid());
+    }
+
+    /**
+     * @return the compressed message or <code>null</code> if the message is smaller than the {@link #getThreshold() threshold}
+     *         or if it does not become smaller by compressing it.
+     */
+    @Nullable
+    public Compressed compress(@Nonnull Message message) {
+        final int threshold = _threshold;
+        final int length = message.getLength();
+        final byte command = message.getCommand();
+        Compressed result = null;
+        if (threshold > 0 && length >= threshold && command != pingCommand && command != compressedCommand) {
+            final long start = nanoTime();
+            final Deflater deflater = DEFLATERS.get();
+            try {
+                deflater.setLevel(_level);
+                deflater.setInput(message.getData(), message.getOffset(), length);
+                deflater.finish();
+                final byte[] buffer = new byte[HEADER_LENGTH + length];
+                buffer[0] = command;
+                putInt(buffer, 1, length);
+                int position = HEADER_LENGTH;
+                while (!deflater.finished() && position < buffer.length) {
+                    position += deflater.deflate(buffer, position, buffer.length - position);
+                }
+                if (deflater.finished() && position < buffer.length) {
+                    result = new Compressed(command, buffer, position, length, nanoTime() - start);
+                }
+            } finally {
+                deflater.reset();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the given message prepared to be sent to several nodes. It is compressed at most once - when it is
+     *         requested for the first node which supports compression.
+     */
+    @Nonnull
+    public Prepared prepare(@Nonnull Message message) {
+        return new Prepared(message);
+    }
+
+    /**
+     * @return the original message of the given compressed one.
+     * @throws IOException if the given message could not be decompressed.
+     */
+    @Nonnull
+    public static <N extends Node<?>> ReceivedMessage<N> decompress(@Nonnull ReceivedMessage<N> message) throws IOException {
+        final long start = nanoTime();
+        final int length = message.getLength();
+        if (message.getCommand() != compressedCommand || length < HEADER_LENGTH) {
+            throw new IOException("Received illegal compressed message.");
+        }
+        final byte[] data = message.getData();
+        final int offset = message.getOffset();
+        final byte command = data[offset];
+        final int originalLength = getInt(data, offset + 1);
+        if (originalLength < 0) {
+            throw new IOException("Received illegal compressed message. The original length is negative.");
+        }
+        final byte[] originalData = new byte[originalLength];
+        final Inflater inflater = INFLATERS.get();
+        try {
+            inflater.setInput(data, offset + HEADER_LENGTH, length - HEADER_LENGTH);
+            int position = 0;
+            while (!inflater.finished() && position < originalLength) {
+                final int inflated = inflater.inflate(originalData, position, originalLength - position);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                position += inflated;
+            }
+            if (position != originalLength || (!inflater.finished() && originalLength > 0)) {
+                throw new IOException("Received illegal compressed message. The payload does not match the original length of " + originalLength + " bytes.");
+            }
+        } catch (final DataFormatException e) {
+            throw new IOException("Received illegal compressed message.", e);
+        } finally {
+            inflater.reset();
+        }
+        final N from = message.getFrom();
+        if (from instanceof StatisticEnabledNode.Impl) {
+            ((StatisticEnabledNode.Impl<?>) from).recordInboundDecompression(length, originalLength, nanoTime() - start);
+        }
+        return new ReceivedMessage<>(command, originalData, from);
+    }
+
+    public class Prepared {
+
+        private final Message _message;
+
+        private Compressed _compressed;
+        private boolean _compressionTried;
+
+        public Prepared(@Nonnull Message message) {
+            _message = message;
+        }
+
+        /**
+         * @return the message which should be sent to the given node.
+         */
+        @Nonnull
+        public Message getFor(@Nonnull Node<?> node) {
+            Message result = _message;
+            if (isEnabled() && isSupportedBy(node)) {
+                if (!_compressionTried) {
+                    _compressed = compress(_message);
+                    _compressionTried = true;
+                }
+                if (_compressed != null) {
+                    _compressed.recordSendTo(node);
+                    result = _compressed;
+                }
+            }
+            return result;
+        }
+
+    }
+
+    public static class Compressed extends Message {
+
+        private final byte _originalCommand;
+        private final int _uncompressedLength;
+        private final long _compressionTimeInNanos;
+
+        public Compressed(byte originalCommand, @Nonnull byte[] data, @Nonnegative int length, @Nonnegative int uncompressedLength, @Nonnegative long compressionTimeInNanos) {
+            super(compressedCommand, data, length);
+            _originalCommand = originalCommand;
+            _uncompressedLength = uncompressedLength;
+            _compressionTimeInNanos = compressionTimeInNanos;
+        }
+
+        /**
+         * @return the command of the message before it was compressed.
+         */
+        public byte getOriginalCommand() {
+            return _originalCommand;
+        }
+
+        @Nonnegative
+        public int getUncompressedLength() {
+            return _uncompressedLength;
+        }
+
+        @Nonnegative
+        public long getCompressionTimeInNanos() {
+            return _compressionTimeInNanos;
+        }
+
+        /**
+         * Records that this message was sent to the given node.
+         */
+        public void recordSendTo(@Nonnull Node<?> node) {
+            if (node instanceof StatisticEnabledNode.Impl) {
+                ((StatisticEnabledNode.Impl<?>) node).recordOutboundCompression(_uncompressedLength, getLength(), _compressionTimeInNanos);
+            }
+        }
+
+    }
+
+}
@@ -32,6 +32,8 @@ import java.util.concurrent.locks.ReentrantLock;
 import static java.lang.System.currentTimeMillis;
 import static java.lang.Thread.currentThread;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.echocat.jomon.net.cluster.channel.ClusterChannelConstants.compressedCommand;
+import static org.echocat.jomon.net.cluster.channel.ClusterChannelConstants.gossipCommand;
 import static org.echocat.jomon.net.cluster.channel.ClusterChannelConstants.pingCommand;
 import static org.echocat.jomon.runtime.util.ResourceUtils.closeQuietly;
 
@@ -286,21 +288,58 @@ public abstract class NetBasedClusterChannel<ID, N extends Node<ID>> implements
         return _messagesSend;
     }
 
-    protected final void read(@Nonnull ReceivedMessage<N> message) throws IOException {
-        recordReceived();
-        if (message.getCommand() == pingCommand) {
-            readPing(message);
-        } else {
-            for (final Handler handler : getHandlers()) {
-                if (handler instanceof MessageHandler) {
-                    ((MessageHandler)handler).handle(this, message);
+    /**
+     * Passes the given message to all handlers and {@link ReceivedMessage#release() releases} it afterwards. Messages
+     * which were {@link MessageCompressor compressed} by the sender are decompressed before.
+     */
+    protected final void read(@Nonnull ReceivedMessage<N> received) throws IOException {
+        ReceivedMessage<N> message = received;
+        try {
+            if (received.getCommand() == compressedCommand) {
+                message = MessageCompressor.decompress(received);
+                received.release();
+            }
+            recordReceived();
+            if (message.getCommand() == pingCommand) {
+                readPing(message);
+            } else if (message.getCommand() == gossipCommand) {
+                readGossip(message);
+            } else {
+                for (final Handler handler : getHandlers()) {
+                    if (handler instanceof MessageHandler) {
+                        ((MessageHandler)handler).handle(this, message);
+                    }
                 }
             }
+        } finally {
+            message.release();
         }
     }
 
     protected abstract void readPing(@Nonnull ReceivedMessage<N> message);
 
+    /**
+     * Reads a digest of a {@link GossipMembership}. Channels which are not {@link GossipEnabledClusterChannel gossip
+     * enabled} will never be asked to receive such digests - so they are ignored by default.
+     */
+    protected void readGossip(@Nonnull ReceivedMessage<N> message) throws IOException {}
+
+    protected void notifyNodeEnter(@Nonnull Node<?> node) {
+        for (final Handler handler : getHandlers()) {
+            if (handler instanceof PresenceHandler) {
+                ((PresenceHandler) handler).nodeEnter(this, node);
+            }
+        }
+    }
+
+    protected void notifyNodeLeft(@Nonnull Node<?> node) {
+        for (final Handler handler : getHandlers()) {
+            if (handler instanceof PresenceHandler) {
+                ((PresenceHandler) handler).nodeLeft(this, node);
+            }
+        }
+    }
+
     protected boolean isPingRequired() {
         return _lastPingSend + _pingInterval.in(MILLISECONDS) < currentTimeMillis();
     }
@@ -310,6 +349,28 @@ public abstract class NetBasedClusterChannel<ID, N extends Node<ID>> implements
         return _lock;
     }
 
+    /**
+     * Informs the {@link PresenceHandler presence handlers} about nodes a {@link GossipMembership} judged as available
+     * or unavailable.
+     */
+    protected class PresenceNotifier implements GossipMembership.Listener {
+
+        public PresenceNotifier() {}
+
+        @Override
+        public void onAvailable(@Nonnull Node<?> node) {
+            LOG.info("Node " + node + " entered the cluster.");
+            notifyNodeEnter(node);
+        }
+
+        @Override
+        public void onUnavailable(@Nonnull Node<?> node) {
+            LOG.info("Node " + node + " left the cluster. (Suspected by failure detector)");
+            notifyNodeLeft(node);
+        }
+
+    }
+
     protected class Pinger implements Runnable {
 
         public Pinger() {}
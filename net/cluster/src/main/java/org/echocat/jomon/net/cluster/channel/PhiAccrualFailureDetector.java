@@ -0,0 +1,271 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel;
+
+import org.echocat.jomon.runtime.util.Duration;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.lang.Math.*;
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Failure detector which does not answer if a monitored resource is available or not but how suspicious it is that
+ * it is not longer available. This suspicion level (<i>phi</i>) is calculated from the intervals of the last received
+ * heartbeats - so it adapts itself to the observed latency of the network and the load of the monitored resources.</p>
+ * <p>A phi of <code>1</code> means a probability of 10% that it is an error to assume that the resource is unavailable,
+ * a phi of <code>2</code> means 1%, <code>3</code> 0.1% and so on.</p>
+ *
+ * @see <a href="http://www.jaist.ac.jp/~defago/files/pdf/IS_RR_2004_010.pdf">The phi accrual failure detector</a>
+ */
+@ThreadSafe
+public class PhiAccrualFailureDetector<K> {
+
+    public static final double DEFAULT_THRESHOLD = 8;
+    public static final int DEFAULT_MAXIMUM_SAMPLE_SIZE = 200;
+    public static final Duration DEFAULT_MINIMUM_STANDARD_DEVIATION = new Duration("100ms");
+    public static final Duration DEFAULT_FIRST_HEARTBEAT_ESTIMATE = new Duration("1s");
+
+    private final ConcurrentMap<K, History> _histories = new ConcurrentHashMap<>();
+
+    private volatile double _threshold = DEFAULT_THRESHOLD;
+    private volatile int _maximumSampleSize = DEFAULT_MAXIMUM_SAMPLE_SIZE;
+    private volatile Duration _minimumStandardDeviation = DEFAULT_MINIMUM_STANDARD_DEVIATION;
+    private volatile Duration _acceptableHeartbeatPause = new Duration(0);
+    private volatile Duration _firstHeartbeatEstimate = DEFAULT_FIRST_HEARTBEAT_ESTIMATE;
+
+    /**
+     * @return the phi above which a resource is treated as unavailable.
+     */
+    @Nonnegative
+    public double getThreshold() {
+        return _threshold;
+    }
+
+    public void setThreshold(@Nonnegative double threshold) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("The threshold have to be greater than 0.");
+        }
+        _threshold = threshold;
+    }
+
+    /**
+     * @return the number of heartbeat intervals per resource the calculation is based on.
+     */
+    @Nonnegative
+    public int getMaximumSampleSize() {
+        return _maximumSampleSize;
+    }
+
+    public void setMaximumSampleSize(@Nonnegative int maximumSampleSize) {
+        if (maximumSampleSize <= 0) {
+            throw new IllegalArgumentException("The maximumSampleSize have to be greater than 0.");
+        }
+        _maximumSampleSize = maximumSampleSize;
+    }
+
+    /**
+     * @return the standard deviation which is at least assumed. This prevents that very regular heartbeats lead to a
+     *         detector that suspects everything after a small delay.
+     */
+    @Nonnull
+    public Duration getMinimumStandardDeviation() {
+        return _minimumStandardDeviation;
+    }
+
+    public void setMinimumStandardDeviation(@Nonnull Duration minimumStandardDeviation) {
+        if (minimumStandardDeviation.isEmpty()) {
+            throw new IllegalArgumentException("The minimumStandardDeviation have to be greater than 0.");
+        }
+        _minimumStandardDeviation = minimumStandardDeviation;
+    }
+
+    /**
+     * @return a duration which is added to the mean interval of heartbeats. Use it to tolerate pauses like garbage
+     *         collections of the monitored resources.
+     */
+    @Nonnull
+    public Duration getAcceptableHeartbeatPause() {
+        return _acceptableHeartbeatPause;
+    }
+
+    public void setAcceptableHeartbeatPause(@Nonnull Duration acceptableHeartbeatPause) {
+        if (acceptableHeartbeatPause == null) {
+            throw new NullPointerException();
+        }
+        _acceptableHeartbeatPause = acceptableHeartbeatPause;
+    }
+
+    /**
+     * @return the interval which is expected for resources from which only one heartbeat was received yet.
+     */
+    @Nonnull
+    public Duration getFirstHeartbeatEstimate() {
+        return _firstHeartbeatEstimate;
+    }
+
+    public void setFirstHeartbeatEstimate(@Nonnull Duration firstHeartbeatEstimate) {
+        if (firstHeartbeatEstimate.isEmpty()) {
+            throw new IllegalArgumentException("The firstHeartbeatEstimate have to be greater than 0.");
+        }
+        _firstHeartbeatEstimate = firstHeartbeatEstimate;
+    }
+
+    public void heartbeat(@Nonnull K key) {
+        heartbeat(key, currentTimeMillis());
+    }
+
+    public void heartbeat(@Nonnull K key, long atInMillis) {
+        History history = _histories.get(key);
+        if (history == null) {
+            final History newHistory = new History(_maximumSampleSize);
+            history = _histories.putIfAbsent(key, newHistory);
+            if (history == null) {
+                history = newHistory;
+            }
+        }
+        history.record(atInMillis);
+    }
+
+    /**
+     * @return the suspicion level for the given resource. It is <code>0</code> if no heartbeat of the resource was
+     *         received yet.
+     */
+    @Nonnegative
+    public double phi(@Nonnull K key) {
+        return phi(key, currentTimeMillis());
+    }
+
+    @Nonnegative
+    public double phi(@Nonnull K key, long nowInMillis) {
+        final History history = _histories.get(key);
+        return history != null ? history.phi(nowInMillis) : 0;
+    }
+
+    /**
+     * @return <code>true</code> if the {@link #phi(Object) phi} of the given resource is below the
+     *         {@link #getThreshold() threshold}. Resources without heartbeats are always available.
+     */
+    public boolean isAvailable(@Nonnull K key) {
+        return isAvailable(key, currentTimeMillis());
+    }
+
+    public boolean isAvailable(@Nonnull K key, long nowInMillis) {
+        return phi(key, nowInMillis) < _threshold;
+    }
+
+    @Nullable
+    public Long getLastHeartbeatAt(@Nonnull K key) {
+        final History history = _histories.get(key);
+        return history != null ? history.getLastHeartbeatAt() : null;
+    }
+
+    public void remove(@Nonnull K key) {
+        _histories.remove(key);
+    }
+
+    public void clear() {
+        _histories.clear();
+    }
+
+    protected class History {
+
+        @GuardedBy("this") private final long[] _intervals;
+        @GuardedBy("this") private int _next;
+        @GuardedBy("this") private int _size;
+        @GuardedBy("this") private double _sum;
+        @GuardedBy("this") private double _squaredSum;
+        @GuardedBy("this") private long _lastHeartbeatAt = -1;
+
+        public History(@Nonnegative int maximumSampleSize) {
+            _intervals = new long[maximumSampleSize];
+        }
+
+        public synchronized void record(long atInMillis) {
+            if (_lastHeartbeatAt < 0) {
+                // Start with two virtual intervals around the estimate - otherwise there is no deviation at all.
+                final long estimate = _firstHeartbeatEstimate.in(MILLISECONDS);
+                add(estimate - estimate / 4);
+                add(estimate + estimate / 4);
+            } else if (atInMillis > _lastHeartbeatAt) {
+                add(atInMillis - _lastHeartbeatAt);
+            }
+            if (atInMillis > _lastHeartbeatAt) {
+                _lastHeartbeatAt = atInMillis;
+            }
+        }
+
+        @GuardedBy("this")
+        protected void add(long interval) {
+            if (_size == _intervals.length) {
+                final long dropped = _intervals[_next];
+                _sum -= dropped;
+                _squaredSum -= (double) dropped * dropped;
+            } else {
+                _size++;
+            }
+            _intervals[_next] = interval;
+            _next = (_next + 1) % _intervals.length;
+            _sum += interval;
+            _squaredSum += (double) interval * interval;
+        }
+
+        public synchronized double phi(long nowInMillis) {
+            final double result;
+            if (_lastHeartbeatAt >= 0) {
+                final double timeSinceLastHeartbeat = max(nowInMillis - _lastHeartbeatAt, 0);
+                final double mean = _sum / _size;
+                final double minimumStandardDeviation = _minimumStandardDeviation.in(MILLISECONDS);
+                final double standardDeviation = max(sqrt(max(_squaredSum / _size - mean * mean, 0)), minimumStandardDeviation);
+                result = phiOf(timeSinceLastHeartbeat, mean + _acceptableHeartbeatPause.in(MILLISECONDS), standardDeviation);
+            } else {
+                result = 0;
+            }
+            return result;
+        }
+
+        public synchronized Long getLastHeartbeatAt() {
+            return _lastHeartbeatAt >= 0 ? _lastHeartbeatAt : null;
+        }
+
+    }
+
+    /**
+     * Calculates <code>-log10(1 - F(timeSinceLastHeartbeat))</code> where <code>F</code> is the cumulative distribution
+     * function of a normal distribution. <code>F</code> is approximated by a logistic function which is precise enough
+     * and is numerically stable for large values.
+     */
+    @Nonnegative
+    protected static double phiOf(double timeSinceLastHeartbeat, double mean, double standardDeviation) {
+        final double y = (timeSinceLastHeartbeat - mean) / standardDeviation;
+        final double e = exp(-y * (1.5976 + 0.070566 * y * y));
+        final double result;
+        if (timeSinceLastHeartbeat > mean) {
+            result = -log10(e / (1.0 + e));
+        } else {
+            result = -log10(1.0 - 1.0 / (1.0 + e));
+        }
+        return max(result, 0);
+    }
+
+}
@@ -0,0 +1,125 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Pool of equally sized buffers which hold the payloads of {@link ReceivedMessage received messages}. A buffer is
+ * given back to this pool if its message was {@link ReceivedMessage#release() released}. Payloads which are larger than
+ * {@link #getBufferSize()} are stored in buffers which are not pooled.</p>
+ */
+@ThreadSafe
+public class ReceiveBufferPool {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final int _bufferSize;
+    @GuardedBy("this")
+    private final byte[][] _buffers;
+    @GuardedBy("this")
+    private int _numberOfBuffers;
+
+    private volatile long _numberOfAllocations;
+    private volatile long _numberOfReuses;
+
+    public ReceiveBufferPool(@Nonnegative int maximumNumberOfBuffers) {
+        this(DEFAULT_BUFFER_SIZE, maximumNumberOfBuffers);
+    }
+
+    public ReceiveBufferPool(@Nonnegative int bufferSize, @Nonnegative int maximumNumberOfBuffers) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("The bufferSize have to be larger than 0.");
+        }
+        _bufferSize = bufferSize;
+        _buffers = new byte[maximumNumberOfBuffers][];
+    }
+
+    /**
+     * @return a buffer which is at least <code>length</code> bytes long.
+     */
+    @Nonnull
+    public byte[] acquire(@Nonnegative int length) {
+        byte[] result = null;
+        if (length == 0) {
+            result = EMPTY;
+        } else if (length <= _bufferSize) {
+            synchronized (this) {
+                if (_numberOfBuffers > 0) {
+                    result = _buffers[--_numberOfBuffers];
+                    _buffers[_numberOfBuffers] = null;
+                }
+            }
+            if (result != null) {
+                _numberOfReuses++;
+            }
+        }
+        if (result == null) {
+            result = new byte[length <= _bufferSize ? _bufferSize : length];
+            _numberOfAllocations++;
+        }
+        return result;
+    }
+
+    public void release(@Nonnull byte[] buffer) {
+        if (buffer.length == _bufferSize) {
+            synchronized (this) {
+                if (_numberOfBuffers < _buffers.length) {
+                    _buffers[_numberOfBuffers++] = buffer;
+                }
+            }
+        }
+    }
+
+    @Nonnegative
+    public int getBufferSize() {
+        return _bufferSize;
+    }
+
+    @Nonnegative
+    public int getMaximumNumberOfBuffers() {
+        return _buffers.length;
+    }
+
+    @Nonnegative
+    public synchronized int getNumberOfBuffers() {
+        return _numberOfBuffers;
+    }
+
+    /**
+     * @return how many buffers had to be created because there was no pooled buffer available or the payload was to large.
+     */
+    @Nonnegative
+    public long getNumberOfAllocations() {
+        return _numberOfAllocations;
+    }
+
+    @Nonnegative
+    public long getNumberOfReuses() {
+        return _numberOfReuses;
+    }
+
+    @Override
+    public String toString() {
+        return "ReceiveBufferPool{bufferSize=" + _bufferSize + ", buffers=" + getNumberOfBuffers() + "/" + getMaximumNumberOfBuffers() + "}";
+    }
+
+}
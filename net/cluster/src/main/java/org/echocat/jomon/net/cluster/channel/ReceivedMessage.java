@@ -16,34 +16,89 @@ package org.echocat.jomon.net.cluster.channel;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
+/**
+ * <h1>Synopsis</h1>
+ * <p>The payload of a received message could be backed by a buffer of a {@link ReceiveBufferPool}. Such a buffer is
+ * reused for other messages as soon as the handling of this message is done. {@link HandlerEnabledClusterChannel.MessageHandler Handlers}
+ * which need the payload after they returned have to {@link #retain()} the message and {@link #release()} it after
+ * they do not longer need it.</p>
+ */
 public class ReceivedMessage<N extends Node<?>> extends Message {
 
+    private static final AtomicIntegerFieldUpdater<ReceivedMessage> REFERENCES = AtomicIntegerFieldUpdater.newUpdater(ReceivedMessage.class, "_references");
+
     private final N _from;
+    private final ReceiveBufferPool _pool;
+
+    @SuppressWarnings("UnusedDeclaration")
+    private volatile int _references = 1;
 
     public ReceivedMessage(byte command, @Nonnull String data, @Nonnull Charset charset, @Nonnull N from) {
         super(command, data, charset);
         _from = from;
+        _pool = null;
     }
 
     public ReceivedMessage(byte command, @Nonnull byte[] data, @Nonnull N from) {
         super(command, data);
         _from = from;
+        _pool = null;
     }
 
     public ReceivedMessage(byte command, @Nonnull byte[] data, @Nonnegative int length, @Nonnull N from) {
         super(command, data, length);
         _from = from;
+        _pool = null;
     }
 
     public ReceivedMessage(byte command, @Nonnull byte[] data, @Nonnegative int offset, @Nonnegative int length, @Nonnull N from) {
+        this(command, data, offset, length, from, null);
+    }
+
+    /**
+     * @param pool if not <code>null</code> the <code>data</code> is given back to this pool if this message is released.
+     */
+    public ReceivedMessage(byte command, @Nonnull byte[] data, @Nonnegative int offset, @Nonnegative int length, @Nonnull N from, @Nullable ReceiveBufferPool pool) {
         super(command, data, offset, length);
         _from = from;
+        _pool = pool;
     }
 
     @Nonnull
     public N getFrom() {
         return _from;
     }
+
+    /**
+     * Keeps the payload of this message valid until {@link #release()} is called.
+     */
+    @Nonnull
+    public ReceivedMessage<N> retain() {
+        int references;
+        do {
+            references = _references;
+            if (references <= 0) {
+                throw new IllegalStateException("This message was already released.");
+            }
+        } while (!REFERENCES.compareAndSet(this, references, references + 1));
+        return this;
+    }
+
+    /**
+     * Gives the payload of this message back to its pool if this was the last reference to it. The channel which
+     * received this message releases it after all handlers were called.
+     */
+    public void release() {
+        final int references = REFERENCES.decrementAndGet(this);
+        if (references < 0) {
+            throw new IllegalStateException("This message was already released.");
+        }
+        if (references == 0 && _pool != null) {
+            _pool.release(getData());
+        }
+    }
 }
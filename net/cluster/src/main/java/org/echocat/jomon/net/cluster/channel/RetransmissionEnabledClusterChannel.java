@@ -0,0 +1,54 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Cluster channel which detects lost messages by their sequence numbers and requests their retransmission with
+ * negative acknowledgements (NAKs).</p>
+ */
+public interface RetransmissionEnabledClusterChannel<ID, N extends Node<ID>> extends StatisticEnabledClusterChannel<ID, N> {
+
+    /**
+     * @return the number of requests for retransmission of lost messages (negative acknowledgements) this channel has
+     *         sent.
+     */
+    @Nonnegative
+    @Nonnull
+    public Long getNaksSend();
+
+    /**
+     * @return the number of requests for retransmission of lost messages (negative acknowledgements) this channel has
+     *         received.
+     */
+    @Nonnegative
+    @Nonnull
+    public Long getNaksReceived();
+
+    @Nonnegative
+    @Nonnull
+    public Long getMessagesRetransmitted();
+
+    /**
+     * @return the number of messages which were detected as lost and could not be recovered.
+     */
+    @Nonnegative
+    @Nonnull
+    public Long getMessagesLost();
+
+}
@@ -22,6 +22,7 @@ import javax.annotation.Nullable;
 import java.util.Date;
 
 import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public interface StatisticEnabledNode<ID> extends Node<ID> {
 
@@ -53,6 +54,52 @@ public interface StatisticEnabledNode<ID> extends Node<ID> {
     @Nullable
     public Date getLastOutboundMessage();
 
+    /**
+     * @return how often buffered outbound messages were flushed to the underlying connection.
+     */
+    @Nonnegative
+    @Nullable
+    public Long getNumberOfOutboundFlushes();
+
+    @Nonnegative
+    @Nullable
+    public Double getNumberOfOutboundMessagesPerFlush();
+
+    @Nonnegative
+    @Nullable
+    public Long getNumberOfCompressedInboundMessages();
+
+    /**
+     * @return the size of all compressed inbound messages divided by their size after they were decompressed.
+     */
+    @Nonnegative
+    @Nullable
+    public Double getInboundCompressionRatio();
+
+    /**
+     * @return the time which was spent to decompress the inbound messages.
+     */
+    @Nullable
+    public Duration getInboundDecompressionTime();
+
+    @Nonnegative
+    @Nullable
+    public Long getNumberOfCompressedOutboundMessages();
+
+    /**
+     * @return the size of all compressed outbound messages divided by their size before they were compressed.
+     */
+    @Nonnegative
+    @Nullable
+    public Double getOutboundCompressionRatio();
+
+    /**
+     * @return the time which was spent to compress the outbound messages. A message which was sent to more than one
+     *         node is compressed only once but this time is recorded for each of these nodes.
+     */
+    @Nullable
+    public Duration getOutboundCompressionTime();
+
     public abstract class Impl<ID> extends Node.Impl<ID> implements StatisticEnabledNode<ID> {
 
         private final OverPeriodCounter _numberOfInboundMessagesPerSecond = new OverPeriodCounter(new Duration("1m"), new Duration("1s"));
@@ -62,6 +109,17 @@ public interface StatisticEnabledNode<ID> extends Node<ID> {
         private final OverPeriodCounter _numberOfOutboundMessagesPerSecond = new OverPeriodCounter(new Duration("1m"), new Duration("1s"));
         private volatile long _numberOfOutboundMessages;
         private volatile long _lastOutboundMessageInMillis;
+        private volatile long _numberOfOutboundFlushes;
+
+        private volatile long _numberOfCompressedInboundMessages;
+        private volatile long _compressedInboundBytes;
+        private volatile long _decompressedInboundBytes;
+        private volatile long _inboundDecompressionTimeInNanos;
+
+        private volatile long _numberOfCompressedOutboundMessages;
+        private volatile long _compressedOutboundBytes;
+        private volatile long _uncompressedOutboundBytes;
+        private volatile long _outboundCompressionTimeInNanos;
 
         private volatile long _lastSeenInMillis;
 
@@ -152,12 +210,91 @@ public interface StatisticEnabledNode<ID> extends Node<ID> {
             return _numberOfOutboundMessages;
         }
 
+        @Override
+        @Nonnegative
+        @Nullable
+        public Long getNumberOfOutboundFlushes() {
+            return _numberOfOutboundFlushes;
+        }
+
+        @Override
+        @Nonnegative
+        @Nullable
+        public Double getNumberOfOutboundMessagesPerFlush() {
+            final long numberOfOutboundFlushes = _numberOfOutboundFlushes;
+            return numberOfOutboundFlushes > 0 ? (double) _numberOfOutboundMessages / (double) numberOfOutboundFlushes : null;
+        }
+
         public void recordOutbound() {
-            _numberOfOutboundMessagesPerSecond.record();
-            _numberOfOutboundMessages++;
+            recordOutbound(1);
+        }
+
+        /**
+         * Records the given number of outbound messages which were flushed together.
+         */
+        public void recordOutbound(@Nonnegative int numberOfMessages) {
+            _numberOfOutboundMessagesPerSecond.record(numberOfMessages);
+            _numberOfOutboundMessages += numberOfMessages;
+            _numberOfOutboundFlushes++;
             _lastOutboundMessageInMillis = currentTimeMillis();
         }
 
+        @Override
+        @Nonnegative
+        @Nullable
+        public Long getNumberOfCompressedInboundMessages() {
+            return _numberOfCompressedInboundMessages;
+        }
+
+        @Override
+        @Nonnegative
+        @Nullable
+        public Double getInboundCompressionRatio() {
+            final long decompressedInboundBytes = _decompressedInboundBytes;
+            return decompressedInboundBytes > 0 ? (double) _compressedInboundBytes / (double) decompressedInboundBytes : null;
+        }
+
+        @Override
+        @Nullable
+        public Duration getInboundDecompressionTime() {
+            return new Duration(_inboundDecompressionTimeInNanos, NANOSECONDS);
+        }
+
+        public void recordInboundDecompression(@Nonnegative int compressedLength, @Nonnegative int decompressedLength, @Nonnegative long timeInNanos) {
+            _numberOfCompressedInboundMessages++;
+            _compressedInboundBytes += compressedLength;
+            _decompressedInboundBytes += decompressedLength;
+            _inboundDecompressionTimeInNanos += timeInNanos;
+        }
+
+        @Override
+        @Nonnegative
+        @Nullable
+        public Long getNumberOfCompressedOutboundMessages() {
+            return _numberOfCompressedOutboundMessages;
+        }
+
+        @Override
+        @Nonnegative
+        @Nullable
+        public Double getOutboundCompressionRatio() {
+            final long uncompressedOutboundBytes = _uncompressedOutboundBytes;
+            return uncompressedOutboundBytes > 0 ? (double) _compressedOutboundBytes / (double) uncompressedOutboundBytes : null;
+        }
+
+        @Override
+        @Nullable
+        public Duration getOutboundCompressionTime() {
+            return new Duration(_outboundCompressionTimeInNanos, NANOSECONDS);
+        }
+
+        public void recordOutboundCompression(@Nonnegative int uncompressedLength, @Nonnegative int compressedLength, @Nonnegative long timeInNanos) {
+            _numberOfCompressedOutboundMessages++;
+            _uncompressedOutboundBytes += uncompressedLength;
+            _compressedOutboundBytes += compressedLength;
+            _outboundCompressionTimeInNanos += timeInNanos;
+        }
+
     }
 
 
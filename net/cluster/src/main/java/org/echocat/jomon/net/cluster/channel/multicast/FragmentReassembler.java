@@ -0,0 +1,308 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel.multicast;
+
+import org.echocat.jomon.net.cluster.channel.ReceivedMessage;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.echocat.jomon.net.cluster.channel.ByteUtils.getInt;
+import static org.echocat.jomon.net.cluster.channel.ByteUtils.getShort;
+import static org.echocat.jomon.net.cluster.channel.multicast.MessageFragmenter.HEADER_SIZE;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Puts the fragments created by a {@link MessageFragmenter} together again.</p>
+ * <p>The memory of all incomplete messages is limited to {@link #getMaximumBytes()}. Beside the data of the fragments
+ * every incomplete message is charged with {@link #ENTRY_OVERHEAD} and {@link #SLOT_OVERHEAD} for each of its
+ * announced fragments - so a sender could not occupy memory by announcing huge numbers of fragments it never sends.
+ * If this limit or the {@link #getMaximumIncompletes() maximum number of incomplete messages} is reached the oldest
+ * incomplete messages are dropped. Incomplete messages are also dropped if they were not completed within
+ * {@link #getTimeout()}. All these cases are counted as {@link #getFailures() failures}. Later fragments of a dropped
+ * message are ignored until its timeout is over - as long as its entry is not needed to make room for others.</p>
+ */
+@ThreadSafe
+public class FragmentReassembler {
+
+    /**
+     * Estimated number of bytes the key, the state and the map entry of one incomplete message occupy.
+     */
+    public static final int ENTRY_OVERHEAD = 96;
+    /**
+     * Number of bytes the reference to one fragment of an incomplete message occupies.
+     */
+    public static final int SLOT_OVERHEAD = 8;
+    public static final int DEFAULT_MAXIMUM_INCOMPLETES = 1024;
+
+    private final long _maximumBytes;
+    private final int _maximumIncompletes;
+    private final long _timeout;
+    private final Map<Key, Incomplete> _incompletes = new LinkedHashMap<>();
+
+    private long _bytes;
+    private long _messagesReassembled;
+    private long _fragmentsReassembled;
+    private long _failures;
+
+    public FragmentReassembler(@Nonnegative long maximumBytes, @Nonnegative long timeoutInMillis) {
+        this(maximumBytes, DEFAULT_MAXIMUM_INCOMPLETES, timeoutInMillis);
+    }
+
+    public FragmentReassembler(@Nonnegative long maximumBytes, @Nonnegative int maximumIncompletes, @Nonnegative long timeoutInMillis) {
+        _maximumBytes = maximumBytes;
+        _maximumIncompletes = maximumIncompletes > 0 ? maximumIncompletes : 1;
+        _timeout = timeoutInMillis;
+    }
+
+    @Nonnegative
+    public long getMaximumBytes() {
+        return _maximumBytes;
+    }
+
+    /**
+     * @return the maximum number of incomplete messages including the dropped ones whose later fragments are ignored.
+     */
+    @Nonnegative
+    public int getMaximumIncompletes() {
+        return _maximumIncompletes;
+    }
+
+    @Nonnegative
+    public long getTimeout() {
+        return _timeout;
+    }
+
+    /**
+     * @return the reassembled message if the given fragment was the last missing one or otherwise <code>null</code>.
+     */
+    @Nullable
+    public synchronized ReceivedMessage<MulticastNode> reassemble(@Nonnull ReceivedMessage<MulticastNode> fragment, @Nonnegative long nowInMillis) {
+        final byte[] data = fragment.getData();
+        final int offset = fragment.getOffset();
+        final int length = fragment.getLength() - HEADER_SIZE;
+        final int index = getShort(data, offset + 4);
+        final int count = getShort(data, offset + 6);
+        ReceivedMessage<MulticastNode> result = null;
+        if (length >= 0 && count > 0 && index >= 0 && index < count) {
+            final MulticastNode from = fragment.getFrom();
+            final Key key = new Key(from.getUuid(), getInt(data, offset));
+            Incomplete incomplete = _incompletes.get(key);
+            if (incomplete == null) {
+                incomplete = create(key, count, data[offset + 8], nowInMillis);
+            }
+            if (incomplete != null && !incomplete._failed && incomplete._fragments.length == count && incomplete._fragments[index] == null) {
+                if (makeRoomFor(length, incomplete)) {
+                    final byte[] part = new byte[length];
+                    System.arraycopy(data, offset + HEADER_SIZE, part, 0, length);
+                    incomplete._fragments[index] = part;
+                    incomplete._received++;
+                    incomplete._bytes += length;
+                    incomplete._charged += length;
+                    _bytes += length;
+                    if (incomplete._received == count) {
+                        _incompletes.remove(key);
+                        release(incomplete);
+                        _messagesReassembled++;
+                        _fragmentsReassembled += count;
+                        result = new ReceivedMessage<>(incomplete._command, incomplete.join(), from);
+                    }
+                } else {
+                    fail(incomplete);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drops all incomplete messages which were not completed within the {@link #getTimeout() timeout}.
+     */
+    public synchronized void dropExpired(@Nonnegative long nowInMillis) {
+        final Iterator<Incomplete> i = _incompletes.values().iterator();
+        boolean expired = true;
+        while (expired && i.hasNext()) {
+            final Incomplete incomplete = i.next();
+            // The incomplete messages are ordered by their creation - so stop at the first one which is not expired.
+            expired = incomplete._createdAt + _timeout <= nowInMillis;
+            if (expired) {
+                fail(incomplete);
+                release(incomplete);
+                i.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        _incompletes.clear();
+        _bytes = 0;
+    }
+
+    @Nonnegative
+    public synchronized long getBytes() {
+        return _bytes;
+    }
+
+    @Nonnegative
+    public synchronized long getMessagesReassembled() {
+        return _messagesReassembled;
+    }
+
+    @Nonnegative
+    public synchronized long getFragmentsReassembled() {
+        return _fragmentsReassembled;
+    }
+
+    /**
+     * @return the number of messages which could not be reassembled because of a timeout or because of the memory limit.
+     */
+    @Nonnegative
+    public synchronized long getFailures() {
+        return _failures;
+    }
+
+    /**
+     * @return <code>null</code> if there is no room left for a new incomplete message with the given number of fragments.
+     */
+    @Nullable
+    protected Incomplete create(@Nonnull Key key, @Nonnegative int count, byte command, long nowInMillis) {
+        final Iterator<Incomplete> i = _incompletes.values().iterator();
+        while (_incompletes.size() >= _maximumIncompletes && i.hasNext()) {
+            final Incomplete oldest = i.next();
+            fail(oldest);
+            release(oldest);
+            i.remove();
+        }
+        final long charge = ENTRY_OVERHEAD + (long) count * SLOT_OVERHEAD;
+        final Incomplete result;
+        if (makeRoomFor(charge, null)) {
+            result = new Incomplete(count, command, nowInMillis);
+            result._charged = charge;
+            _bytes += charge;
+            _incompletes.put(key, result);
+        } else {
+            _failures++;
+            result = null;
+        }
+        return result;
+    }
+
+    /**
+     * Drops the oldest incomplete messages until the given number of bytes fits into the limit. If this is not enough
+     * the entries of already dropped messages are removed, too.
+     */
+    protected boolean makeRoomFor(@Nonnegative long bytes, @Nullable Incomplete requester) {
+        final Iterator<Incomplete> i = _incompletes.values().iterator();
+        while (_bytes + bytes > _maximumBytes && i.hasNext()) {
+            final Incomplete incomplete = i.next();
+            if (incomplete != requester) {
+                fail(incomplete);
+            }
+        }
+        final Iterator<Incomplete> j = _incompletes.values().iterator();
+        while (_bytes + bytes > _maximumBytes && j.hasNext()) {
+            final Incomplete incomplete = j.next();
+            if (incomplete != requester) {
+                release(incomplete);
+                j.remove();
+            }
+        }
+        return _bytes + bytes <= _maximumBytes;
+    }
+
+    /**
+     * Drops the fragments of the given incomplete message. Only its entry remains charged.
+     */
+    protected void fail(@Nonnull Incomplete incomplete) {
+        if (!incomplete._failed) {
+            incomplete._failed = true;
+            _bytes -= incomplete._charged - ENTRY_OVERHEAD;
+            incomplete._charged = ENTRY_OVERHEAD;
+            incomplete._bytes = 0;
+            incomplete._fragments = null;
+            _failures++;
+        }
+    }
+
+    protected void release(@Nonnull Incomplete incomplete) {
+        _bytes -= incomplete._charged;
+        incomplete._charged = 0;
+    }
+
+    protected static class Incomplete {
+
+        private final byte _command;
+        private final long _createdAt;
+        private byte[][] _fragments;
+        private int _received;
+        private long _bytes;
+        private long _charged;
+        private boolean _failed;
+
+        protected Incomplete(@Nonnegative int count, byte command, long createdAt) {
+            _fragments = new byte[count][];
+            _command = command;
+            _createdAt = createdAt;
+        }
+
+        @Nonnull
+        protected byte[] join() {
+            final byte[] result = new byte[(int) _bytes];
+            int offset = 0;
+            for (final byte[] fragment : _fragments) {
+                System.arraycopy(fragment, 0, result, offset, fragment.length);
+                offset += fragment.length;
+            }
+            return result;
+        }
+    }
+
+    protected static class Key {
+
+        private final UUID _sender;
+        private final int _messageId;
+
+        protected Key(@Nonnull UUID sender, int messageId) {
+            _sender = sender;
+            _messageId = messageId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            final boolean result;
+            if (this == o) {
+                result = true;
+            } else if (!(o instanceof Key)) {
+                result = false;
+            } else {
+                final Key that = (Key) o;
+                result = _messageId == that._messageId && _sender.equals(that._sender);
+            }
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * _sender.hashCode() + _messageId;
+        }
+    }
+
+}
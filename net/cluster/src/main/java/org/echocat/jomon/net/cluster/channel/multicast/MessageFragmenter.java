@@ -0,0 +1,95 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel.multicast;
+
+import org.echocat.jomon.net.cluster.channel.ByteUtils;
+import org.echocat.jomon.net.cluster.channel.Message;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.echocat.jomon.net.cluster.channel.ClusterChannelConstants.fragmentCommand;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Splits messages which do not fit into one packet into several fragments which could be put together again by a
+ * {@link FragmentReassembler}.</p>
+ * <p>Each fragment carries the header <code>[int messageId][short index][short count][byte command]</code> followed by
+ * its part of the data of the original message.</p>
+ */
+@NotThreadSafe
+public class MessageFragmenter {
+
+    public static final int HEADER_SIZE = 9;
+    public static final int MAXIMUM_NUMBER_OF_FRAGMENTS = Short.MAX_VALUE;
+
+    private int _nextMessageId;
+
+    private volatile long _messagesFragmented;
+    private volatile long _fragmentsCreated;
+
+    /**
+     * @return the given message if it fits in the given size or otherwise its fragments which fit in the given size.
+     */
+    @Nonnull
+    public List<Message> fragment(@Nonnull Message message, @Nonnegative int maximumSize) {
+        final List<Message> result;
+        final int length = message.getLength();
+        if (length <= maximumSize) {
+            result = Collections.singletonList(message);
+        } else {
+            final int fragmentSize = maximumSize - HEADER_SIZE;
+            if (fragmentSize <= 0) {
+                throw new IllegalArgumentException("The maximumSize have to be greater than " + HEADER_SIZE + ".");
+            }
+            final int count = (length + fragmentSize - 1) / fragmentSize;
+            if (count > MAXIMUM_NUMBER_OF_FRAGMENTS) {
+                throw new IllegalArgumentException("The message " + message + " would require " + count + " fragments but only " + MAXIMUM_NUMBER_OF_FRAGMENTS + " are possible.");
+            }
+            final int messageId = _nextMessageId++;
+            final byte[] data = message.getData();
+            result = new ArrayList<>(count);
+            for (int index = 0; index < count; index++) {
+                final int start = index * fragmentSize;
+                final int partLength = Math.min(fragmentSize, length - start);
+                final byte[] payload = new byte[HEADER_SIZE + partLength];
+                ByteUtils.putInt(payload, 0, messageId);
+                ByteUtils.putShort(payload, 4, (short) index);
+                ByteUtils.putShort(payload, 6, (short) count);
+                payload[8] = message.getCommand();
+                System.arraycopy(data, message.getOffset() + start, payload, HEADER_SIZE, partLength);
+                result.add(new Message(fragmentCommand, payload));
+            }
+            _messagesFragmented++;
+            _fragmentsCreated += count;
+        }
+        return result;
+    }
+
+    @Nonnegative
+    public long getMessagesFragmented() {
+        return _messagesFragmented;
+    }
+
+    @Nonnegative
+    public long getFragmentsCreated() {
+        return _fragmentsCreated;
+    }
+
+}
@@ -15,6 +15,7 @@
 package org.echocat.jomon.net.cluster.channel.multicast;
 
 import org.echocat.jomon.net.cluster.channel.*;
+import org.echocat.jomon.runtime.util.ByteCount;
 import org.echocat.jomon.runtime.util.Duration;
 import org.echocat.jomon.runtime.util.GotInterruptedException;
 import org.slf4j.Logger;
@@ -27,6 +28,7 @@ import java.io.IOException;
 import java.net.*;
 import java.security.SecureRandom;
 import java.util.*;
+import java.util.Map.Entry;
 import java.util.concurrent.*;
 
 import static java.lang.System.currentTimeMillis;
@@ -35,15 +37,18 @@ import static java.lang.Thread.sleep;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.echocat.jomon.net.cluster.channel.ByteUtils.getLong;
-import static org.echocat.jomon.net.cluster.channel.ClusterChannelConstants.pingCommand;
+import static org.echocat.jomon.net.cluster.channel.ClusterChannelConstants.*;
 import static org.echocat.jomon.runtime.concurrent.ThreadUtils.stop;
 import static org.echocat.jomon.runtime.util.ResourceUtils.closeQuietly;
 
-public class MulticastClusterChannel extends NetBasedClusterChannel<Short, MulticastNode> implements AddressEnabledClusterChannel<Short, MulticastNode>, SendingQueueEnabledClusterChannel<Short, MulticastNode> {
+public class MulticastClusterChannel extends NetBasedClusterChannel<Short, MulticastNode> implements AddressEnabledClusterChannel<Short, MulticastNode>, SendingQueueEnabledClusterChannel<Short, MulticastNode>, RetransmissionEnabledClusterChannel<Short, MulticastNode>, FragmentationEnabledClusterChannel<Short, MulticastNode> {
 
     private static final Logger LOG = LoggerFactory.getLogger(MulticastClusterChannel.class);
     private static final int BUFFER_SIZE = 1024;
     private static final Random RANDOM = new SecureRandom();
+    private static final int MAXIMUM_RETRANSMITS_PER_NAK = 64;
+    private static final int SEQUENCE_HEADER_SIZE = 17;
+    private static final long MAXIMUM_MESSAGE_SIZE = (long) MessageFragmenter.MAXIMUM_NUMBER_OF_FRAGMENTS * (BUFFER_SIZE - 3 - SEQUENCE_HEADER_SIZE - MessageFragmenter.HEADER_SIZE);
 
     private BlockingDeque<Message> _messageQueue = new LinkedBlockingDeque<>(10000);
     private final Map<Short, MulticastNode> _idToNode = new ConcurrentHashMap<>();
@@ -52,6 +57,8 @@ public class MulticastClusterChannel extends NetBasedClusterChannel<Short, Multi
     private final Reader _reader = new Reader();
     private final Writer _writer = new Writer();
     private final Pinger _pinger = new Pinger();
+    private final ConcurrentMap<UUID, ReceiveWindow> _receiveWindows = new ConcurrentHashMap<>();
+    private final MessageFragmenter _fragmenter = new MessageFragmenter();
 
     @Nullable
     private volatile InetSocketAddress _address;
@@ -61,6 +68,22 @@ public class MulticastClusterChannel extends NetBasedClusterChannel<Short, Multi
     private Duration _ttl = new Duration("10s");
     @Nonnegative
     private double _pingIntervalToTimeoutRatio = 2.5;
+    private volatile boolean _reliable;
+    @Nonnegative
+    private int _retransmitBufferCapacity = 1024;
+    @Nonnegative
+    private int _maximumPendingMessagesPerSender = 1024;
+    @Nonnull
+    private volatile Duration _nakInterval = new Duration("50ms");
+    @Nonnegative
+    private volatile int _maximumNaksPerGap = 5;
+    @Nonnull
+    private volatile ByteCount _maximumMessageSize = new ByteCount("1m");
+    @Nonnull
+    private ByteCount _maximumReassemblyMemory = new ByteCount("16m");
+    private int _maximumNumberOfIncompleteMessages = FragmentReassembler.DEFAULT_MAXIMUM_INCOMPLETES;
+    @Nonnull
+    private Duration _reassemblyTimeout = new Duration("10s");
 
     @Nullable
     private Thread _writingThread;
@@ -73,6 +96,18 @@ public class MulticastClusterChannel extends NetBasedClusterChannel<Short, Multi
     @Nullable
     private volatile MulticastSocket _in;
     private volatile short _id;
+    @Nullable
+    private volatile RetransmitBuffer _retransmitBuffer;
+    private volatile long _epoch;
+    private volatile long _sequence;
+    @Nullable
+    private volatile FragmentReassembler _reassembler;
+    private long _lastAnnouncedSequence;
+
+    private volatile long _naksSend;
+    private volatile long _naksReceived;
+    private volatile long _messagesRetransmitted;
+    private volatile long _messagesLostOfGoneNodes;
 
     public MulticastClusterChannel() {
         setSoTimeout(new Duration("1s"));
@@ -161,9 +196,158 @@ public class MulticastClusterChannel extends NetBasedClusterChannel<Short, Multi
         _pingIntervalToTimeoutRatio = pingIntervalToTimeoutRatio;
     }
 
+    public boolean isReliable() {
+        return _reliable;
+    }
+
+    /**
+     * @param reliable if <code>true</code> every sent message gets a sequence number and is kept for a possible
+     *        retransmission. Receivers which detect a gap in the sequence numbers request the missing messages with
+     *        negative acknowledgements (NAKs) and deliver the messages of each sender in order. Receivers understand
+     *        such messages regardless of this setting.
+     */
+    public void setReliable(final boolean reliable) {
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() {
+            _reliable = reliable;
+            return null;
+        }});
+    }
+
+    /**
+     * @return the number of sent messages which are kept for retransmission.
+     */
+    @Nonnegative
+    public int getRetransmitBufferCapacity() {
+        return _retransmitBufferCapacity;
+    }
+
+    public void setRetransmitBufferCapacity(@Nonnegative final int retransmitBufferCapacity) {
+        if (retransmitBufferCapacity <= 0) {
+            throw new IllegalArgumentException("The retransmitBufferCapacity have to be greater than 0.");
+        }
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() {
+            _retransmitBufferCapacity = retransmitBufferCapacity;
+            return null;
+        }});
+    }
+
+    /**
+     * @return the number of messages of each sender which are hold back while waiting for the retransmission of
+     *         missing messages.
+     */
+    @Nonnegative
+    public int getMaximumPendingMessagesPerSender() {
+        return _maximumPendingMessagesPerSender;
+    }
+
+    public void setMaximumPendingMessagesPerSender(@Nonnegative final int maximumPendingMessagesPerSender) {
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() {
+            _maximumPendingMessagesPerSender = maximumPendingMessagesPerSender;
+            return null;
+        }});
+    }
+
+    @Nonnull
+    public Duration getNakInterval() {
+        return _nakInterval;
+    }
+
+    public void setNakInterval(@Nonnull final Duration nakInterval) {
+        if (nakInterval.isEmpty()) {
+            throw new IllegalArgumentException("The nakInterval have to be greater than 0.");
+        }
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() {
+            _nakInterval = nakInterval;
+            return null;
+        }});
+    }
+
+    /**
+     * @return how often the retransmission of missing messages is requested before they are treated as lost.
+     */
+    @Nonnegative
+    public int getMaximumNaksPerGap() {
+        return _maximumNaksPerGap;
+    }
+
+    public void setMaximumNaksPerGap(@Nonnegative final int maximumNaksPerGap) {
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() {
+            _maximumNaksPerGap = maximumNaksPerGap;
+            return null;
+        }});
+    }
+
+    /**
+     * @return the maximum size of a message. Messages which do not fit in one packet are sent as several fragments.
+     */
+    @Nonnull
+    public ByteCount getMaximumMessageSize() {
+        return _maximumMessageSize;
+    }
+
+    public void setMaximumMessageSize(@Nonnull ByteCount maximumMessageSize) {
+        final long value = maximumMessageSize.toByteCount();
+        if (value <= 0 || value > MAXIMUM_MESSAGE_SIZE) {
+            throw new IllegalArgumentException("The maximumMessageSize have to be greater than 0 and not greater than " + MAXIMUM_MESSAGE_SIZE + " bytes.");
+        }
+        _maximumMessageSize = maximumMessageSize;
+    }
+
+    /**
+     * @return the maximum memory which is used for the fragments of all received but not yet complete messages.
+     */
+    @Nonnull
+    public ByteCount getMaximumReassemblyMemory() {
+        return _maximumReassemblyMemory;
+    }
+
+    public void setMaximumReassemblyMemory(@Nonnull final ByteCount maximumReassemblyMemory) {
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() {
+            _maximumReassemblyMemory = maximumReassemblyMemory;
+            return null;
+        }});
+    }
+
+    /**
+     * @return the maximum number of received but not yet complete messages.
+     */
+    @Nonnegative
+    public int getMaximumNumberOfIncompleteMessages() {
+        return _maximumNumberOfIncompleteMessages;
+    }
+
+    public void setMaximumNumberOfIncompleteMessages(@Nonnegative final int maximumNumberOfIncompleteMessages) {
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() {
+            _maximumNumberOfIncompleteMessages = maximumNumberOfIncompleteMessages;
+            return null;
+        }});
+    }
+
+    /**
+     * @return the duration after which received fragments of not yet complete messages are dropped.
+     */
+    @Nonnull
+    public Duration getReassemblyTimeout() {
+        return _reassemblyTimeout;
+    }
+
+    public void setReassemblyTimeout(@Nonnull final Duration reassemblyTimeout) {
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() {
+            _reassemblyTimeout = reassemblyTimeout;
+            return null;
+        }});
+    }
+
     @Override
     protected void initInLock() throws Exception {
         super.initInLock();
+        _reassembler = new FragmentReassembler(_maximumReassemblyMemory.toByteCount(), _maximumNumberOfIncompleteMessages, _reassemblyTimeout.in(MILLISECONDS));
+        _retransmitBuffer = _reliable ? new RetransmitBuffer(_retransmitBufferCapacity) : null;
+        // A new epoch tells the receivers that the sequence numbers of this instance start from the beginning again.
+        _epoch = RANDOM.nextLong();
+        _sequence = 0;
+        _lastAnnouncedSequence = 0;
+        _receiveWindows.clear();
         _pingingThread = new Thread(_pinger, toString() + ".Pinger");
         _pingingThread.setDaemon(true);
         _readingThread = new Thread(_reader, toString() + ".Reader");
@@ -272,7 +456,8 @@ public class MulticastClusterChannel extends NetBasedClusterChannel<Short, Multi
                     _in = new MulticastSocket(address.getPort());
                     _in.joinGroup(address, networkInterface);
                     _in.setTimeToLive((int) _ttl.in(SECONDS));
-                    _in.setSoTimeout((int) getSoTimeout().in(MILLISECONDS));
+                    // Wake up at least every NAK interval to be able to request missing messages in time.
+                    _in.setSoTimeout((int) Math.min(getSoTimeout().in(MILLISECONDS), _nakInterval.in(MILLISECONDS)));
                 } else {
                     _in = null;
                 }
@@ -331,6 +516,69 @@ public class MulticastClusterChannel extends NetBasedClusterChannel<Short, Multi
         }
     }
 
+    /**
+     * @return the given message with a new sequence number if this channel is {@link #isReliable() reliable}.
+     */
+    @Nonnull
+    protected Message sequenced(@Nonnull Message message) {
+        final RetransmitBuffer retransmitBuffer = _retransmitBuffer;
+        final Message result;
+        if (retransmitBuffer != null) {
+            final long sequence = _sequence + 1;
+            final byte[] payload = new byte[message.getLength() + SEQUENCE_HEADER_SIZE];
+            ByteUtils.putLong(payload, 0, _epoch);
+            ByteUtils.putLong(payload, 8, sequence);
+            payload[16] = message.getCommand();
+            System.arraycopy(message.getData(), message.getOffset(), payload, SEQUENCE_HEADER_SIZE, message.getLength());
+            result = new Message(sequencedCommand, payload);
+            retransmitBuffer.put(sequence, result);
+            _sequence = sequence;
+        } else {
+            result = message;
+        }
+        return result;
+    }
+
+    /**
+     * @return the given message split into fragments which fit into one packet each - or the message itself if it
+     *         already fits.
+     */
+    @Nonnull
+    protected List<Message> fragmented(@Nonnull Message message) {
+        final List<Message> result;
+        if (message.getLength() <= _maximumMessageSize.toByteCount()) {
+            result = _fragmenter.fragment(message, BUFFER_SIZE - 3 - (_retransmitBuffer != null ? SEQUENCE_HEADER_SIZE : 0));
+        } else {
+            result = Collections.emptyList();
+            LOG.warn("It was not possible to send '" + message + "' because it reached the limit of " + _maximumMessageSize + " for each message. This message will be ignored.");
+        }
+        return result;
+    }
+
+    /**
+     * Announces the highest sent sequence number - so receivers are able to detect if the last messages are lost.
+     */
+    protected void sendHighestSequence(@Nonnegative short id) throws IOException, InterruptedException {
+        final long sequence = _sequence;
+        if (_retransmitBuffer != null && sequence > 0) {
+            final byte[] payload = new byte[16];
+            ByteUtils.putLong(payload, 0, _epoch);
+            ByteUtils.putLong(payload, 8, sequence);
+            sendInternal(id, new Message(highestSequenceCommand, payload));
+        }
+    }
+
+    protected void sendNak(@Nonnull UUID to, long epoch, long from, long until) throws IOException, InterruptedException {
+        final byte[] payload = new byte[40];
+        ByteUtils.putLong(payload, 0, to.getMostSignificantBits());
+        ByteUtils.putLong(payload, 8, to.getLeastSignificantBits());
+        ByteUtils.putLong(payload, 16, epoch);
+        ByteUtils.putLong(payload, 24, from);
+        ByteUtils.putLong(payload, 32, until);
+        sendInternal(getId(false), new Message(nakCommand, payload));
+        _naksSend++;
+    }
+
     protected void sendPing(@Nonnegative short id) throws IOException, InterruptedException {
         final byte[] payload = new byte[16];
         final UUID uuid = getUuid();
@@ -390,7 +638,7 @@ public class MulticastClusterChannel extends NetBasedClusterChannel<Short, Multi
             final ReceivedMessage<MulticastNode> message = toReceivedMessage(packet);
             if (message != null) {
                 message.getFrom().recordOutbound();
-                read(message);
+                receive(message);
             }
         } catch (final SocketTimeoutException ignored) {
         } catch (final SocketException e) {
@@ -402,6 +650,135 @@ public class MulticastClusterChannel extends NetBasedClusterChannel<Short, Multi
 
     }
 
+    protected void receive(@Nonnull ReceivedMessage<MulticastNode> message) throws IOException {
+        final byte command = message.getCommand();
+        if (command == sequencedCommand) {
+            receiveSequenced(message);
+        } else if (command == nakCommand) {
+            receiveNak(message);
+        } else if (command == highestSequenceCommand) {
+            receiveHighestSequence(message);
+        } else {
+            deliver(message);
+        }
+    }
+
+    /**
+     * Passes the given message to the handlers - fragments are passed as soon as the whole message is reassembled.
+     */
+    protected void deliver(@Nonnull ReceivedMessage<MulticastNode> message) throws IOException {
+        if (message.getCommand() == fragmentCommand) {
+            final FragmentReassembler reassembler = _reassembler;
+            final ReceivedMessage<MulticastNode> reassembled = reassembler != null ? reassembler.reassemble(message, currentTimeMillis()) : null;
+            if (reassembled != null) {
+                read(reassembled);
+            }
+        } else {
+            read(message);
+        }
+    }
+
+    protected void dropIncompleteMessages() {
+        final FragmentReassembler reassembler = _reassembler;
+        if (reassembler != null) {
+            reassembler.dropExpired(currentTimeMillis());
+        }
+    }
+
+    protected void receiveSequenced(@Nonnull ReceivedMessage<MulticastNode> message) throws IOException {
+        final byte[] data = message.getData();
+        final int offset = message.getOffset();
+        final int length = message.getLength();
+        if (length >= SEQUENCE_HEADER_SIZE) {
+            final long epoch = getLong(data, offset);
+            final long sequence = getLong(data, offset + 8);
+            final MulticastNode from = message.getFrom();
+            final ReceivedMessage<MulticastNode> original = new ReceivedMessage<>(data[offset + 16], Arrays.copyOfRange(data, offset + SEQUENCE_HEADER_SIZE, offset + length), from);
+            for (final ReceivedMessage<MulticastNode> inOrder : receiveWindowFor(from, epoch).receive(sequence, original)) {
+                deliver(inOrder);
+            }
+        }
+    }
+
+    protected void receiveNak(@Nonnull ReceivedMessage<MulticastNode> message) throws IOException {
+        final byte[] data = message.getData();
+        final int offset = message.getOffset();
+        final RetransmitBuffer retransmitBuffer = _retransmitBuffer;
+        if (message.getLength() == 40 && retransmitBuffer != null && getUuid().equals(new UUID(getLong(data, offset), getLong(data, offset + 8))) && getLong(data, offset + 16) == _epoch) {
+            _naksReceived++;
+            final long from = getLong(data, offset + 24);
+            final long until = Math.min(getLong(data, offset + 32), from + MAXIMUM_RETRANSMITS_PER_NAK - 1);
+            final long now = currentTimeMillis();
+            final long suppressFor = _nakInterval.in(MILLISECONDS) / 2;
+            for (long sequence = from; sequence <= until; sequence++) {
+                final Message toRetransmit = retransmitBuffer.getForRetransmit(sequence, now, suppressFor);
+                if (toRetransmit != null) {
+                    try {
+                        sendInternal(_id, toRetransmit);
+                        _messagesRetransmitted++;
+                    } catch (final InterruptedException ignored) {
+                        currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    protected void receiveHighestSequence(@Nonnull ReceivedMessage<MulticastNode> message) throws IOException {
+        if (message.getLength() == 16) {
+            final byte[] data = message.getData();
+            final int offset = message.getOffset();
+            receiveWindowFor(message.getFrom(), getLong(data, offset)).announce(getLong(data, offset + 8));
+        }
+    }
+
+    /**
+     * @return the window of the given node for the given epoch. If the node was re-initialized since its last message
+     *         the window of its old epoch is replaced - otherwise all messages of the new epoch would be dropped as
+     *         duplicates.
+     */
+    @Nonnull
+    protected ReceiveWindow receiveWindowFor(@Nonnull MulticastNode node, long epoch) throws IOException {
+        final UUID uuid = node.getUuid();
+        ReceiveWindow result = _receiveWindows.get(uuid);
+        while (result == null || result.getEpoch() != epoch) {
+            final ReceiveWindow newWindow = new ReceiveWindow(epoch, _maximumPendingMessagesPerSender, _nakInterval.in(MILLISECONDS), _maximumNaksPerGap);
+            if (result == null ? _receiveWindows.putIfAbsent(uuid, newWindow) == null : _receiveWindows.replace(uuid, result, newWindow)) {
+                if (result != null) {
+                    LOG.info("Node " + node + " was restarted. Start to receive its messages from the beginning.");
+                    for (final ReceivedMessage<MulticastNode> message : result.giveUpAll()) {
+                        deliver(message);
+                    }
+                    _messagesLostOfGoneNodes += result.getLost();
+                }
+                result = newWindow;
+            } else {
+                result = _receiveWindows.get(uuid);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Requests the retransmission of missing messages and delivers hold back messages of gaps which could not be closed.
+     */
+    protected void repairGaps() throws IOException, InterruptedException {
+        final long now = currentTimeMillis();
+        for (final Entry<UUID, ReceiveWindow> uuidAndWindow : _receiveWindows.entrySet()) {
+            final ReceiveWindow window = uuidAndWindow.getValue();
+            if (window.hasGap()) {
+                final long[] range = window.nakIfRequired(now);
+                if (range != null) {
+                    sendNak(uuidAndWindow.getKey(), window.getEpoch(), range[0], range[1]);
+                }
+                for (final ReceivedMessage<MulticastNode> message : window.giveUpIfRequired(now)) {
+                    deliver(message);
+                }
+            }
+        }
+    }
+
     @Nullable
     protected ReceivedMessage<MulticastNode> toReceivedMessage(@Nonnull DatagramPacket packet) throws SocketException {
         final ReceivedMessage<MulticastNode> message;
@@ -515,6 +892,10 @@ public class MulticastClusterChannel extends NetBasedClusterChannel<Short, Multi
                 final MulticastNode node = i.next();
                 if (node.getLastSeenInMillis() <= expiresAt) {
                     i.remove();
+                    final ReceiveWindow window = _receiveWindows.remove(node.getUuid());
+                    if (window != null) {
+                        _messagesLostOfGoneNodes += window.getLost();
+                    }
                     LOG.info("Node " + node + " left the cluster. (Timeout)");
                     for (final Handler handler : getHandlers()) {
                         if (handler instanceof PresenceHandler) {
@@ -541,7 +922,7 @@ public class MulticastClusterChannel extends NetBasedClusterChannel<Short, Multi
     public final void ping() {
         cleanUpNodes();
         try {
-            getId(true);
+            sendHighestSequence(getId(true));
         } catch (final InterruptedException ignored) {
             currentThread().interrupt();
         } catch (final Exception e) {
@@ -549,6 +930,61 @@ public class MulticastClusterChannel extends NetBasedClusterChannel<Short, Multi
         }
     }
 
+    @Override
+    @Nonnegative
+    @Nonnull
+    public Long getNaksSend() {
+        return _naksSend;
+    }
+
+    @Override
+    @Nonnegative
+    @Nonnull
+    public Long getNaksReceived() {
+        return _naksReceived;
+    }
+
+    @Override
+    @Nonnegative
+    @Nonnull
+    public Long getMessagesRetransmitted() {
+        return _messagesRetransmitted;
+    }
+
+    @Override
+    @Nonnegative
+    @Nonnull
+    public Long getMessagesLost() {
+        long result = _messagesLostOfGoneNodes;
+        for (final ReceiveWindow window : _receiveWindows.values()) {
+            result += window.getLost();
+        }
+        return result;
+    }
+
+    @Override
+    @Nonnegative
+    @Nonnull
+    public Long getMessagesFragmented() {
+        return _fragmenter.getMessagesFragmented();
+    }
+
+    @Override
+    @Nonnegative
+    @Nonnull
+    public Double getFragmentsPerMessage() {
+        final long messagesFragmented = _fragmenter.getMessagesFragmented();
+        return messagesFragmented > 0 ? (double) _fragmenter.getFragmentsCreated() / messagesFragmented : 0d;
+    }
+
+    @Override
+    @Nonnegative
+    @Nonnull
+    public Long getReassemblyFailures() {
+        final FragmentReassembler reassembler = _reassembler;
+        return reassembler != null ? reassembler.getFailures() : 0L;
+    }
+
     @Override
     protected void recordMessageSend() {
         super.recordMessageSend();
@@ -565,12 +1001,24 @@ public class MulticastClusterChannel extends NetBasedClusterChannel<Short, Multi
         public void run() {
             try {
                 while (!currentThread().isInterrupted()) {
-                    final Message message = _messageQueue.take();
-                    try {
-                        final short id = getId(false);
-                        sendInternal(id, message);
-                    } catch (final IOException e) {
-                        LOG.warn("Could not write message '" + message + "' to " + _address + getNetworkInterfaceSuffix() + ". This message is lost.", e);
+                    final Message message = _retransmitBuffer != null ? _messageQueue.poll(_nakInterval.in(MILLISECONDS), MILLISECONDS) : _messageQueue.take();
+                    if (message != null) {
+                        try {
+                            final short id = getId(false);
+                            for (final Message part : fragmented(message)) {
+                                sendInternal(id, sequenced(part));
+                            }
+                        } catch (final IOException e) {
+                            LOG.warn("Could not write message '" + message + "' to " + _address + getNetworkInterfaceSuffix() + ". This message is lost.", e);
+                        }
+                    } else if (_lastAnnouncedSequence != _sequence) {
+                        // Nothing more to send - announce the last sequence to enable the receivers to detect the loss of the last messages.
+                        try {
+                            _lastAnnouncedSequence = _sequence;
+                            sendHighestSequence(getId(false));
+                        } catch (final IOException e) {
+                            LOG.warn("Could not announce the highest sequence to " + _address + getNetworkInterfaceSuffix() + ".", e);
+                        }
                     }
                 }
             } catch (final InterruptedException ignored) {
@@ -588,6 +1036,8 @@ public class MulticastClusterChannel extends NetBasedClusterChannel<Short, Multi
                         final DatagramSocket in = getIn();
                         if (in != null) {
                             readFrom(in);
+                            repairGaps();
+                            dropIncompleteMessages();
                         } else {
                             sleep(1000);
                         }
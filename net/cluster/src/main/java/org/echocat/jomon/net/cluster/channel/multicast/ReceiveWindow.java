@@ -0,0 +1,225 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel.multicast;
+
+import org.echocat.jomon.net.cluster.channel.ReceivedMessage;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Brings the sequenced messages of one sender into order and detects gaps in their sequence numbers.</p>
+ * <p>Messages which are received ahead of a gap are hold back (at most {@link #getMaximumPendingMessages()}) until the
+ * missing messages were retransmitted. For each gap a retransmission is requested every {@link #getNakInterval()}.
+ * After {@link #getMaximumNaksPerGap()} requests without success the missing messages are treated as lost and the
+ * hold back messages are delivered.</p>
+ */
+@ThreadSafe
+public class ReceiveWindow {
+
+    private final long _epoch;
+    private final int _maximumPendingMessages;
+    private final long _nakInterval;
+    private final int _maximumNaksPerGap;
+    private final TreeMap<Long, ReceivedMessage<MulticastNode>> _pending = new TreeMap<>();
+
+    private long _next = -1;
+    private long _highestKnown = -1;
+    private long _lastNakAt;
+    private int _naksForCurrentGap;
+    private long _lost;
+    private long _duplicates;
+
+    public ReceiveWindow(long epoch, @Nonnegative int maximumPendingMessages, @Nonnegative long nakIntervalInMillis, @Nonnegative int maximumNaksPerGap) {
+        _epoch = epoch;
+        _maximumPendingMessages = maximumPendingMessages;
+        _nakInterval = nakIntervalInMillis;
+        _maximumNaksPerGap = maximumNaksPerGap;
+    }
+
+    /**
+     * @return the epoch of the sender this window receives the messages of. The sequence numbers are only unique
+     *         within one epoch.
+     */
+    public long getEpoch() {
+        return _epoch;
+    }
+
+    @Nonnegative
+    public int getMaximumPendingMessages() {
+        return _maximumPendingMessages;
+    }
+
+    @Nonnegative
+    public long getNakInterval() {
+        return _nakInterval;
+    }
+
+    @Nonnegative
+    public int getMaximumNaksPerGap() {
+        return _maximumNaksPerGap;
+    }
+
+    /**
+     * @return all messages which could be delivered in order now - could be empty if the given message is a duplicate
+     *         or if it was received ahead of a gap.
+     */
+    @Nonnull
+    public synchronized List<ReceivedMessage<MulticastNode>> receive(@Nonnegative long sequence, @Nonnull ReceivedMessage<MulticastNode> message) {
+        final List<ReceivedMessage<MulticastNode>> result;
+        if (_next < 0) {
+            _next = sequence;
+        }
+        if (sequence > _highestKnown) {
+            _highestKnown = sequence;
+        }
+        if (sequence < _next || _pending.containsKey(sequence)) {
+            _duplicates++;
+            result = Collections.emptyList();
+        } else if (sequence == _next) {
+            result = new ArrayList<>();
+            result.add(message);
+            _next++;
+            drainTo(result);
+        } else if (_pending.size() < _maximumPendingMessages) {
+            _pending.put(sequence, message);
+            result = Collections.emptyList();
+        } else {
+            // Too many messages are hold back - so the current gap will never be closed in time...
+            result = giveUpCurrentGap();
+            drainTo(result);
+            if (sequence == _next) {
+                result.add(message);
+                _next++;
+                drainTo(result);
+            } else {
+                _pending.put(sequence, message);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records that the sender has already sent all messages up to the given sequence number.
+     */
+    public synchronized void announce(long highestSequence) {
+        if (_next < 0) {
+            _next = highestSequence + 1;
+        }
+        if (highestSequence > _highestKnown) {
+            _highestKnown = highestSequence;
+        }
+    }
+
+    public synchronized boolean hasGap() {
+        return _next >= 0 && _highestKnown >= _next;
+    }
+
+    /**
+     * @return the range of missing sequence numbers (first and last inclusive) if a retransmission should be requested
+     *         now or <code>null</code> if there is no gap or it was already requested within the last
+     *         {@link #getNakInterval() interval}.
+     */
+    @Nullable
+    public synchronized long[] nakIfRequired(long nowInMillis) {
+        final long[] result;
+        if (hasGap() && _naksForCurrentGap < _maximumNaksPerGap && _lastNakAt + _nakInterval <= nowInMillis) {
+            _lastNakAt = nowInMillis;
+            _naksForCurrentGap++;
+            result = new long[]{_next, endOfCurrentGap()};
+        } else {
+            result = null;
+        }
+        return result;
+    }
+
+    /**
+     * @return the hold back messages if the current gap was requested {@link #getMaximumNaksPerGap() too often} without
+     *         success. The messages of the gap are treated as lost.
+     */
+    @Nonnull
+    public synchronized List<ReceivedMessage<MulticastNode>> giveUpIfRequired(long nowInMillis) {
+        final List<ReceivedMessage<MulticastNode>> result;
+        if (hasGap() && _naksForCurrentGap >= _maximumNaksPerGap && _lastNakAt + _nakInterval <= nowInMillis) {
+            result = giveUpCurrentGap();
+            drainTo(result);
+        } else {
+            result = Collections.emptyList();
+        }
+        return result;
+    }
+
+    /**
+     * @return all hold back messages in order. All gaps are treated as lost - so this window should not be used any longer.
+     */
+    @Nonnull
+    public synchronized List<ReceivedMessage<MulticastNode>> giveUpAll() {
+        final List<ReceivedMessage<MulticastNode>> result = new ArrayList<>();
+        while (!_pending.isEmpty()) {
+            result.addAll(giveUpCurrentGap());
+            drainTo(result);
+        }
+        return result;
+    }
+
+    @Nonnegative
+    public synchronized long getLost() {
+        return _lost;
+    }
+
+    @Nonnegative
+    public synchronized long getDuplicates() {
+        return _duplicates;
+    }
+
+    @Nonnegative
+    public synchronized long getNext() {
+        return _next;
+    }
+
+    protected long endOfCurrentGap() {
+        return _pending.isEmpty() ? _highestKnown : _pending.firstKey() - 1;
+    }
+
+    @Nonnull
+    protected List<ReceivedMessage<MulticastNode>> giveUpCurrentGap() {
+        final long end = endOfCurrentGap();
+        _lost += end - _next + 1;
+        _next = end + 1;
+        _naksForCurrentGap = 0;
+        _lastNakAt = 0;
+        return new ArrayList<>();
+    }
+
+    protected void drainTo(@Nonnull List<ReceivedMessage<MulticastNode>> target) {
+        Entry<Long, ReceivedMessage<MulticastNode>> first = _pending.firstEntry();
+        while (first != null && first.getKey() == _next) {
+            target.add(first.getValue());
+            _pending.remove(first.getKey());
+            _next++;
+            first = _pending.firstEntry();
+        }
+        _naksForCurrentGap = 0;
+    }
+
+}
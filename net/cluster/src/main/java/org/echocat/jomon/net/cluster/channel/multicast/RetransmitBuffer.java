@@ -0,0 +1,79 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel.multicast;
+
+import org.echocat.jomon.net.cluster.channel.Message;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Keeps the last sent messages of a sender by their sequence number to be able to retransmit them if a receiver
+ * reports that it missed them.</p>
+ */
+@ThreadSafe
+public class RetransmitBuffer {
+
+    private final Message[] _messages;
+    private final long[] _sequences;
+    private final long[] _retransmittedAt;
+
+    public RetransmitBuffer(@Nonnegative int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity have to be greater than 0.");
+        }
+        _messages = new Message[capacity];
+        _sequences = new long[capacity];
+        _retransmittedAt = new long[capacity];
+    }
+
+    @Nonnegative
+    public int getCapacity() {
+        return _messages.length;
+    }
+
+    public synchronized void put(@Nonnegative long sequence, @Nonnull Message message) {
+        final int index = indexOf(sequence);
+        _messages[index] = message;
+        _sequences[index] = sequence;
+        _retransmittedAt[index] = 0;
+    }
+
+    /**
+     * @return the message with the given sequence number or <code>null</code> if it is not longer buffered or if it was
+     *         already retransmitted within the given duration. This prevents that a loss which was reported by several
+     *         receivers at the same time leads to several retransmissions.
+     */
+    @Nullable
+    public synchronized Message getForRetransmit(@Nonnegative long sequence, @Nonnegative long nowInMillis, @Nonnegative long suppressForInMillis) {
+        final int index = indexOf(sequence);
+        final Message result;
+        if (_messages[index] != null && _sequences[index] == sequence && _retransmittedAt[index] + suppressForInMillis <= nowInMillis) {
+            _retransmittedAt[index] = nowInMillis;
+            result = _messages[index];
+        } else {
+            result = null;
+        }
+        return result;
+    }
+
+    protected int indexOf(@Nonnegative long sequence) {
+        return (int) (sequence % _messages.length);
+    }
+
+}
@@ -14,6 +14,7 @@
 
 package org.echocat.jomon.net.cluster.channel.tcp;
 
+import org.echocat.jomon.net.cluster.channel.ReceiveBufferPool;
 import org.echocat.jomon.net.cluster.channel.ReceivedMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,17 +32,31 @@ public class InboundTcpWorker extends Thread implements AutoCloseable {
 
     private static final Logger LOG = LoggerFactory.getLogger(TcpClusterChannel.class);
 
+    public static final int INPUT_BUFFER_SIZE = 8 * 1024;
+    protected static final int FRAME_HEADER_LENGTH = 5;
+
     private final InboundTcpNode _node;
     private final InputStream _is;
     private final Reader _reader;
+    private final ReceiveBufferPool _bufferPool;
+    private final byte[] _header = new byte[FRAME_HEADER_LENGTH];
 
     public InboundTcpWorker(@Nonnull Reader reader, @Nonnull Socket socket, @Nonnull UUID serverUuid, @Nonnull String service, @Nullable String name) throws IOException {
+        this(reader, socket, serverUuid, service, name, null);
+    }
+
+    /**
+     * @param bufferPool if not <code>null</code> the payloads of the received messages are stored in buffers of this
+     *                   pool. These buffers are reused after the message was handled - see {@link ReceivedMessage#retain()}.
+     */
+    public InboundTcpWorker(@Nonnull Reader reader, @Nonnull Socket socket, @Nonnull UUID serverUuid, @Nonnull String service, @Nullable String name, @Nullable ReceiveBufferPool bufferPool) throws IOException {
         setName("InboundTcp(" + service + "/" + (name != null ? name : serverUuid) + ")<(resolving)");
         setDaemon(true);
         _reader = reader;
+        _bufferPool = bufferPool;
         final OutputStream os = socket.getOutputStream();
         sendInit(os, serverUuid);
-        _is = socket.getInputStream();
+        _is = new BufferedInputStream(socket.getInputStream(), INPUT_BUFFER_SIZE);
         _node = readNode(socket, _is);
         setName("InboundTcp(" + service + "/" + (name != null ? name : serverUuid) + ")<(" + _node.getAddress() + ")");
     }
@@ -50,9 +65,7 @@ public class InboundTcpWorker extends Thread implements AutoCloseable {
     public void run() {
         try {
             while (!currentThread().isInterrupted() && _node.isConnected()) {
-                final byte command = readCommand();
-                final byte[] messageData = readMessageData(_is);
-                final ReceivedMessage<TcpNode> message = new ReceivedMessage<TcpNode>(command, messageData, _node);
+                final ReceivedMessage<TcpNode> message = readMessage(_is);
                 _reader.read(message);
                 _node.recordInbound();
             }
@@ -68,14 +81,6 @@ public class InboundTcpWorker extends Thread implements AutoCloseable {
         }
     }
 
-    private byte readCommand() throws IOException {
-        final byte[] command = new byte[1];
-        if (_is.read(command) < 1) {
-            throw new EOFException();
-        }
-        return command[0];
-    }
-
     protected void sendInit(@Nonnull OutputStream to, @Nonnull UUID serverUuid) throws IOException {
         final byte[] uuidAsBytes = new byte[16];
         putLong(uuidAsBytes, 0, serverUuid.getMostSignificantBits());
@@ -92,42 +97,44 @@ public class InboundTcpWorker extends Thread implements AutoCloseable {
     @Nonnull
     protected UUID readUuid(@Nonnull InputStream is) throws IOException {
         final byte[] buf = new byte[16];
-        final int read = is.read(buf);
-        if (read != 16) {
-            throw new IOException("Received a content that is not 16 bytes long.");
-        }
+        readFully(is, buf, 16);
         return new UUID(getLong(buf, 0), getLong(buf, 8));
     }
 
+    /**
+     * Reads the next frame. The payload is stored in a buffer of the {@link ReceiveBufferPool} if there is one.
+     */
     @Nonnull
-    protected byte[] readMessageData(@Nonnull InputStream is) throws IOException {
-        final int length = readLengthFrom(is);
-        final byte[] messageData = new byte[length];
-        int offset = 0;
-        int read = is.read(messageData);
-        while (read >= 0 && offset < length) {
-            offset += read;
-            read = is.read(messageData, offset, length - offset);
-        }
-        if (read < 0) {
-            throw new EOFException();
+    protected ReceivedMessage<TcpNode> readMessage(@Nonnull InputStream is) throws IOException {
+        readFully(is, _header, FRAME_HEADER_LENGTH);
+        final byte command = _header[0];
+        final int length = getInt(_header, 1);
+        if (length < 0) {
+            throw new IOException("Received illegal packet. Leading packet is not the length of the following content.");
         }
-        if (offset != length) {
-            throw new IOException("Received a payload with another payload length then expected.");
+        final ReceiveBufferPool bufferPool = _bufferPool;
+        final byte[] messageData = bufferPool != null ? bufferPool.acquire(length) : new byte[length];
+        boolean success = false;
+        try {
+            readFully(is, messageData, length);
+            success = true;
+        } finally {
+            if (!success && bufferPool != null) {
+                bufferPool.release(messageData);
+            }
         }
-        return messageData;
+        return new ReceivedMessage<TcpNode>(command, messageData, 0, length, _node, bufferPool);
     }
 
-    protected int readLengthFrom(@Nonnull InputStream is) throws IOException {
-        final byte[] bytes = new byte[4];
-        if (is.read(bytes) < 0) {
-            throw new EOFException();
-        }
-        final int length = getInt(bytes, 0);
-        if (length < 0) {
-            throw new IOException("Received illegal packet. Leading packet is not the length of the following content.");
+    protected void readFully(@Nonnull InputStream is, @Nonnull byte[] to, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            final int read = is.read(to, offset, length - offset);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            offset += read;
         }
-        return length;
     }
 
     @Nonnull
@@ -0,0 +1,966 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel.tcp;
+
+import org.echocat.jomon.net.cluster.channel.*;
+import org.echocat.jomon.net.cluster.channel.MessageCompressor.Prepared;
+import org.echocat.jomon.net.cluster.channel.tcp.NioTcpConnection.Listener;
+import org.echocat.jomon.net.cluster.channel.tcp.NioTcpConnection.Write;
+import org.echocat.jomon.runtime.StringUtils;
+import org.echocat.jomon.runtime.jaxb.InetSocketAddressPropertyEditor;
+import org.echocat.jomon.runtime.util.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.System.currentTimeMillis;
+import static java.lang.Thread.currentThread;
+import static java.nio.channels.SelectionKey.OP_ACCEPT;
+import static java.util.Collections.newSetFromMap;
+import static java.util.Collections.unmodifiableSet;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.echocat.jomon.net.NetworkInterfaceUtils.assertThatContainsAddress;
+import static org.echocat.jomon.net.NetworkInterfaceUtils.findFirstAddressOf;
+import static org.echocat.jomon.net.cluster.channel.Node.ADDRESS_BASED_COMPARATOR;
+import static org.echocat.jomon.net.cluster.channel.tcp.NioTcpConnection.frameOf;
+import static org.echocat.jomon.runtime.concurrent.ThreadUtils.stop;
+import static org.echocat.jomon.runtime.util.ResourceUtils.closeQuietly;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Alternative to {@link TcpClusterChannel} which does not need one thread per connection. All connections are
+ * non blocking and served by a small fixed number of {@link #setNumberOfIoThreads(int) I/O threads} each with its own
+ * {@link Selector}.</p>
+ * <p>It is wire compatible with {@link TcpClusterChannel} - both could be mixed inside the same cluster.</p>
+ * <p>Messages are received on the I/O threads but handled by a separate pool of
+ * {@link #setNumberOfHandlerThreads(int) handler threads} - the messages of one connection in the order they were
+ * received. So handlers which send messages are subject to the same back-pressure as every other sender. If the
+ * handlers could not keep up with a connection it is not read any further until at most
+ * {@link #setReceivingQueueCapacity(int) receivingQueueCapacity} messages are left.</p>
+ */
+@ThreadSafe
+public class NioTcpClusterChannel extends NetBasedClusterChannel<UUID, TcpNode> implements AddressEnabledClusterChannel<UUID, TcpNode>, SendingQueueEnabledClusterChannel<UUID, TcpNode>, RemoteAddressesEnabledClusterChannel<UUID, TcpNode>, ServiceEnabledClusterChannel<UUID, TcpNode>, BlockableClusterChannel<UUID, TcpNode>, DropMessagesEnabledClusterChannel<UUID, TcpNode>, GossipEnabledClusterChannel<UUID, TcpNode> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NioTcpClusterChannel.class);
+
+    private final ConcurrentMap<InetSocketAddress, NioTcpConnection> _outboundConnections = new ConcurrentHashMap<>();
+    private final Set<NioTcpConnection> _inboundConnections = newSetFromMap(new ConcurrentHashMap<NioTcpConnection, Boolean>());
+    private final Set<InetSocketAddress> _selfAddresses = newSetFromMap(new ConcurrentHashMap<InetSocketAddress, Boolean>());
+    private final AtomicInteger _nextIoThread = new AtomicInteger();
+    private final MessageCompressor _compressor = new MessageCompressor();
+    private final GossipMembership _membership = new GossipMembership(getUuid());
+    private final Listener _listener = new Listener() {
+        @Override public void onMessage(@Nonnull ReceivedMessage<TcpNode> message) throws IOException {
+            read(message);
+        }
+        @Override public Message createPingMessage() {
+            return _membership.announceIn(MessageCompressor.createPingMessage());
+        }
+        @Override public void onClose(@Nonnull NioTcpConnection connection) {
+            if (connection.isOutbound()) {
+                for (final Entry<InetSocketAddress, NioTcpConnection> addressAndConnection : _outboundConnections.entrySet()) {
+                    if (addressAndConnection.getValue() == connection) {
+                        final InetSocketAddress address = addressAndConnection.getKey();
+                        _outboundConnections.remove(address, connection);
+                        if (connection.isSelf()) {
+                            _selfAddresses.add(address);
+                        }
+                    }
+                }
+            } else {
+                _inboundConnections.remove(connection);
+                final NioTcpNode node = connection.getNode();
+                if (node != null) {
+                    _compressor.forget(node.getUuid());
+                    _membership.forget(node.getUuid());
+                }
+            }
+        }
+    };
+
+    private String _service = "ttc";
+    private Duration _connectionTimeout = new Duration("2s");
+    private Collection<InetSocketAddress> _remoteAddresses;
+    private InetSocketAddress _address = new InetSocketAddress(TcpClusterChannel.DEFAULT_PORT);
+    private NetworkInterface _networkInterface;
+    private int _maxNumberOfIncomingConnections = 100;
+    private int _numberOfIoThreads = 2;
+    private int _numberOfHandlerThreads = 4;
+    private int _sendingQueueCapacity = 250;
+    private int _receivingQueueCapacity = 250;
+    private boolean _blocking = true;
+    private boolean _dropMessagesIfQueueIsFull;
+    private int _receiveBufferSize = ReceiveBufferPool.DEFAULT_BUFFER_SIZE;
+    private int _maximumNumberOfPooledReceiveBuffers;
+
+    private volatile IoThread[] _ioThreads;
+    private volatile ThreadPoolExecutor _handlerExecutor;
+    private ServerSocketChannel _in;
+    private Thread _pingingThread;
+    private volatile ReceiveBufferPool _receiveBufferPool;
+
+    public NioTcpClusterChannel() {}
+
+    public NioTcpClusterChannel(@Nullable UUID uuid) {
+        super(uuid);
+    }
+
+    @Nonnull
+    @Override
+    public UUID getId() {
+        return getUuid();
+    }
+
+    @Override
+    @Nonnull
+    public String getService() {
+        return _service;
+    }
+
+    @Override
+    public void setService(@Nonnull final String service) {
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() throws Exception {
+            _service = service;
+            return null;
+        }});
+    }
+
+    public Duration getConnectionTimeout() {
+        return _connectionTimeout;
+    }
+
+    public void setConnectionTimeout(final Duration connectionTimeout) {
+        _connectionTimeout = connectionTimeout;
+    }
+
+    @Override
+    @Nullable
+    public Collection<InetSocketAddress> getRemoteAddresses() {
+        return _remoteAddresses;
+    }
+
+    @Override
+    public void setRemoteAddresses(@Nullable final Collection<InetSocketAddress> remoteAddresses) {
+        doSafe(new Callable<Void>() { @Override public Void call() throws Exception {
+            if (remoteAddresses != null ? !remoteAddresses.equals(_remoteAddresses) : _remoteAddresses != null) {
+                _remoteAddresses = remoteAddresses;
+                if (isConnected()) {
+                    ping();
+                }
+            }
+            return null;
+        }});
+    }
+
+    @Override
+    @Nullable
+    public String getRemoteAddressesAsString() {
+        final Collection<InetSocketAddress> remoteAddresses = _remoteAddresses;
+        final String result;
+        if (remoteAddresses != null) {
+            final StringBuilder sb = new StringBuilder();
+            for (final InetSocketAddress address : remoteAddresses) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+                sb.append(address.getHostString()).append(':').append(address.getPort());
+            }
+            result = sb.toString();
+        } else {
+            result = null;
+        }
+        return result;
+    }
+
+    @Override
+    public void setRemoteAddressesAsString(@Nullable String remoteAddressesAsString) {
+        final Collection<InetSocketAddress> addresses;
+        if (remoteAddressesAsString != null) {
+            addresses = new ArrayList<>();
+            final String[] remoteAddressesAsStrings = StringUtils.split(remoteAddressesAsString, ",;\n\r\t", false, true);
+            for (final String remoteAddressAsString : remoteAddressesAsStrings) {
+                final InetSocketAddressPropertyEditor editor = new InetSocketAddressPropertyEditor();
+                editor.setAsText(remoteAddressAsString);
+                final Object value = editor.getValue();
+                if (value instanceof InetSocketAddress) {
+                    addresses.add((InetSocketAddress) value);
+                }
+            }
+        } else {
+            addresses = null;
+        }
+        setRemoteAddresses(addresses);
+    }
+
+    @Override
+    public int getSendingQueueCapacity() {
+        return _sendingQueueCapacity;
+    }
+
+    @Override
+    public void setSendingQueueCapacity(final int sendingQueueCapacity) {
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() throws Exception {
+            _sendingQueueCapacity = sendingQueueCapacity;
+            return null;
+        }});
+    }
+
+    @Nonnegative
+    public int getReceivingQueueCapacity() {
+        return _receivingQueueCapacity;
+    }
+
+    /**
+     * @param receivingQueueCapacity maximum number of received messages of one connection which wait for the handlers.
+     *        If reached the connection is not read any further until the handlers caught up.
+     */
+    public void setReceivingQueueCapacity(@Nonnegative final int receivingQueueCapacity) {
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() throws Exception {
+            _receivingQueueCapacity = receivingQueueCapacity;
+            return null;
+        }});
+    }
+
+    @Override
+    public boolean isBlocking() {
+        return _blocking;
+    }
+
+    @Override
+    public void setBlocking(final boolean blocking) {
+        _blocking = blocking;
+    }
+
+    @Override
+    public boolean isDropMessagesIfQueueIsFull() {
+        return _dropMessagesIfQueueIsFull;
+    }
+
+    @Override
+    public void setDropMessagesIfQueueIsFull(final boolean dropMessagesIfQueueIsFull) {
+        _dropMessagesIfQueueIsFull = dropMessagesIfQueueIsFull;
+    }
+
+    @Override
+    @Nullable
+    public InetSocketAddress getAddress() {
+        return _address;
+    }
+
+    @Override
+    public void setAddress(@Nullable final InetSocketAddress address) {
+        setAddress(address, _networkInterface);
+    }
+
+    @Override
+    public void setAddress(@Nullable final InetSocketAddress address, @Nullable final NetworkInterface networkInterface) {
+        doSafe(new Callable<Void>() { @Override public Void call() throws Exception {
+            if ((address != null ? !address.equals(_address) : _address != null) || (networkInterface != null ? !networkInterface.equals(_networkInterface) : _networkInterface != null)) {
+                _address = address;
+                _networkInterface = networkInterface;
+                _address = resolveAddress();
+                reInitIfNeeded();
+            }
+            return null;
+        }});
+    }
+
+    @Override
+    @Nullable
+    public NetworkInterface getInterface() {
+        return _networkInterface;
+    }
+
+    @Override
+    public void setInterface(@Nullable final NetworkInterface networkInterface) {
+        setAddress(_address, networkInterface);
+    }
+
+    @Nonnegative
+    public int getNumberOfIoThreads() {
+        return _numberOfIoThreads;
+    }
+
+    public void setNumberOfIoThreads(@Nonnegative final int numberOfIoThreads) {
+        if (numberOfIoThreads <= 0) {
+            throw new IllegalArgumentException("There is at least one I/O thread required.");
+        }
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() throws Exception {
+            _numberOfIoThreads = numberOfIoThreads;
+            return null;
+        }});
+    }
+
+    @Nonnegative
+    public int getNumberOfHandlerThreads() {
+        return _numberOfHandlerThreads;
+    }
+
+    /**
+     * @param numberOfHandlerThreads maximum number of threads which pass the received messages to the handlers.
+     */
+    public void setNumberOfHandlerThreads(@Nonnegative final int numberOfHandlerThreads) {
+        if (numberOfHandlerThreads <= 0) {
+            throw new IllegalArgumentException("There is at least one handler thread required.");
+        }
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() throws Exception {
+            _numberOfHandlerThreads = numberOfHandlerThreads;
+            return null;
+        }});
+    }
+
+    /**
+     * @return the minimum length of a payload to be compressed before it is sent. If <code>0</code> (the default) no
+     *         message is compressed. Only nodes which announce that they are able to decompress messages receive
+     *         compressed messages.
+     */
+    @Nonnegative
+    public int getCompressionThreshold() {
+        return _compressor.getThreshold();
+    }
+
+    public void setCompressionThreshold(@Nonnegative int compressionThreshold) {
+        _compressor.setThreshold(compressionThreshold);
+    }
+
+    /**
+     * @see java.util.zip.Deflater#setLevel(int)
+     */
+    public int getCompressionLevel() {
+        return _compressor.getLevel();
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        _compressor.setLevel(compressionLevel);
+    }
+
+    @Nonnull
+    public MessageCompressor getCompressor() {
+        return _compressor;
+    }
+
+    @Override
+    public boolean isGossipEnabled() {
+        return _membership.isEnabled();
+    }
+
+    /**
+     * @param gossipEnabled if <code>true</code> the availability of nodes which also take part in the gossip is judged
+     *        by a {@link GossipMembership} instead of pinging each of them every {@link #getPingInterval() ping interval}.
+     */
+    @Override
+    public void setGossipEnabled(final boolean gossipEnabled) {
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() throws Exception {
+            _membership.setEnabled(gossipEnabled);
+            return null;
+        }});
+    }
+
+    @Override
+    @Nonnegative
+    public int getGossipFanout() {
+        return _membership.getFanout();
+    }
+
+    @Override
+    public void setGossipFanout(@Nonnegative int gossipFanout) {
+        _membership.setFanout(gossipFanout);
+    }
+
+    @Override
+    @Nonnegative
+    public double getPhiThreshold() {
+        return _membership.getPhiThreshold();
+    }
+
+    @Override
+    public void setPhiThreshold(@Nonnegative double phiThreshold) {
+        _membership.setPhiThreshold(phiThreshold);
+    }
+
+    @Override
+    @Nullable
+    public Double getSuspicionLevelOf(@Nonnull TcpNode node) {
+        return _membership.getSuspicionLevelOf(node.getUuid());
+    }
+
+    @Nonnull
+    public GossipMembership getMembership() {
+        return _membership;
+    }
+
+    @Override
+    public void setPingInterval(@Nonnull Duration pingInterval) {
+        super.setPingInterval(pingInterval);
+        _membership.setInterval(pingInterval);
+    }
+
+    @Nonnegative
+    public int getReceiveBufferSize() {
+        return _receiveBufferSize;
+    }
+
+    /**
+     * @param receiveBufferSize the size of the pooled buffers for received payloads. Larger payloads are not pooled.
+     */
+    public void setReceiveBufferSize(@Nonnegative final int receiveBufferSize) {
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() throws Exception {
+            _receiveBufferSize = receiveBufferSize;
+            return null;
+        }});
+    }
+
+    @Nonnegative
+    public int getMaximumNumberOfPooledReceiveBuffers() {
+        return _maximumNumberOfPooledReceiveBuffers;
+    }
+
+    /**
+     * @param maximumNumberOfPooledReceiveBuffers if <code>0</code> (the default) every received payload gets its own
+     *        buffer. Otherwise the payloads are stored in pooled buffers which are reused after the message was
+     *        handled. Handlers which keep received messages have to {@link ReceivedMessage#retain() retain} them.
+     */
+    public void setMaximumNumberOfPooledReceiveBuffers(@Nonnegative final int maximumNumberOfPooledReceiveBuffers) {
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() throws Exception {
+            _maximumNumberOfPooledReceiveBuffers = maximumNumberOfPooledReceiveBuffers;
+            return null;
+        }});
+    }
+
+    /**
+     * @return <code>null</code> if pooling of receive buffers is disabled or this channel is not initialized.
+     */
+    @Nullable
+    public ReceiveBufferPool getReceiveBufferPool() {
+        return _receiveBufferPool;
+    }
+
+    @Nonnegative
+    public int getMaxNumberOfIncomingConnections() {
+        return _maxNumberOfIncomingConnections;
+    }
+
+    public void setMaxNumberOfIncomingConnections(@Nonnegative int maxNumberOfIncomingConnections) {
+        _maxNumberOfIncomingConnections = maxNumberOfIncomingConnections;
+    }
+
+    @Override
+    protected void initInLock() throws Exception {
+        super.initInLock();
+        _membership.setInterval(getPingInterval());
+        _membership.setListener(new PresenceNotifier());
+        _receiveBufferPool = _maximumNumberOfPooledReceiveBuffers > 0 ? new ReceiveBufferPool(_receiveBufferSize, _maximumNumberOfPooledReceiveBuffers) : null;
+        _handlerExecutor = createHandlerExecutor();
+        final IoThread[] ioThreads = new IoThread[_numberOfIoThreads];
+        for (int i = 0; i < ioThreads.length; i++) {
+            ioThreads[i] = new IoThread(i);
+        }
+        if (_address != null) {
+            _in = ServerSocketChannel.open();
+            _in.socket().setReuseAddress(true);
+            _in.bind(_address);
+            _in.configureBlocking(false);
+            _in.register(ioThreads[0].getSelector(), OP_ACCEPT, _in);
+            LOG.info("Start to listen at " + _address.getAddress().getCanonicalHostName() + ":" + _address.getPort() + " for " + _service + "...");
+        }
+        // Publish the threads before they are started - the first accepted connection is already dispatched with them.
+        _ioThreads = ioThreads;
+        for (final IoThread ioThread : ioThreads) {
+            ioThread.start();
+        }
+        _selfAddresses.clear();
+        ping();
+
+        _pingingThread = new Thread(new Pinger(), toString() + ".Pinger");
+        _pingingThread.setDaemon(true);
+        _pingingThread.start();
+    }
+
+    @Override
+    protected void closeInLock() throws Exception {
+        try {
+            stop(_pingingThread);
+            closeQuietly(_in);
+            closeQuietly(_outboundConnections.values());
+            closeQuietly(_inboundConnections);
+            final IoThread[] ioThreads = _ioThreads;
+            if (ioThreads != null) {
+                stop(ioThreads);
+            }
+            final ThreadPoolExecutor handlerExecutor = _handlerExecutor;
+            if (handlerExecutor != null) {
+                handlerExecutor.shutdown();
+            }
+        } finally {
+            super.closeInLock();
+            _pingingThread = null;
+            _in = null;
+            _ioThreads = null;
+            _handlerExecutor = null;
+            _receiveBufferPool = null;
+            _membership.clear();
+        }
+    }
+
+    @GuardedBy("getLock()")
+    @Nonnull
+    protected ThreadPoolExecutor createHandlerExecutor() {
+        final AtomicInteger numberOfThreads = new AtomicInteger();
+        final ThreadPoolExecutor result = new ThreadPoolExecutor(_numberOfHandlerThreads, _numberOfHandlerThreads, 60, SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() { @Override public Thread newThread(@Nonnull Runnable runnable) {
+            final Thread thread = new Thread(runnable, NioTcpClusterChannel.this.toString() + ".Handler-" + numberOfThreads.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }});
+        result.allowCoreThreadTimeOut(true);
+        return result;
+    }
+
+    @GuardedBy("getLock()")
+    @Nullable
+    protected InetSocketAddress resolveAddress() {
+        final InetSocketAddress result;
+        if (_address != null) {
+            if (_networkInterface != null) {
+                final InetAddress address = _address.getAddress();
+                if (address.isAnyLocalAddress()) {
+                    result = new InetSocketAddress(findFirstAddressOf(_networkInterface), _address.getPort());
+                } else {
+                    assertThatContainsAddress(_networkInterface, address);
+                    result = _address;
+                }
+            } else {
+                result = _address;
+            }
+        } else {
+            result = null;
+        }
+        return result;
+    }
+
+    @Nonnull
+    protected IoThread[] getIoThreads() {
+        final IoThread[] ioThreads = _ioThreads;
+        if (ioThreads == null) {
+            throw new IllegalStateException("Init was not called yet.");
+        }
+        return ioThreads;
+    }
+
+    @Nonnull
+    protected IoThread nextIoThread() {
+        final IoThread[] ioThreads = getIoThreads();
+        return ioThreads[(_nextIoThread.getAndIncrement() & Integer.MAX_VALUE) % ioThreads.length];
+    }
+
+    /**
+     * Connects to all remote addresses which are not connected yet (and waits for at most
+     * {@link #getConnectionTimeout()} for the handshakes), closes the connections to addresses which are not longer
+     * remote addresses and sends a ping to all other ones. If {@link #isGossipEnabled() gossip} is enabled the nodes
+     * which take part in it are not pinged but a new round of the gossip is executed.
+     */
+    @Override
+    public void ping() {
+        final Collection<InetSocketAddress> remoteAddresses = _remoteAddresses;
+        final Set<InetSocketAddress> targets = remoteAddresses != null ? new HashSet<>(remoteAddresses) : Collections.<InetSocketAddress>emptySet();
+        for (final Entry<InetSocketAddress, NioTcpConnection> addressAndConnection : _outboundConnections.entrySet()) {
+            if (!targets.contains(addressAndConnection.getKey())) {
+                closeQuietly(addressAndConnection.getValue());
+            }
+        }
+        final long connectionTimeoutInMillis = _connectionTimeout.in(MILLISECONDS);
+        final ByteBuffer ping = frameOf(_listener.createPingMessage());
+        final List<NioTcpConnection> newConnections = new ArrayList<>();
+        for (final InetSocketAddress target : targets) {
+            if (!_selfAddresses.contains(target)) {
+                NioTcpConnection connection = _outboundConnections.get(target);
+                if (connection != null && !connection.isEstablished() && connection.getCreatedAt() + connectionTimeoutInMillis < currentTimeMillis()) {
+                    closeQuietly(connection);
+                    connection = null;
+                }
+                if (connection == null) {
+                    try {
+                        newConnections.add(connectTo(target));
+                    } catch (final IOException e) {
+                        LOG.info("Could not connect to " + target + ". Got: " + e.getMessage());
+                    }
+                } else if (connection.isEstablished() && !_membership.isGossipingWith(connection.getNode().getUuid())) {
+                    connection.offer(ping.duplicate());
+                }
+            }
+        }
+        recordPingSend();
+        try {
+            final long timeoutAtInMillis = currentTimeMillis() + connectionTimeoutInMillis;
+            for (final NioTcpConnection connection : newConnections) {
+                connection.awaitHandshake(Math.max(timeoutAtInMillis - currentTimeMillis(), 0), MILLISECONDS);
+            }
+        } catch (final InterruptedException ignored) {
+            currentThread().interrupt();
+        }
+        if (_membership.isEnabled()) {
+            gossip();
+        }
+    }
+
+    /**
+     * Executes one round of the gossip: Sends the digest of the {@link #getMembership() membership} to some randomly
+     * selected nodes and informs the handlers about nodes which became available or unavailable.
+     */
+    protected void gossip() {
+        final List<NioTcpNode> candidates = new ArrayList<>();
+        for (final NioTcpConnection connection : _outboundConnections.values()) {
+            final NioTcpNode node = connection.getNode();
+            if (node != null && connection.isEstablished()) {
+                candidates.add(node);
+            }
+        }
+        final List<NioTcpNode> targets = _membership.selectTargets(candidates);
+        if (!targets.isEmpty()) {
+            final ByteBuffer digest = frameOf(_membership.createDigest());
+            for (final NioTcpNode target : targets) {
+                target.getConnection().offer(digest.duplicate());
+            }
+        }
+        _membership.evaluate();
+    }
+
+    @Nonnull
+    protected NioTcpConnection connectTo(@Nonnull InetSocketAddress target) throws IOException {
+        final SocketChannel channel = SocketChannel.open();
+        boolean success = false;
+        try {
+            channel.configureBlocking(false);
+            channel.socket().setKeepAlive(true);
+            channel.socket().setReuseAddress(true);
+            channel.connect(target);
+            final NioTcpConnection result = new NioTcpConnection(channel, getUuid(), true, _sendingQueueCapacity, _receivingQueueCapacity, _receiveBufferPool, _handlerExecutor, _listener);
+            _outboundConnections.put(target, result);
+            nextIoThread().register(result);
+            success = true;
+            return result;
+        } finally {
+            if (!success) {
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    @Override
+    protected void readPing(@Nonnull ReceivedMessage<TcpNode> message) {
+        // The connection handling is done by NioTcpConnection
+        _compressor.recordCapabilitiesOf(message);
+        _membership.recordCapabilitiesOf(message);
+    }
+
+    @Override
+    protected void readGossip(@Nonnull ReceivedMessage<TcpNode> message) throws IOException {
+        _membership.merge(message);
+    }
+
+    @Override
+    public void send(@Nonnull Message message) throws IllegalArgumentException {
+        try {
+            getIoThreads();
+            final ByteBuffer frame = frameOf(message);
+            final Prepared prepared = _compressor.isEnabled() ? _compressor.prepare(message) : null;
+            final boolean mayWait = !(currentThread() instanceof IoThread);
+            final List<Write> writes = new ArrayList<>();
+            for (final NioTcpConnection connection : _outboundConnections.values()) {
+                if (connection.isEstablished()) {
+                    final Write write;
+                    if (!mayWait || _dropMessagesIfQueueIsFull) {
+                        write = connection.offer(frameFor(connection, message, frame, prepared));
+                    } else {
+                        write = connection.put(frameFor(connection, message, frame, prepared));
+                    }
+                    if (write != null) {
+                        writes.add(write);
+                    }
+                }
+            }
+            if (_blocking && mayWait) {
+                for (final Write write : writes) {
+                    write.await();
+                }
+            }
+            recordMessageSend();
+        } catch (final InterruptedException ignored) {
+            currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void send(@Nonnull Message message, @Nonnegative long timeout, @Nonnull TimeUnit unit) throws IllegalArgumentException {
+        try {
+            getIoThreads();
+            final long timeoutAtInMillis = currentTimeMillis() + unit.toMillis(timeout);
+            final ByteBuffer frame = frameOf(message);
+            final Prepared prepared = _compressor.isEnabled() ? _compressor.prepare(message) : null;
+            final boolean mayWait = !(currentThread() instanceof IoThread);
+            final List<Write> writes = new ArrayList<>();
+            for (final NioTcpConnection connection : _outboundConnections.values()) {
+                if (connection.isEstablished()) {
+                    final Write write;
+                    if (!mayWait || _dropMessagesIfQueueIsFull) {
+                        write = connection.offer(frameFor(connection, message, frame, prepared));
+                    } else {
+                        write = connection.put(frameFor(connection, message, frame, prepared), timeoutAtInMillis - currentTimeMillis(), MILLISECONDS);
+                    }
+                    if (write != null) {
+                        writes.add(write);
+                    }
+                }
+            }
+            if (_blocking && mayWait) {
+                for (final Write write : writes) {
+                    final long currentTimeoutInMillis = timeoutAtInMillis - currentTimeMillis();
+                    if (currentTimeoutInMillis <= 0 || !write.await(currentTimeoutInMillis, MILLISECONDS)) {
+                        throw new TimeoutException();
+                    }
+                }
+            }
+            recordMessageSend();
+        } catch (final InterruptedException ignored) {
+            currentThread().interrupt();
+        } catch (final TimeoutException e) {
+            throw new RuntimeException("It was not possible to send " + message + ".", e);
+        }
+    }
+
+    @Nonnull
+    protected ByteBuffer frameFor(@Nonnull NioTcpConnection connection, @Nonnull Message message, @Nonnull ByteBuffer frame, @Nullable Prepared prepared) {
+        final Message toSend = prepared != null ? prepared.getFor(connection.getNode()) : message;
+        return toSend != message ? frameOf(toSend) : frame.duplicate();
+    }
+
+    @Override
+    public Integer getSendingQueueSize() {
+        Integer result = null;
+        if (isConnected()) {
+            for (final NioTcpConnection connection : _outboundConnections.values()) {
+                if (connection.isEstablished()) {
+                    final int size = connection.getQueueSize();
+                    if (result == null || result < size) {
+                        result = size;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return _ioThreads != null;
+    }
+
+    @Nonnull
+    @Override
+    public LocalTcpNode getLocalNode() {
+        return new LocalTcpNode(getUuid(), _address);
+    }
+
+    @Nonnull
+    @Override
+    public Set<? extends TcpNode> getNodes() {
+        final Map<UUID, TcpNodeInfo> uuidToNode = new HashMap<>();
+        for (final NioTcpConnection connection : _outboundConnections.values()) {
+            final NioTcpNode node = connection.getNode();
+            if (node != null) {
+                infoFor(node, uuidToNode).setOutbound(node);
+            }
+        }
+        for (final NioTcpConnection connection : _inboundConnections) {
+            final NioTcpNode node = connection.getNode();
+            if (node != null) {
+                infoFor(node, uuidToNode).setInbound(node);
+            }
+        }
+        final Set<TcpNodeInfo> info = new TreeSet<>(ADDRESS_BASED_COMPARATOR);
+        for (final TcpNodeInfo candidate : uuidToNode.values()) {
+            if (_membership.isAvailable(candidate.getUuid())) {
+                info.add(candidate);
+            }
+        }
+        return unmodifiableSet(info);
+    }
+
+    @Nonnull
+    protected TcpNodeInfo infoFor(@Nonnull NioTcpNode node, @Nonnull Map<UUID, TcpNodeInfo> uuidToNode) {
+        final UUID uuid = node.getUuid();
+        TcpNodeInfo result = uuidToNode.get(uuid);
+        if (result == null) {
+            result = new TcpNodeInfo(uuid, node.getAddress());
+            uuidToNode.put(uuid, result);
+        }
+        return result;
+    }
+
+    protected void accept(@Nonnull ServerSocketChannel in) throws IOException {
+        SocketChannel channel = in.accept();
+        while (channel != null) {
+            boolean success = false;
+            try {
+                if (_inboundConnections.size() < _maxNumberOfIncomingConnections) {
+                    channel.configureBlocking(false);
+                    final NioTcpConnection connection = new NioTcpConnection(channel, getUuid(), false, _sendingQueueCapacity, _receivingQueueCapacity, _receiveBufferPool, _handlerExecutor, _listener);
+                    _inboundConnections.add(connection);
+                    nextIoThread().register(connection);
+                    success = true;
+                } else {
+                    LOG.warn("Dropping incoming connection from " + channel.socket().getRemoteSocketAddress() + " because the maximum of " + _maxNumberOfIncomingConnections + " is reach.");
+                }
+            } finally {
+                if (!success) {
+                    closeQuietly(channel);
+                }
+            }
+            channel = in.accept();
+        }
+    }
+
+    @Override
+    public String toString() {
+        final String name = getName();
+        return "NioTcp(" + getService() + "/" + (name != null ? name : getUuid()) + ")";
+    }
+
+    protected class IoThread extends Thread implements Executor {
+
+        private final Selector _selector;
+        private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<>();
+
+        public IoThread(@Nonnegative int number) throws IOException {
+            _selector = Selector.open();
+            setName(NioTcpClusterChannel.this.toString() + ".Io-" + number);
+            setDaemon(true);
+        }
+
+        @Nonnull
+        public Selector getSelector() {
+            return _selector;
+        }
+
+        @Override
+        public void execute(@Nonnull Runnable task) {
+            _tasks.add(task);
+            _selector.wakeup();
+        }
+
+        public void register(@Nonnull final NioTcpConnection connection) {
+            execute(new Runnable() { @Override public void run() {
+                try {
+                    connection.register(_selector, IoThread.this);
+                } catch (final IOException e) {
+                    LOG.info("Could not register " + connection + ". Got: " + e.getMessage());
+                    closeQuietly(connection);
+                }
+            }});
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!currentThread().isInterrupted()) {
+                    _selector.select();
+                    Runnable task = _tasks.poll();
+                    while (task != null) {
+                        task.run();
+                        task = _tasks.poll();
+                    }
+                    final Iterator<SelectionKey> i = _selector.selectedKeys().iterator();
+                    while (i.hasNext()) {
+                        final SelectionKey key = i.next();
+                        i.remove();
+                        handle(key);
+                    }
+                }
+            } catch (final ClosedSelectorException ignored) {
+            } catch (final Exception e) {
+                LOG.error("Got unexpected error while handling connections. " + this + " is dead now.", e);
+            } finally {
+                try {
+                    for (final SelectionKey key : _selector.keys()) {
+                        closeQuietly(key.channel());
+                        if (key.attachment() instanceof NioTcpConnection) {
+                            closeQuietly((NioTcpConnection) key.attachment());
+                        }
+                    }
+                } catch (final ClosedSelectorException ignored) {
+                } finally {
+                    closeQuietly(_selector);
+                }
+            }
+        }
+
+        protected void handle(@Nonnull SelectionKey key) {
+            final Object attachment = key.attachment();
+            if (attachment instanceof ServerSocketChannel) {
+                try {
+                    accept((ServerSocketChannel) attachment);
+                } catch (final IOException e) {
+                    if (key.channel().isOpen()) {
+                        LOG.warn("Got error while accepting an incoming connection.", e);
+                    }
+                }
+            } else if (attachment instanceof NioTcpConnection) {
+                final NioTcpConnection connection = (NioTcpConnection) attachment;
+                try {
+                    if (key.isValid() && key.isConnectable()) {
+                        connection.finishConnect();
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        connection.read();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.write();
+                    }
+                } catch (final CancelledKeyException ignored) {
+                    closeQuietly(connection);
+                } catch (final IOException e) {
+                    if (!connection.isClosed() && connection.isEstablished()) {
+                        LOG.info("Lost connection " + connection + ". Got: " + e.getMessage());
+                    }
+                    closeQuietly(connection);
+                } catch (final Exception e) {
+                    LOG.warn("Got unexpected error while handling connection " + connection + ". Close this connection now.", e);
+                    closeQuietly(connection);
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return getName();
+        }
+    }
+
+}
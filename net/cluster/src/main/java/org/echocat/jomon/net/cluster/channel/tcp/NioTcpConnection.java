@@ -0,0 +1,622 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel.tcp;
+
+import org.echocat.jomon.net.cluster.channel.Message;
+import org.echocat.jomon.net.cluster.channel.ReceiveBufferPool;
+import org.echocat.jomon.net.cluster.channel.ReceivedMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.Math.min;
+import static java.lang.System.currentTimeMillis;
+import static java.nio.channels.SelectionKey.*;
+import static org.echocat.jomon.runtime.util.ResourceUtils.closeQuietly;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>One non blocking connection of a {@link NioTcpClusterChannel}. It speaks the same protocol as
+ * {@link InboundTcpWorker} and {@link OutboundTcpHandler}: The accepting side writes its UUID first, the connecting side
+ * answers with its own UUID and after that the connecting side writes frames of <code>command:byte length:int data</code>.</p>
+ * <p>{@link #read()}, {@link #write()} and {@link #finishConnect()} are only called by the I/O thread this connection
+ * is registered at. All other methods could be called by any thread.</p>
+ * <p>Received messages are passed to the {@link Listener} by the given handler executor in the order they were received.
+ * If more messages are waiting for it than the receiving queue capacity allows this connection stops to read from the
+ * socket until the handlers caught up.</p>
+ */
+@ThreadSafe
+public class NioTcpConnection implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NioTcpConnection.class);
+
+    public static final int UUID_LENGTH = 16;
+    public static final int FRAME_HEADER_LENGTH = 5;
+    public static final int READ_BUFFER_SIZE = 8192;
+    public static final int MAXIMUM_BUFFERS_PER_WRITE = 64;
+
+    private final SocketChannel _channel;
+    private final UUID _localUuid;
+    private final boolean _outbound;
+    private final int _sendingQueueCapacity;
+    private final int _receivingQueueCapacity;
+    private final ReceiveBufferPool _bufferPool;
+    private final Executor _handlerExecutor;
+    private final Listener _listener;
+    private final long _createdAt = currentTimeMillis();
+
+    private final Lock _lock = new ReentrantLock();
+    private final Condition _notFull = _lock.newCondition();
+    @GuardedBy("_lock")
+    private final Deque<Write> _writes = new ArrayDeque<>();
+    @GuardedBy("_lock")
+    private final Deque<ReceivedMessage<TcpNode>> _received = new ArrayDeque<>();
+    private final CountDownLatch _handshake = new CountDownLatch(1);
+    private final AtomicBoolean _closed = new AtomicBoolean();
+    private final Runnable _enableWrite = new Runnable() { @Override public void run() {
+        final SelectionKey key = _key;
+        if (key != null && key.isValid()) {
+            key.interestOps(key.interestOps() | OP_WRITE);
+        }
+    }};
+    private final Runnable _resumeRead = new Runnable() { @Override public void run() {
+        resumeRead();
+    }};
+    private final Runnable _dispatch = new Runnable() { @Override public void run() {
+        dispatch();
+    }};
+
+    private final ByteBuffer _in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private byte _command;
+    private byte[] _data;
+    private int _dataOffset;
+    private int _dataLength;
+
+    @GuardedBy("_lock")
+    private Executor _io;
+    @GuardedBy("_lock")
+    private boolean _dispatching;
+    private volatile boolean _readSuspended;
+    private volatile SelectionKey _key;
+    private volatile NioTcpNode _node;
+    private volatile boolean _self;
+
+    public NioTcpConnection(@Nonnull SocketChannel channel, @Nonnull UUID localUuid, boolean outbound, @Nonnegative int sendingQueueCapacity, @Nonnegative int receivingQueueCapacity, @Nonnull Executor handlerExecutor, @Nonnull Listener listener) {
+        this(channel, localUuid, outbound, sendingQueueCapacity, receivingQueueCapacity, null, handlerExecutor, listener);
+    }
+
+    /**
+     * @param bufferPool if not <code>null</code> the payloads of the received messages are stored in buffers of this
+     *                   pool. These buffers are reused after the message was handled - see {@link ReceivedMessage#retain()}.
+     * @param handlerExecutor passes the received messages to the listener. It must not be the I/O thread of this connection.
+     */
+    public NioTcpConnection(@Nonnull SocketChannel channel, @Nonnull UUID localUuid, boolean outbound, @Nonnegative int sendingQueueCapacity, @Nonnegative int receivingQueueCapacity, @Nullable ReceiveBufferPool bufferPool, @Nonnull Executor handlerExecutor, @Nonnull Listener listener) {
+        _channel = channel;
+        _bufferPool = bufferPool;
+        _handlerExecutor = handlerExecutor;
+        _localUuid = localUuid;
+        _outbound = outbound;
+        _sendingQueueCapacity = sendingQueueCapacity > 0 ? sendingQueueCapacity : 1;
+        _receivingQueueCapacity = receivingQueueCapacity > 0 ? receivingQueueCapacity : 1;
+        _listener = listener;
+        if (!outbound) {
+            _writes.add(new Write(uuidOf(localUuid), false));
+        }
+    }
+
+    @Nonnull
+    public static ByteBuffer frameOf(@Nonnull Message message) {
+        final ByteBuffer result = ByteBuffer.allocate(FRAME_HEADER_LENGTH + message.getLength());
+        result.put(message.getCommand());
+        result.putInt(message.getLength());
+        result.put(message.getData(), message.getOffset(), message.getLength());
+        result.flip();
+        return result;
+    }
+
+    @Nonnull
+    public static ByteBuffer uuidOf(@Nonnull UUID uuid) {
+        final ByteBuffer result = ByteBuffer.allocate(UUID_LENGTH);
+        result.putLong(uuid.getMostSignificantBits());
+        result.putLong(uuid.getLeastSignificantBits());
+        result.flip();
+        return result;
+    }
+
+    @Nonnull
+    public SocketChannel getChannel() {
+        return _channel;
+    }
+
+    public boolean isOutbound() {
+        return _outbound;
+    }
+
+    /**
+     * @return <code>true</code> if the other side of this connection turned out to be the local channel itself.
+     */
+    public boolean isSelf() {
+        return _self;
+    }
+
+    public boolean isClosed() {
+        return _closed.get();
+    }
+
+    public boolean isEstablished() {
+        return _node != null && !isClosed();
+    }
+
+    /**
+     * @return <code>null</code> as long as the handshake is not done.
+     */
+    @Nullable
+    public NioTcpNode getNode() {
+        return _node;
+    }
+
+    @Nonnegative
+    public long getCreatedAt() {
+        return _createdAt;
+    }
+
+    @Nonnegative
+    public int getQueueSize() {
+        _lock.lock();
+        try {
+            return _writes.size();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of received messages which are not handled yet.
+     */
+    @Nonnegative
+    public int getReceivingQueueSize() {
+        _lock.lock();
+        try {
+            return _received.size();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    public boolean awaitHandshake(@Nonnegative long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+        return _handshake.await(timeout, unit) && isEstablished();
+    }
+
+    public void register(@Nonnull Selector selector, @Nonnull Executor io) throws IOException {
+        _lock.lock();
+        try {
+            final int ops;
+            if (_channel.isConnectionPending()) {
+                ops = OP_CONNECT;
+            } else if (_writes.isEmpty()) {
+                ops = OP_READ;
+            } else {
+                ops = OP_READ | OP_WRITE;
+            }
+            _key = _channel.register(selector, ops, this);
+            _io = io;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    public void finishConnect() throws IOException {
+        if (_channel.finishConnect()) {
+            _key.interestOps(OP_READ);
+        }
+    }
+
+    public void read() throws IOException {
+        if (_channel.read(_in) < 0) {
+            throw new EOFException();
+        }
+        readFrames();
+    }
+
+    protected void readFrames() throws IOException {
+        _in.flip();
+        try {
+            if (_node == null) {
+                readHandshake();
+            }
+            if (_node != null) {
+                // noinspection StatementWithEmptyBody
+                while (!_readSuspended && readFrame()) {}
+            }
+        } finally {
+            _in.compact();
+        }
+    }
+
+    /**
+     * Called by the I/O thread after the handlers caught up. The frames which are already buffered are read at once
+     * because there may be no further data which wakes up the selector.
+     */
+    protected void resumeRead() {
+        final SelectionKey key = _key;
+        if (key != null && key.isValid() && !isClosed()) {
+            try {
+                key.interestOps(key.interestOps() | OP_READ);
+                readFrames();
+            } catch (final CancelledKeyException ignored) {
+                close();
+            } catch (final IOException e) {
+                LOG.info("Lost connection " + this + ". Got: " + e.getMessage());
+                close();
+            }
+        }
+    }
+
+    protected void readHandshake() throws IOException {
+        if (_in.remaining() >= UUID_LENGTH) {
+            final UUID uuid = new UUID(_in.getLong(), _in.getLong());
+            if (_localUuid.equals(uuid)) {
+                // Ignore a connection of myself to me
+                _self = true;
+                close();
+            } else {
+                if (_outbound) {
+                    force(uuidOf(_localUuid), false);
+                    force(frameOf(_listener.createPingMessage()), true);
+                }
+                _node = new NioTcpNode(uuid, this);
+                _handshake.countDown();
+            }
+        }
+    }
+
+    protected boolean readFrame() throws IOException {
+        boolean result = false;
+        if (_data == null && _in.remaining() >= FRAME_HEADER_LENGTH) {
+            _command = _in.get();
+            final int length = _in.getInt();
+            if (length < 0) {
+                throw new IOException("Received illegal packet. Leading packet is not the length of the following content.");
+            }
+            _data = _bufferPool != null ? _bufferPool.acquire(length) : new byte[length];
+            _dataOffset = 0;
+            _dataLength = length;
+        }
+        if (_data != null) {
+            final int length = min(_dataLength - _dataOffset, _in.remaining());
+            _in.get(_data, _dataOffset, length);
+            _dataOffset += length;
+            if (_dataOffset == _dataLength) {
+                final NioTcpNode node = _node;
+                final ReceivedMessage<TcpNode> message = new ReceivedMessage<TcpNode>(_command, _data, 0, _dataLength, node, _bufferPool);
+                _data = null;
+                receive(message);
+                node.recordInbound();
+                result = true;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Queues the given message for the handler executor. If the receiving queue is full reading from the socket is
+     * suspended until the handlers caught up.
+     */
+    protected void receive(@Nonnull ReceivedMessage<TcpNode> message) {
+        final boolean startDispatching;
+        _lock.lock();
+        try {
+            _received.add(message);
+            if (_received.size() >= _receivingQueueCapacity) {
+                _readSuspended = true;
+                _key.interestOps(_key.interestOps() & ~OP_READ);
+            }
+            startDispatching = !_dispatching;
+            _dispatching = true;
+        } finally {
+            _lock.unlock();
+        }
+        if (startDispatching) {
+            try {
+                _handlerExecutor.execute(_dispatch);
+            } catch (final RejectedExecutionException ignored) {
+                // The channel is closing - nobody will handle these messages anymore.
+                dropReceived();
+            }
+        }
+    }
+
+    /**
+     * Passes all queued messages to the listener. An exception of a handler is logged and does not affect the other
+     * messages or this connection.
+     */
+    protected void dispatch() {
+        ReceivedMessage<TcpNode> message = pollReceived();
+        while (message != null) {
+            try {
+                _listener.onMessage(message);
+            } catch (final Exception e) {
+                LOG.warn("Got unexpected error while handling " + message + " received over " + this + ".", e);
+            }
+            message = pollReceived();
+        }
+    }
+
+    @Nullable
+    protected ReceivedMessage<TcpNode> pollReceived() {
+        _lock.lock();
+        try {
+            final ReceivedMessage<TcpNode> result = _received.poll();
+            if (result == null) {
+                _dispatching = false;
+            }
+            if (_readSuspended && _received.size() < _receivingQueueCapacity) {
+                _readSuspended = false;
+                _io.execute(_resumeRead);
+            }
+            return result;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    protected void dropReceived() {
+        _lock.lock();
+        try {
+            for (final ReceivedMessage<TcpNode> message : _received) {
+                message.release();
+            }
+            _received.clear();
+            _dispatching = false;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    public void write() throws IOException {
+        final ByteBuffer[] buffers;
+        _lock.lock();
+        try {
+            buffers = new ByteBuffer[min(_writes.size(), MAXIMUM_BUFFERS_PER_WRITE)];
+            int i = 0;
+            for (final Write write : _writes) {
+                if (i >= buffers.length) {
+                    break;
+                }
+                buffers[i++] = write.getBuffer();
+            }
+        } finally {
+            _lock.unlock();
+        }
+        if (buffers.length > 0) {
+            _channel.write(buffers);
+        }
+        _lock.lock();
+        try {
+            final NioTcpNode node = _node;
+            int numberOfFrames = 0;
+            Write write = _writes.peek();
+            while (write != null && !write.getBuffer().hasRemaining()) {
+                _writes.poll();
+                write.complete();
+                if (write.isFrame()) {
+                    numberOfFrames++;
+                }
+                write = _writes.peek();
+            }
+            if (numberOfFrames > 0 && node != null) {
+                node.recordOutbound(numberOfFrames);
+            }
+            _notFull.signalAll();
+            if (_writes.isEmpty()) {
+                _key.interestOps(_key.interestOps() & ~OP_WRITE);
+            }
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Queues the given frame if there is space left in the queue of this connection.
+     *
+     * @return <code>null</code> if the queue is full or the connection is closed.
+     */
+    @Nullable
+    public Write offer(@Nonnull ByteBuffer frame) {
+        final Write write = new Write(frame, true);
+        _lock.lock();
+        try {
+            return !isClosed() && _writes.size() < _sendingQueueCapacity ? enqueue(write) : null;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Queues the given frame and waits until there is space left in the queue of this connection.
+     *
+     * @return <code>null</code> if the connection was closed.
+     */
+    @Nullable
+    public Write put(@Nonnull ByteBuffer frame) throws InterruptedException {
+        final Write write = new Write(frame, true);
+        _lock.lockInterruptibly();
+        try {
+            while (!isClosed() && _writes.size() >= _sendingQueueCapacity) {
+                _notFull.await();
+            }
+            return !isClosed() ? enqueue(write) : null;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Queues the given frame and waits until there is space left in the queue of this connection.
+     *
+     * @return <code>null</code> if the connection was closed.
+     */
+    @Nullable
+    public Write put(@Nonnull ByteBuffer frame, @Nonnegative long timeout, @Nonnull TimeUnit unit) throws InterruptedException, TimeoutException {
+        final Write write = new Write(frame, true);
+        final long timeoutAtInMillis = currentTimeMillis() + unit.toMillis(timeout);
+        _lock.lockInterruptibly();
+        try {
+            while (!isClosed() && _writes.size() >= _sendingQueueCapacity) {
+                final long currentTimeoutInMillis = timeoutAtInMillis - currentTimeMillis();
+                if (currentTimeoutInMillis <= 0 || !_notFull.await(currentTimeoutInMillis, TimeUnit.MILLISECONDS)) {
+                    throw new TimeoutException();
+                }
+            }
+            return !isClosed() ? enqueue(write) : null;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Queues the given buffer regardless of the capacity of the queue. This is only used for the handshake which is
+     * written by the I/O thread itself.
+     *
+     * @return <code>null</code> if the connection was closed.
+     */
+    @Nullable
+    protected Write force(@Nonnull ByteBuffer buffer, boolean frame) {
+        final Write write = new Write(buffer, frame);
+        _lock.lock();
+        try {
+            return !isClosed() ? enqueue(write) : null;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    @GuardedBy("_lock")
+    @Nonnull
+    protected Write enqueue(@Nonnull Write write) {
+        _writes.add(write);
+        if (_writes.size() == 1 && _io != null) {
+            _io.execute(_enableWrite);
+        }
+        return write;
+    }
+
+    @Override
+    public void close() {
+        if (_closed.compareAndSet(false, true)) {
+            try {
+                closeQuietly(_channel);
+            } finally {
+                try {
+                    _lock.lock();
+                    try {
+                        for (final Write write : _writes) {
+                            write.complete();
+                        }
+                        _writes.clear();
+                        _notFull.signalAll();
+                    } finally {
+                        _lock.unlock();
+                    }
+                } finally {
+                    _handshake.countDown();
+                    _listener.onClose(this);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        final NioTcpNode node = _node;
+        final SocketAddress address = _channel.socket().getRemoteSocketAddress();
+        return (_outbound ? ">" : "<") + "(" + (node != null ? node.getUuid() + "@" : "") + address + ")";
+    }
+
+    public static interface Listener {
+        public void onMessage(@Nonnull ReceivedMessage<TcpNode> message) throws IOException;
+        @Nonnull
+        public Message createPingMessage();
+        public void onClose(@Nonnull NioTcpConnection connection);
+    }
+
+    /**
+     * A queued write. It is completed if its buffer was written or if the connection was closed before.
+     */
+    public static class Write {
+
+        private final ByteBuffer _buffer;
+        private final boolean _frame;
+        private final CountDownLatch _done = new CountDownLatch(1);
+
+        public Write(@Nonnull ByteBuffer buffer, boolean frame) {
+            _buffer = buffer;
+            _frame = frame;
+        }
+
+        @Nonnull
+        public ByteBuffer getBuffer() {
+            return _buffer;
+        }
+
+        public boolean isFrame() {
+            return _frame;
+        }
+
+        public boolean isDone() {
+            return _done.getCount() == 0;
+        }
+
+        public void await() throws InterruptedException {
+            _done.await();
+        }
+
+        public boolean await(@Nonnegative long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+            return _done.await(timeout, unit);
+        }
+
+        protected void complete() {
+            _done.countDown();
+        }
+
+    }
+
+}
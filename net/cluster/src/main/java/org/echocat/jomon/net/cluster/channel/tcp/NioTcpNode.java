@@ -0,0 +1,51 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel.tcp;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.UUID;
+
+import static org.echocat.jomon.runtime.util.ResourceUtils.closeQuietly;
+
+public class NioTcpNode extends RemoteTcpNode {
+
+    private final NioTcpConnection _connection;
+
+    public NioTcpNode(@Nonnull UUID id, @Nonnull NioTcpConnection connection) throws IOException {
+        super(id, connection.getChannel().socket());
+        _connection = connection;
+    }
+
+    @Nonnull
+    public NioTcpConnection getConnection() {
+        return _connection;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return super.isConnected() && !_connection.isClosed();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            closeQuietly(_connection);
+        } finally {
+            super.close();
+        }
+    }
+
+}
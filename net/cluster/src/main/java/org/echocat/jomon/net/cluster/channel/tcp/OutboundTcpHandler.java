@@ -15,7 +15,11 @@
 package org.echocat.jomon.net.cluster.channel.tcp;
 
 import org.echocat.jomon.net.service.SrvEntryBasedServicesManager;
+import org.echocat.jomon.net.cluster.channel.GossipMembership;
 import org.echocat.jomon.net.cluster.channel.Message;
+import org.echocat.jomon.net.cluster.channel.MessageCompressor;
+import org.echocat.jomon.net.cluster.channel.MessageCompressor.Compressed;
+import org.echocat.jomon.net.cluster.channel.MessageCompressor.Prepared;
 import org.echocat.jomon.runtime.util.Duration;
 import org.echocat.jomon.runtime.util.ServiceTemporaryUnavailableException;
 
@@ -28,6 +32,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.*;
 import java.util.*;
+import java.util.Map.Entry;
 import java.util.concurrent.*;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -38,13 +43,15 @@ import static java.lang.Thread.currentThread;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.echocat.jomon.net.Protocol.tcp;
 import static org.echocat.jomon.net.cluster.channel.ByteUtils.*;
-import static org.echocat.jomon.net.cluster.channel.ClusterChannelConstants.pingCommand;
 import static org.echocat.jomon.runtime.concurrent.ThreadUtils.stop;
 import static org.echocat.jomon.runtime.util.ResourceUtils.closeQuietly;
 
 @ThreadSafe
 public class OutboundTcpHandler extends SrvEntryBasedServicesManager<InetSocketAddress, OutboundTcpNode> {
 
+    protected static final int FRAME_HEADER_LENGTH = 5;
+    public static final String DEFAULT_LANE_NAME = "default";
+
     private final Map<InetSocketAddress, OutboundTcpNode> _addressToNode = new WeakHashMap<>();
     private final Map<OutboundTcpNode, Sender> _nodeToSender = new ConcurrentHashMap<>();
 
@@ -56,6 +63,11 @@ public class OutboundTcpHandler extends SrvEntryBasedServicesManager<InetSocketA
 
     private Duration _connectionTimeout = new Duration("2s");
     private Duration _soTimeout = new Duration("30s");
+    private volatile int _maximumBatchSize;
+    private volatile Duration _maximumLinger = new Duration(0);
+    private volatile MessageCompressor _compressor;
+    private volatile List<SendingLane> _sendingLanes = Collections.emptyList();
+    private volatile GossipMembership _membership;
 
     public OutboundTcpHandler(@Nonnull String service, @Nonnull UUID uuid, @Nonnegative int queuePerNodeCapacity, @Nullable String name, boolean waitForSendFinished, boolean dropMessagesIfQueueIsFull) {
         super(tcp, service);
@@ -85,15 +97,84 @@ public class OutboundTcpHandler extends SrvEntryBasedServicesManager<InetSocketA
         _soTimeout = soTimeout;
     }
 
+    /**
+     * @return the maximum number of bytes the {@link Sender} of one node collects from its queue to write them at once.
+     *         If <code>0</code> every message is written on its own.
+     */
+    @Nonnegative
+    public int getMaximumBatchSize() {
+        return _maximumBatchSize;
+    }
+
+    public void setMaximumBatchSize(@Nonnegative int maximumBatchSize) {
+        _maximumBatchSize = maximumBatchSize;
+    }
+
+    /**
+     * @return how long the {@link Sender} of one node waits for further messages before a batch which is not full is
+     *         written. If <code>0</code> only messages which are already queued are written together.
+     */
+    @Nonnull
+    public Duration getMaximumLinger() {
+        return _maximumLinger;
+    }
+
+    public void setMaximumLinger(@Nonnull Duration maximumLinger) {
+        _maximumLinger = maximumLinger;
+    }
+
+    @Nonnull
+    public List<SendingLane> getSendingLanes() {
+        return _sendingLanes;
+    }
+
+    /**
+     * @param sendingLanes the lanes every node gets in addition to the default lane. This is only applied to nodes
+     *                     which are connected after this call.
+     */
+    public void setSendingLanes(@Nullable List<SendingLane> sendingLanes) {
+        _sendingLanes = sendingLanes != null ? Collections.unmodifiableList(new ArrayList<>(sendingLanes)) : Collections.<SendingLane>emptyList();
+    }
+
+    @Nullable
+    public MessageCompressor getCompressor() {
+        return _compressor;
+    }
+
+    /**
+     * @param compressor if not <code>null</code> messages are compressed by it for all nodes which support this.
+     */
+    public void setCompressor(@Nullable MessageCompressor compressor) {
+        _compressor = compressor;
+    }
+
+    @Nullable
+    public GossipMembership getMembership() {
+        return _membership;
+    }
+
+    /**
+     * Nodes which are judged by the given membership are not longer pinged by {@link #sendPing()} - only new connections
+     * are pinged to announce the capabilities of this node.
+     */
+    public void setMembership(@Nullable GossipMembership membership) {
+        _membership = membership;
+    }
+
     @Override
     protected OutboundTcpNode tryGetOutputFor(@Nonnull InetSocketAddress original, @Nonnull InetSocketAddress target, @Nonnull State oldState) throws Exception {
         synchronized (this) {
             OutboundTcpNode node = _addressToNode.get(target);
+            final boolean pingRequired;
             if (node == null || !node.isConnected()) {
                 node = createNewNodeFor(target);
                 _addressToNode.put(target, node);
+                pingRequired = true;
+            } else {
+                final GossipMembership membership = _membership;
+                pingRequired = membership == null || !membership.isGossipingWith(node.getUuid());
             }
-            if (node != null) {
+            if (node != null && pingRequired) {
                 boolean success = false;
                 try {
                     sendUnsafe(createPingMessage(), node);
@@ -179,11 +260,12 @@ public class OutboundTcpHandler extends SrvEntryBasedServicesManager<InetSocketA
     public void send(@Nonnull Message message) throws IOException, InterruptedException {
         final Object[] outputs = getOutputs();
         final Set<SendingTask> tasks = _waitForSendFinished ? new HashSet<SendingTask>(outputs.length) : null;
+        final Prepared prepared = prepare(message);
         for (final Object output : outputs) {
             // noinspection SuspiciousMethodCalls
             final Sender sender = _nodeToSender.get(output);
             if (sender != null) {
-                final SendingTask task = sender.submit(message);
+                final SendingTask task = sender.submit(messageFor(message, prepared, (OutboundTcpNode) output));
                 if (task != null && tasks != null) {
                     tasks.add(task);
                 }
@@ -204,13 +286,14 @@ public class OutboundTcpHandler extends SrvEntryBasedServicesManager<InetSocketA
         final long timeoutAtInMillis = currentTimeMillis() + unit.toMillis(timeout);
         final Object[] outputs = getOutputs();
         final Set<SendingTask> tasks = _waitForSendFinished ? new HashSet<SendingTask>(outputs.length) : null;
+        final Prepared prepared = prepare(message);
         for (final Object output : outputs) {
             // noinspection SuspiciousMethodCalls
             final Sender sender = _nodeToSender.get(output);
             if (sender != null) {
                 final long currentTimeoutInMillis = timeoutAtInMillis - currentTimeMillis();
                 if (currentTimeoutInMillis > 0) {
-                    final SendingTask task = sender.submit(message, currentTimeoutInMillis, MILLISECONDS);
+                    final SendingTask task = sender.submit(messageFor(message, prepared, (OutboundTcpNode) output), currentTimeoutInMillis, MILLISECONDS);
                     if (task != null && tasks != null) {
                         tasks.add(task);
                     }
@@ -235,6 +318,33 @@ public class OutboundTcpHandler extends SrvEntryBasedServicesManager<InetSocketA
         }
     }
 
+    @Nullable
+    protected Prepared prepare(@Nonnull Message message) {
+        final MessageCompressor compressor = _compressor;
+        return compressor != null && compressor.isEnabled() ? compressor.prepare(message) : null;
+    }
+
+    @Nonnull
+    protected Message messageFor(@Nonnull Message message, @Nullable Prepared prepared, @Nonnull OutboundTcpNode node) {
+        return prepared != null ? prepared.getFor(node) : message;
+    }
+
+    /**
+     * Queues the given message only for the given node without waiting for it to be sent.
+     *
+     * @return <code>false</code> if the node is not longer connected or its queue is full.
+     */
+    public boolean sendTo(@Nonnull Message message, @Nonnull OutboundTcpNode node) throws InterruptedException, IOException {
+        final Sender sender = _nodeToSender.get(node);
+        boolean result = false;
+        if (sender != null) {
+            try {
+                result = sender.submit(message, 0, MILLISECONDS) != null;
+            } catch (final TimeoutException ignored) {}
+        }
+        return result;
+    }
+
     protected void handleExecutionException(@Nonnull ExecutionException e) throws IOException {
         final Throwable cause = e.getCause();
         if (cause instanceof IOException) {
@@ -299,9 +409,65 @@ public class OutboundTcpHandler extends SrvEntryBasedServicesManager<InetSocketA
         }
     }
 
+    protected void send(@Nonnull List<Message> messages, @Nonnull OutboundTcpNode to, @Nonnull byte[] buffer) throws IOException, InterruptedException {
+        boolean success = false;
+        boolean errorHandled = false;
+        try {
+            sendUnsafe(messages, to, buffer);
+            success = true;
+        } catch (final ServiceTemporaryUnavailableException e) {
+            markAsGone(to, e.getMessage());
+            errorHandled = true;
+        } finally {
+            if (!success && !errorHandled) {
+                markAsGone(to);
+            }
+        }
+    }
+
+    /**
+     * Writes all given messages with as less writes as possible by collecting them in the given buffer. Only messages
+     * which does not fit into the buffer are written directly.
+     */
+    protected void sendUnsafe(@Nonnull List<Message> messages, @Nonnull final OutboundTcpNode to, @Nonnull byte[] buffer) throws IOException {
+        // noinspection SynchronizationOnLocalVariableOrMethodParameter
+        synchronized (to) {
+            try {
+                final OutputStream os = to.getOutputStream();
+                int position = 0;
+                for (final Message message : messages) {
+                    final int length = message.getLength();
+                    if (position + FRAME_HEADER_LENGTH + length > buffer.length && position > 0) {
+                        os.write(buffer, 0, position);
+                        position = 0;
+                    }
+                    buffer[position] = message.getCommand();
+                    putInt(buffer, position + 1, length);
+                    position += FRAME_HEADER_LENGTH;
+                    if (position + length <= buffer.length) {
+                        System.arraycopy(message.getData(), message.getOffset(), buffer, position, length);
+                        position += length;
+                    } else {
+                        os.write(buffer, 0, position);
+                        os.write(message.getData(), message.getOffset(), length);
+                        position = 0;
+                    }
+                }
+                if (position > 0) {
+                    os.write(buffer, 0, position);
+                }
+                to.recordOutbound(messages.size());
+            } catch (final SocketException e) {
+                throw new ServiceTemporaryUnavailableException(e);
+            }
+        }
+    }
+
     @Nonnull
     protected Message createPingMessage() {
-        return new Message(pingCommand, new byte[0]);
+        final Message ping = MessageCompressor.createPingMessage();
+        final GossipMembership membership = _membership;
+        return membership != null ? membership.announceIn(ping) : ping;
     }
 
     @Override
@@ -355,6 +521,28 @@ public class OutboundTcpHandler extends SrvEntryBasedServicesManager<InetSocketA
         }
     }
 
+    /**
+     * @return the maximum queue size of each lane over all nodes.
+     */
+    @Nonnull
+    public Map<String, Integer> getCurrentMaximumQueueSizeByLane() {
+        final Map<String, Integer> result = new LinkedHashMap<>();
+        final Object[] outputs = getOutputs();
+        for (final Object output : outputs) {
+            // noinspection SuspiciousMethodCalls
+            final Sender sender = _nodeToSender.get(output);
+            if (sender != null) {
+                for (final Entry<String, Integer> laneAndSize : sender.getQueueSizeByLane().entrySet()) {
+                    final Integer size = result.get(laneAndSize.getKey());
+                    if (size == null || size < laneAndSize.getValue()) {
+                        result.put(laneAndSize.getKey(), laneAndSize.getValue());
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
     @Nonnegative
     @Nullable
     public Integer getCurrentMaximumQueueSize() {
@@ -376,11 +564,23 @@ public class OutboundTcpHandler extends SrvEntryBasedServicesManager<InetSocketA
     protected class Sender extends Thread {
 
         private final OutboundTcpNode _node;
-        private final BlockingDeque<SendingTask> _tasks;
+        private final Lane[] _lanes;
+        private final Lock _lock = new ReentrantLock();
+        private final Condition _notEmpty = _lock.newCondition();
+
+        private SendingTask _next;
+        private byte[] _buffer;
 
         public Sender(@Nonnull OutboundTcpNode node) {
             _node = node;
-            _tasks = new LinkedBlockingDeque<>(_queuePerNodeCapacity);
+            final List<SendingLane> sendingLanes = _sendingLanes;
+            _lanes = new Lane[sendingLanes.size() + 1];
+            int i = 0;
+            for (final SendingLane sendingLane : sendingLanes) {
+                final Boolean dropMessagesIfQueueIsFull = sendingLane.getDropMessagesIfQueueIsFull();
+                _lanes[i++] = new Lane(sendingLane.getName(), sendingLane.getCapacity(), sendingLane.getWeight(), dropMessagesIfQueueIsFull != null ? dropMessagesIfQueueIsFull : _dropMessagesIfQueueIsFull, sendingLane, _lock.newCondition());
+            }
+            _lanes[i] = new Lane(DEFAULT_LANE_NAME, _queuePerNodeCapacity, 1, _dropMessagesIfQueueIsFull, null, _lock.newCondition());
             setName(toString());
         }
 
@@ -388,40 +588,212 @@ public class OutboundTcpHandler extends SrvEntryBasedServicesManager<InetSocketA
         public void run() {
             try {
                 while (!currentThread().isInterrupted()) {
-                    final SendingTask task = _tasks.take();
-                    task.execute();
+                    final SendingTask task = _next != null ? _next : take();
+                    _next = null;
+                    final int maximumBatchSize = _maximumBatchSize;
+                    if (maximumBatchSize > 0) {
+                        executeBatchStartingWith(task, maximumBatchSize);
+                    } else {
+                        task.execute();
+                    }
                 }
             } catch (final InterruptedException ignored) {
                 currentThread().interrupt();
             }
         }
 
+        protected void executeBatchStartingWith(@Nonnull SendingTask first, @Nonnegative int maximumBatchSize) throws InterruptedException {
+            final List<SendingTask> batch = new ArrayList<>();
+            batch.add(first);
+            int size = FRAME_HEADER_LENGTH + first.getMessage().getLength();
+            final long lingerUntil = currentTimeMillis() + _maximumLinger.in(MILLISECONDS);
+            while (size < maximumBatchSize) {
+                final SendingTask task = poll(lingerUntil - currentTimeMillis(), MILLISECONDS);
+                if (task == null) {
+                    break;
+                }
+                final int taskSize = FRAME_HEADER_LENGTH + task.getMessage().getLength();
+                if (size + taskSize > maximumBatchSize) {
+                    _next = task;
+                    break;
+                }
+                batch.add(task);
+                size += taskSize;
+            }
+            final List<Message> messages = new ArrayList<>(batch.size());
+            for (final SendingTask task : batch) {
+                messages.add(task.getMessage());
+            }
+            Throwable exception = null;
+            try {
+                send(messages, _node, getBuffer(maximumBatchSize));
+            } catch (final InterruptedException e) {
+                throw e;
+            } catch (final Throwable e) {
+                exception = e;
+            } finally {
+                for (final SendingTask task : batch) {
+                    task.complete(exception);
+                }
+            }
+        }
+
+        @Nonnull
+        protected byte[] getBuffer(@Nonnegative int maximumBatchSize) {
+            final int size = Math.max(maximumBatchSize, FRAME_HEADER_LENGTH);
+            if (_buffer == null || _buffer.length != size) {
+                _buffer = new byte[size];
+            }
+            return _buffer;
+        }
+
+        @Nonnull
+        protected SendingTask take() throws InterruptedException {
+            _lock.lockInterruptibly();
+            try {
+                SendingTask result = pollUnsafe();
+                while (result == null) {
+                    _notEmpty.await();
+                    result = pollUnsafe();
+                }
+                return result;
+            } finally {
+                _lock.unlock();
+            }
+        }
+
+        /**
+         * @param timeout if not greater than <code>0</code> only a task which is already queued is returned.
+         */
+        @Nullable
+        protected SendingTask poll(long timeout, @Nonnull TimeUnit unit) throws InterruptedException {
+            _lock.lockInterruptibly();
+            try {
+                long timeoutInNanos = unit.toNanos(timeout);
+                SendingTask result = pollUnsafe();
+                while (result == null && timeoutInNanos > 0) {
+                    timeoutInNanos = _notEmpty.awaitNanos(timeoutInNanos);
+                    result = pollUnsafe();
+                }
+                return result;
+            } finally {
+                _lock.unlock();
+            }
+        }
+
+        /**
+         * Takes the next task of the first lane which has tasks and has not used up its weight in the current round.
+         * If all lanes with tasks have used up their weights the next round is started.
+         */
+        @Nullable
+        protected SendingTask pollUnsafe() {
+            SendingTask result = null;
+            boolean hasTasks = false;
+            for (final Lane lane : _lanes) {
+                if (!lane.isEmpty()) {
+                    hasTasks = true;
+                    if (lane.hasCredits()) {
+                        result = lane.poll();
+                        break;
+                    }
+                }
+            }
+            if (result == null && hasTasks) {
+                for (final Lane lane : _lanes) {
+                    lane.refillCredits();
+                }
+                result = pollUnsafe();
+            }
+            return result;
+        }
+
+        /**
+         * Compressed messages are assigned by their original command, otherwise every compressed message would end up in the default lane.
+         */
         @Nonnull
+        protected Lane laneFor(@Nonnull Message message) {
+            final byte command = message instanceof Compressed ? ((Compressed) message).getOriginalCommand() : message.getCommand();
+            Lane result = _lanes[_lanes.length - 1];
+            for (final Lane lane : _lanes) {
+                final SendingLane definition = lane.getDefinition();
+                if (definition != null && definition.contains(command)) {
+                    result = lane;
+                    break;
+                }
+            }
+            return result;
+        }
+
+        @Nullable
         public SendingTask submit(@Nonnull Message message) throws InterruptedException {
             final SendingTask task = new SendingTask(message, _node);
-            final boolean isInQueue;
-            if (_dropMessagesIfQueueIsFull) {
-                isInQueue = _tasks.offer(task);
-            } else {
-                _tasks.put(task);
-                isInQueue = true;
+            final Lane lane = laneFor(message);
+            _lock.lockInterruptibly();
+            try {
+                while (lane.isFull() && !lane.isDropMessagesIfQueueIsFull()) {
+                    lane.getNotFull().await();
+                }
+                return offerUnsafe(lane, task) ? task : null;
+            } finally {
+                _lock.unlock();
             }
-            return isInQueue ? task : null;
         }
 
-        @Nonnull
+        @Nullable
         public SendingTask submit(@Nonnull Message message, @Nonnegative long timeout, @Nonnull TimeUnit unit) throws InterruptedException, TimeoutException, IOException {
             final SendingTask task = new SendingTask(message, _node);
-            final boolean isInQueue = _tasks.offer(task, timeout, unit);
-            if (isInQueue && !_dropMessagesIfQueueIsFull) {
+            final Lane lane = laneFor(message);
+            final boolean isInQueue;
+            _lock.lockInterruptibly();
+            try {
+                long timeoutInNanos = unit.toNanos(timeout);
+                while (lane.isFull() && timeoutInNanos > 0) {
+                    timeoutInNanos = lane.getNotFull().awaitNanos(timeoutInNanos);
+                }
+                isInQueue = offerUnsafe(lane, task);
+            } finally {
+                _lock.unlock();
+            }
+            if (!isInQueue && !lane.isDropMessagesIfQueueIsFull()) {
                 throw new TimeoutException();
             }
             return isInQueue ? task : null;
         }
 
+        protected boolean offerUnsafe(@Nonnull Lane lane, @Nonnull SendingTask task) {
+            final boolean result = lane.offer(task);
+            if (result) {
+                _notEmpty.signal();
+            }
+            return result;
+        }
+
         @Nonnegative
         public Integer getQueueSize() {
-            return _tasks.size();
+            _lock.lock();
+            try {
+                int result = 0;
+                for (final Lane lane : _lanes) {
+                    result += lane.size();
+                }
+                return result;
+            } finally {
+                _lock.unlock();
+            }
+        }
+
+        @Nonnull
+        public Map<String, Integer> getQueueSizeByLane() {
+            _lock.lock();
+            try {
+                final Map<String, Integer> result = new LinkedHashMap<>();
+                for (final Lane lane : _lanes) {
+                    result.put(lane.getName(), lane.size());
+                }
+                return result;
+            } finally {
+                _lock.unlock();
+            }
         }
 
         @Override
@@ -430,6 +802,94 @@ public class OutboundTcpHandler extends SrvEntryBasedServicesManager<InetSocketA
         }
     }
 
+    /**
+     * One queue of a {@link Sender}. It is only accessed while the lock of its sender is held.
+     */
+    protected static class Lane {
+
+        private final String _name;
+        private final int _capacity;
+        private final int _weight;
+        private final boolean _dropMessagesIfQueueIsFull;
+        private final SendingLane _definition;
+        private final Condition _notFull;
+        private final Deque<SendingTask> _tasks = new ArrayDeque<>();
+
+        private int _credits;
+
+        public Lane(@Nonnull String name, @Nonnegative int capacity, @Nonnegative int weight, boolean dropMessagesIfQueueIsFull, @Nullable SendingLane definition, @Nonnull Condition notFull) {
+            _name = name;
+            _capacity = capacity;
+            _weight = weight;
+            _dropMessagesIfQueueIsFull = dropMessagesIfQueueIsFull;
+            _definition = definition;
+            _notFull = notFull;
+            _credits = weight;
+        }
+
+        @Nonnull
+        public String getName() {
+            return _name;
+        }
+
+        public boolean isDropMessagesIfQueueIsFull() {
+            return _dropMessagesIfQueueIsFull;
+        }
+
+        /**
+         * @return <code>null</code> for the default lane.
+         */
+        @Nullable
+        public SendingLane getDefinition() {
+            return _definition;
+        }
+
+        @Nonnull
+        public Condition getNotFull() {
+            return _notFull;
+        }
+
+        public boolean isEmpty() {
+            return _tasks.isEmpty();
+        }
+
+        public boolean isFull() {
+            return _tasks.size() >= _capacity;
+        }
+
+        @Nonnegative
+        public int size() {
+            return _tasks.size();
+        }
+
+        public boolean hasCredits() {
+            return _credits > 0;
+        }
+
+        public void refillCredits() {
+            _credits = _weight;
+        }
+
+        public boolean offer(@Nonnull SendingTask task) {
+            final boolean result = !isFull();
+            if (result) {
+                _tasks.add(task);
+            }
+            return result;
+        }
+
+        @Nullable
+        public SendingTask poll() {
+            final SendingTask result = _tasks.poll();
+            if (result != null) {
+                _credits--;
+                _notFull.signal();
+            }
+            return result;
+        }
+
+    }
+
     protected class SendingTask implements Future<Void> {
 
         private final Message _message;
@@ -445,6 +905,11 @@ public class OutboundTcpHandler extends SrvEntryBasedServicesManager<InetSocketA
             _to = to;
         }
 
+        @Nonnull
+        public Message getMessage() {
+            return _message;
+        }
+
         public void execute() throws InterruptedException {
             _lock.lockInterruptibly();
             try {
@@ -465,6 +930,19 @@ public class OutboundTcpHandler extends SrvEntryBasedServicesManager<InetSocketA
             }
         }
 
+        protected void complete(@Nullable Throwable exception) {
+            _lock.lock();
+            try {
+                if (!_done) {
+                    _exception = exception;
+                    _done = true;
+                    _condition.signalAll();
+                }
+            } finally {
+                _lock.unlock();
+            }
+        }
+
         @Override
         public boolean isDone() {
             return _done;
@@ -0,0 +1,102 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel.tcp;
+
+import org.echocat.jomon.net.cluster.channel.Message;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Describes one queue of the sending queues each node has. Every {@link Message} is put into the first lane which
+ * contains its {@link Message#getCommand() command} - all other messages are put into a default lane with the
+ * {@link TcpClusterChannel#getSendingQueueCapacity() sending queue capacity} and a weight of <code>1</code>.</p>
+ * <p>The lanes are drained in rounds: In every round each lane could send as many messages as its weight. Inside of a
+ * round the lanes are drained in the order they are configured. So a lane with a small capacity and a high weight
+ * (like for cache invalidations) will not wait behind the messages of a lane with bulk traffic.</p>
+ */
+@Immutable
+public class SendingLane {
+
+    private final String _name;
+    private final byte[] _commands;
+    private final int _capacity;
+    private final int _weight;
+    private final Boolean _dropMessagesIfQueueIsFull;
+
+    /**
+     * @param dropMessagesIfQueueIsFull if <code>null</code> the {@link TcpClusterChannel#isDropMessagesIfQueueIsFull() setting of the channel}
+     *                                  is used.
+     */
+    public SendingLane(@Nonnull String name, @Nonnegative int capacity, @Nonnegative int weight, @Nullable Boolean dropMessagesIfQueueIsFull, @Nonnull byte... commands) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity of lane '" + name + "' have to be greater than 0.");
+        }
+        if (weight <= 0) {
+            throw new IllegalArgumentException("The weight of lane '" + name + "' have to be greater than 0.");
+        }
+        _name = name;
+        _commands = commands.clone();
+        _capacity = capacity;
+        _weight = weight;
+        _dropMessagesIfQueueIsFull = dropMessagesIfQueueIsFull;
+    }
+
+    @Nonnull
+    public String getName() {
+        return _name;
+    }
+
+    @Nonnull
+    public byte[] getCommands() {
+        return _commands.clone();
+    }
+
+    public boolean contains(byte command) {
+        boolean result = false;
+        for (final byte candidate : _commands) {
+            if (candidate == command) {
+                result = true;
+                break;
+            }
+        }
+        return result;
+    }
+
+    @Nonnegative
+    public int getCapacity() {
+        return _capacity;
+    }
+
+    @Nonnegative
+    public int getWeight() {
+        return _weight;
+    }
+
+    @Nullable
+    public Boolean getDropMessagesIfQueueIsFull() {
+        return _dropMessagesIfQueueIsFull;
+    }
+
+    @Override
+    public String toString() {
+        return _name + "{commands: " + Arrays.toString(_commands) + ", capacity: " + _capacity + ", weight: " + _weight + (_dropMessagesIfQueueIsFull != null ? ", dropMessagesIfQueueIsFull: " + _dropMessagesIfQueueIsFull : "") + "}";
+    }
+
+}
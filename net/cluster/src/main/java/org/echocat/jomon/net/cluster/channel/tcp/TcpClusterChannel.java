@@ -45,7 +45,7 @@ import static org.echocat.jomon.runtime.concurrent.ThreadUtils.stop;
 import static org.echocat.jomon.runtime.util.ResourceUtils.closeQuietly;
 
 @ThreadSafe
-public class TcpClusterChannel extends NetBasedClusterChannel<UUID, TcpNode> implements AddressEnabledClusterChannel<UUID, TcpNode>, SendingQueueEnabledClusterChannel<UUID, TcpNode>, RemoteAddressesEnabledClusterChannel<UUID, TcpNode>, ServiceEnabledClusterChannel<UUID, TcpNode>, BlockableClusterChannel<UUID, TcpNode>, DropMessagesEnabledClusterChannel<UUID, TcpNode> {
+public class TcpClusterChannel extends NetBasedClusterChannel<UUID, TcpNode> implements AddressEnabledClusterChannel<UUID, TcpNode>, SendingQueueEnabledClusterChannel<UUID, TcpNode>, RemoteAddressesEnabledClusterChannel<UUID, TcpNode>, ServiceEnabledClusterChannel<UUID, TcpNode>, BlockableClusterChannel<UUID, TcpNode>, DropMessagesEnabledClusterChannel<UUID, TcpNode>, GossipEnabledClusterChannel<UUID, TcpNode> {
 
     public static final int DEFAULT_PORT = 56876;
     public static final Duration RETRY_DURATION = new Duration("10s");
@@ -53,11 +53,15 @@ public class TcpClusterChannel extends NetBasedClusterChannel<UUID, TcpNode> imp
     private static final Logger LOG = LoggerFactory.getLogger(TcpClusterChannel.class);
 
     private final Set<InboundTcpWorker> _inboundWorkers = new HashSet<>();
+    private final MessageCompressor _compressor = new MessageCompressor();
+    private final GossipMembership _membership = new GossipMembership(getUuid());
     private final Reader _reader = new Reader() {
         @Override public void read(@Nonnull ReceivedMessage<TcpNode> message) throws IOException {
             TcpClusterChannel.this.read(message);
         }
         @Override public void onClose(@Nonnull InboundTcpWorker worker) {
+            _compressor.forget(worker.getNode().getUuid());
+            _membership.forget(worker.getNode().getUuid());
             final Lock lock = getLock();
             try {
                 lock.lockInterruptibly();
@@ -82,10 +86,17 @@ public class TcpClusterChannel extends NetBasedClusterChannel<UUID, TcpNode> imp
     private int _sendingQueueCapacity = 250;
     private boolean _blocking = true;
     private boolean _dropMessagesIfQueueIsFull;
+    private int _maximumWriteBatchSize;
+    private Duration _maximumWriteLinger = new Duration(0);
+    private List<SendingLane> _sendingLanes = Collections.emptyList();
+    private int _receiveBufferSize = ReceiveBufferPool.DEFAULT_BUFFER_SIZE;
+    private int _maximumNumberOfPooledReceiveBuffers;
 
     private OutboundTcpHandler _outbound;
     private ServerSocket _in;
     private Acceptor _acceptor;
+    private Gossiper _gossiper;
+    private volatile ReceiveBufferPool _receiveBufferPool;
 
     public TcpClusterChannel() {}
 
@@ -297,6 +308,180 @@ public class TcpClusterChannel extends NetBasedClusterChannel<UUID, TcpNode> imp
         }});
     }
 
+    /**
+     * @return the maximum number of bytes of queued messages which are written at once to one node. If <code>0</code>
+     *         every message is written on its own.
+     */
+    @Nonnegative
+    public int getMaximumWriteBatchSize() {
+        return _maximumWriteBatchSize;
+    }
+
+    public void setMaximumWriteBatchSize(@Nonnegative final int maximumWriteBatchSize) {
+        doSafe(new Callable<Void>() { @Override public Void call() throws Exception {
+            _maximumWriteBatchSize = maximumWriteBatchSize;
+            if (_outbound != null) {
+                _outbound.setMaximumBatchSize(maximumWriteBatchSize);
+            }
+            return null;
+        }});
+    }
+
+    /**
+     * @return how long to wait for further messages before a not full batch is written. Only used if
+     *         {@link #getMaximumWriteBatchSize()} is enabled.
+     */
+    @Nonnull
+    public Duration getMaximumWriteLinger() {
+        return _maximumWriteLinger;
+    }
+
+    public void setMaximumWriteLinger(@Nonnull final Duration maximumWriteLinger) {
+        doSafe(new Callable<Void>() { @Override public Void call() throws Exception {
+            _maximumWriteLinger = maximumWriteLinger;
+            if (_outbound != null) {
+                _outbound.setMaximumLinger(maximumWriteLinger);
+            }
+            return null;
+        }});
+    }
+
+    /**
+     * @return the lanes of the sending queue of every node in addition to the default lane which has a capacity of
+     *         {@link #getSendingQueueCapacity()}.
+     */
+    @Nonnull
+    public List<SendingLane> getSendingLanes() {
+        return _sendingLanes;
+    }
+
+    public void setSendingLanes(@Nullable final List<SendingLane> sendingLanes) {
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() throws Exception {
+            _sendingLanes = sendingLanes != null ? Collections.unmodifiableList(new ArrayList<>(sendingLanes)) : Collections.<SendingLane>emptyList();
+            return null;
+        }});
+    }
+
+    /**
+     * @return the minimum length of a payload to be compressed before it is sent. If <code>0</code> (the default) no
+     *         message is compressed. Only nodes which announce that they are able to decompress messages receive
+     *         compressed messages.
+     */
+    @Nonnegative
+    public int getCompressionThreshold() {
+        return _compressor.getThreshold();
+    }
+
+    public void setCompressionThreshold(@Nonnegative int compressionThreshold) {
+        _compressor.setThreshold(compressionThreshold);
+    }
+
+    /**
+     * @see java.util.zip.Deflater#setLevel(int)
+     */
+    public int getCompressionLevel() {
+        return _compressor.getLevel();
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        _compressor.setLevel(compressionLevel);
+    }
+
+    @Nonnull
+    public MessageCompressor getCompressor() {
+        return _compressor;
+    }
+
+    @Override
+    public boolean isGossipEnabled() {
+        return _membership.isEnabled();
+    }
+
+    /**
+     * @param gossipEnabled if <code>true</code> the availability of nodes which also take part in the gossip is judged
+     *        by a {@link GossipMembership} instead of pinging each of them every {@link #getPingInterval() ping interval}.
+     */
+    @Override
+    public void setGossipEnabled(final boolean gossipEnabled) {
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() throws Exception {
+            _membership.setEnabled(gossipEnabled);
+            return null;
+        }});
+    }
+
+    @Override
+    @Nonnegative
+    public int getGossipFanout() {
+        return _membership.getFanout();
+    }
+
+    @Override
+    public void setGossipFanout(@Nonnegative int gossipFanout) {
+        _membership.setFanout(gossipFanout);
+    }
+
+    @Override
+    @Nonnegative
+    public double getPhiThreshold() {
+        return _membership.getPhiThreshold();
+    }
+
+    @Override
+    public void setPhiThreshold(@Nonnegative double phiThreshold) {
+        _membership.setPhiThreshold(phiThreshold);
+    }
+
+    @Override
+    @Nullable
+    public Double getSuspicionLevelOf(@Nonnull TcpNode node) {
+        return _membership.getSuspicionLevelOf(node.getUuid());
+    }
+
+    @Nonnull
+    public GossipMembership getMembership() {
+        return _membership;
+    }
+
+    @Nonnegative
+    public int getReceiveBufferSize() {
+        return _receiveBufferSize;
+    }
+
+    /**
+     * @param receiveBufferSize the size of the pooled buffers for received payloads. Larger payloads are not pooled.
+     */
+    public void setReceiveBufferSize(@Nonnegative final int receiveBufferSize) {
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() throws Exception {
+            _receiveBufferSize = receiveBufferSize;
+            return null;
+        }});
+    }
+
+    @Nonnegative
+    public int getMaximumNumberOfPooledReceiveBuffers() {
+        return _maximumNumberOfPooledReceiveBuffers;
+    }
+
+    /**
+     * @param maximumNumberOfPooledReceiveBuffers if <code>0</code> (the default) every received payload gets its own
+     *        buffer. Otherwise the payloads are stored in pooled buffers which are reused after the message was
+     *        handled. Handlers which keep received messages have to {@link ReceivedMessage#retain() retain} them.
+     */
+    public void setMaximumNumberOfPooledReceiveBuffers(@Nonnegative final int maximumNumberOfPooledReceiveBuffers) {
+        doSafeAndReinetIfNeeded(new Callable<Void>() { @Override public Void call() throws Exception {
+            _maximumNumberOfPooledReceiveBuffers = maximumNumberOfPooledReceiveBuffers;
+            return null;
+        }});
+    }
+
+    /**
+     * @return <code>null</code> if pooling of receive buffers is disabled or this channel is not initialized.
+     */
+    @Nullable
+    public ReceiveBufferPool getReceiveBufferPool() {
+        return _receiveBufferPool;
+    }
+
     @Nonnegative
     public int getNumberOfIncomingWorker() {
         return _numberOfIncomingWorker;
@@ -335,6 +520,7 @@ public class TcpClusterChannel extends NetBasedClusterChannel<UUID, TcpNode> imp
             @Override
             public Void call() throws Exception {
                 TcpClusterChannel.super.setPingInterval(pingInterval);
+                _membership.setInterval(pingInterval);
                 if (_outbound != null) {
                     _outbound.setCheckInterval(pingInterval);
                 }
@@ -352,15 +538,29 @@ public class TcpClusterChannel extends NetBasedClusterChannel<UUID, TcpNode> imp
         _outbound.setConnectionTimeout(getConnectionTimeout());
         _outbound.setSoTimeout(getSoTimeout());
         _outbound.setCheckInterval(getPingInterval());
+        _outbound.setMaximumBatchSize(getMaximumWriteBatchSize());
+        _outbound.setMaximumLinger(getMaximumWriteLinger());
+        _outbound.setCompressor(_compressor);
+        _outbound.setSendingLanes(_sendingLanes);
+        _outbound.setMembership(_membership);
+        _membership.setInterval(getPingInterval());
+        _membership.setListener(new PresenceNotifier());
+        _receiveBufferPool = _maximumNumberOfPooledReceiveBuffers > 0 ? new ReceiveBufferPool(_receiveBufferSize, _maximumNumberOfPooledReceiveBuffers) : null;
         _outbound.setInputs(getRemoteAddresses());
 
         _acceptor = new Acceptor();
         _acceptor.start();
+
+        if (_membership.isEnabled()) {
+            _gossiper = new Gossiper();
+            _gossiper.start();
+        }
     }
 
     @Override
     protected void closeInLock() throws Exception {
         try {
+            stop(_gossiper);
             closeQuietly(_in);
             closeQuietly(_outbound);
             stop(_acceptor);
@@ -371,6 +571,9 @@ public class TcpClusterChannel extends NetBasedClusterChannel<UUID, TcpNode> imp
             _in = null;
             _outbound = null;
             _acceptor = null;
+            _gossiper = null;
+            _receiveBufferPool = null;
+            _membership.clear();
         }
     }
 
@@ -435,7 +638,34 @@ public class TcpClusterChannel extends NetBasedClusterChannel<UUID, TcpNode> imp
 
     @Override
     protected void readPing(@Nonnull ReceivedMessage<TcpNode> message) {
-        // This is done by OutboundTcpHandler and InboundTcpWorker
+        // The connection handling is done by OutboundTcpHandler and InboundTcpWorker
+        _compressor.recordCapabilitiesOf(message);
+        _membership.recordCapabilitiesOf(message);
+    }
+
+    @Override
+    protected void readGossip(@Nonnull ReceivedMessage<TcpNode> message) throws IOException {
+        _membership.merge(message);
+    }
+
+    /**
+     * Executes one round of the gossip: Sends the digest of the {@link #getMembership() membership} to some randomly
+     * selected nodes and informs the handlers about nodes which became available or unavailable.
+     */
+    protected void gossip() throws IOException, InterruptedException {
+        final OutboundTcpHandler outbound = getOutbound();
+        final List<OutboundTcpNode> candidates = new ArrayList<>();
+        for (final Object output : outbound.getOutputs()) {
+            candidates.add((OutboundTcpNode) output);
+        }
+        final List<OutboundTcpNode> targets = _membership.selectTargets(candidates);
+        if (!targets.isEmpty()) {
+            final Message digest = _membership.createDigest();
+            for (final OutboundTcpNode target : targets) {
+                outbound.sendTo(digest, target);
+            }
+        }
+        _membership.evaluate();
     }
 
     @Override
@@ -468,6 +698,16 @@ public class TcpClusterChannel extends NetBasedClusterChannel<UUID, TcpNode> imp
         return outbound != null ? outbound.getCurrentMaximumQueueSize() : null;
     }
 
+    /**
+     * @return the maximum size of each {@link #getSendingLanes() lane} over all nodes or <code>null</code> if this
+     *         channel is not connected.
+     */
+    @Nullable
+    public Map<String, Integer> getSendingQueueSizeByLane() {
+        final OutboundTcpHandler outbound = _outbound;
+        return outbound != null ? outbound.getCurrentMaximumQueueSizeByLane() : null;
+    }
+
     @Override
     public boolean isConnected() {
         return _outbound != null;
@@ -523,10 +763,40 @@ public class TcpClusterChannel extends NetBasedClusterChannel<UUID, TcpNode> imp
             }
         }
         final Set<TcpNodeInfo> info = new TreeSet<>(ADDRESS_BASED_COMPARATOR);
-        info.addAll(uuidToNode.values());
+        for (final TcpNodeInfo candidate : uuidToNode.values()) {
+            if (_membership.isAvailable(candidate.getUuid())) {
+                info.add(candidate);
+            }
+        }
         return unmodifiableSet(info);
     }
 
+    protected class Gossiper extends Thread {
+
+        public Gossiper() {
+            final String name = TcpClusterChannel.this.getName();
+            setName("OutboundTcp(" + getService() + "/" + (name != null ? name : getUuid()) + ").Gossiper");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!currentThread().isInterrupted()) {
+                    try {
+                        gossip();
+                    } catch (final IOException | RuntimeException e) {
+                        LOG.warn("Gossip failed. It will be retried in " + getPingInterval() + ".", e);
+                    }
+                    getPingInterval().sleep();
+                }
+            } catch (final InterruptedException ignored) {
+                currentThread().interrupt();
+            }
+        }
+
+    }
+
     protected class Acceptor extends Thread {
 
         public Acceptor() {
@@ -585,7 +855,7 @@ public class TcpClusterChannel extends NetBasedClusterChannel<UUID, TcpNode> imp
             lock.lockInterruptibly();
             try {
                 if (_inboundWorkers.size() < _maxNumberOfIncomingConnections) {
-                    final InboundTcpWorker worker = new InboundTcpWorker(_reader, socket, getUuid(), getService(), TcpClusterChannel.this.getName());
+                    final InboundTcpWorker worker = new InboundTcpWorker(_reader, socket, getUuid(), getService(), TcpClusterChannel.this.getName(), _receiveBufferPool);
                     final InboundTcpNode node = worker.getNode();
                     final UUID uuid = node.getUuid();
                     if (getUuid().equals(uuid)) {
@@ -15,6 +15,7 @@
 package org.echocat.jomon.net.cluster.channel.tcp;
 
 import org.echocat.jomon.net.cluster.channel.Node;
+import org.echocat.jomon.runtime.util.Duration;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -27,8 +28,8 @@ public class TcpNodeInfo extends Node.Impl<UUID> implements TcpNode {
     private final UUID _uuid;
     private final InetSocketAddress _address;
 
-    private InboundTcpNode _inbound;
-    private OutboundTcpNode _outbound;
+    private RemoteTcpNode _inbound;
+    private RemoteTcpNode _outbound;
 
     public TcpNodeInfo(@Nonnull UUID uuid, @Nonnull InetSocketAddress address) {
         _uuid = uuid;
@@ -53,27 +54,27 @@ public class TcpNodeInfo extends Node.Impl<UUID> implements TcpNode {
         return _address;
     }
 
-    public InboundTcpNode getInbound() {
+    public RemoteTcpNode getInbound() {
         return _inbound;
     }
 
-    public void setInbound(InboundTcpNode inbound) {
+    public void setInbound(RemoteTcpNode inbound) {
         _inbound = inbound;
     }
 
-    public OutboundTcpNode getOutbound() {
+    public RemoteTcpNode getOutbound() {
         return _outbound;
     }
 
-    public void setOutbound(OutboundTcpNode outbound) {
+    public void setOutbound(RemoteTcpNode outbound) {
         _outbound = outbound;
     }
 
     @Override
     @Nullable
     public Date getLastSeen() {
-        final InboundTcpNode inbound = _inbound;
-        final OutboundTcpNode outbound = _outbound;
+        final RemoteTcpNode inbound = _inbound;
+        final RemoteTcpNode outbound = _outbound;
         final Date inboundLastSeen = inbound != null ? inbound.getLastSeen() : null;
         final Date outboundLastSeen = outbound != null ? outbound.getLastSeen() : null;
         final Date result;
@@ -91,49 +92,97 @@ public class TcpNodeInfo extends Node.Impl<UUID> implements TcpNode {
 
     @Override
     public Boolean getIsInboundConnected() {
-        final InboundTcpNode inbound = _inbound;
+        final RemoteTcpNode inbound = _inbound;
         return inbound != null && inbound.isConnected();
     }
 
     @Override
     public Long getNumberOfInboundMessages() {
-        final InboundTcpNode inbound = _inbound;
+        final RemoteTcpNode inbound = _inbound;
         return inbound != null ? inbound.getNumberOfInboundMessages() : null;
     }
 
     @Override
     public Double getNumberOfInboundMessagesPerSecond() {
-        final InboundTcpNode inbound = _inbound;
+        final RemoteTcpNode inbound = _inbound;
         return inbound != null ? inbound.getNumberOfInboundMessagesPerSecond() : null;
     }
 
     @Override
     public Date getLastInboundMessage() {
-        final InboundTcpNode inbound = _inbound;
+        final RemoteTcpNode inbound = _inbound;
         return inbound != null ? inbound.getLastInboundMessage() : null;
     }
     
     @Override
     public Boolean getIsOutboundConnected() {
-        final OutboundTcpNode outbound = _outbound;
+        final RemoteTcpNode outbound = _outbound;
         return outbound != null && outbound.isConnected();
     }
 
     @Override
     public Long getNumberOfOutboundMessages() {
-        final OutboundTcpNode outbound = _outbound;
+        final RemoteTcpNode outbound = _outbound;
         return outbound != null ? outbound.getNumberOfOutboundMessages() : null;
     }
 
     @Override
     public Double getNumberOfOutboundMessagesPerSecond() {
-        final OutboundTcpNode outbound = _outbound;
+        final RemoteTcpNode outbound = _outbound;
         return outbound != null ? outbound.getNumberOfOutboundMessagesPerSecond() : null;
     }
 
     @Override
     public Date getLastOutboundMessage() {
-        final OutboundTcpNode outbound = _outbound;
+        final RemoteTcpNode outbound = _outbound;
         return outbound != null ? outbound.getLastOutboundMessage() : null;
     }
+
+    @Override
+    public Long getNumberOfOutboundFlushes() {
+        final RemoteTcpNode outbound = _outbound;
+        return outbound != null ? outbound.getNumberOfOutboundFlushes() : null;
+    }
+
+    @Override
+    public Double getNumberOfOutboundMessagesPerFlush() {
+        final RemoteTcpNode outbound = _outbound;
+        return outbound != null ? outbound.getNumberOfOutboundMessagesPerFlush() : null;
+    }
+
+    @Override
+    public Long getNumberOfCompressedInboundMessages() {
+        final RemoteTcpNode inbound = _inbound;
+        return inbound != null ? inbound.getNumberOfCompressedInboundMessages() : null;
+    }
+
+    @Override
+    public Double getInboundCompressionRatio() {
+        final RemoteTcpNode inbound = _inbound;
+        return inbound != null ? inbound.getInboundCompressionRatio() : null;
+    }
+
+    @Override
+    public Duration getInboundDecompressionTime() {
+        final RemoteTcpNode inbound = _inbound;
+        return inbound != null ? inbound.getInboundDecompressionTime() : null;
+    }
+
+    @Override
+    public Long getNumberOfCompressedOutboundMessages() {
+        final RemoteTcpNode outbound = _outbound;
+        return outbound != null ? outbound.getNumberOfCompressedOutboundMessages() : null;
+    }
+
+    @Override
+    public Double getOutboundCompressionRatio() {
+        final RemoteTcpNode outbound = _outbound;
+        return outbound != null ? outbound.getOutboundCompressionRatio() : null;
+    }
+
+    @Override
+    public Duration getOutboundCompressionTime() {
+        final RemoteTcpNode outbound = _outbound;
+        return outbound != null ? outbound.getOutboundCompressionTime() : null;
+    }
 }
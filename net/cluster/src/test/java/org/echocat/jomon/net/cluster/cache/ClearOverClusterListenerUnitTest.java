@@ -29,8 +29,7 @@ import javax.annotation.Nonnull;
 import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import static org.echocat.jomon.net.cluster.cache.CacheClusterChannelConstants.clearCommand;
-import static org.echocat.jomon.net.cluster.cache.CacheClusterChannelConstants.removeCommand;
+import static org.echocat.jomon.net.cluster.cache.CacheClusterChannelConstants.*;
 import static org.echocat.jomon.testing.Assert.assertThat;
 import static org.echocat.jomon.testing.BaseMatchers.is;
 import static org.mockito.Mockito.*;
@@ -120,6 +119,30 @@ public class ClearOverClusterListenerUnitTest extends ClusterListenerTestSupport
         assertThat(numberOfAfterClearCalls.get(), is(2));
     }
 
+    @Test
+    public void testWithoutLegacyFormat() throws Exception {
+        final LruCache<String, ?> cache = new LruCache<>(String.class, Object.class);
+        cache.setId("foo");
+        final HandlerEnabledClusterChannel<?, ?> clusterChannel = clusterChannel();
+        final ClearOverClusterListener listener = new ClearOverClusterListener(cacheRepository(), clusterChannel);
+        listener.setLegacyFormat(false);
+        cache.setListeners(Arrays.<CacheListener>asList(listener));
+        cache.clear();
+        cache.clear();
+        assertThat(sentMessages(clusterChannel, clearCommand).size(), is(0));
+        assertThat(sentMessages(clusterChannel, clearByIdCommand).size(), is(2));
+        assertThat(sentMessages(clusterChannel, cacheIdDefinitionCommand).size(), is(1));
+
+        // noinspection unchecked
+        final ClearableCache<String, ?> receivingCache = mock(ClearableCache.class);
+        final CacheRepository receivingCacheRepository = cacheRepository();
+        doReturn(receivingCache).when(receivingCacheRepository).find("foo");
+        final ClearOverClusterListener receivingListener = new ClearOverClusterListener(receivingCacheRepository, clusterChannel());
+        receive(receivingListener, sentMessages(clusterChannel));
+        verify(receivingCacheRepository, wasInvokedTimes(2)).find("foo");
+        verify(receivingCache, wasInvokedTimes(2)).clear();
+    }
+
     @Test
     public void testInitAndClose() throws Exception {
         final HandlerEnabledClusterChannel<?, ?> clusterChannel = clusterChannel();
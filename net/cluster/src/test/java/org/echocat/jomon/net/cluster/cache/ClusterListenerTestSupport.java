@@ -16,18 +16,22 @@ package org.echocat.jomon.net.cluster.cache;
 
 import org.echocat.jomon.cache.management.CacheRepository;
 import org.echocat.jomon.net.cluster.channel.HandlerEnabledClusterChannel;
+import org.echocat.jomon.net.cluster.channel.HandlerEnabledClusterChannel.MessageHandler;
+import org.echocat.jomon.net.cluster.channel.Message;
 import org.echocat.jomon.net.cluster.channel.Node;
 import org.echocat.jomon.net.cluster.channel.ReceivedMessage;
+import org.mockito.ArgumentCaptor;
 import org.mockito.internal.verification.Times;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import static org.echocat.jomon.net.cluster.cache.CacheListenerForClusterChannelSupport.CHARSET;
-import static org.mockito.Mockito.doReturn;
-import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.*;
 
 public abstract class ClusterListenerTestSupport {
 
@@ -68,5 +72,36 @@ public abstract class ClusterListenerTestSupport {
         return new ReceivedMessage<Node<?>>(command, message, charset, node);
     }
 
+    @Nonnull
+    protected ReceivedMessage<Node<?>> message(@Nonnull Message message) {
+        return new ReceivedMessage<Node<?>>(message.getCommand(), message.getData(), message.getOffset(), message.getLength(), node());
+    }
+
+    @Nonnull
+    protected List<Message> sentMessages(@Nonnull HandlerEnabledClusterChannel<?, ?> clusterChannel) {
+        final ArgumentCaptor<Message> sent = ArgumentCaptor.forClass(Message.class);
+        verify(clusterChannel, atLeast(0)).send(sent.capture());
+        return sent.getAllValues();
+    }
+
+    @Nonnull
+    protected List<Message> sentMessages(@Nonnull HandlerEnabledClusterChannel<?, ?> clusterChannel, byte command) {
+        final List<Message> result = new ArrayList<>();
+        for (final Message message : sentMessages(clusterChannel)) {
+            if (message.getCommand() == command) {
+                result.add(message);
+            }
+        }
+        return result;
+    }
+
+    protected void receive(@Nonnull CacheListenerForClusterChannelSupport by, @Nonnull Iterable<Message> messages) {
+        final HandlerEnabledClusterChannel<?, ?> clusterChannel = by.getClusterChannel();
+        for (final Message message : messages) {
+            ((MessageHandler) by.getCacheIds().getHandler()).handle(clusterChannel, message(message));
+            by.getMessageHandler().handle(clusterChannel, message(message));
+        }
+    }
+
 }
 
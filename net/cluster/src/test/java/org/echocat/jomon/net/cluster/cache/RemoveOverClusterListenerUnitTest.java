@@ -20,6 +20,10 @@ import org.echocat.jomon.cache.LruCache;
 import org.echocat.jomon.cache.management.CacheRepository;
 import org.echocat.jomon.net.cluster.channel.HandlerEnabledClusterChannel;
 import org.echocat.jomon.net.cluster.channel.Message;
+import org.echocat.jomon.net.cluster.channel.Node;
+import org.echocat.jomon.net.cluster.channel.ReceivedMessage;
+import org.echocat.jomon.runtime.util.Duration;
+import org.echocat.jomon.runtime.util.Entry;
 import org.echocat.jomon.runtime.util.Value;
 import org.echocat.jomon.testing.environments.LoggingEnvironment;
 import org.junit.Rule;
@@ -28,12 +32,13 @@ import org.junit.Test;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import static org.echocat.jomon.net.cluster.cache.CacheClusterChannelConstants.clearCommand;
-import static org.echocat.jomon.net.cluster.cache.CacheClusterChannelConstants.removeCommand;
+import static org.echocat.jomon.net.cluster.cache.CacheClusterChannelConstants.*;
 import static org.echocat.jomon.testing.Assert.assertThat;
 import static org.echocat.jomon.testing.BaseMatchers.is;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 public class RemoveOverClusterListenerUnitTest extends ClusterListenerTestSupport {
@@ -180,6 +185,292 @@ public class RemoveOverClusterListenerUnitTest extends ClusterListenerTestSuppor
         assertThat(numberOfAfterRemovedCalls.get(), is(2));
     }
 
+    @Test
+    public void testBatchedRemovesAreCoalescedAndSentTogether() throws Exception {
+        final LruCache<String, String> cache = new LruCache<>(String.class, String.class);
+        cache.setId("foo");
+        final LruCache<Integer, String> otherCache = new LruCache<>(Integer.class, String.class);
+        otherCache.setId("bar");
+        final HandlerEnabledClusterChannel<?, ?> clusterChannel = clusterChannel();
+        final RemoveOverClusterListener listener = new RemoveOverClusterListener(cacheRepository(), clusterChannel);
+        listener.setMaximumBatchDelay(new Duration("1h"));
+        cache.setListeners(Arrays.<CacheListener>asList(listener));
+        otherCache.setListeners(Arrays.<CacheListener>asList(listener));
+        cache.put("a", "1");
+        cache.put("b", "2");
+        otherCache.put(1, "3");
+
+        cache.remove("a");
+        cache.remove("b");
+        otherCache.remove(1);
+        cache.put("a", "1");
+        cache.remove("a");
+        verify(clusterChannel, wasInvokedTimes(0)).send(any(Message.class));
+        assertThat(listener.getNumberOfPendingRemoves(), is(3));
+
+        listener.flush();
+        assertThat(sentMessages(clusterChannel, removeBatchCommand).size(), is(1));
+        assertThat(sentMessages(clusterChannel, cacheIdDefinitionCommand).size(), is(2));
+        assertThat(listener.getNumberOfPendingRemoves(), is(0));
+
+        // noinspection unchecked
+        final Cache<String, ?> receivingCache = mock(Cache.class);
+        doReturn(String.class).when(receivingCache).getKeyType();
+        // noinspection unchecked
+        final Cache<Integer, ?> receivingOtherCache = mock(Cache.class);
+        doReturn(Integer.class).when(receivingOtherCache).getKeyType();
+        final CacheRepository receivingCacheRepository = cacheRepository();
+        doReturn(receivingCache).when(receivingCacheRepository).find("foo");
+        doReturn(receivingOtherCache).when(receivingCacheRepository).find("bar");
+        final RemoveOverClusterListener receivingListener = new RemoveOverClusterListener(receivingCacheRepository, clusterChannel());
+        receive(receivingListener, sentMessages(clusterChannel));
+        verify(receivingCacheRepository, wasInvokedTimes(1)).find("foo");
+        verify(receivingCacheRepository, wasInvokedTimes(1)).find("bar");
+        verify(receivingCache, wasInvokedTimes(1)).remove("a");
+        verify(receivingCache, wasInvokedTimes(1)).remove("b");
+        verify(receivingCache, wasInvokedTimes(2)).remove(anyString());
+        verify(receivingOtherCache, wasInvokedTimes(1)).remove(1);
+        verify(receivingOtherCache, wasInvokedTimes(1)).remove(anyObject());
+    }
+
+    @Test
+    public void testBatchIsSentIfMaximumBatchSizeIsReached() throws Exception {
+        final LruCache<String, String> cache = new LruCache<>(String.class, String.class);
+        cache.setId("foo");
+        final HandlerEnabledClusterChannel<?, ?> clusterChannel = clusterChannel();
+        final RemoveOverClusterListener listener = new RemoveOverClusterListener(cacheRepository(), clusterChannel);
+        listener.setMaximumBatchDelay(new Duration("1h"));
+        listener.setMaximumBatchSize(2);
+        cache.setListeners(Arrays.<CacheListener>asList(listener));
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("c", "3");
+
+        cache.remove("a");
+        assertThat(sentMessages(clusterChannel, removeBatchCommand).size(), is(0));
+        cache.remove("b");
+        assertThat(sentMessages(clusterChannel, removeBatchCommand).size(), is(1));
+        cache.remove("c");
+        assertThat(sentMessages(clusterChannel, removeBatchCommand).size(), is(1));
+        listener.close();
+        assertThat(sentMessages(clusterChannel, removeBatchCommand).size(), is(2));
+    }
+
+    @Test
+    public void testBatchedRemoveAfterCloseIsDropped() throws Exception {
+        final LruCache<String, String> cache = new LruCache<>(String.class, String.class);
+        cache.setId("foo");
+        final HandlerEnabledClusterChannel<?, ?> clusterChannel = clusterChannel();
+        final RemoveOverClusterListener listener = new RemoveOverClusterListener(cacheRepository(), clusterChannel);
+        listener.setMaximumBatchDelay(new Duration("1h"));
+        cache.setListeners(Arrays.<CacheListener>asList(listener));
+        cache.put("a", "1");
+        listener.close();
+
+        cache.remove("a");
+        assertThat(listener.getNumberOfPendingRemoves(), is(0));
+        listener.flush();
+        assertThat(sentMessages(clusterChannel, removeBatchCommand).size(), is(0));
+    }
+
+    @Test
+    public void testBatchIsSplitIntoFramesOfMaximumFrameSize() throws Exception {
+        final LruCache<Long, String> cache = new LruCache<>(Long.class, String.class);
+        cache.setId("foo");
+        final HandlerEnabledClusterChannel<?, ?> clusterChannel = clusterChannel();
+        final RemoveOverClusterListener listener = new RemoveOverClusterListener(cacheRepository(), clusterChannel);
+        listener.setMaximumBatchDelay(new Duration("1h"));
+        // Header of 6 bytes for each cache and 8 bytes per long key.
+        listener.setMaximumFrameSize(22);
+        cache.setListeners(Arrays.<CacheListener>asList(listener));
+        for (long i = 0; i < 5; i++) {
+            cache.put(i, "value" + i);
+        }
+        for (long i = 0; i < 5; i++) {
+            cache.remove(i);
+        }
+        listener.flush();
+        final List<Message> messages = sentMessages(clusterChannel, removeBatchCommand);
+        assertThat(messages.size(), is(3));
+        assertThat(messages.get(0).getLength(), is(22));
+        assertThat(messages.get(1).getLength(), is(22));
+        assertThat(messages.get(2).getLength(), is(14));
+
+        // noinspection unchecked
+        final Cache<Long, ?> receivingCache = mock(Cache.class);
+        doReturn(Long.class).when(receivingCache).getKeyType();
+        final CacheRepository receivingCacheRepository = cacheRepository();
+        doReturn(receivingCache).when(receivingCacheRepository).find("foo");
+        final RemoveOverClusterListener receivingListener = new RemoveOverClusterListener(receivingCacheRepository, clusterChannel());
+        receive(receivingListener, sentMessages(clusterChannel));
+        for (long i = 0; i < 5; i++) {
+            verify(receivingCache, wasInvokedTimes(1)).remove(i);
+        }
+        verify(receivingCache, wasInvokedTimes(5)).remove(anyObject());
+    }
+
+    @Test
+    public void testRemoveOfNonLegacyKeyIsSentBinary() throws Exception {
+        final LruCache<Short, String> cache = new LruCache<>(Short.class, String.class);
+        cache.setId("foo");
+        final HandlerEnabledClusterChannel<?, ?> clusterChannel = clusterChannel();
+        final RemoveOverClusterListener listener = new RemoveOverClusterListener(cacheRepository(), clusterChannel);
+        cache.setListeners(Arrays.<CacheListener>asList(listener));
+        cache.put((short) 1, "1");
+        cache.remove((short) 1);
+        assertThat(sentMessages(clusterChannel, removeCommand).size(), is(0));
+        assertThat(sentMessages(clusterChannel, removeBatchCommand).size(), is(1));
+
+        // noinspection unchecked
+        final Cache<Short, ?> receivingCache = mock(Cache.class);
+        doReturn(Short.class).when(receivingCache).getKeyType();
+        final CacheRepository receivingCacheRepository = cacheRepository();
+        doReturn(receivingCache).when(receivingCacheRepository).find("foo");
+        final RemoveOverClusterListener receivingListener = new RemoveOverClusterListener(receivingCacheRepository, clusterChannel());
+        receive(receivingListener, sentMessages(clusterChannel));
+        verify(receivingCache, wasInvokedTimes(1)).remove((short) 1);
+        verify(receivingCache, wasInvokedTimes(1)).remove(anyObject());
+    }
+
+    @Test
+    public void testWithoutLegacyFormat() throws Exception {
+        final LruCache<String, String> cache = new LruCache<>(String.class, String.class);
+        cache.setId("foo");
+        final HandlerEnabledClusterChannel<?, ?> clusterChannel = clusterChannel();
+        final RemoveOverClusterListener listener = new RemoveOverClusterListener(cacheRepository(), clusterChannel);
+        listener.setLegacyFormat(false);
+        cache.setListeners(Arrays.<CacheListener>asList(listener));
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.remove("a");
+        cache.remove("b");
+        assertThat(sentMessages(clusterChannel, removeCommand).size(), is(0));
+        assertThat(sentMessages(clusterChannel, removeBatchCommand).size(), is(2));
+        assertThat(sentMessages(clusterChannel, cacheIdDefinitionCommand).size(), is(1));
+    }
+
+    @Test
+    public void testUnknownCacheIdIsRequested() throws Exception {
+        final LruCache<String, String> cache = new LruCache<>(String.class, String.class);
+        cache.setId("foo");
+        final HandlerEnabledClusterChannel<?, ?> clusterChannel = clusterChannel();
+        final RemoveOverClusterListener listener = new RemoveOverClusterListener(cacheRepository(), clusterChannel);
+        listener.setLegacyFormat(false);
+        cache.setListeners(Arrays.<CacheListener>asList(listener));
+        cache.put("a", "1");
+        cache.remove("a");
+
+        // noinspection unchecked
+        final Cache<String, ?> receivingCache = mock(Cache.class);
+        doReturn(String.class).when(receivingCache).getKeyType();
+        final HandlerEnabledClusterChannel<?, ?> receivingClusterChannel = clusterChannel();
+        final CacheRepository receivingCacheRepository = cacheRepository();
+        doReturn(receivingCache).when(receivingCacheRepository).find("foo");
+        final RemoveOverClusterListener receivingListener = new RemoveOverClusterListener(receivingCacheRepository, receivingClusterChannel);
+        receive(receivingListener, sentMessages(clusterChannel, removeBatchCommand));
+        verify(receivingCache, wasInvokedTimes(0)).remove(anyObject());
+        assertThat(sentMessages(receivingClusterChannel, cacheIdRequestCommand).size(), is(1));
+
+        receive(receivingListener, sentMessages(clusterChannel, cacheIdDefinitionCommand));
+        verify(receivingCache, wasInvokedTimes(1)).remove("a");
+        verify(receivingCache, wasInvokedTimes(1)).remove(anyObject());
+    }
+
+    @Test
+    public void testRejectedBatchIsReleasedAndClearsTheCaches() throws Exception {
+        final LruCache<String, String> cache = new LruCache<>(String.class, String.class);
+        cache.setId("foo");
+        final HandlerEnabledClusterChannel<?, ?> clusterChannel = clusterChannel();
+        final RemoveOverClusterListener listener = new RemoveOverClusterListener(cacheRepository(), clusterChannel);
+        listener.setLegacyFormat(false);
+        cache.setListeners(Arrays.<CacheListener>asList(listener));
+        cache.put("a", "1");
+        cache.remove("a");
+
+        final LruCache<String, String> receivingCache = new LruCache<>(String.class, String.class);
+        receivingCache.setId("foo");
+        final HandlerEnabledClusterChannel<?, ?> receivingClusterChannel = clusterChannel();
+        final CacheRepository receivingCacheRepository = cacheRepository();
+        doReturn(Arrays.<Entry<String, Cache<?, ?>>>asList(new Entry.Impl<String, Cache<?, ?>>("foo", receivingCache)).iterator()).when(receivingCacheRepository).iterator();
+        final ClusterCacheIds receivingCacheIds = new ClusterCacheIds();
+        receivingCacheIds.setMaximumNumberOfPendingCallbacks(0);
+        final RemoveOverClusterListener receivingListener = new RemoveOverClusterListener(receivingCacheRepository, receivingClusterChannel, receivingCacheIds);
+        receivingCache.setListeners(Arrays.<CacheListener>asList(receivingListener));
+        receivingCache.put("a", "1");
+        receivingCache.put("b", "2");
+
+        final ReceivedMessage<Node<?>> message = message(sentMessages(clusterChannel, removeBatchCommand).get(0));
+        receivingListener.getMessageHandler().handle(receivingClusterChannel, message);
+        assertThat(sentMessages(receivingClusterChannel, cacheIdRequestCommand).size(), is(1));
+        // The cache the message belongs to is unknown, so the cache of the listener is cleared ...
+        assertThat(receivingCache.contains("a"), is(false));
+        assertThat(receivingCache.contains("b"), is(false));
+        // ... and the message is not retained anymore.
+        message.release();
+        try {
+            message.retain();
+            fail("Expected an IllegalStateException.");
+        } catch (final IllegalStateException ignored) {}
+    }
+
+    @Test
+    public void testUnresolvableBatchIsGivenUpAndReleased() throws Exception {
+        final LruCache<String, String> cache = new LruCache<>(String.class, String.class);
+        cache.setId("foo");
+        final HandlerEnabledClusterChannel<?, ?> clusterChannel = clusterChannel();
+        final RemoveOverClusterListener listener = new RemoveOverClusterListener(cacheRepository(), clusterChannel);
+        listener.setLegacyFormat(false);
+        cache.setListeners(Arrays.<CacheListener>asList(listener));
+        cache.put("a", "1");
+        cache.remove("a");
+
+        final LruCache<String, String> receivingCache = new LruCache<>(String.class, String.class);
+        receivingCache.setId("foo");
+        final HandlerEnabledClusterChannel<?, ?> receivingClusterChannel = clusterChannel();
+        final CacheRepository receivingCacheRepository = cacheRepository();
+        doReturn(Arrays.<Entry<String, Cache<?, ?>>>asList(new Entry.Impl<String, Cache<?, ?>>("foo", receivingCache)).iterator()).when(receivingCacheRepository).iterator();
+        final ClusterCacheIds receivingCacheIds = new ClusterCacheIds();
+        receivingCacheIds.setRequestInterval(new Duration("10ms"));
+        receivingCacheIds.setMaximumNumberOfRequests(2);
+        final RemoveOverClusterListener receivingListener = new RemoveOverClusterListener(receivingCacheRepository, receivingClusterChannel, receivingCacheIds);
+        receivingCache.setListeners(Arrays.<CacheListener>asList(receivingListener));
+        receivingCache.put("a", "1");
+        receivingCache.put("b", "2");
+
+        // The definition and all answers to the requests are lost ...
+        final ReceivedMessage<Node<?>> message = message(sentMessages(clusterChannel, removeBatchCommand).get(0));
+        receivingListener.getMessageHandler().handle(receivingClusterChannel, message);
+        assertThat(receivingCache.contains("b"), is(true));
+        for (int i = 0; i < 200 && receivingCache.contains("b"); i++) {
+            Thread.sleep(10);
+        }
+
+        // ... so the message is given up after the second request and the caches of the listener are cleared ...
+        assertThat(sentMessages(receivingClusterChannel, cacheIdRequestCommand).size(), is(2));
+        assertThat(receivingCache.contains("a"), is(false));
+        assertThat(receivingCache.contains("b"), is(false));
+        // ... and the message is not retained anymore.
+        message.release();
+        try {
+            message.retain();
+            fail("Expected an IllegalStateException.");
+        } catch (final IllegalStateException ignored) {}
+    }
+
+    @Test
+    public void testHandleOfMalformedBatch() throws Exception {
+        // noinspection unchecked
+        final Cache<String, ?> cache = mock(Cache.class);
+        doReturn(String.class).when(cache).getKeyType();
+        final HandlerEnabledClusterChannel<?, ?> clusterChannel = clusterChannel();
+        final CacheRepository cacheRepository = cacheRepository();
+        doReturn(cache).when(cacheRepository).find("foo");
+        final RemoveOverClusterListener listener = new RemoveOverClusterListener(cacheRepository, clusterChannel);
+        listener.getMessageHandler().handle(clusterChannel, message(new Message(removeBatchCommand, new byte[]{0, 1, 0, 0, 0, 9, 0, 1, 'a'})));
+        verify(cacheRepository, wasInvokedTimes(0)).find(anyString());
+        verify(cache, wasInvokedTimes(0)).remove(anyObject());
+    }
+
     @Test
     public void testInitAndClose() throws Exception {
         final HandlerEnabledClusterChannel<?, ?> clusterChannel = clusterChannel();
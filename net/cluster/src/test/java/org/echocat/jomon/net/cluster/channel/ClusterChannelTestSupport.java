@@ -136,6 +136,27 @@ public abstract class ClusterChannelTestSupport<ID, N extends Node<ID>, C extend
         }};
     }
 
+    @Nonnull
+    protected StateCondition<C> thatAllNodesAreJudgedByGossip(@Nonnull final Collection<C> channels) {
+        final Duration maxWaitTime = new Duration(channels.size() * 1500);
+        return new StateCondition<C>(maxWaitTime) { @Override public boolean check(@Nonnull C clusterChannel) throws Exception {
+            boolean result = true;
+            for (final C channel : channels) {
+                final Set<? extends N> nodes = channel.getNodes();
+                if (nodes.size() < channels.size() - 1) {
+                    result = false;
+                }
+                for (final N node : nodes) {
+                    // noinspection unchecked
+                    if (((GossipEnabledClusterChannel<ID, N>) channel).getSuspicionLevelOf(node) == null) {
+                        result = false;
+                    }
+                }
+            }
+            return result;
+        }};
+    }
+
     @Nonnull
     protected Map<String, AtomicInteger> getMessageToCount() {
         final Map<String, AtomicInteger> messageToCount = new HashMap<>();
@@ -0,0 +1,156 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel;
+
+import org.echocat.jomon.net.cluster.channel.multicast.MulticastNode;
+import org.echocat.jomon.runtime.util.Duration;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.echocat.jomon.net.cluster.channel.ClusterChannelConstants.gossipCommand;
+import static org.echocat.jomon.net.cluster.channel.ClusterChannelConstants.pingCommand;
+import static org.echocat.jomon.testing.Assert.assertThat;
+import static org.echocat.jomon.testing.Assert.fail;
+import static org.echocat.jomon.testing.BaseMatchers.*;
+import static org.echocat.jomon.testing.IterableMatchers.containsAllItemsOf;
+import static org.echocat.jomon.testing.IterableMatchers.hasSize;
+
+public class GossipMembershipUnitTest {
+
+    protected static final MulticastNode N1 = new MulticastNode((short) 1, new UUID(0, 1), new InetSocketAddress(1));
+    protected static final MulticastNode N2 = new MulticastNode((short) 2, new UUID(0, 2), new InetSocketAddress(2));
+    protected static final MulticastNode N3 = new MulticastNode((short) 3, new UUID(0, 3), new InetSocketAddress(3));
+
+    @Test
+    public void testMergeOfDirectAndIndirectDigests() throws Exception {
+        final GossipMembership m1 = membership(N1);
+        final GossipMembership m2 = membership(N2);
+        final GossipMembership m3 = membership(N3);
+        final RecordingListener listener = new RecordingListener();
+        m2.setListener(listener);
+
+        m3.merge(received(m1.createDigest(), N1));
+        m2.merge(received(m3.createDigest(), N3));
+
+        assertThat(m2.getAvailableMembers(), containsAllItemsOf(N1.getUuid(), N3.getUuid()));
+        assertThat(m2.getSuspicionLevelOf(N1.getUuid()), isNotNull());
+        assertThat(m2.getSuspicionLevelOf(N2.getUuid()), isNull());
+        // Only the direct sender is known as node and could be announced...
+        assertThat(listener.getEvents(), is(Arrays.asList("+" + N3)));
+
+        m2.merge(received(m1.createDigest(), N1));
+        assertThat(listener.getEvents(), is(Arrays.asList("+" + N3, "+" + N1)));
+    }
+
+    @Test
+    public void testUnavailableMembersAreReportedAndForgotten() throws Exception {
+        final GossipMembership m1 = membership(N1);
+        final GossipMembership m2 = membership(N2);
+        final RecordingListener listener = new RecordingListener();
+        m2.setListener(listener);
+        m2.getDetector().setMinimumStandardDeviation(new Duration(1));
+        m2.getDetector().setFirstHeartbeatEstimate(new Duration(4));
+        m2.setForgetAfter(new Duration(50));
+
+        final Message oldDigest = m1.createDigest();
+        m2.merge(received(oldDigest, N1));
+        assertThat(m2.isAvailable(N1.getUuid()), is(true));
+
+        Thread.sleep(100);
+        m2.evaluate();
+        assertThat(m2.isAvailable(N1.getUuid()), is(false));
+        assertThat(m2.getAvailableMembers(), hasSize(0));
+        assertThat(listener.getEvents(), is(Arrays.asList("+" + N1, "-" + N1)));
+
+        m2.merge(received(oldDigest, N1));
+        assertThat(m2.isAvailable(N1.getUuid()), is(false));
+
+        m2.merge(received(m1.createDigest(), N1));
+        assertThat(m2.isAvailable(N1.getUuid()), is(true));
+        assertThat(listener.getEvents(), is(Arrays.asList("+" + N1, "-" + N1, "+" + N1)));
+    }
+
+    @Test
+    public void testCapabilities() throws Exception {
+        final GossipMembership m1 = membership(N1);
+        final GossipMembership m2 = membership(N2);
+        final Message ping = m1.announceIn(MessageCompressor.createPingMessage());
+        assertThat(ping.getLength(), is(1));
+        assertThat(m2.selectTargets(Arrays.asList(N1, N2, N3)), hasSize(0));
+
+        m2.recordCapabilitiesOf(received(ping, N1));
+        assertThat(m2.isGossipingWith(N1.getUuid()), is(true));
+        assertThat(m2.selectTargets(Arrays.asList(N1, N2, N3)), is(Arrays.asList(N1)));
+
+        m2.recordCapabilitiesOf(received(MessageCompressor.createPingMessage(), N1));
+        assertThat(m2.isGossipingWith(N1.getUuid()), is(false));
+
+        m1.setEnabled(false);
+        assertThat(m1.announceIn(MessageCompressor.createPingMessage()), is(MessageCompressor.createPingMessage()));
+    }
+
+    @Test
+    public void testMergeOfIllegalDigest() throws Exception {
+        try {
+            membership(N1).merge(received(new Message(gossipCommand, new byte[]{0, 0, 0, 2, 1, 2, 3}), N2));
+            fail("Expected exception missing.");
+        } catch (final IOException ignored) {}
+        try {
+            membership(N1).merge(received(new Message(pingCommand, new byte[]{0, 0, 0, 0}), N2));
+            fail("Expected exception missing.");
+        } catch (final IOException ignored) {}
+    }
+
+    @Nonnull
+    protected static GossipMembership membership(@Nonnull Node<?> local) {
+        final GossipMembership result = new GossipMembership(local.getUuid());
+        result.setEnabled(true);
+        return result;
+    }
+
+    @Nonnull
+    protected static ReceivedMessage<MulticastNode> received(@Nonnull Message message, @Nonnull MulticastNode from) {
+        return new ReceivedMessage<>(message.getCommand(), message.getData(), message.getOffset(), message.getLength(), from);
+    }
+
+    protected static class RecordingListener implements GossipMembership.Listener {
+
+        private final List<String> _events = new ArrayList<>();
+
+        @Override
+        public synchronized void onAvailable(@Nonnull Node<?> node) {
+            _events.add("+" + node);
+        }
+
+        @Override
+        public synchronized void onUnavailable(@Nonnull Node<?> node) {
+            _events.add("-" + node);
+        }
+
+        @Nonnull
+        public synchronized List<String> getEvents() {
+            return new ArrayList<>(_events);
+        }
+
+    }
+
+}
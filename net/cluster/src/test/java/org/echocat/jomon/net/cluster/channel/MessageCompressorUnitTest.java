@@ -0,0 +1,113 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel;
+
+import org.echocat.jomon.net.cluster.channel.MessageCompressor.Compressed;
+import org.echocat.jomon.net.cluster.channel.multicast.MulticastNode;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.echocat.jomon.net.cluster.channel.ClusterChannelConstants.compressedCommand;
+import static org.echocat.jomon.net.cluster.channel.ClusterChannelConstants.pingCommand;
+import static org.echocat.jomon.testing.Assert.assertThat;
+import static org.echocat.jomon.testing.Assert.fail;
+import static org.echocat.jomon.testing.BaseMatchers.*;
+
+public class MessageCompressorUnitTest {
+
+    protected static final Charset CHARSET = Charset.forName("UTF-8");
+    protected static final MulticastNode NODE = new MulticastNode((short) 1, new UUID(0, 1), new InetSocketAddress(0));
+
+    @Test
+    public void testCompressAndDecompress() throws Exception {
+        final MessageCompressor compressor = compressor(10);
+        final Message original = new Message((byte) 3, repeated("abcdef", 100), CHARSET);
+
+        final Compressed compressed = compressor.compress(original);
+        assertThat(compressed, isNotNull());
+        assertThat(compressed.getCommand(), is(compressedCommand));
+        assertThat(compressed.getLength() < original.getLength(), is(true));
+        assertThat(compressed.getUncompressedLength(), is(original.getLength()));
+        assertThat(compressed.getOriginalCommand(), is((byte) 3));
+
+        final ReceivedMessage<MulticastNode> decompressed = MessageCompressor.decompress(received(compressed));
+        assertThat(decompressed.getCommand(), is((byte) 3));
+        assertThat(decompressed.getDataAsString(CHARSET), is(repeated("abcdef", 100)));
+        assertThat(decompressed.getFrom(), is(NODE));
+    }
+
+    @Test
+    public void testCompressIgnoresSmallAndIncompressibleMessages() throws Exception {
+        final MessageCompressor compressor = compressor(100);
+        assertThat(compressor.compress(new Message((byte) 3, repeated("a", 99), CHARSET)), isNull());
+
+        final byte[] random = new byte[1000];
+        new Random(666).nextBytes(random);
+        assertThat(compressor.compress(new Message((byte) 3, random)), isNull());
+
+        assertThat(new MessageCompressor().compress(new Message((byte) 3, repeated("a", 1000), CHARSET)), isNull());
+    }
+
+    @Test
+    public void testDecompressOfIllegalMessage() throws Exception {
+        try {
+            MessageCompressor.decompress(received(new Message(compressedCommand, new byte[]{3, 0, 0, 0, 10, 1, 2, 3})));
+            fail("Expected exception missing.");
+        } catch (final IOException ignored) {}
+    }
+
+    @Test
+    public void testCapabilities() throws Exception {
+        final MessageCompressor compressor = compressor(10);
+        final Message original = new Message((byte) 3, repeated("abcdef", 100), CHARSET);
+        assertThat(compressor.isSupportedBy(NODE), is(false));
+        assertThat(compressor.prepare(original).getFor(NODE), is(original));
+
+        compressor.recordCapabilitiesOf(received(MessageCompressor.createPingMessage()));
+        assertThat(compressor.isSupportedBy(NODE), is(true));
+        assertThat(compressor.prepare(original).getFor(NODE).getCommand(), is(compressedCommand));
+
+        compressor.recordCapabilitiesOf(received(new Message(pingCommand, new byte[0])));
+        assertThat(compressor.isSupportedBy(NODE), is(false));
+    }
+
+    @Nonnull
+    protected static MessageCompressor compressor(int threshold) {
+        final MessageCompressor result = new MessageCompressor();
+        result.setThreshold(threshold);
+        return result;
+    }
+
+    @Nonnull
+    protected static ReceivedMessage<MulticastNode> received(@Nonnull Message message) {
+        return new ReceivedMessage<>(message.getCommand(), message.getData(), message.getOffset(), message.getLength(), NODE);
+    }
+
+    @Nonnull
+    protected static String repeated(@Nonnull String what, int times) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(what);
+        }
+        return sb.toString();
+    }
+
+}
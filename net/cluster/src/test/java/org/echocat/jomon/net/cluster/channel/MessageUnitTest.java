@@ -0,0 +1,38 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel;
+
+import org.junit.Test;
+
+import static org.echocat.jomon.testing.Assert.assertThat;
+import static org.echocat.jomon.testing.BaseMatchers.is;
+
+public class MessageUnitTest {
+
+    @Test
+    public void testEqualsComparesOnlyThePayload() throws Exception {
+        final Message message = new Message((byte) 3, new byte[]{1, 2, 3});
+        final Message pooled = new Message((byte) 3, new byte[]{9, 1, 2, 3, 9, 9}, 1, 3);
+
+        assertThat(message.equals(pooled), is(true));
+        assertThat(pooled.equals(message), is(true));
+        assertThat(message.hashCode(), is(pooled.hashCode()));
+
+        assertThat(message.equals(new Message((byte) 4, new byte[]{1, 2, 3})), is(false));
+        assertThat(message.equals(new Message((byte) 3, new byte[]{1, 2, 4})), is(false));
+        assertThat(message.equals(new Message((byte) 3, new byte[]{1, 2, 3}, 2)), is(false));
+    }
+
+}
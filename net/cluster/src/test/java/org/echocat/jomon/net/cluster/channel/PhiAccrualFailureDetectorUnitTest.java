@@ -0,0 +1,71 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel;
+
+import org.junit.Test;
+
+import static org.echocat.jomon.testing.Assert.assertThat;
+import static org.echocat.jomon.testing.BaseMatchers.*;
+
+public class PhiAccrualFailureDetectorUnitTest {
+
+    @Test
+    public void testPhiGrowsWithTimeSinceLastHeartbeat() throws Exception {
+        final PhiAccrualFailureDetector<String> detector = new PhiAccrualFailureDetector<>();
+        final long last = heartbeats(detector, "a", 1000, 20);
+
+        assertThat(detector.phi("a", last + 500) < 1, is(true));
+        assertThat(detector.isAvailable("a", last + 500), is(true));
+        assertThat(detector.phi("a", last + 1500), isGreaterThan(detector.phi("a", last + 1000)));
+        assertThat(detector.phi("a", last + 3000), isGreaterThan(detector.getThreshold()));
+        assertThat(detector.isAvailable("a", last + 3000), is(false));
+    }
+
+    @Test
+    public void testPhiAdaptsToObservedIntervals() throws Exception {
+        final PhiAccrualFailureDetector<String> detector = new PhiAccrualFailureDetector<>();
+        final long lastOfFast = heartbeats(detector, "fast", 100, 100);
+        final long lastOfSlow = heartbeats(detector, "slow", 1000, 100);
+
+        assertThat(detector.phi("fast", lastOfFast + 500), isGreaterThan(detector.phi("slow", lastOfSlow + 500)));
+        assertThat(detector.isAvailable("slow", lastOfSlow + 500), is(true));
+    }
+
+    @Test
+    public void testUnknownAndRemovedKeys() throws Exception {
+        final PhiAccrualFailureDetector<String> detector = new PhiAccrualFailureDetector<>();
+        assertThat(detector.phi("a"), is(0d));
+        assertThat(detector.isAvailable("a"), is(true));
+        assertThat(detector.getLastHeartbeatAt("a"), isNull());
+
+        final long last = heartbeats(detector, "a", 1000, 5);
+        assertThat(detector.getLastHeartbeatAt("a"), is(last));
+        assertThat(detector.isAvailable("a", last + 10000), is(false));
+
+        detector.remove("a");
+        assertThat(detector.isAvailable("a", last + 10000), is(true));
+        assertThat(detector.getLastHeartbeatAt("a"), isNull());
+    }
+
+    protected static long heartbeats(PhiAccrualFailureDetector<String> detector, String key, long interval, int count) {
+        long at = 0;
+        for (int i = 0; i < count; i++) {
+            at += interval;
+            detector.heartbeat(key, at);
+        }
+        return at;
+    }
+
+}
@@ -0,0 +1,155 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel.multicast;
+
+import org.echocat.jomon.net.cluster.channel.Message;
+import org.echocat.jomon.net.cluster.channel.ReceivedMessage;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.echocat.jomon.net.cluster.channel.ClusterChannelConstants.fragmentCommand;
+import static org.echocat.jomon.net.cluster.channel.multicast.FragmentReassembler.ENTRY_OVERHEAD;
+import static org.echocat.jomon.net.cluster.channel.multicast.FragmentReassembler.SLOT_OVERHEAD;
+import static org.echocat.jomon.testing.Assert.assertThat;
+import static org.echocat.jomon.testing.BaseMatchers.*;
+
+public class FragmentReassemblerUnitTest {
+
+    private static final MulticastNode NODE = new MulticastNode((short) 1, UUID.randomUUID(), new InetSocketAddress("localhost", 1));
+
+    @Test
+    public void testSmallMessagesAreNotFragmented() throws Exception {
+        final MessageFragmenter fragmenter = new MessageFragmenter();
+        final Message message = new Message((byte) 1, new byte[100]);
+        assertThat(fragmenter.fragment(message, 100), is(Collections.singletonList(message)));
+        assertThat(fragmenter.getMessagesFragmented(), is(0L));
+    }
+
+    @Test
+    public void testReassemblesFragmentsInAnyOrder() throws Exception {
+        final MessageFragmenter fragmenter = new MessageFragmenter();
+        final byte[] data = dataOf(1000);
+        final List<Message> fragments = fragmenter.fragment(new Message((byte) 5, data), 109);
+        assertThat(fragments.size(), is(10));
+        assertThat(fragments.get(0).getCommand(), is(fragmentCommand));
+        assertThat(fragmenter.getFragmentsCreated(), is(10L));
+
+        Collections.reverse(fragments);
+        final FragmentReassembler reassembler = new FragmentReassembler(10000, 1000);
+        for (int i = 0; i < fragments.size() - 1; i++) {
+            assertThat(reassembler.reassemble(received(fragments.get(i)), 0), isNull());
+            assertThat(reassembler.reassemble(received(fragments.get(i)), 0), isNull());
+        }
+        final ReceivedMessage<MulticastNode> message = reassembler.reassemble(received(fragments.get(fragments.size() - 1)), 0);
+        assertThat(message, isNotNull());
+        assertThat(message.getCommand(), is((byte) 5));
+        assertThat(Arrays.equals(message.getData(), data), is(true));
+        assertThat(message.getFrom(), isSameAs(NODE));
+        assertThat(reassembler.getBytes(), is(0L));
+        assertThat(reassembler.getMessagesReassembled(), is(1L));
+        assertThat(reassembler.getFragmentsReassembled(), is(10L));
+        assertThat(reassembler.getFailures(), is(0L));
+    }
+
+    @Test
+    public void testDropsExpiredMessages() throws Exception {
+        final MessageFragmenter fragmenter = new MessageFragmenter();
+        final List<Message> fragments = fragmenter.fragment(new Message((byte) 5, dataOf(300)), 109);
+        final FragmentReassembler reassembler = new FragmentReassembler(10000, 1000);
+        reassembler.reassemble(received(fragments.get(0)), 0);
+        reassembler.dropExpired(999);
+        assertThat(reassembler.getFailures(), is(0L));
+        assertThat(reassembler.getBytes(), is(100L + ENTRY_OVERHEAD + 3 * SLOT_OVERHEAD));
+
+        reassembler.dropExpired(1000);
+        assertThat(reassembler.getFailures(), is(1L));
+        assertThat(reassembler.getBytes(), is(0L));
+    }
+
+    @Test
+    public void testRespectsMemoryLimit() throws Exception {
+        final MessageFragmenter fragmenter = new MessageFragmenter();
+        final List<Message> first = fragmenter.fragment(new Message((byte) 5, dataOf(300)), 109);
+        final List<Message> second = fragmenter.fragment(new Message((byte) 6, dataOf(300)), 109);
+        final long entry = ENTRY_OVERHEAD + 3 * SLOT_OVERHEAD;
+        final FragmentReassembler reassembler = new FragmentReassembler(350 + 2 * entry, 1000);
+        reassembler.reassemble(received(first.get(0)), 0);
+        reassembler.reassemble(received(first.get(1)), 0);
+        reassembler.reassemble(received(second.get(0)), 0);
+        assertThat(reassembler.getBytes(), is(300L + 2 * entry));
+
+        // The oldest incomplete message have to make room for the new fragment...
+        reassembler.reassemble(received(second.get(1)), 0);
+        assertThat(reassembler.getFailures(), is(1L));
+        assertThat(reassembler.getBytes(), is(200L + entry + ENTRY_OVERHEAD));
+
+        // ...and its remaining fragments are ignored.
+        assertThat(reassembler.reassemble(received(first.get(2)), 0), isNull());
+        assertThat(reassembler.getFailures(), is(1L));
+
+        final ReceivedMessage<MulticastNode> message = reassembler.reassemble(received(second.get(2)), 0);
+        assertThat(message, isNotNull());
+        assertThat(message.getCommand(), is((byte) 6));
+    }
+
+    @Test
+    public void testChargesAnnouncedFragments() throws Exception {
+        final MessageFragmenter fragmenter = new MessageFragmenter();
+        final List<Message> fragments = fragmenter.fragment(new Message((byte) 5, dataOf(10000)), 109);
+        final FragmentReassembler reassembler = new FragmentReassembler(ENTRY_OVERHEAD + 10 * SLOT_OVERHEAD, 1000);
+
+        // Not a single fragment is stored but the slots of all 100 announced fragments would exceed the limit.
+        assertThat(reassembler.reassemble(received(fragments.get(0)), 0), isNull());
+        assertThat(reassembler.getFailures(), is(1L));
+        assertThat(reassembler.getBytes(), is(0L));
+    }
+
+    @Test
+    public void testRespectsMaximumIncompletes() throws Exception {
+        final MessageFragmenter fragmenter = new MessageFragmenter();
+        final List<Message> first = fragmenter.fragment(new Message((byte) 5, dataOf(300)), 109);
+        final List<Message> second = fragmenter.fragment(new Message((byte) 6, dataOf(300)), 109);
+        final List<Message> third = fragmenter.fragment(new Message((byte) 7, dataOf(300)), 109);
+        final FragmentReassembler reassembler = new FragmentReassembler(10000, 2, 1000);
+        reassembler.reassemble(received(first.get(0)), 0);
+        reassembler.reassemble(received(second.get(0)), 0);
+        assertThat(reassembler.getFailures(), is(0L));
+
+        reassembler.reassemble(received(third.get(0)), 0);
+        assertThat(reassembler.getFailures(), is(1L));
+        assertThat(reassembler.getBytes(), is(2 * (100L + ENTRY_OVERHEAD + 3 * SLOT_OVERHEAD)));
+
+        reassembler.reassemble(received(second.get(1)), 0);
+        assertThat(reassembler.reassemble(received(second.get(2)), 0), isNotNull());
+    }
+
+    protected static ReceivedMessage<MulticastNode> received(Message message) {
+        return new ReceivedMessage<>(message.getCommand(), message.getData(), message.getOffset(), message.getLength(), NODE);
+    }
+
+    protected static byte[] dataOf(int length) {
+        final byte[] result = new byte[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = (byte) i;
+        }
+        return result;
+    }
+
+}
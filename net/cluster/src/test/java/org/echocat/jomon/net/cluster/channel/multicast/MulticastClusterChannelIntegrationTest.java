@@ -72,6 +72,67 @@ public class MulticastClusterChannelIntegrationTest extends ClusterChannelTestSu
         }
     }
 
+    @Test
+    @Ignore("Does currently not work on not good performing test machines.")
+    public void test3InstancesReliable() throws Exception {
+        final List<MulticastClusterChannel> channels = channels(U1, U2, U3);
+        try {
+            for (final MulticastClusterChannel channel : channels) {
+                channel.setReliable(true);
+            }
+            channels.get(0).send(message("message1"));
+            channels.get(0).send(message("message2"));
+            waitFor(thatQueuesAreEmptyAndReceivedMessages(channels, message(channels.get(1), "message1", U1), message(channels.get(2), "message1", U1), message(channels.get(1), "message2", U1), message(channels.get(2), "message2", U1)));
+            for (final MulticastClusterChannel channel : channels) {
+                assertThat(channel.getMessagesLost(), is(0L));
+            }
+        } finally {
+            closeQuietly(channels);
+        }
+    }
+
+    @Test
+    @Ignore("Does currently not work on not good performing test machines.")
+    public void test3InstancesReliableWithReinitializedInstance() throws Exception {
+        final List<MulticastClusterChannel> channels = channels(U1, U2, U3);
+        try {
+            for (final MulticastClusterChannel channel : channels) {
+                channel.setReliable(true);
+            }
+            channels.get(0).send(message("message1"));
+            waitFor(thatQueuesAreEmptyAndReceivedMessages(channels, message(channels.get(1), "message1", U1), message(channels.get(2), "message1", U1)));
+            resetMessageHandler();
+
+            // The instance keeps its uuid but starts its sequence numbers from the beginning...
+            channels.get(0).close();
+            channels.get(0).init();
+            channels.get(0).send(message("message2"));
+            waitFor(thatQueuesAreEmptyAndReceivedMessages(channels, message(channels.get(1), "message2", U1), message(channels.get(2), "message2", U1)));
+        } finally {
+            closeQuietly(channels);
+        }
+    }
+
+    @Test
+    @Ignore("Does currently not work on not good performing test machines.")
+    public void test3InstancesWithLargeMessage() throws Exception {
+        final List<MulticastClusterChannel> channels = channels(U1, U2, U3);
+        try {
+            final StringBuilder sb = new StringBuilder();
+            while (sb.length() < 100000) {
+                sb.append("message").append(sb.length());
+            }
+            final String largeMessage = sb.toString();
+            channels.get(0).send(message(largeMessage));
+            waitFor(thatQueuesAreEmptyAndReceivedMessages(channels, message(channels.get(1), largeMessage, U1), message(channels.get(2), largeMessage, U1)));
+            assertThat(channels.get(0).getMessagesFragmented(), is(1L));
+            assertThat(channels.get(0).getFragmentsPerMessage(), isGreaterThan(1d));
+            assertThat(channels.get(1).getReassemblyFailures(), is(0L));
+        } finally {
+            closeQuietly(channels);
+        }
+    }
+
     @Test
     public void test1InstanceConcurrent() throws Exception {
         final MulticastClusterChannel channel = channel(U1);
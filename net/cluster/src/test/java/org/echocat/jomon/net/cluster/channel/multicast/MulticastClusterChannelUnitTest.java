@@ -0,0 +1,74 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel.multicast;
+
+import org.echocat.jomon.net.cluster.channel.ByteUtils;
+import org.echocat.jomon.net.cluster.channel.HandlerEnabledClusterChannel;
+import org.echocat.jomon.net.cluster.channel.HandlerEnabledClusterChannel.MessageHandler;
+import org.echocat.jomon.net.cluster.channel.ReceivedMessage;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.echocat.jomon.net.cluster.channel.ClusterChannelConstants.sequencedCommand;
+import static org.echocat.jomon.testing.Assert.assertThat;
+import static org.echocat.jomon.testing.BaseMatchers.is;
+
+public class MulticastClusterChannelUnitTest {
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final MulticastNode NODE = new MulticastNode((short) 1, new UUID(0, 2), new InetSocketAddress("localhost", 1));
+
+    @Test
+    public void testSequencesOfReinitializedSenderAreNotDroppedAsDuplicates() throws Exception {
+        final MulticastClusterChannel channel = new MulticastClusterChannel(new UUID(0, 1));
+        final List<String> received = new ArrayList<>();
+        channel.register(new MessageHandler() {
+            @Override
+            public void handle(@Nonnull HandlerEnabledClusterChannel<?, ?> clusterChannel, @Nonnull ReceivedMessage<?> message) {
+                received.add(message.getDataAsString(CHARSET));
+            }
+        });
+
+        channel.receive(sequenced(1, 1, "message1"));
+        channel.receive(sequenced(1, 2, "message2"));
+        channel.receive(sequenced(1, 1, "message1"));
+        assertThat(received, is(Arrays.asList("message1", "message2")));
+
+        // The sender was re-initialized - it keeps its uuid but starts its sequence numbers from the beginning...
+        channel.receive(sequenced(2, 1, "message3"));
+        channel.receive(sequenced(2, 2, "message4"));
+        assertThat(received, is(Arrays.asList("message1", "message2", "message3", "message4")));
+        assertThat(channel.getMessagesLost(), is(0L));
+    }
+
+    @Nonnull
+    protected static ReceivedMessage<MulticastNode> sequenced(long epoch, long sequence, @Nonnull String text) {
+        final byte[] data = text.getBytes(CHARSET);
+        final byte[] payload = new byte[17 + data.length];
+        ByteUtils.putLong(payload, 0, epoch);
+        ByteUtils.putLong(payload, 8, sequence);
+        payload[16] = (byte) 1;
+        System.arraycopy(data, 0, payload, 17, data.length);
+        return new ReceivedMessage<>(sequencedCommand, payload, NODE);
+    }
+
+}
@@ -0,0 +1,116 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel.multicast;
+
+import org.echocat.jomon.net.cluster.channel.ReceivedMessage;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.echocat.jomon.testing.Assert.assertThat;
+import static org.echocat.jomon.testing.BaseMatchers.*;
+
+public class ReceiveWindowUnitTest {
+
+    private static final MulticastNode NODE = new MulticastNode((short) 1, UUID.randomUUID(), new InetSocketAddress("localhost", 1));
+
+    @Test
+    public void testDeliversInOrder() throws Exception {
+        final ReceiveWindow window = new ReceiveWindow(0, 10, 50, 3);
+        assertThat(toSequences(window.receive(1, message(1))), is(Arrays.asList(1)));
+        assertThat(toSequences(window.receive(3, message(3))), is(Arrays.<Integer>asList()));
+        assertThat(toSequences(window.receive(4, message(4))), is(Arrays.<Integer>asList()));
+        assertThat(window.hasGap(), is(true));
+        assertThat(toSequences(window.receive(2, message(2))), is(Arrays.asList(2, 3, 4)));
+        assertThat(window.hasGap(), is(false));
+        assertThat(window.getNext(), is(5L));
+    }
+
+    @Test
+    public void testCountsDuplicates() throws Exception {
+        final ReceiveWindow window = new ReceiveWindow(0, 10, 50, 3);
+        window.receive(1, message(1));
+        window.receive(3, message(3));
+        assertThat(toSequences(window.receive(1, message(1))), is(Arrays.<Integer>asList()));
+        assertThat(toSequences(window.receive(3, message(3))), is(Arrays.<Integer>asList()));
+        assertThat(window.getDuplicates(), is(2L));
+    }
+
+    @Test
+    public void testNaksGapsAndGivesUp() throws Exception {
+        final ReceiveWindow window = new ReceiveWindow(0, 10, 50, 2);
+        window.receive(1, message(1));
+        window.receive(4, message(4));
+
+        assertThat(Arrays.toString(window.nakIfRequired(1000)), is("[2, 3]"));
+        assertThat(window.nakIfRequired(1010), isNull());
+        assertThat(toSequences(window.giveUpIfRequired(1060)), is(Arrays.<Integer>asList()));
+        assertThat(Arrays.toString(window.nakIfRequired(1060)), is("[2, 3]"));
+        assertThat(window.nakIfRequired(1200), isNull());
+
+        assertThat(toSequences(window.giveUpIfRequired(1200)), is(Arrays.asList(4)));
+        assertThat(window.getLost(), is(2L));
+        assertThat(window.hasGap(), is(false));
+    }
+
+    @Test
+    public void testAnnouncementRevealsLossOfLastMessages() throws Exception {
+        final ReceiveWindow window = new ReceiveWindow(0, 10, 50, 2);
+        window.receive(1, message(1));
+        assertThat(window.hasGap(), is(false));
+
+        window.announce(3);
+        assertThat(window.hasGap(), is(true));
+        assertThat(Arrays.toString(window.nakIfRequired(1000)), is("[2, 3]"));
+    }
+
+    @Test
+    public void testGivesUpGapIfTooManyMessagesArePending() throws Exception {
+        final ReceiveWindow window = new ReceiveWindow(0, 2, 50, 5);
+        window.receive(1, message(1));
+        window.receive(3, message(3));
+        window.receive(4, message(4));
+        assertThat(toSequences(window.receive(6, message(6))), is(Arrays.asList(3, 4)));
+        assertThat(window.getLost(), is(1L));
+        assertThat(window.getNext(), is(5L));
+    }
+
+    @Test
+    public void testGiveUpAllDeliversAllHoldBackMessages() throws Exception {
+        final ReceiveWindow window = new ReceiveWindow(0, 10, 50, 5);
+        window.receive(1, message(1));
+        window.receive(3, message(3));
+        window.receive(6, message(6));
+        assertThat(toSequences(window.giveUpAll()), is(Arrays.asList(3, 6)));
+        assertThat(window.getLost(), is(3L));
+    }
+
+    protected static ReceivedMessage<MulticastNode> message(int sequence) {
+        return new ReceivedMessage<>((byte) 1, new byte[]{(byte) sequence}, NODE);
+    }
+
+    protected static List<Integer> toSequences(Iterable<ReceivedMessage<MulticastNode>> messages) {
+        final List<Integer> result = new ArrayList<>();
+        for (final ReceivedMessage<MulticastNode> message : messages) {
+            result.add((int) message.getData()[message.getOffset()]);
+        }
+        return result;
+    }
+
+}
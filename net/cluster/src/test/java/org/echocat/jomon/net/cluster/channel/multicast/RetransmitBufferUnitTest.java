@@ -0,0 +1,53 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel.multicast;
+
+import org.echocat.jomon.net.cluster.channel.Message;
+import org.junit.Test;
+
+import static org.echocat.jomon.testing.Assert.assertThat;
+import static org.echocat.jomon.testing.BaseMatchers.*;
+
+public class RetransmitBufferUnitTest {
+
+    @Test
+    public void testEvictsOldestMessages() throws Exception {
+        final RetransmitBuffer buffer = new RetransmitBuffer(2);
+        final Message first = new Message((byte) 1, new byte[]{1});
+        final Message second = new Message((byte) 1, new byte[]{2});
+        final Message third = new Message((byte) 1, new byte[]{3});
+        buffer.put(1, first);
+        buffer.put(2, second);
+        assertThat(buffer.getForRetransmit(1, 0, 0), isSameAs(first));
+
+        buffer.put(3, third);
+        assertThat(buffer.getForRetransmit(1, 0, 0), isNull());
+        assertThat(buffer.getForRetransmit(2, 0, 0), isSameAs(second));
+        assertThat(buffer.getForRetransmit(3, 0, 0), isSameAs(third));
+        assertThat(buffer.getForRetransmit(4, 0, 0), isNull());
+    }
+
+    @Test
+    public void testSuppressesRepeatedRetransmits() throws Exception {
+        final RetransmitBuffer buffer = new RetransmitBuffer(4);
+        final Message message = new Message((byte) 1, new byte[]{1});
+        buffer.put(1, message);
+
+        assertThat(buffer.getForRetransmit(1, 1000, 100), isSameAs(message));
+        assertThat(buffer.getForRetransmit(1, 1050, 100), isNull());
+        assertThat(buffer.getForRetransmit(1, 1100, 100), isSameAs(message));
+    }
+
+}
@@ -0,0 +1,129 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2013 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel.tcp;
+
+import org.echocat.jomon.net.cluster.channel.ReceiveBufferPool;
+import org.echocat.jomon.net.cluster.channel.ReceivedMessage;
+import org.echocat.jomon.net.cluster.channel.tcp.InboundTcpWorker.Reader;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.util.UUID;
+
+import static java.lang.Thread.currentThread;
+import static org.echocat.jomon.net.cluster.channel.ByteUtils.putInt;
+import static org.echocat.jomon.net.cluster.channel.ByteUtils.putLong;
+import static org.echocat.jomon.testing.Assert.assertThat;
+import static org.echocat.jomon.testing.BaseMatchers.is;
+import static org.echocat.jomon.testing.BaseMatchers.isLessThan;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares the allocated bytes per received message of the {@link InboundTcpWorker} with and without a
+ * {@link ReceiveBufferPool}.
+ */
+public class InboundTcpWorkerPerformanceTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InboundTcpWorkerPerformanceTest.class);
+
+    private static final int NUMBER_OF_MESSAGES = 100000;
+    private static final int PAYLOAD_SIZE = 512;
+    private static final byte[] FRAMES = frames(NUMBER_OF_MESSAGES, PAYLOAD_SIZE);
+
+    @Test
+    public void testAllocationsPerMessage() throws Exception {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled());
+        final com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threadMXBean;
+
+        // Warm up...
+        receiveAll(null);
+        receiveAll(new ReceiveBufferPool(16));
+
+        final long unpooled = bytesAllocatedPerMessage(allocations, null);
+        final long pooled = bytesAllocatedPerMessage(allocations, new ReceiveBufferPool(16));
+        LOG.info("Allocated bytes per message of " + PAYLOAD_SIZE + " bytes payload - unpooled: " + unpooled + ", pooled: " + pooled);
+        assertThat(pooled, isLessThan(unpooled - PAYLOAD_SIZE / 2));
+    }
+
+    protected long bytesAllocatedPerMessage(@Nonnull com.sun.management.ThreadMXBean allocations, @Nullable ReceiveBufferPool bufferPool) throws IOException {
+        final long threadId = currentThread().getId();
+        final long before = allocations.getThreadAllocatedBytes(threadId);
+        receiveAll(bufferPool);
+        final long after = allocations.getThreadAllocatedBytes(threadId);
+        return (after - before) / NUMBER_OF_MESSAGES;
+    }
+
+    protected void receiveAll(@Nullable ReceiveBufferPool bufferPool) throws IOException {
+        final CountingReader reader = new CountingReader();
+        final InboundTcpWorker worker = new InboundTcpWorker(reader, new StreamSocket(FRAMES), new UUID(0, 1), "test", "test", bufferPool);
+        // Run the worker inside of this thread to be able to measure the allocations of it.
+        worker.run();
+        assertThat(reader.getNumberOfMessages(), is(NUMBER_OF_MESSAGES));
+    }
+
+    @Nonnull
+    protected static byte[] frames(@Nonnegative int numberOfMessages, @Nonnegative int payloadSize) {
+        final byte[] result = new byte[16 + (numberOfMessages * (5 + payloadSize))];
+        putLong(result, 0, 0);
+        putLong(result, 8, 2);
+        int position = 16;
+        for (int i = 0; i < numberOfMessages; i++) {
+            result[position] = 10;
+            putInt(result, position + 1, payloadSize);
+            position += 5 + payloadSize;
+        }
+        return result;
+    }
+
+    protected static class CountingReader implements Reader {
+
+        private int _numberOfMessages;
+
+        @Override
+        public void read(@Nonnull ReceivedMessage<TcpNode> message) throws IOException {
+            _numberOfMessages++;
+            message.release();
+        }
+
+        @Override public void onClose(@Nonnull InboundTcpWorker worker) throws Exception {}
+
+        public int getNumberOfMessages() {
+            return _numberOfMessages;
+        }
+    }
+
+    protected static class StreamSocket extends Socket {
+
+        private final InputStream _inputStream;
+
+        public StreamSocket(@Nonnull byte[] content) {
+            _inputStream = new ByteArrayInputStream(content);
+        }
+
+        @Override public InputStream getInputStream() { return _inputStream; }
+        @Override public OutputStream getOutputStream() { return new ByteArrayOutputStream(); }
+        @Override public boolean isConnected() { return true; }
+    }
+
+}
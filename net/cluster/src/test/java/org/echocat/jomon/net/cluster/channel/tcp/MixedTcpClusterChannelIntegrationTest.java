@@ -0,0 +1,130 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel.tcp;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.echocat.jomon.net.FreeTcpPortDetector;
+import org.echocat.jomon.net.cluster.channel.*;
+import org.echocat.jomon.runtime.util.Duration;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.echocat.jomon.net.NetworkInterfaceQuery.networkInterface;
+import static org.echocat.jomon.net.NetworkInterfaceRepository.networkInterfaceRepository;
+import static org.echocat.jomon.net.NetworkInterfaceType.loopBack;
+import static org.echocat.jomon.testing.Assert.assertThat;
+import static org.echocat.jomon.testing.BaseMatchers.isInstanceOf;
+import static org.echocat.jomon.testing.IterableMatchers.containsAllItemsOf;
+import static org.echocat.jomon.testing.IterableMatchers.hasSize;
+
+/**
+ * Runs a cluster of {@link TcpClusterChannel} and {@link NioTcpClusterChannel} nodes side by side to prove that both speak the same
+ * protocol on the wire.
+ */
+public class MixedTcpClusterChannelIntegrationTest extends ClusterChannelTestSupport<UUID, TcpNode, NetBasedClusterChannel<UUID, TcpNode>> {
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public MixedTcpClusterChannelIntegrationTest() {
+        super((Class) NetBasedClusterChannel.class);
+    }
+
+    @Test
+    public void test4MixedInstances() throws Exception {
+        final List<NetBasedClusterChannel<UUID, TcpNode>> channels = channels(U1, U2, U3, U4);
+        try {
+            assertThat(channels.get(0), isInstanceOf(TcpClusterChannel.class));
+            assertThat(channels.get(1), isInstanceOf(NioTcpClusterChannel.class));
+
+            channels.get(0).send(message("message1"));
+            waitFor(thatQueuesAreEmptyAndReceivedMessages(channels, message(channels.get(1), "message1", U1), message(channels.get(2), "message1", U1), message(channels.get(3), "message1", U1)));
+            resetMessageHandler();
+
+            channels.get(1).send(message("message2"));
+            waitFor(thatQueuesAreEmptyAndReceivedMessages(channels, message(channels.get(0), "message2", U2), message(channels.get(2), "message2", U2), message(channels.get(3), "message2", U2)));
+
+            for (final NetBasedClusterChannel<UUID, TcpNode> channel : channels) {
+                assertThat(channel.getNodes(), hasSize(3));
+            }
+        } finally {
+            closeQuietly(channels);
+        }
+    }
+
+    @Nonnull
+    protected StateCondition<NetBasedClusterChannel<UUID, TcpNode>> thatQueuesAreEmptyAndReceivedMessages(@Nonnull final List<NetBasedClusterChannel<UUID, TcpNode>> channels, @Nonnull final Pair<NetBasedClusterChannel<UUID, TcpNode>, ReceivedMessage<TcpNode>>... messages) {
+        return new StateCondition<NetBasedClusterChannel<UUID, TcpNode>>(new Duration(channels.size() * 1000)) {
+            @Override
+            public boolean check(@Nonnull NetBasedClusterChannel<UUID, TcpNode> clusterChannel) throws Exception {
+                assertThat(getReceivedMessages(), containsAllItemsOf(messages));
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Creates a {@link TcpClusterChannel} for every odd and a {@link NioTcpClusterChannel} for every even uuid.
+     */
+    @Override
+    @Nonnull
+    protected NetBasedClusterChannel<UUID, TcpNode> channel(@Nonnull UUID uuid) throws Exception {
+        final NetBasedClusterChannel<UUID, TcpNode> channel = uuid.getLeastSignificantBits() % 2 != 0 ? new TcpClusterChannel(uuid) : new NioTcpClusterChannel(uuid);
+        final NetworkInterface loopBackInterface = networkInterfaceRepository().findOneBy(
+            networkInterface().whichIsOfType(loopBack)
+        );
+        final int port = new FreeTcpPortDetector(loopBackInterface, 10000, 50000).detect();
+        ((AddressEnabledClusterChannel<?, ?>) channel).setAddress(new InetSocketAddress(port), loopBackInterface);
+        channel.register(getMessageHandler());
+        channel.register(getStateHandler());
+        channel.setName(uuid.getLeastSignificantBits() + "");
+        return channel;
+    }
+
+    @Override
+    protected void afterAllChannelsCreated(@Nonnull List<NetBasedClusterChannel<UUID, TcpNode>> channels) throws Exception {
+        super.afterAllChannelsCreated(channels);
+        final Set<InetSocketAddress> remotes = new HashSet<>();
+        for (final NetBasedClusterChannel<UUID, TcpNode> channel : channels) {
+            remotes.add(((AddressEnabledClusterChannel<?, ?>) channel).getAddress());
+        }
+        for (final NetBasedClusterChannel<UUID, TcpNode> channel : channels) {
+            ((RemoteAddressesEnabledClusterChannel<?, ?>) channel).setRemoteAddresses(remotes);
+        }
+        for (final NetBasedClusterChannel<UUID, TcpNode> channel : channels) {
+            channel.init();
+        }
+        for (final NetBasedClusterChannel<UUID, TcpNode> channel : channels) {
+            channel.ping();
+        }
+    }
+
+    @Nonnull
+    @Override
+    protected TcpNode createNode(@Nonnull final UUID uuid) {
+        return new TcpNodeSupport(uuid) {
+            @Nonnull
+            @Override
+            public InetSocketAddress getAddress() {
+                return new InetSocketAddress((int) uuid.getLeastSignificantBits());
+            }
+        };
+    }
+}
@@ -0,0 +1,70 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.net.cluster.channel.tcp;
+
+import org.echocat.jomon.net.cluster.channel.Message;
+import org.echocat.jomon.net.cluster.channel.MessageCompressor;
+import org.echocat.jomon.net.cluster.channel.MessageCompressor.Compressed;
+import org.echocat.jomon.net.cluster.channel.ReceivedMessage;
+import org.echocat.jomon.net.cluster.channel.tcp.OutboundTcpHandler.Sender;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.echocat.jomon.testing.Assert.assertThat;
+import static org.echocat.jomon.testing.BaseMatchers.is;
+import static org.echocat.jomon.testing.BaseMatchers.isInstanceOf;
+
+public class OutboundTcpHandlerUnitTest {
+
+    protected static final Charset CHARSET = Charset.forName("UTF-8");
+
+    @Test
+    public void testCompressedMessagesAreQueuedInTheLaneOfTheirOriginalCommand() throws Exception {
+        final MessageCompressor compressor = new MessageCompressor();
+        compressor.setThreshold(10);
+        final OutboundTcpHandler handler = new OutboundTcpHandler("test", new UUID(0, 1), 10, "test", false, false);
+        handler.setCompressor(compressor);
+        handler.setSendingLanes(Arrays.asList(new SendingLane("critical", 10, 4, false, (byte) 1), new SendingLane("bulk", 10, 1, true, (byte) 2)));
+        final OutboundTcpNode node = new OutboundTcpNode(new UUID(0, 2), new Socket(), new ByteArrayOutputStream());
+        final Message ping = MessageCompressor.createPingMessage();
+        compressor.recordCapabilitiesOf(new ReceivedMessage<>(ping.getCommand(), ping.getData(), node));
+        final Sender sender = handler.new Sender(node);
+
+        final Message critical = new Message((byte) 1, repeated("abcdef", 100), CHARSET);
+        final Message toSendCritical = handler.messageFor(critical, handler.prepare(critical), node);
+        assertThat(toSendCritical, isInstanceOf(Compressed.class));
+        assertThat(sender.laneFor(toSendCritical).getName(), is("critical"));
+
+        final Message bulk = new Message((byte) 2, repeated("abcdef", 100), CHARSET);
+        assertThat(sender.laneFor(handler.messageFor(bulk, handler.prepare(bulk), node)).getName(), is("bulk"));
+
+        final Message other = new Message((byte) 3, repeated("abcdef", 100), CHARSET);
+        assertThat(sender.laneFor(handler.messageFor(other, handler.prepare(other), node)).getName(), is(OutboundTcpHandler.DEFAULT_LANE_NAME));
+    }
+
+    protected static String repeated(String what, int times) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(what);
+        }
+        return sb.toString();
+    }
+
+}
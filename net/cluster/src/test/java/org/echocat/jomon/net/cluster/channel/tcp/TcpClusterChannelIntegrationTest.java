@@ -76,6 +76,73 @@ public class TcpClusterChannelIntegrationTest extends ClusterChannelTestSupport<
         }
     }
 
+    @Test
+    public void test3InstancesWithCompression() throws Exception {
+        final List<TcpClusterChannel> channels = channels(U1, U2, U3);
+        try {
+            for (final TcpClusterChannel channel : channels) {
+                channel.setCompressionThreshold(64);
+                channel.ping();
+            }
+            final StringBuilder content = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                content.append("message").append(i % 3);
+            }
+            channels.get(0).send(message(content.toString()));
+            waitFor(thatQueuesAreEmptyAndReceivedMessages(channels, message(channels.get(1), content.toString(), U1), message(channels.get(2), content.toString(), U1)));
+
+            for (final TcpClusterChannel channel : channels) {
+                _logger.info("Nodes status of (" + channel + "):\n" + formatNodesStatusOf(channel));
+            }
+        } finally {
+            closeQuietly(channels);
+        }
+    }
+
+    @Test
+    public void test3InstancesWithSendingLanes() throws Exception {
+        final List<TcpClusterChannel> channels = channels(U1, U2, U3);
+        try {
+            for (final TcpClusterChannel channel : channels) {
+                channel.setSendingLanes(Arrays.asList(new SendingLane("critical", 10, 4, false, (byte) 1), new SendingLane("bulk", 10, 1, true, (byte) 2)));
+            }
+            for (final TcpClusterChannel channel : channels) {
+                channel.ping();
+            }
+            waitFor(thatAllNodesConnected(channels));
+            channels.get(0).send(message("message1"));
+            waitFor(thatQueuesAreEmptyAndReceivedMessages(channels, message(channels.get(1), "message1", U1), message(channels.get(2), "message1", U1)));
+
+            final Map<String, Integer> sizeByLane = channels.get(0).getSendingQueueSizeByLane();
+            assertThat(sizeByLane, isNotNull());
+            assertThat(sizeByLane.keySet(), containsAllItemsOf("critical", "bulk", OutboundTcpHandler.DEFAULT_LANE_NAME));
+        } finally {
+            closeQuietly(channels);
+        }
+    }
+
+    @Test
+    public void test3InstancesWithGossip() throws Exception {
+        final List<TcpClusterChannel> channels = channels(U1, U2, U3);
+        try {
+            for (final TcpClusterChannel channel : channels) {
+                channel.setPingInterval(new Duration("100ms"));
+                channel.setGossipFanout(1);
+                channel.setGossipEnabled(true);
+            }
+            waitFor(thatAllNodesConnected(channels));
+            waitFor(thatAllNodesAreJudgedByGossip(channels));
+
+            channels.get(0).send(message("message1"));
+            waitFor(thatQueuesAreEmptyAndReceivedMessages(channels, message(channels.get(1), "message1", U1), message(channels.get(2), "message1", U1)));
+            for (final TcpClusterChannel channel : channels) {
+                assertThat(channel.getNodes(), hasSize(2));
+            }
+        } finally {
+            closeQuietly(channels);
+        }
+    }
+
     @Test
     public void test1InstanceConcurrent() throws Exception {
         final TcpClusterChannel channel = channel(U1);
@@ -98,8 +165,20 @@ public class TcpClusterChannelIntegrationTest extends ClusterChannelTestSupport<
 
     @Test
     public void test6InstancesConcurrent() throws Exception {
+        test6InstancesConcurrent(0);
+    }
+
+    @Test
+    public void test6InstancesConcurrentWithBatchedWrites() throws Exception {
+        test6InstancesConcurrent(64 * 1024);
+    }
+
+    protected void test6InstancesConcurrent(int maximumWriteBatchSize) throws Exception {
         final List<TcpClusterChannel> channels = channels(U1, U2, U3, U4, U5, U6);
         try {
+            for (final TcpClusterChannel channel : channels) {
+                channel.setMaximumWriteBatchSize(maximumWriteBatchSize);
+            }
             final int numberOfWorkersPerChannel = 5;
             final int numberOfMessagesPerWorker = 100;
             final Set<String> messagesSend = Collections.synchronizedSet(new HashSet<String>());
@@ -0,0 +1,143 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.runtime.math;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.lang.Long.numberOfLeadingZeros;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>Records the distribution of values - in most cases durations in nanoseconds - without locking. The values are counted in log-linear
+ * buckets: Every power of two is split into {@link #SUB_BUCKETS} buckets of the same width, so every reported percentile has a relative
+ * error of less than 1/{@link #SUB_BUCKETS}.</p>
+ */
+@ThreadSafe
+public class LatencyHistogram {
+
+    protected static final int SUB_BUCKET_BITS = 4;
+    protected static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    protected static final int NUMBER_OF_BUCKETS = indexOf(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray _buckets = new AtomicLongArray(NUMBER_OF_BUCKETS);
+    private final StripedCounter _sum = new StripedCounter();
+    private final AtomicLong _maximum = new AtomicLong();
+
+    /**
+     * @param value negative values are recorded as <code>0</code>.
+     */
+    public void record(long value) {
+        final long target = value > 0 ? value : 0;
+        _buckets.incrementAndGet(indexOf(target));
+        _sum.add(target);
+        long maximum = _maximum.get();
+        while (target > maximum && !_maximum.compareAndSet(maximum, target)) {
+            maximum = _maximum.get();
+        }
+    }
+
+    @Nonnegative
+    public long getCount() {
+        long result = 0;
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            result += _buckets.get(i);
+        }
+        return result;
+    }
+
+    @Nonnegative
+    public long getMaximum() {
+        return _maximum.get();
+    }
+
+    @Nonnegative
+    public long getAverage() {
+        final long count = getCount();
+        return count > 0 ? _sum.get() / count : 0;
+    }
+
+    /**
+     * @param percentile between <code>0</code> and <code>100</code>.
+     * @return the highest value of the bucket which contains the given percentile or <code>0</code> if nothing was recorded.
+     */
+    @Nonnegative
+    public long getValueAt(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("The percentile have to be between 0 and 100 but was: " + percentile);
+        }
+        final long[] counts = new long[NUMBER_OF_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            counts[i] = _buckets.get(i);
+            total += counts[i];
+        }
+        long result = 0;
+        if (total > 0) {
+            final long threshold = Math.max(1, (long) Math.ceil(total * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < NUMBER_OF_BUCKETS && seen < threshold; i++) {
+                seen += counts[i];
+                if (seen >= threshold) {
+                    result = Math.min(highestValueOf(i), getMaximum());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sets this histogram back to zero. Values that are recorded at the same time could survive this partially.
+     */
+    public void reset() {
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            _buckets.set(i, 0);
+        }
+        _sum.reset();
+        _maximum.set(0);
+    }
+
+    protected static int indexOf(@Nonnegative long value) {
+        final int result;
+        if (value < SUB_BUCKETS) {
+            result = (int) value;
+        } else {
+            final int exponent = 63 - numberOfLeadingZeros(value);
+            final int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+            result = (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+        return result;
+    }
+
+    protected static long highestValueOf(@Nonnegative int index) {
+        final long result;
+        if (index < SUB_BUCKETS) {
+            result = index;
+        } else {
+            final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+            final long subBucket = index % SUB_BUCKETS;
+            final long width = 1L << (exponent - SUB_BUCKET_BITS);
+            result = ((SUB_BUCKETS + subBucket) * width) + (width - 1);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + ", p50=" + getValueAt(50) + ", p99=" + getValueAt(99) + ", max=" + getMaximum();
+    }
+}
@@ -18,19 +18,28 @@ import org.echocat.jomon.runtime.util.Duration;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import static java.lang.System.currentTimeMillis;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+/**
+ * <h1>Synopsis</h1>
+ * <p>Counts events over a sliding measure period which is split into slots of the given resolution. Recording does not lock, so it
+ * could be used on hot paths. Increments which race with the roll-over of a slot to the next period could get lost.</p>
+ */
+@ThreadSafe
 public class OverPeriodCounter {
 
     protected static final int MAX_NUMBER_OF_MEASURE_POINTS = 10000;
+    protected static final long NOT_MEASURED = Long.MIN_VALUE;
 
     private final long _measurePeriod;
     private final long _resolution;
 
-    private final Long[] _measuredCounts;
-    private final Long[] _measuredBaseTimes;
+    private final AtomicLongArray _measuredCounts;
+    private final AtomicLongArray _measuredBaseTimes;
 
     public OverPeriodCounter(@Nonnull Duration measurePeriod, @Nonnull Duration resolution) {
         if (measurePeriod.isLessThan(resolution)) {
@@ -42,48 +51,62 @@ public class OverPeriodCounter {
         if (measurePointsCount > MAX_NUMBER_OF_MEASURE_POINTS) {
             throw new IllegalArgumentException("The difference between measurePeriod and resolution is to high. Do not reach measurePeriod/resolution > " + MAX_NUMBER_OF_MEASURE_POINTS + ".");
         }
-        _measuredCounts = new Long[(int)measurePointsCount];
-        _measuredBaseTimes = new Long[(int)measurePointsCount];
+        _measuredCounts = new AtomicLongArray((int)measurePointsCount);
+        _measuredBaseTimes = new AtomicLongArray((int)measurePointsCount);
+        reset();
     }
 
     public void record() {
+        record(1);
+    }
+
+    public void record(@Nonnegative long count) {
         final long currentTime = currentTimeMillis();
         final long currentPositionInPeriod = currentTime % _measurePeriod;
         final int i = (int) (currentPositionInPeriod / _resolution);
         final long measuredPeriodBaseTime = (currentTime / _measurePeriod) * _measurePeriod;
         final long measuredBaseTime = measuredPeriodBaseTime + (i * _resolution);
-        synchronized (this) {
-            if (_measuredCounts[i] == null || _measuredBaseTimes[i] == null
-                || (_measuredBaseTimes[i] != measuredBaseTime && _measuredBaseTimes[i] + _measurePeriod < currentTime)) {
-                _measuredCounts[i] = 0L;
-                _measuredBaseTimes[i] = measuredBaseTime;
+        final long oldBaseTime = _measuredBaseTimes.get(i);
+        if (oldBaseTime == NOT_MEASURED || (oldBaseTime != measuredBaseTime && oldBaseTime + _measurePeriod < currentTime)) {
+            if (_measuredBaseTimes.compareAndSet(i, oldBaseTime, measuredBaseTime)) {
+                // We won the roll-over of this slot, so the counts of the old period have to be dropped ...
+                _measuredCounts.set(i, 0);
             }
-            _measuredCounts[i]++;
         }
+        _measuredCounts.addAndGet(i, count);
     }
 
     @Nonnegative
     public long getAllOfMeasurePeriod() {
         final long currentTime = currentTimeMillis();
         long sumOfMeasuredValueCounts = 0;
-        synchronized (this) {
-            for (int i = 0; i < _measuredCounts.length; i++) {
-                if (_measuredBaseTimes[i] != null && _measuredBaseTimes[i] + _measurePeriod >= currentTime) {
-                    sumOfMeasuredValueCounts += _measuredCounts[i];
-                }
+        for (int i = 0; i < _measuredCounts.length(); i++) {
+            final long measuredBaseTime = _measuredBaseTimes.get(i);
+            if (measuredBaseTime != NOT_MEASURED && measuredBaseTime + _measurePeriod >= currentTime) {
+                sumOfMeasuredValueCounts += _measuredCounts.get(i);
             }
         }
         return sumOfMeasuredValueCounts;
     }
 
+    /**
+     * Forgets everything that was measured until now.
+     */
+    public void reset() {
+        for (int i = 0; i < _measuredCounts.length(); i++) {
+            _measuredBaseTimes.set(i, NOT_MEASURED);
+            _measuredCounts.set(i, 0);
+        }
+    }
+
     @Nonnegative
     public long get() {
-        return getAllOfMeasurePeriod() / _measuredCounts.length;
+        return getAllOfMeasurePeriod() / _measuredCounts.length();
     }
 
     @Nonnegative
     public double getAsDouble() {
-        return (double) getAllOfMeasurePeriod() / (double) _measuredCounts.length;
+        return (double) getAllOfMeasurePeriod() / (double) _measuredCounts.length();
     }
 
     @Nonnull
@@ -98,7 +121,7 @@ public class OverPeriodCounter {
 
     @Nonnegative
     public int getNumberOfMeasureSlots() {
-        return _measuredCounts.length;
+        return _measuredCounts.length();
     }
 
     @Override
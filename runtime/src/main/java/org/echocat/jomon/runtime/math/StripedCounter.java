@@ -0,0 +1,129 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.runtime.math;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import static java.lang.Runtime.getRuntime;
+import static java.lang.Thread.currentThread;
+
+/**
+ * <h1>Synopsis</h1>
+ * <p>A counter which could be incremented by many threads at the same time without contention. Every thread counts in one of several
+ * stripes which are summed up on {@link #get() read}. So writing is cheap while reading costs a little bit more.</p>
+ *
+ * <p>The stripes are padded to own cache lines to prevent false sharing between the cores. Because this costs some memory for every
+ * counter, the stripes are only created if two threads collide on the single base value of the counter. So counters which are never
+ * contended stay small.</p>
+ */
+@ThreadSafe
+public class StripedCounter {
+
+    protected static final int PADDING = 8;
+    protected static final int MAXIMUM_NUMBER_OF_STRIPES = 64;
+
+    private static final AtomicLongFieldUpdater<StripedCounter> BASE = AtomicLongFieldUpdater.newUpdater(StripedCounter.class, "_base");
+    private static final AtomicReferenceFieldUpdater<StripedCounter, AtomicLongArray> STRIPES = AtomicReferenceFieldUpdater.newUpdater(StripedCounter.class, AtomicLongArray.class, "_stripes");
+
+    private final int _stripeMask;
+
+    private volatile long _base;
+    private volatile AtomicLongArray _stripes;
+
+    public StripedCounter() {
+        this(getRuntime().availableProcessors() * 2);
+    }
+
+    public StripedCounter(@Nonnegative int numberOfStripes) {
+        if (numberOfStripes <= 0) {
+            throw new IllegalArgumentException("The numberOfStripes have to be greater than 0.");
+        }
+        int target = 1;
+        while (target < numberOfStripes && target < MAXIMUM_NUMBER_OF_STRIPES) {
+            target <<= 1;
+        }
+        _stripeMask = target - 1;
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long delta) {
+        AtomicLongArray stripes = _stripes;
+        if (stripes == null) {
+            final long base = _base;
+            if (!BASE.compareAndSet(this, base, base + delta)) {
+                // Another thread was faster, so this counter is contended and should be striped from now on ...
+                STRIPES.compareAndSet(this, null, new AtomicLongArray((_stripeMask + 1) * PADDING));
+                stripes = _stripes;
+            }
+        }
+        if (stripes != null) {
+            stripes.getAndAdd(indexOfCurrentThread(), delta);
+        }
+    }
+
+    public long get() {
+        long result = _base;
+        final AtomicLongArray stripes = _stripes;
+        if (stripes != null) {
+            for (int i = 0; i < stripes.length(); i += PADDING) {
+                result += stripes.get(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sets this counter back to zero. Increments that are running at the same time could survive this.
+     */
+    public void reset() {
+        _base = 0;
+        final AtomicLongArray stripes = _stripes;
+        if (stripes != null) {
+            for (int i = 0; i < stripes.length(); i += PADDING) {
+                stripes.set(i, 0);
+            }
+        }
+    }
+
+    @Nonnegative
+    public int getNumberOfStripes() {
+        return _stripeMask + 1;
+    }
+
+    /**
+     * @return <code>true</code> if this counter was contended and its stripes were created.
+     */
+    public boolean isStriped() {
+        return _stripes != null;
+    }
+
+    protected int indexOfCurrentThread() {
+        final long id = currentThread().getId();
+        final int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return ((hash ^ (hash >>> 16)) & _stripeMask) * PADDING;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(get());
+    }
+}
@@ -17,8 +17,19 @@ package org.echocat.jomon.runtime.util;
 import static java.lang.System.getProperty;
 
 public enum ProducingType {
+    /**
+     * Only one value is produced at the same time by the same producer. All other requests have to wait, also requests for other keys.
+     */
     blocking,
-    nonBlocking;
+    /**
+     * Every request produces the value itself if it was not produced yet.
+     */
+    nonBlocking,
+    /**
+     * Only one production per value is done at the same time. All other requests for the same value wait for this production while the
+     * productions of other values proceed.
+     */
+    singleFlight;
 
     public static final ProducingType DEFAULT = valueOf(getProperty(ProducingType.class.getName() + ".default", blocking.name()));
 }
@@ -37,6 +37,7 @@ import java.util.regex.Pattern;
 import static org.echocat.jomon.runtime.util.LazyEntry.ValueState.*;
 import static org.echocat.jomon.runtime.util.ProducingType.blocking;
 import static org.echocat.jomon.runtime.util.ProducingType.nonBlocking;
+import static org.echocat.jomon.runtime.util.ProducingType.singleFlight;
 import static org.echocat.jomon.runtime.util.ValueProducer.CallableAdapter.valueProducerFor;
 
 @XmlTransient
@@ -356,6 +357,11 @@ public interface Value<T> {
             return lazyValueFor(producer, nonBlocking);
         }
 
+        @Nonnull
+        public static <K, V> Value<V> singleFlightLazyValueFor(@Nullable K key, @Nullable ValueProducer<K, V> producer) {
+            return lazyValueFor(key, producer, singleFlight);
+        }
+
         private final K _key;
         private final ValueProducer<K, V> _producer;
         private final ProducingType _producingType;
@@ -376,8 +382,8 @@ public interface Value<T> {
             if (_valueState == produced) {
                 result = _value;
             } else {
-                if (_producingType == blocking) {
-                    synchronized (_producer) {
+                if (_producingType == blocking || _producingType == singleFlight) {
+                    synchronized (getMonitor()) {
                         if (_valueState == notProducedYet) {
                             callProducer();
                         } else {
@@ -405,11 +411,33 @@ public interface Value<T> {
             return _value;
         }
 
-        @GuardedBy("_producer")
+        @Nonnull
+        public ValueState getValueState() {
+            return _valueState;
+        }
+
+        /**
+         * @return the producer itself if {@link ProducingType#blocking} is used or this instance if {@link ProducingType#singleFlight} is used.
+         */
+        @Nonnull
+        protected Object getMonitor() {
+            return _producingType == singleFlight ? this : _producer;
+        }
+
+        /**
+         * Calls the producer. Is called at most once per instance if {@link ProducingType#blocking} or {@link ProducingType#singleFlight}
+         * is used.
+         */
+        @Nullable
+        protected V produce() throws Exception {
+            return _producer.produce(_key);
+        }
+
+        @GuardedBy("getMonitor()")
         private void callProducer() {
             _valueState = producing;
             try {
-                _value = _producer.produce(_key);
+                _value = produce();
                 _valueState = produced;
             } catch (final Exception e) {
                 _producingException = e;
@@ -421,8 +449,8 @@ public interface Value<T> {
                     }
                 } finally {
                     try {
-                        if (_producingType == blocking) {
-                            _producer.notifyAll();
+                        if (_producingType == blocking || _producingType == singleFlight) {
+                            getMonitor().notifyAll();
                         }
                     } finally {
                         if (_valueState == produced && _producer instanceof PostProducing) {
@@ -440,14 +468,14 @@ public interface Value<T> {
             }
         }
 
-        @GuardedBy("_producer")
+        @GuardedBy("getMonitor()")
         private void waitWhileProducerIsActive() {
-            if (_producingType != blocking) {
-                throw new IllegalStateException("This method could only be used if producingType is " + blocking + ".");
+            if (_producingType != blocking && _producingType != singleFlight) {
+                throw new IllegalStateException("This method could only be used if producingType is " + blocking + " or " + singleFlight + ".");
             }
             while (_valueState == producing) {
                 try {
-                    _producer.wait(1000);
+                    getMonitor().wait(1000);
                 } catch (final InterruptedException e) {
                     Thread.currentThread().interrupt();
                     throw new GotInterruptedException("Got interrupted while waiting for production of cache value for key " + _key + ".", e);
@@ -0,0 +1,68 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.runtime.math;
+
+import org.junit.Test;
+
+import static org.echocat.jomon.runtime.math.LatencyHistogram.highestValueOf;
+import static org.echocat.jomon.runtime.math.LatencyHistogram.indexOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LatencyHistogramUnitTest {
+
+    @Test
+    public void testBucketsCoverAllValues() throws Exception {
+        assertThat(indexOf(0), is(0));
+        assertThat(indexOf(15), is(15));
+        assertThat(indexOf(16), is(16));
+        assertThat(highestValueOf(indexOf(Long.MAX_VALUE)), is(Long.MAX_VALUE));
+        for (long value = 1; value < 100000; value = value * 3 + 1) {
+            final int index = indexOf(value);
+            assertThat(highestValueOf(index) >= value, is(true));
+            assertThat(highestValueOf(index - 1) < value, is(true));
+        }
+    }
+
+    @Test
+    public void testPercentiles() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getValueAt(99), is(0L));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertThat(histogram.getCount(), is(1000L));
+        assertThat(histogram.getMaximum(), is(1000000L));
+        assertThat(histogram.getAverage(), is(500500L));
+        assertThat(isAbout(histogram.getValueAt(50), 500000L), is(true));
+        assertThat(isAbout(histogram.getValueAt(99), 990000L), is(true));
+        assertThat(histogram.getValueAt(100), is(1000000L));
+    }
+
+    @Test
+    public void testReset() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(123);
+        histogram.record(-1);
+        assertThat(histogram.getCount(), is(2L));
+        histogram.reset();
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getMaximum(), is(0L));
+    }
+
+    protected static boolean isAbout(long value, long expected) {
+        return value >= expected && value <= expected + (expected / LatencyHistogram.SUB_BUCKETS);
+    }
+}
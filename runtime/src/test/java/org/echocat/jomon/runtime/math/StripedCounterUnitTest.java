@@ -0,0 +1,73 @@
+/*****************************************************************************************
+ * *** BEGIN LICENSE BLOCK *****
+ *
+ * Version: MPL 2.0
+ *
+ * echocat Jomon, Copyright (c) 2012-2015 echocat
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * *** END LICENSE BLOCK *****
+ ****************************************************************************************/
+
+package org.echocat.jomon.runtime.math;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class StripedCounterUnitTest {
+
+    @Test
+    public void testNumberOfStripesIsPowerOfTwo() throws Exception {
+        assertThat(new StripedCounter(1).getNumberOfStripes(), is(1));
+        assertThat(new StripedCounter(3).getNumberOfStripes(), is(4));
+        assertThat(new StripedCounter(1000).getNumberOfStripes(), is(StripedCounter.MAXIMUM_NUMBER_OF_STRIPES));
+    }
+
+    @Test
+    public void testAddAndReset() throws Exception {
+        final StripedCounter counter = new StripedCounter();
+        counter.increment();
+        counter.add(41);
+        assertThat(counter.get(), is(42L));
+        counter.reset();
+        assertThat(counter.get(), is(0L));
+    }
+
+    @Test
+    public void testStripesAreNotCreatedWithoutContention() throws Exception {
+        final StripedCounter counter = new StripedCounter(4);
+        for (int i = 0; i < 1000; i++) {
+            counter.increment();
+        }
+        assertThat(counter.isStriped(), is(false));
+        assertThat(counter.get(), is(1000L));
+    }
+
+    @Test
+    public void testConcurrentIncrements() throws Exception {
+        final StripedCounter counter = new StripedCounter(4);
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread() { @Override public void run() {
+                for (int j = 0; j < 10000; j++) {
+                    counter.increment();
+                }
+            }});
+        }
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(counter.get(), is(80000L));
+    }
+}